@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.analysis;
+
+import de.invation.code.toval.types.DataUsage;
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.ParameterException.ErrorCode;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.log.DULogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.DataAttribute;
+import de.uni.freiburg.iig.telematik.sewol.log.DataUsageIndex;
+import de.uni.freiburg.iig.telematik.sewol.log.Log;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import de.uni.freiburg.iig.telematik.sewol.util.StringDictionary;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>
+ * Checks the traces of logs, trace lists and trace streams for
+ * {@link DataFlowAnomaly data-flow anomalies} of the data attributes used by
+ * their {@link DULogEntry}s.
+ * </p>
+ * <p>
+ * The data usage of a trace is compiled into a single array of longs, each
+ * holding the id of an attribute, the position of the entry and its usage
+ * modes as bitmask. Sorting the array groups the usages by attribute in the
+ * order of the entries, and all configured anomalies are detected in one pass
+ * over each group. Attribute names are encoded by a {@link StringDictionary}
+ * and the arrays are reused, so that analyzing a trace does not copy the
+ * data usage of its entries.
+ * </p>
+ * <p>
+ * Traces are analyzed in partitions as described for the
+ * {@link PartitionedAnalyzer}. Partial {@link DataFlowReport}s are merged in
+ * the order of the traces.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class DataFlowAnalyzer extends PartitionedAnalyzer<DataFlowReport> {
+
+        /**
+         * Default maximum number of violations kept by a report.
+         */
+        public static final int DEFAULT_MAX_VIOLATIONS = 100000;
+
+        private static final int CREATE = 1 << DataUsage.CREATE.ordinal();
+        private static final int READ = 1 << DataUsage.READ.ordinal();
+        private static final int WRITE = 1 << DataUsage.WRITE.ordinal();
+        private static final int DELETE = 1 << DataUsage.DELETE.ordinal();
+        private static final int ATTRIBUTE_SHIFT = 40;
+        private static final int POSITION_SHIFT = 8;
+        private static final int MAX_ATTRIBUTES = 1 << (63 - ATTRIBUTE_SHIFT);
+
+        private final StringDictionary dictionary;
+        private final boolean[] enabled = new boolean[DataFlowAnomaly.values().length];
+        private int maxViolations = DEFAULT_MAX_VIOLATIONS;
+
+        /**
+         * Creates a new analyzer for all anomalies with a new dictionary using
+         * the common {@link ForkJoinPool}.
+         */
+        public DataFlowAnalyzer() {
+                this(EnumSet.allOf(DataFlowAnomaly.class));
+        }
+
+        /**
+         * Creates a new analyzer for the given anomalies with a new dictionary
+         * using the common {@link ForkJoinPool}.
+         *
+         * @param anomalies Anomalies to detect.
+         */
+        public DataFlowAnalyzer(Set<DataFlowAnomaly> anomalies) {
+                this(anomalies, new StringDictionary(), ForkJoinPool.commonPool());
+        }
+
+        /**
+         * Creates a new analyzer.
+         *
+         * @param anomalies Anomalies to detect.
+         * @param dictionary Dictionary for attribute ids.
+         * @param pool Pool to run the analysis tasks in.
+         */
+        public DataFlowAnalyzer(Set<DataFlowAnomaly> anomalies, StringDictionary dictionary, ForkJoinPool pool) {
+                super(pool);
+                Validate.noNullElements(anomalies);
+                Validate.notNull(dictionary);
+                for (DataFlowAnomaly anomaly : anomalies) {
+                        enabled[anomaly.ordinal()] = true;
+                }
+                this.dictionary = dictionary;
+        }
+
+        /**
+         * Returns the anomalies detected by the analyzer.
+         *
+         * @return
+         */
+        public Set<DataFlowAnomaly> getAnomalies() {
+                Set<DataFlowAnomaly> result = EnumSet.noneOf(DataFlowAnomaly.class);
+                for (DataFlowAnomaly anomaly : DataFlowAnomaly.values()) {
+                        if (enabled[anomaly.ordinal()]) {
+                                result.add(anomaly);
+                        }
+                }
+                return result;
+        }
+
+        public StringDictionary getDictionary() {
+                return dictionary;
+        }
+
+        public int getMaxViolations() {
+                return maxViolations;
+        }
+
+        /**
+         * Sets the maximum number of violations kept by the reports. Counts
+         * always include all violations.
+         *
+         * @param maxViolations
+         */
+        public void setMaxViolations(int maxViolations) {
+                Validate.notNegative(maxViolations);
+                this.maxViolations = maxViolations;
+        }
+
+        /**
+         * Analyzes the given log.
+         *
+         * @param <E> LogEntry type
+         * @param log Log to analyze.
+         * @return The report of all anomalies.
+         * @throws ParameterException If the log is <code>null</code>.
+         */
+        public <E extends LogEntry> DataFlowReport analyze(Log<E> log) throws ParameterException {
+                Validate.notNull(log);
+                return analyze(log.getTraces());
+        }
+
+        /**
+         * Analyzes the given traces.
+         *
+         * @param <E> LogEntry type
+         * @param traces Traces to analyze.
+         * @return The report of all anomalies.
+         * @throws ParameterException If the list is <code>null</code>.
+         */
+        public <E extends LogEntry> DataFlowReport analyze(List<LogTrace<E>> traces) throws ParameterException {
+                return analyzeTraces(traces);
+        }
+
+        /**
+         * Analyzes the given trace stream, e.g. a
+         * {@link de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream}.
+         * At most two batches per worker thread are held in memory at once.
+         *
+         * @param <E> LogEntry type
+         * @param traces Traces to analyze.
+         * @return The report of all anomalies.
+         * @throws ParameterException If the iterator is <code>null</code>.
+         */
+        public <E extends LogEntry> DataFlowReport analyze(Iterator<LogTrace<E>> traces) throws ParameterException {
+                return analyzeTraces(traces);
+        }
+
+        @Override
+        protected DataFlowReport createResult() {
+                return new DataFlowReport(maxViolations);
+        }
+
+        @Override
+        protected <E extends LogEntry> DataFlowReport analyzePartition(List<LogTrace<E>> traces, int from, int to) {
+                PartitionAnalysis analysis = new PartitionAnalysis(createResult());
+                for (int i = from; i < to; i++) {
+                        analysis.analyze(traces.get(i));
+                }
+                return analysis.report;
+        }
+
+        @Override
+        protected DataFlowReport merge(DataFlowReport result, DataFlowReport following) {
+                return result.merge(following);
+        }
+
+        /**
+         * Analysis of the traces of a single partition, reusing one usage
+         * array for all of them.
+         */
+        private final class PartitionAnalysis {
+
+                private final DataFlowReport report;
+                private long[] usages = new long[16];
+
+                PartitionAnalysis(DataFlowReport report) {
+                        this.report = report;
+                }
+
+                private void analyze(LogTrace<?> trace) {
+                        List<? extends LogEntry> entries = trace.getEntries();
+                        int size = 0;
+                        int position = 0;
+                        for (LogEntry entry : entries) {
+                                if (entry instanceof DULogEntry) {
+                                        for (Map.Entry<DataAttribute, Set<DataUsage>> usage : ((DULogEntry) entry).getDataUsage().entrySet()) {
+                                                if (size == usages.length) {
+                                                        usages = Arrays.copyOf(usages, size * 2);
+                                                }
+                                                usages[size++] = ((long) getAttributeId(usage.getKey().name) << ATTRIBUTE_SHIFT) | ((long) position << POSITION_SHIFT) | DataUsageIndex.toMask(usage.getValue());
+                                        }
+                                }
+                                position++;
+                        }
+                        Arrays.sort(usages, 0, size);
+                        long violations = 0;
+                        for (int start = 0; start < size;) {
+                                int attribute = (int) (usages[start] >>> ATTRIBUTE_SHIFT);
+                                int end = start + 1;
+                                while (end < size && (int) (usages[end] >>> ATTRIBUTE_SHIFT) == attribute) {
+                                        end++;
+                                }
+                                violations += analyze(trace, attribute, start, end);
+                                start = end;
+                        }
+                        report.addTrace(violations > 0);
+                }
+
+                /**
+                 * Detects the anomalies of a single attribute in the usages
+                 * from <code>start</code> (inclusive) to <code>end</code>
+                 * (exclusive).
+                 *
+                 * @return The number of violations.
+                 */
+                private int analyze(LogTrace<?> trace, int attribute, int start, int end) {
+                        int violations = 0;
+                        boolean defined = false;
+                        boolean deleted = false;
+                        int pendingWrite = -1;
+                        for (int i = start; i < end; i++) {
+                                int position = (int) (usages[i] >>> POSITION_SHIFT);
+                                int mask = (int) usages[i] & 0xFF;
+                                if ((mask & CREATE) != 0) {
+                                        if (pendingWrite >= 0) {
+                                                violations += report(DataFlowAnomaly.UNUSED_WRITE, trace, pendingWrite, attribute);
+                                        }
+                                        defined = true;
+                                        deleted = false;
+                                        pendingWrite = position;
+                                }
+                                if ((mask & READ) != 0) {
+                                        if (deleted) {
+                                                violations += report(DataFlowAnomaly.READ_AFTER_DELETE, trace, position, attribute);
+                                        } else if (!defined) {
+                                                violations += report(DataFlowAnomaly.READ_BEFORE_WRITE, trace, position, attribute);
+                                                defined = true;
+                                        }
+                                        pendingWrite = -1;
+                                }
+                                if ((mask & WRITE) != 0) {
+                                        if (deleted) {
+                                                violations += report(DataFlowAnomaly.WRITE_AFTER_DELETE, trace, position, attribute);
+                                        }
+                                        if (pendingWrite >= 0 && pendingWrite != position) {
+                                                violations += report(DataFlowAnomaly.UNUSED_WRITE, trace, pendingWrite, attribute);
+                                        }
+                                        defined = true;
+                                        deleted = false;
+                                        pendingWrite = position;
+                                }
+                                if ((mask & DELETE) != 0) {
+                                        if (pendingWrite >= 0) {
+                                                violations += report(DataFlowAnomaly.UNUSED_WRITE, trace, pendingWrite, attribute);
+                                        }
+                                        defined = false;
+                                        deleted = true;
+                                        pendingWrite = -1;
+                                }
+                        }
+                        if (pendingWrite >= 0) {
+                                violations += report(DataFlowAnomaly.UNUSED_WRITE, trace, pendingWrite, attribute);
+                        }
+                        return violations;
+                }
+
+                private int report(DataFlowAnomaly anomaly, LogTrace<?> trace, int position, int attribute) {
+                        if (!enabled[anomaly.ordinal()]) {
+                                return 0;
+                        }
+                        report.addViolation(new DataFlowViolation(anomaly, trace.getCaseNumber(), position, trace.getEntries().get(position).getActivity(), dictionary.getString(attribute)));
+                        return 1;
+                }
+        }
+
+        private int getAttributeId(String name) {
+                int id = dictionary.getId(name);
+                if (id >= MAX_ATTRIBUTES) {
+                        throw new ParameterException(ErrorCode.RANGEVIOLATION, "Too many distinct data attributes.");
+                }
+                return id;
+        }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.analysis;
+
+/**
+ * Data-flow anomalies of a single data attribute within a trace, detected by
+ * the {@link DataFlowAnalyzer}.<br>
+ * The usage modes of an entry are applied in the order create, read, write,
+ * delete, i.e. an entry reading and writing an attribute reads the previous
+ * value.
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public enum DataFlowAnomaly {
+
+        /**
+         * The attribute is read before it was created or written. Only the
+         * first of these reads is reported, afterwards the attribute is
+         * considered to be provided externally.
+         */
+        READ_BEFORE_WRITE,
+        /**
+         * The attribute is read after it was deleted and before it was
+         * created or written again.
+         */
+        READ_AFTER_DELETE,
+        /**
+         * The attribute is written after it was deleted and before it was
+         * created again.
+         */
+        WRITE_AFTER_DELETE,
+        /**
+         * The value created or written is never read, since it is overwritten,
+         * deleted or the trace ends before. The violation refers to the
+         * writing entry.
+         */
+        UNUSED_WRITE;
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.analysis;
+
+import de.invation.code.toval.validate.Validate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * Result of a {@link DataFlowAnalyzer}: the number of violations per anomaly
+ * and per data attribute, the number of analyzed and violating traces and the
+ * violations themselves with their case numbers.
+ * </p>
+ * <p>
+ * Only the first violations up to the limit of the report are kept, the
+ * counts always include all violations. Reports of consecutive parts of a log
+ * are combined with {@link #merge(DataFlowReport)} in the order of the parts.
+ * Reports are not thread-safe.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class DataFlowReport {
+
+        private final int maxViolations;
+        private final List<DataFlowViolation> violations = new ArrayList<>();
+        private final Map<DataFlowAnomaly, Long> counts = new EnumMap<>(DataFlowAnomaly.class);
+        private final Map<String, Long> attributeCounts = new HashMap<>();
+        private long numTraces = 0;
+        private long numViolatingTraces = 0;
+
+        /**
+         * Creates an empty report.
+         *
+         * @param maxViolations Maximum number of violations kept.
+         */
+        public DataFlowReport(int maxViolations) {
+                Validate.notNegative(maxViolations);
+                this.maxViolations = maxViolations;
+        }
+
+        void addViolation(DataFlowViolation violation) {
+                if (violations.size() < maxViolations) {
+                        violations.add(violation);
+                }
+                counts.merge(violation.getAnomaly(), 1L, Long::sum);
+                attributeCounts.merge(violation.getAttribute(), 1L, Long::sum);
+        }
+
+        void addTrace(boolean violating) {
+                numTraces++;
+                if (violating) {
+                        numViolatingTraces++;
+                }
+        }
+
+        /**
+         * Adds the counts and violations of the given report to this report.
+         *
+         * @param other Report of the traces following the ones of this report.
+         * @return This report.
+         */
+        public DataFlowReport merge(DataFlowReport other) {
+                Validate.notNull(other);
+                for (DataFlowViolation violation : other.violations) {
+                        if (violations.size() >= maxViolations) {
+                                break;
+                        }
+                        violations.add(violation);
+                }
+                for (Map.Entry<DataFlowAnomaly, Long> count : other.counts.entrySet()) {
+                        counts.merge(count.getKey(), count.getValue(), Long::sum);
+                }
+                for (Map.Entry<String, Long> count : other.attributeCounts.entrySet()) {
+                        attributeCounts.merge(count.getKey(), count.getValue(), Long::sum);
+                }
+                numTraces += other.numTraces;
+                numViolatingTraces += other.numViolatingTraces;
+                return this;
+        }
+
+        /**
+         * Returns the kept violations in the order of the traces.
+         *
+         * @return
+         */
+        public List<DataFlowViolation> getViolations() {
+                return Collections.unmodifiableList(violations);
+        }
+
+        /**
+         * Returns the kept violations of the given anomaly.
+         *
+         * @param anomaly
+         * @return
+         */
+        public List<DataFlowViolation> getViolations(DataFlowAnomaly anomaly) {
+                List<DataFlowViolation> result = new ArrayList<>();
+                for (DataFlowViolation violation : violations) {
+                        if (violation.getAnomaly() == anomaly) {
+                                result.add(violation);
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns the case numbers of the kept violations of the given
+         * anomaly.
+         *
+         * @param anomaly
+         * @return
+         */
+        public SortedSet<Long> getCases(DataFlowAnomaly anomaly) {
+                SortedSet<Long> result = new TreeSet<>();
+                for (DataFlowViolation violation : violations) {
+                        if (violation.getAnomaly() == anomaly) {
+                                result.add(violation.getCaseNumber());
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns the number of all violations of the given anomaly.
+         *
+         * @param anomaly
+         * @return
+         */
+        public long getCount(DataFlowAnomaly anomaly) {
+                Long count = counts.get(anomaly);
+                return count == null ? 0 : count;
+        }
+
+        /**
+         * Returns the number of all violations per anomaly.
+         *
+         * @return
+         */
+        public Map<DataFlowAnomaly, Long> getCounts() {
+                return Collections.unmodifiableMap(counts);
+        }
+
+        /**
+         * Returns the number of all violations per data attribute.
+         *
+         * @return
+         */
+        public Map<String, Long> getAttributeCounts() {
+                return Collections.unmodifiableMap(attributeCounts);
+        }
+
+        public long getTraceCount() {
+                return numTraces;
+        }
+
+        /**
+         * Returns the number of traces with at least one violation.
+         *
+         * @return
+         */
+        public long getViolatingTraceCount() {
+                return numViolatingTraces;
+        }
+
+        /**
+         * Checks if violations were dropped because of the limit.
+         *
+         * @return
+         */
+        public boolean isTruncated() {
+                long total = 0;
+                for (long count : counts.values()) {
+                        total += count;
+                }
+                return total > violations.size();
+        }
+
+        @Override
+        public String toString() {
+                return "DataFlowReport{traces=" + numTraces + ", violatingTraces=" + numViolatingTraces + ", counts=" + counts + "}";
+        }
+}
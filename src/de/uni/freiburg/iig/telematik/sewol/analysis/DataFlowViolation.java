@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.analysis;
+
+import java.util.Objects;
+
+/**
+ * Data-flow anomaly found in a trace.
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public final class DataFlowViolation {
+
+        private final DataFlowAnomaly anomaly;
+        private final long caseNumber;
+        private final int position;
+        private final String activity;
+        private final String attribute;
+
+        DataFlowViolation(DataFlowAnomaly anomaly, long caseNumber, int position, String activity, String attribute) {
+                this.anomaly = anomaly;
+                this.caseNumber = caseNumber;
+                this.position = position;
+                this.activity = activity;
+                this.attribute = attribute;
+        }
+
+        public DataFlowAnomaly getAnomaly() {
+                return anomaly;
+        }
+
+        public long getCaseNumber() {
+                return caseNumber;
+        }
+
+        /**
+         * Returns the position of the violating entry within its trace.
+         *
+         * @return
+         */
+        public int getPosition() {
+                return position;
+        }
+
+        public String getActivity() {
+                return activity;
+        }
+
+        /**
+         * Returns the name of the data attribute.
+         *
+         * @return
+         */
+        public String getAttribute() {
+                return attribute;
+        }
+
+        @Override
+        public int hashCode() {
+                return Objects.hash(anomaly, caseNumber, position, activity, attribute);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+                if (this == obj) {
+                        return true;
+                }
+                if (obj == null || getClass() != obj.getClass()) {
+                        return false;
+                }
+                final DataFlowViolation other = (DataFlowViolation) obj;
+                return anomaly == other.anomaly && caseNumber == other.caseNumber && position == other.position
+                        && Objects.equals(activity, other.activity) && Objects.equals(attribute, other.attribute);
+        }
+
+        @Override
+        public String toString() {
+                return anomaly + "{case=" + caseNumber + ", position=" + position + ", activity=" + activity + ", attribute=" + attribute + "}";
+        }
+}
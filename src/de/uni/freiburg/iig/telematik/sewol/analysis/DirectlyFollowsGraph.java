@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.analysis;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.ParameterException.ErrorCode;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.util.StringDictionary;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Directly-follows graph of a set of traces. Activities are encoded by the ids
+ * of a {@link StringDictionary} and all counts are stored in primitive
+ * matrices indexed by these ids.
+ * </p>
+ * <p>
+ * Besides the number of times an activity is directly followed by another one,
+ * the graph contains the number of occurrences, start and end counts of all
+ * activities and the time between directly following entries if both of them
+ * have a timestamp. Footprint relations are derived from the directly-follows
+ * counts.
+ * </p>
+ * <p>
+ * Graphs over the same dictionary can be combined with
+ * {@link #merge(DirectlyFollowsGraph)}, which is associative and commutative.
+ * Graphs are not thread-safe; {@link DirectlyFollowsMiner} builds one graph per
+ * partition and merges them afterwards.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class DirectlyFollowsGraph {
+
+        private static final int DEFAULT_CAPACITY = 16;
+        /**
+         * Timestamp value of entries without timestamp.
+         */
+        static final long NO_TIME = Long.MIN_VALUE;
+
+        private final StringDictionary dictionary;
+        private int capacity = 0;
+        private long numTraces = 0;
+        private long[] occurrences = new long[0];
+        private long[] starts = new long[0];
+        private long[] ends = new long[0];
+        /**
+         * Row-major matrices of size <code>capacity * capacity</code>.
+         */
+        private long[] follows = new long[0];
+        private long[] timedFollows = null;
+        private long[] durationSum = null;
+        private long[] durationMin = null;
+        private long[] durationMax = null;
+
+        /**
+         * Creates an empty graph using the given dictionary for activity ids.
+         *
+         * @param dictionary Activity dictionary.
+         */
+        public DirectlyFollowsGraph(StringDictionary dictionary) {
+                Validate.notNull(dictionary);
+                this.dictionary = dictionary;
+        }
+
+        /**
+         * Adds a trace given as sequence of activity ids and timestamps.
+         *
+         * @param activities Activity ids of the entries.
+         * @param times Timestamps of the entries in milliseconds or
+         * {@link #NO_TIME}.
+         * @param length Number of entries of the trace.
+         */
+        void addTrace(int[] activities, long[] times, int length) {
+                numTraces++;
+                if (length == 0) {
+                        return;
+                }
+                int max = 0;
+                for (int i = 0; i < length; i++) {
+                        max = Math.max(max, activities[i]);
+                }
+                ensureCapacity(max + 1);
+                starts[activities[0]]++;
+                ends[activities[length - 1]]++;
+                occurrences[activities[0]]++;
+                for (int i = 1; i < length; i++) {
+                        int cell = activities[i - 1] * capacity + activities[i];
+                        occurrences[activities[i]]++;
+                        follows[cell]++;
+                        if (times[i - 1] != NO_TIME && times[i] != NO_TIME) {
+                                addDuration(cell, times[i] - times[i - 1]);
+                        }
+                }
+        }
+
+        private void addDuration(int cell, long duration) {
+                addDurations(cell, 1, duration, duration, duration);
+        }
+
+        private void addDurations(int cell, long count, long sum, long min, long max) {
+                if (timedFollows == null) {
+                        int size = capacity * capacity;
+                        timedFollows = new long[size];
+                        durationSum = new long[size];
+                        durationMin = new long[size];
+                        durationMax = new long[size];
+                }
+                if (timedFollows[cell] == 0) {
+                        durationMin[cell] = min;
+                        durationMax[cell] = max;
+                } else {
+                        durationMin[cell] = Math.min(durationMin[cell], min);
+                        durationMax[cell] = Math.max(durationMax[cell], max);
+                }
+                timedFollows[cell] += count;
+                durationSum[cell] += sum;
+        }
+
+        private void ensureCapacity(int required) {
+                if (required <= capacity) {
+                        return;
+                }
+                int newCapacity = Math.max(Math.max(DEFAULT_CAPACITY, capacity * 2), required);
+                occurrences = Arrays.copyOf(occurrences, newCapacity);
+                starts = Arrays.copyOf(starts, newCapacity);
+                ends = Arrays.copyOf(ends, newCapacity);
+                follows = resize(follows, capacity, newCapacity);
+                timedFollows = resize(timedFollows, capacity, newCapacity);
+                durationSum = resize(durationSum, capacity, newCapacity);
+                durationMin = resize(durationMin, capacity, newCapacity);
+                durationMax = resize(durationMax, capacity, newCapacity);
+                capacity = newCapacity;
+        }
+
+        private static long[] resize(long[] matrix, int oldCapacity, int newCapacity) {
+                if (matrix == null) {
+                        return null;
+                }
+                long[] result = new long[newCapacity * newCapacity];
+                for (int row = 0; row < oldCapacity; row++) {
+                        System.arraycopy(matrix, row * oldCapacity, result, row * newCapacity, oldCapacity);
+                }
+                return result;
+        }
+
+        /**
+         * Adds all counts of the given graph to this graph.
+         *
+         * @param other Graph to merge into this one.
+         * @return This graph.
+         * @throws ParameterException If the other graph uses a different
+         * dictionary.
+         */
+        public DirectlyFollowsGraph merge(DirectlyFollowsGraph other) throws ParameterException {
+                Validate.notNull(other);
+                if (other.dictionary != dictionary) {
+                        throw new ParameterException(ErrorCode.INCOMPATIBILITY, "Graphs use different activity dictionaries.");
+                }
+                ensureCapacity(other.capacity);
+                numTraces += other.numTraces;
+                for (int a = 0; a < other.capacity; a++) {
+                        occurrences[a] += other.occurrences[a];
+                        starts[a] += other.starts[a];
+                        ends[a] += other.ends[a];
+                        for (int b = 0; b < other.capacity; b++) {
+                                int otherCell = a * other.capacity + b;
+                                int cell = a * capacity + b;
+                                follows[cell] += other.follows[otherCell];
+                                if (other.timedFollows != null && other.timedFollows[otherCell] > 0) {
+                                        addDurations(cell, other.timedFollows[otherCell], other.durationSum[otherCell], other.durationMin[otherCell], other.durationMax[otherCell]);
+                                }
+                        }
+                }
+                return this;
+        }
+
+        /**
+         * Returns the dictionary encoding the activities of the graph.
+         *
+         * @return
+         */
+        public StringDictionary getDictionary() {
+                return dictionary;
+        }
+
+        /**
+         * Returns the number of traces the graph was built from.
+         *
+         * @return
+         */
+        public long getTraceCount() {
+                return numTraces;
+        }
+
+        public long getOccurrences(int activity) {
+                return activity >= 0 && activity < capacity ? occurrences[activity] : 0;
+        }
+
+        public long getOccurrences(String activity) {
+                return getOccurrences(dictionary.lookup(activity));
+        }
+
+        public long getStartCount(int activity) {
+                return activity >= 0 && activity < capacity ? starts[activity] : 0;
+        }
+
+        public long getStartCount(String activity) {
+                return getStartCount(dictionary.lookup(activity));
+        }
+
+        public long getEndCount(int activity) {
+                return activity >= 0 && activity < capacity ? ends[activity] : 0;
+        }
+
+        public long getEndCount(String activity) {
+                return getEndCount(dictionary.lookup(activity));
+        }
+
+        private int cell(int a, int b) {
+                if (a < 0 || b < 0 || a >= capacity || b >= capacity) {
+                        return -1;
+                }
+                return a * capacity + b;
+        }
+
+        /**
+         * Returns how often activity <code>a</code> is directly followed by
+         * activity <code>b</code>.
+         *
+         * @param a Id of the preceding activity.
+         * @param b Id of the succeeding activity.
+         * @return
+         */
+        public long getDirectlyFollowsCount(int a, int b) {
+                int cell = cell(a, b);
+                return cell < 0 ? 0 : follows[cell];
+        }
+
+        public long getDirectlyFollowsCount(String a, String b) {
+                return getDirectlyFollowsCount(dictionary.lookup(a), dictionary.lookup(b));
+        }
+
+        /**
+         * Returns a copy of the directly-follows counts for all activities of
+         * the dictionary, indexed by activity ids.
+         *
+         * @return
+         */
+        public long[][] getDirectlyFollowsMatrix() {
+                int size = dictionary.size();
+                long[][] result = new long[size][size];
+                for (int a = 0; a < Math.min(size, capacity); a++) {
+                        System.arraycopy(follows, a * capacity, result[a], 0, Math.min(size, capacity));
+                }
+                return result;
+        }
+
+        /**
+         * Returns the footprint relation between the activities <code>a</code>
+         * and <code>b</code>.
+         *
+         * @param a Id of the first activity.
+         * @param b Id of the second activity.
+         * @return
+         */
+        public FootprintRelation getRelation(int a, int b) {
+                boolean ab = getDirectlyFollowsCount(a, b) > 0;
+                boolean ba = getDirectlyFollowsCount(b, a) > 0;
+                if (ab) {
+                        return ba ? FootprintRelation.PARALLEL : FootprintRelation.CAUSAL;
+                }
+                return ba ? FootprintRelation.REVERSE_CAUSAL : FootprintRelation.CHOICE;
+        }
+
+        public FootprintRelation getRelation(String a, String b) {
+                return getRelation(dictionary.lookup(a), dictionary.lookup(b));
+        }
+
+        /**
+         * Returns the footprint matrix for all activities of the dictionary,
+         * indexed by activity ids.
+         *
+         * @return
+         */
+        public FootprintRelation[][] getFootprint() {
+                int size = dictionary.size();
+                FootprintRelation[][] result = new FootprintRelation[size][size];
+                for (int a = 0; a < size; a++) {
+                        for (int b = 0; b < size; b++) {
+                                result[a][b] = getRelation(a, b);
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns the number of directly following entry pairs of the given
+         * activities which both have a timestamp.
+         *
+         * @param a Id of the preceding activity.
+         * @param b Id of the succeeding activity.
+         * @return
+         */
+        public long getTimedCount(int a, int b) {
+                int cell = cell(a, b);
+                return cell < 0 || timedFollows == null ? 0 : timedFollows[cell];
+        }
+
+        /**
+         * Returns the average time in milliseconds between directly following
+         * entries of the given activities.
+         *
+         * @param a Id of the preceding activity.
+         * @param b Id of the succeeding activity.
+         * @return The average duration or {@link Double#NaN} if there is no
+         * timed pair.
+         */
+        public double getAverageDuration(int a, int b) {
+                long count = getTimedCount(a, b);
+                return count == 0 ? Double.NaN : (double) durationSum[cell(a, b)] / count;
+        }
+
+        public double getAverageDuration(String a, String b) {
+                return getAverageDuration(dictionary.lookup(a), dictionary.lookup(b));
+        }
+
+        /**
+         * Returns the minimum time in milliseconds between directly following
+         * entries of the given activities.
+         *
+         * @param a Id of the preceding activity.
+         * @param b Id of the succeeding activity.
+         * @return The minimum duration or <code>-1</code> if there is no timed
+         * pair.
+         */
+        public long getMinimumDuration(int a, int b) {
+                return getTimedCount(a, b) == 0 ? -1 : durationMin[cell(a, b)];
+        }
+
+        public long getMinimumDuration(String a, String b) {
+                return getMinimumDuration(dictionary.lookup(a), dictionary.lookup(b));
+        }
+
+        /**
+         * Returns the maximum time in milliseconds between directly following
+         * entries of the given activities.
+         *
+         * @param a Id of the preceding activity.
+         * @param b Id of the succeeding activity.
+         * @return The maximum duration or <code>-1</code> if there is no timed
+         * pair.
+         */
+        public long getMaximumDuration(int a, int b) {
+                return getTimedCount(a, b) == 0 ? -1 : durationMax[cell(a, b)];
+        }
+
+        public long getMaximumDuration(String a, String b) {
+                return getMaximumDuration(dictionary.lookup(a), dictionary.lookup(b));
+        }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.analysis;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.log.Log;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import de.uni.freiburg.iig.telematik.sewol.util.StringDictionary;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>
+ * Computes {@link DirectlyFollowsGraph}s of logs, trace lists and trace
+ * streams.
+ * </p>
+ * <p>
+ * Traces are processed in partitions as described for the
+ * {@link PartitionedAnalyzer}. Every partition builds its own graph and the
+ * graphs are merged pairwise when the partitions are joined.
+ * </p>
+ * <p>
+ * All graphs built by one miner share its {@link StringDictionary}, so that
+ * the activity ids of graphs of different logs are comparable.
+ * </p>
+ * <p>
+ * Entries without activity are skipped, i.e. traces are analyzed as if they
+ * did not contain these entries.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class DirectlyFollowsMiner extends PartitionedAnalyzer<DirectlyFollowsGraph> {
+
+        private final StringDictionary dictionary;
+
+        /**
+         * Creates a new miner with a new dictionary using the common
+         * {@link ForkJoinPool}.
+         */
+        public DirectlyFollowsMiner() {
+                this(new StringDictionary(), ForkJoinPool.commonPool());
+        }
+
+        /**
+         * Creates a new miner.
+         *
+         * @param dictionary Dictionary for activity ids.
+         * @param pool Pool to run the mining tasks in.
+         */
+        public DirectlyFollowsMiner(StringDictionary dictionary, ForkJoinPool pool) {
+                super(pool);
+                Validate.notNull(dictionary);
+                this.dictionary = dictionary;
+        }
+
+        public StringDictionary getDictionary() {
+                return dictionary;
+        }
+
+        /**
+         * Computes the directly-follows graph of the given log.
+         *
+         * @param <E> LogEntry type
+         * @param log Log to analyze.
+         * @return The directly-follows graph.
+         * @throws ParameterException If the log is <code>null</code>.
+         */
+        public <E extends LogEntry> DirectlyFollowsGraph mine(Log<E> log) throws ParameterException {
+                Validate.notNull(log);
+                return mine(log.getTraces());
+        }
+
+        /**
+         * Computes the directly-follows graph of the given traces.
+         *
+         * @param <E> LogEntry type
+         * @param traces Traces to analyze.
+         * @return The directly-follows graph.
+         * @throws ParameterException If the list is <code>null</code>.
+         */
+        public <E extends LogEntry> DirectlyFollowsGraph mine(List<LogTrace<E>> traces) throws ParameterException {
+                return analyzeTraces(traces);
+        }
+
+        /**
+         * Computes the directly-follows graph of the given trace stream, e.g.
+         * a {@link de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream}.
+         * At most two batches per worker thread are held in memory at once.
+         *
+         * @param <E> LogEntry type
+         * @param traces Traces to analyze.
+         * @return The directly-follows graph.
+         * @throws ParameterException If the iterator is <code>null</code>.
+         */
+        public <E extends LogEntry> DirectlyFollowsGraph mine(Iterator<LogTrace<E>> traces) throws ParameterException {
+                return analyzeTraces(traces);
+        }
+
+        @Override
+        protected DirectlyFollowsGraph createResult() {
+                return new DirectlyFollowsGraph(dictionary);
+        }
+
+        @Override
+        protected <E extends LogEntry> DirectlyFollowsGraph analyzePartition(List<LogTrace<E>> traces, int from, int to) {
+                DirectlyFollowsGraph graph = createResult();
+                int[] activities = new int[16];
+                long[] times = new long[16];
+                for (int i = from; i < to; i++) {
+                        List<E> entries = traces.get(i).getEntries();
+                        if (entries.size() > activities.length) {
+                                activities = new int[entries.size()];
+                                times = new long[entries.size()];
+                        }
+                        int j = 0;
+                        for (E entry : entries) {
+                                if (entry.getActivity() == null) {
+                                        continue;
+                                }
+                                activities[j] = dictionary.getId(entry.getActivity());
+                                times[j] = entry.hasTimestamp() ? entry.getTimestampMillis() : DirectlyFollowsGraph.NO_TIME;
+                                j++;
+                        }
+                        graph.addTrace(activities, times, j);
+                }
+                return graph;
+        }
+
+        @Override
+        protected DirectlyFollowsGraph merge(DirectlyFollowsGraph result, DirectlyFollowsGraph following) {
+                return result.merge(following);
+        }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.analysis;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>
+ * Base class of analyses which process the traces of a log independently of
+ * each other and combine the results of consecutive traces.
+ * </p>
+ * <p>
+ * Trace lists are split recursively into partitions of at most
+ * {@link #getSplitThreshold()} traces which are processed by a
+ * {@link ForkJoinPool}. Every partition is analyzed into its own result and the
+ * results are merged pairwise in the order of the traces when the partitions
+ * are joined. Trace streams are read in batches of the same size, and at most
+ * two batches per worker thread are processed concurrently while the stream
+ * is read further.
+ * </p>
+ *
+ * @param <R> Result type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public abstract class PartitionedAnalyzer<R> {
+
+        /**
+         * Default maximum number of traces processed by a single task.
+         */
+        public static final int DEFAULT_SPLIT_THRESHOLD = 1000;
+
+        private final ForkJoinPool pool;
+        private int splitThreshold = DEFAULT_SPLIT_THRESHOLD;
+
+        /**
+         * Creates a new analyzer.
+         *
+         * @param pool Pool to run the analysis tasks in.
+         * @throws ParameterException If the pool is <code>null</code>.
+         */
+        protected PartitionedAnalyzer(ForkJoinPool pool) throws ParameterException {
+                Validate.notNull(pool);
+                this.pool = pool;
+        }
+
+        public int getSplitThreshold() {
+                return splitThreshold;
+        }
+
+        /**
+         * Sets the maximum number of traces processed by a single task.
+         *
+         * @param splitThreshold
+         */
+        public void setSplitThreshold(int splitThreshold) {
+                Validate.positive(splitThreshold);
+                this.splitThreshold = splitThreshold;
+        }
+
+        /**
+         * Returns an empty result.
+         *
+         * @return
+         */
+        protected abstract R createResult();
+
+        /**
+         * Analyzes the traces from <code>from</code> (inclusive) to
+         * <code>to</code> (exclusive) of the given list sequentially. Called
+         * concurrently for disjoint partitions.
+         *
+         * @param <E> LogEntry type
+         * @param traces
+         * @param from
+         * @param to
+         * @return The result of the partition.
+         */
+        protected abstract <E extends LogEntry> R analyzePartition(List<LogTrace<E>> traces, int from, int to);
+
+        /**
+         * Adds the given result of the following traces to the given result.
+         *
+         * @param result
+         * @param following
+         * @return The merged result.
+         */
+        protected abstract R merge(R result, R following);
+
+        /**
+         * Analyzes the given traces in partitions.
+         *
+         * @param <E> LogEntry type
+         * @param traces Traces to analyze.
+         * @return The merged result of all partitions.
+         * @throws ParameterException If the list is <code>null</code>.
+         */
+        protected <E extends LogEntry> R analyzeTraces(List<LogTrace<E>> traces) throws ParameterException {
+                Validate.notNull(traces);
+                return pool.invoke(new PartitionTask<>(traces, 0, traces.size()));
+        }
+
+        /**
+         * Analyzes the given trace stream in batches.
+         *
+         * @param <E> LogEntry type
+         * @param traces Traces to analyze.
+         * @return The merged result of all batches.
+         * @throws ParameterException If the iterator is <code>null</code>.
+         */
+        protected <E extends LogEntry> R analyzeTraces(Iterator<LogTrace<E>> traces) throws ParameterException {
+                Validate.notNull(traces);
+                R result = createResult();
+                Deque<ForkJoinTask<R>> pending = new ArrayDeque<>();
+                int maxPending = 2 * pool.getParallelism();
+                while (traces.hasNext()) {
+                        List<LogTrace<E>> batch = new ArrayList<>(splitThreshold);
+                        while (batch.size() < splitThreshold && traces.hasNext()) {
+                                batch.add(traces.next());
+                        }
+                        pending.add(pool.submit(new PartitionTask<>(batch, 0, batch.size())));
+                        if (pending.size() >= maxPending) {
+                                result = merge(result, pending.poll().join());
+                        }
+                }
+                while (!pending.isEmpty()) {
+                        result = merge(result, pending.poll().join());
+                }
+                return result;
+        }
+
+        private final class PartitionTask<E extends LogEntry> extends RecursiveTask<R> {
+
+                private static final long serialVersionUID = -2440387613460154373L;
+
+                private final List<LogTrace<E>> traces;
+                private final int from;
+                private final int to;
+
+                PartitionTask(List<LogTrace<E>> traces, int from, int to) {
+                        this.traces = traces;
+                        this.from = from;
+                        this.to = to;
+                }
+
+                @Override
+                protected R compute() {
+                        if (to - from > splitThreshold) {
+                                int middle = (from + to) >>> 1;
+                                PartitionTask<E> left = new PartitionTask<>(traces, from, middle);
+                                left.fork();
+                                R right = new PartitionTask<>(traces, middle, to).compute();
+                                return merge(left.join(), right);
+                        }
+                        return analyzePartition(traces, from, to);
+                }
+        }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.compliance;
+
+import de.invation.code.toval.misc.soabase.SOABase;
+import de.invation.code.toval.types.DataUsage;
+import de.invation.code.toval.validate.CompatibilityException;
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.ParameterException.ErrorCode;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.accesscontrol.AbstractACModel;
+import de.uni.freiburg.iig.telematik.sewol.context.process.ProcessContext;
+import de.uni.freiburg.iig.telematik.sewol.log.DULogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.DataAttribute;
+import de.uni.freiburg.iig.telematik.sewol.log.DataUsageIndex;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Immutable snapshot of the authorizations of a {@link ProcessContext} and
+ * its {@link AbstractACModel}, compiled into dense lookup tables.
+ * </p>
+ * <p>
+ * Subjects, activities and data attributes are numbered once. Transaction
+ * permissions are kept as bitset over all pairs of subjects and activities,
+ * object permissions as usage mode bitmask (see
+ * {@link DataUsageIndex#toMask(Collection)}) per pair of subject and
+ * attribute, and the data usage of each activity as array of attribute ids
+ * and bitmasks. Checking an entry thus costs two hash lookups and a few array
+ * accesses instead of the validations and nested map lookups of
+ * {@link ProcessContext#isAuthorized(String, String)}. The tables need one
+ * bit per subject and activity and one byte per subject and attribute.
+ * </p>
+ * <p>
+ * Policies do not follow later changes of the context or the model, they have
+ * to be compiled again. Any number of threads can use a policy without
+ * synchronization.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public final class CompiledPolicy {
+
+        private static final int[] NO_ATTRIBUTES = new int[0];
+        private static final byte[] NO_MASKS = new byte[0];
+
+        private final Map<String, Integer> subjectIds;
+        private final Map<String, Integer> activityIds;
+        private final Map<String, Integer> attributeIds;
+        private final String[] attributes;
+        private final int numActivities;
+        private final long[] authorizations;
+        private final byte[] permissions;
+        private final int[][] activityAttributes;
+        private final byte[][] activityUsage;
+
+        /**
+         * Compiles the authorizations of the given process context and its
+         * access control model, including the data usage of its activities.
+         *
+         * @param context The process context.
+         * @return The compiled policy.
+         * @throws ParameterException If the context is <code>null</code>, has
+         * no access control model or is incompatible to it.
+         */
+        public static CompiledPolicy compile(ProcessContext context) throws ParameterException {
+                Validate.notNull(context);
+                if (context.getACModel() == null) {
+                        throw new ParameterException(ErrorCode.INCONSISTENCY, "Process context has no access control model.");
+                }
+                return new CompiledPolicy(context, context.getAttributes(), context.getACModel(), context);
+        }
+
+        /**
+         * Compiles the authorizations of the given access control model for
+         * the subjects, activities and objects of its context. Activities have
+         * no data usage.
+         *
+         * @param acModel The access control model.
+         * @return The compiled policy.
+         * @throws ParameterException If the model is <code>null</code> or
+         * inconsistent.
+         */
+        public static CompiledPolicy compile(AbstractACModel<?> acModel) throws ParameterException {
+                Validate.notNull(acModel);
+                return new CompiledPolicy(acModel.getContext(), acModel.getContext().getObjects(), acModel, null);
+        }
+
+        /**
+         * Compiles the given process context without permissions, i.e. no
+         * subject is authorized for any activity or attribute. Used while the
+         * context has no access control model.
+         *
+         * @param context The process context.
+         * @return The compiled policy.
+         */
+        static CompiledPolicy compileWithoutPermissions(ProcessContext context) {
+                return new CompiledPolicy(context, context.getAttributes(), null, context);
+        }
+
+        private CompiledPolicy(SOABase base, Collection<String> objects, AbstractACModel<?> acModel, ProcessContext context) {
+                subjectIds = number(base.getSubjects());
+                activityIds = number(base.getActivities());
+                attributeIds = number(objects);
+                numActivities = activityIds.size();
+                List<String> attributeNames = new ArrayList<>(objects);
+                List<Map<String, Set<DataUsage>>> objectPermissions = new ArrayList<>(Collections.<Map<String, Set<DataUsage>>>nCopies(subjectIds.size(), null));
+                authorizations = new long[(int) (((long) subjectIds.size() * numActivities + 63) >>> 6)];
+                try {
+                        for (Map.Entry<String, Integer> subject : subjectIds.entrySet()) {
+                                Set<String> transactionPermissions = acModel == null ? Collections.<String>emptySet() : acModel.getTransactionPermissionsForSubject(subject.getKey());
+                                for (String activity : transactionPermissions) {
+                                        Integer activityId = activityIds.get(activity);
+                                        if (activityId != null) {
+                                                int bit = index(subject.getValue(), activityId);
+                                                authorizations[bit >>> 6] |= 1L << bit;
+                                        }
+                                }
+                                Map<String, Set<DataUsage>> subjectPermissions = acModel == null ? Collections.<String, Set<DataUsage>>emptyMap() : acModel.getObjectPermissionsForSubject(subject.getKey());
+                                for (String object : subjectPermissions.keySet()) {
+                                        if (!attributeIds.containsKey(object)) {
+                                                attributeIds.put(object, attributeNames.size());
+                                                attributeNames.add(object);
+                                        }
+                                }
+                                objectPermissions.set(subject.getValue(), subjectPermissions);
+                        }
+                        attributes = attributeNames.toArray(new String[attributeNames.size()]);
+                        long size = (long) subjectIds.size() * attributes.length;
+                        if (size > Integer.MAX_VALUE) {
+                                throw new ParameterException(ErrorCode.RANGEVIOLATION, "Too many subjects and attributes.");
+                        }
+                        permissions = new byte[(int) size];
+                        for (int subject = 0; subject < subjectIds.size(); subject++) {
+                                for (Map.Entry<String, Set<DataUsage>> permission : objectPermissions.get(subject).entrySet()) {
+                                        permissions[subject * attributes.length + attributeIds.get(permission.getKey())] = (byte) DataUsageIndex.toMask(permission.getValue());
+                                }
+                        }
+                        activityAttributes = new int[numActivities][];
+                        activityUsage = new byte[numActivities][];
+                        for (Map.Entry<String, Integer> activity : activityIds.entrySet()) {
+                                Map<String, Set<DataUsage>> dataUsage = context == null ? Collections.<String, Set<DataUsage>>emptyMap() : context.getDataUsageFor(activity.getKey());
+                                int[] ids = dataUsage.isEmpty() ? NO_ATTRIBUTES : new int[dataUsage.size()];
+                                byte[] masks = dataUsage.isEmpty() ? NO_MASKS : new byte[dataUsage.size()];
+                                int i = 0;
+                                for (Map.Entry<String, Set<DataUsage>> usage : dataUsage.entrySet()) {
+                                        Integer attributeId = attributeIds.get(usage.getKey());
+                                        if (attributeId == null) {
+                                                throw new ParameterException(ErrorCode.INCONSISTENCY, "Unknown attribute: " + usage.getKey());
+                                        }
+                                        ids[i] = attributeId;
+                                        masks[i++] = (byte) DataUsageIndex.toMask(usage.getValue());
+                                }
+                                activityAttributes[activity.getValue()] = ids;
+                                activityUsage[activity.getValue()] = masks;
+                        }
+                } catch (CompatibilityException e) {
+                        throw new ParameterException(ErrorCode.INCOMPATIBILITY, "Incompatible access control model: " + e.getMessage());
+                }
+        }
+
+        /**
+         * Assigns consecutive ids to the given strings.
+         */
+        private static Map<String, Integer> number(Collection<String> strings) {
+                Map<String, Integer> ids = new HashMap<>(strings.size() * 2);
+                for (String string : strings) {
+                        ids.putIfAbsent(string, ids.size());
+                }
+                return ids;
+        }
+
+        private int index(int subject, int activity) {
+                return subject * numActivities + activity;
+        }
+
+        private static int lookup(Map<String, Integer> ids, String string) {
+                if (string == null) {
+                        return -1;
+                }
+                Integer id = ids.get(string);
+                return id == null ? -1 : id;
+        }
+
+        /**
+         * Checks if the given subject is authorized to execute the given
+         * activity, disregarding the data usage of the activity.
+         *
+         * @param subject
+         * @param activity
+         * @return <code>false</code> if the subject is not authorized or the
+         * subject or activity are unknown.
+         */
+        public boolean isAuthorized(String subject, String activity) {
+                int subjectId = lookup(subjectIds, subject);
+                int activityId = lookup(activityIds, activity);
+                return subjectId >= 0 && activityId >= 0 && isAuthorized(subjectId, activityId);
+        }
+
+        private boolean isAuthorized(int subject, int activity) {
+                int bit = index(subject, activity);
+                return (authorizations[bit >>> 6] & (1L << bit)) != 0;
+        }
+
+        /**
+         * Returns the usage modes the given subject is permitted for the given
+         * attribute.
+         *
+         * @param subject
+         * @param attribute
+         * @return The usage modes, empty if the subject or attribute are
+         * unknown.
+         */
+        public Set<DataUsage> getPermissions(String subject, String attribute) {
+                int subjectId = lookup(subjectIds, subject);
+                int attributeId = lookup(attributeIds, attribute);
+                return DataUsageIndex.toUsages(subjectId < 0 || attributeId < 0 ? 0 : getPermissions(subjectId, attributeId));
+        }
+
+        private int getPermissions(int subject, int attribute) {
+                return permissions[subject * attributes.length + attribute] & 0xFF;
+        }
+
+        /**
+         * Returns the number of subjects.
+         *
+         * @return
+         */
+        public int getSubjectCount() {
+                return subjectIds.size();
+        }
+
+        /**
+         * Returns the number of activities.
+         *
+         * @return
+         */
+        public int getActivityCount() {
+                return numActivities;
+        }
+
+        /**
+         * Returns the number of data attributes of the context and of all
+         * object permissions.
+         *
+         * @return
+         */
+        public int getAttributeCount() {
+                return attributes.length;
+        }
+
+        /**
+         * Checks the given entry and passes its violations to the given
+         * consumer.<br>
+         * Permissions are checked for the data usage of the activity in the
+         * process context and, for {@link DULogEntry}s, for the logged data
+         * usage. Usage modes missing for both are reported once. Entries of
+         * unknown originators are not checked any further.
+         *
+         * @param entry Entry to check.
+         * @param caseNumber Case number of the trace of the entry.
+         * @param position Position of the entry within its trace.
+         * @param violations Consumer of the violations.
+         * @return The number of violations.
+         */
+        int check(LogEntry entry, long caseNumber, int position, Consumer<? super ComplianceViolation> violations) {
+                String activity = entry.getActivity();
+                String originator = entry.getOriginator();
+                int activityId = lookup(activityIds, activity);
+                int subjectId = lookup(subjectIds, originator);
+                int count = 0;
+                if (activityId < 0) {
+                        violations.accept(new ComplianceViolation(ComplianceViolationType.UNKNOWN_ACTIVITY, caseNumber, position, activity, originator, null, Collections.<DataUsage>emptySet()));
+                        count++;
+                }
+                if (subjectId < 0) {
+                        violations.accept(new ComplianceViolation(ComplianceViolationType.UNKNOWN_ORIGINATOR, caseNumber, position, activity, originator, null, Collections.<DataUsage>emptySet()));
+                        return count + 1;
+                }
+                if (activityId >= 0 && !isAuthorized(subjectId, activityId)) {
+                        violations.accept(new ComplianceViolation(ComplianceViolationType.UNAUTHORIZED_ORIGINATOR, caseNumber, position, activity, originator, null, Collections.<DataUsage>emptySet()));
+                        count++;
+                }
+                int[] declaredAttributes = activityId < 0 ? NO_ATTRIBUTES : activityAttributes[activityId];
+                byte[] declaredUsage = activityId < 0 ? NO_MASKS : activityUsage[activityId];
+                for (int i = 0; i < declaredAttributes.length; i++) {
+                        int missing = (declaredUsage[i] & 0xFF) & ~getPermissions(subjectId, declaredAttributes[i]);
+                        if (missing != 0) {
+                                violations.accept(new ComplianceViolation(ComplianceViolationType.MISSING_PERMISSION, caseNumber, position, activity, originator, attributes[declaredAttributes[i]], DataUsageIndex.toUsages(missing)));
+                                count++;
+                        }
+                }
+                if (entry instanceof DULogEntry) {
+                        for (Map.Entry<DataAttribute, Set<DataUsage>> usage : ((DULogEntry) entry).getDataUsage().entrySet()) {
+                                String attribute = usage.getKey().name;
+                                int attributeId = lookup(attributeIds, attribute);
+                                int missing = DataUsageIndex.toMask(usage.getValue());
+                                if (attributeId >= 0) {
+                                        missing &= ~getPermissions(subjectId, attributeId);
+                                        for (int i = 0; i < declaredAttributes.length; i++) {
+                                                if (declaredAttributes[i] == attributeId) {
+                                                        missing &= ~declaredUsage[i];
+                                                }
+                                        }
+                                }
+                                if (missing != 0) {
+                                        violations.accept(new ComplianceViolation(ComplianceViolationType.MISSING_PERMISSION, caseNumber, position, activity, originator, attribute, DataUsageIndex.toUsages(missing)));
+                                        count++;
+                                }
+                        }
+                }
+                return count;
+        }
+}
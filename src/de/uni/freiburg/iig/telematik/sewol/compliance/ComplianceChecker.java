@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.compliance;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.accesscontrol.AbstractACModel;
+import de.uni.freiburg.iig.telematik.sewol.analysis.PartitionedAnalyzer;
+import de.uni.freiburg.iig.telematik.sewol.context.process.ProcessContext;
+import de.uni.freiburg.iig.telematik.sewol.log.Log;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Replays logs, trace lists and trace streams against a
+ * {@link ProcessContext} and its {@link AbstractACModel} and reports the
+ * {@link ComplianceViolationType compliance violations} of their entries.
+ * </p>
+ * <p>
+ * The context and the model are compiled once into a {@link CompiledPolicy},
+ * so that checking an entry does not validate subjects and activities or
+ * query the model. Changes of the context or the model after creating the
+ * checker are not considered.
+ * </p>
+ * <p>
+ * Traces are checked in partitions as described for the
+ * {@link PartitionedAnalyzer}. Partial {@link ComplianceReport}s are merged in
+ * the order of the traces.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class ComplianceChecker extends PartitionedAnalyzer<ComplianceReport> {
+
+        /**
+         * Default maximum number of violations kept by a report.
+         */
+        public static final int DEFAULT_MAX_VIOLATIONS = 100000;
+
+        private final CompiledPolicy policy;
+        private int maxViolations = DEFAULT_MAX_VIOLATIONS;
+
+        /**
+         * Creates a new checker for the given process context and its access
+         * control model using the common {@link ForkJoinPool}.
+         *
+         * @param context The process context.
+         * @throws ParameterException If the context is <code>null</code>, has
+         * no access control model or is incompatible to it.
+         */
+        public ComplianceChecker(ProcessContext context) throws ParameterException {
+                this(CompiledPolicy.compile(context));
+        }
+
+        /**
+         * Creates a new checker for the given access control model using the
+         * common {@link ForkJoinPool}.
+         *
+         * @param acModel The access control model.
+         * @throws ParameterException If the model is <code>null</code> or
+         * inconsistent.
+         */
+        public ComplianceChecker(AbstractACModel<?> acModel) throws ParameterException {
+                this(CompiledPolicy.compile(acModel));
+        }
+
+        /**
+         * Creates a new checker for the given policy using the common
+         * {@link ForkJoinPool}.
+         *
+         * @param policy The compiled policy.
+         */
+        public ComplianceChecker(CompiledPolicy policy) {
+                this(policy, ForkJoinPool.commonPool());
+        }
+
+        /**
+         * Creates a new checker.
+         *
+         * @param policy The compiled policy.
+         * @param pool Pool to run the checking tasks in.
+         */
+        public ComplianceChecker(CompiledPolicy policy, ForkJoinPool pool) {
+                super(pool);
+                Validate.notNull(policy);
+                this.policy = policy;
+        }
+
+        public CompiledPolicy getPolicy() {
+                return policy;
+        }
+
+        public int getMaxViolations() {
+                return maxViolations;
+        }
+
+        /**
+         * Sets the maximum number of violations kept by the reports. Counts
+         * always include all violations.
+         *
+         * @param maxViolations
+         */
+        public void setMaxViolations(int maxViolations) {
+                Validate.notNegative(maxViolations);
+                this.maxViolations = maxViolations;
+        }
+
+        /**
+         * Checks the given log.
+         *
+         * @param <E> LogEntry type
+         * @param log Log to check.
+         * @return The report of all violations.
+         * @throws ParameterException If the log is <code>null</code>.
+         */
+        public <E extends LogEntry> ComplianceReport check(Log<E> log) throws ParameterException {
+                Validate.notNull(log);
+                return check(log.getTraces());
+        }
+
+        /**
+         * Checks the given traces.
+         *
+         * @param <E> LogEntry type
+         * @param traces Traces to check.
+         * @return The report of all violations.
+         * @throws ParameterException If the list is <code>null</code>.
+         */
+        public <E extends LogEntry> ComplianceReport check(List<LogTrace<E>> traces) throws ParameterException {
+                return analyzeTraces(traces);
+        }
+
+        /**
+         * Checks the given trace stream, e.g. a
+         * {@link de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream}.
+         * At most two batches per worker thread are held in memory at once.
+         *
+         * @param <E> LogEntry type
+         * @param traces Traces to check.
+         * @return The report of all violations.
+         * @throws ParameterException If the iterator is <code>null</code>.
+         */
+        public <E extends LogEntry> ComplianceReport check(Iterator<LogTrace<E>> traces) throws ParameterException {
+                return analyzeTraces(traces);
+        }
+
+        @Override
+        protected ComplianceReport createResult() {
+                return new ComplianceReport(maxViolations);
+        }
+
+        @Override
+        protected <E extends LogEntry> ComplianceReport analyzePartition(List<LogTrace<E>> traces, int from, int to) {
+                ComplianceReport report = createResult();
+                Consumer<ComplianceViolation> violations = report::addViolation;
+                for (int i = from; i < to; i++) {
+                        LogTrace<E> trace = traces.get(i);
+                        int count = 0;
+                        int position = 0;
+                        for (E entry : trace.getEntries()) {
+                                count += policy.check(entry, trace.getCaseNumber(), position++, violations);
+                        }
+                        report.addTrace(trace.size(), count > 0);
+                }
+                return report;
+        }
+
+        @Override
+        protected ComplianceReport merge(ComplianceReport result, ComplianceReport following) {
+                return result.merge(following);
+        }
+}
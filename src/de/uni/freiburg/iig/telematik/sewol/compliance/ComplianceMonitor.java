@@ -0,0 +1,708 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.compliance;
+
+import de.invation.code.toval.misc.soabase.SOABase;
+import de.invation.code.toval.misc.soabase.SOABaseChangeReply;
+import de.invation.code.toval.misc.soabase.SOABaseListener;
+import de.invation.code.toval.types.DataUsage;
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.accesscontrol.AbstractACModel;
+import de.uni.freiburg.iig.telematik.sewol.accesscontrol.event.ACModelListener;
+import de.uni.freiburg.iig.telematik.sewol.context.process.ProcessContext;
+import de.uni.freiburg.iig.telematik.sewol.context.process.ProcessContextListener;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Checks log entries against a {@link ProcessContext} and its
+ * {@link AbstractACModel}, or against an access control model alone, while
+ * they are logged. Entries are passed together with the case number of their
+ * trace, violations are published to the registered
+ * {@link ComplianceMonitorListener}s.
+ * </p>
+ * <p>
+ * Entries are checked against a {@link CompiledPolicy}. The monitor observes
+ * the context and the model and compiles a new policy on every change, which
+ * replaces the old one atomically. Entries are never blocked by the
+ * compilation, they are checked against the previous policy until the new one
+ * is available. Changes of the data usage of the context are not notified by
+ * the context and have to be taken over with {@link #refresh()}. The
+ * compilation is run by the executor of the monitor, by default in the thread
+ * changing the context or the model. An asynchronous executor coalesces
+ * bursts of changes into few compilations. If a compilation fails, the
+ * previous policy is kept, the failure is returned by
+ * {@link #getCompilationError()} and the listeners are notified.
+ * </p>
+ * <p>
+ * For each open case, the monitor only keeps the number of its entries, which
+ * yields the positions of violating entries, and the time of its last entry.
+ * Cases are evicted when they have not received entries for the case timeout
+ * or when the maximum number of open cases is exceeded.
+ * </p>
+ * <p>
+ * The monitor is thread-safe. Open cases are distributed by their case
+ * numbers over {@value #CASE_STRIPES} stripes with their own locks, so that
+ * producers of different cases rarely contend. Each stripe keeps its cases in
+ * the order of their last entries. If the maximum number of open cases is
+ * exceeded, the least recently active cases of the stripe of the new case are
+ * evicted first, which approximates the least recently active cases of the
+ * monitor. Expired cases of a stripe are evicted when entries of the stripe
+ * are passed, expired cases of all stripes with {@link #evictExpiredCases()}.
+ * Apart from boxing the case number, checking an entry allocates no objects
+ * unless it violates the policy.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class ComplianceMonitor implements ProcessContextListener, ACModelListener {
+
+        /**
+         * Default maximum number of open cases.
+         */
+        public static final int DEFAULT_MAX_OPEN_CASES = 100000;
+        /**
+         * Default time in milliseconds after which a case without new entries
+         * is evicted.
+         */
+        public static final long DEFAULT_CASE_TIMEOUT = TimeUnit.HOURS.toMillis(1);
+        /**
+         * Number of independently locked stripes of open cases, a power of
+         * two.
+         */
+        static final int CASE_STRIPES = 16;
+
+        private final ProcessContext context;
+        private final Executor compiler;
+        private final AtomicReference<CompiledPolicy> policy = new AtomicReference<>();
+        private final AtomicBoolean compilationPending = new AtomicBoolean(false);
+        private final Object compileLock = new Object();
+        /**
+         * Observed access control model and, without process context, its
+         * observed context, guarded by the compile lock.
+         */
+        private AbstractACModel<?> acModel;
+        private SOABase acModelContext;
+        private boolean closed = false;
+        private volatile ParameterException compilationError = null;
+
+        private final CaseStripe[] stripes = new CaseStripe[CASE_STRIPES];
+        private final AtomicInteger numOpenCases = new AtomicInteger();
+        private volatile int maxOpenCases = DEFAULT_MAX_OPEN_CASES;
+        private volatile long caseTimeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CASE_TIMEOUT);
+
+        private final List<ComplianceMonitorListener> listeners = new CopyOnWriteArrayList<>();
+        private final Consumer<ComplianceViolation> dispatcher = this::notifyViolation;
+        private final LongAdder numEntries = new LongAdder();
+        private final LongAdder numViolations = new LongAdder();
+        private final LongAdder numEvictedCases = new LongAdder();
+
+        /**
+         * Creates a new monitor for the given process context and its access
+         * control model, compiling policies in the thread changing them.
+         *
+         * @param context The process context.
+         * @throws ParameterException If the context is <code>null</code> or
+         * incompatible to its access control model.
+         */
+        public ComplianceMonitor(ProcessContext context) throws ParameterException {
+                this(context, Runnable::run);
+        }
+
+        /**
+         * Creates a new monitor for the given process context and its access
+         * control model. While the context has no access control model, all
+         * entries of known originators are reported as unauthorized.
+         *
+         * @param context The process context.
+         * @param compiler Executor compiling the policies after changes.
+         * @throws ParameterException If the context or executor are
+         * <code>null</code> or the context is incompatible to its access
+         * control model.
+         */
+        public ComplianceMonitor(ProcessContext context, Executor compiler) throws ParameterException {
+                Validate.notNull(context);
+                Validate.notNull(compiler);
+                initializeStripes();
+                this.context = context;
+                this.compiler = compiler;
+                synchronized (compileLock) {
+                        context.addProcessContextListener(this);
+                        observe(context.getACModel());
+                        try {
+                                policy.set(compile());
+                        } catch (ParameterException e) {
+                                close();
+                                throw e;
+                        }
+                }
+        }
+
+        /**
+         * Creates a new monitor for the given access control model, compiling
+         * policies in the thread changing it.
+         *
+         * @param acModel The access control model.
+         * @throws ParameterException If the model is <code>null</code> or
+         * inconsistent.
+         */
+        public ComplianceMonitor(AbstractACModel<?> acModel) throws ParameterException {
+                this(acModel, Runnable::run);
+        }
+
+        /**
+         * Creates a new monitor for the given access control model.
+         *
+         * @param acModel The access control model.
+         * @param compiler Executor compiling the policies after changes.
+         * @throws ParameterException If the model or executor are
+         * <code>null</code> or the model is inconsistent.
+         */
+        public ComplianceMonitor(AbstractACModel<?> acModel, Executor compiler) throws ParameterException {
+                Validate.notNull(acModel);
+                Validate.notNull(compiler);
+                initializeStripes();
+                this.context = null;
+                this.compiler = compiler;
+                synchronized (compileLock) {
+                        observe(acModel);
+                        try {
+                                policy.set(compile());
+                        } catch (ParameterException e) {
+                                close();
+                                throw e;
+                        }
+                }
+        }
+
+        private void initializeStripes() {
+                for (int i = 0; i < stripes.length; i++) {
+                        stripes[i] = new CaseStripe();
+                }
+        }
+
+        private void observe(AbstractACModel<?> acModel) {
+                if (this.acModel != null) {
+                        this.acModel.removeACModelListener(this);
+                }
+                this.acModel = acModel;
+                if (acModel != null) {
+                        acModel.addACModelListener(this);
+                }
+                if (context == null) {
+                        observeContext(acModel == null ? null : acModel.getContext());
+                }
+        }
+
+        private void observeContext(SOABase acModelContext) {
+                if (this.acModelContext != null) {
+                        this.acModelContext.removeContextListener(this);
+                }
+                this.acModelContext = acModelContext;
+                if (acModelContext != null) {
+                        acModelContext.addContextListener(this);
+                }
+        }
+
+        private CompiledPolicy compile() {
+                if (context == null) {
+                        return CompiledPolicy.compile(acModel);
+                }
+                return context.getACModel() == null ? CompiledPolicy.compileWithoutPermissions(context) : CompiledPolicy.compile(context);
+        }
+
+        /**
+         * Schedules the compilation of a new policy, unless one is pending.
+         */
+        private void invalidate() {
+                if (compilationPending.compareAndSet(false, true)) {
+                        compiler.execute(this::recompile);
+                }
+        }
+
+        private void recompile() {
+                ParameterException failure;
+                synchronized (compileLock) {
+                        compilationPending.set(false);
+                        if (closed) {
+                                return;
+                        }
+                        try {
+                                policy.set(compile());
+                                compilationError = null;
+                                return;
+                        } catch (ParameterException e) {
+                                // Keep the previous policy until the next change, the
+                                // context may be changed step by step.
+                                compilationError = e;
+                                failure = e;
+                        }
+                }
+                for (ComplianceMonitorListener listener : listeners) {
+                        listener.compilationFailed(this, failure);
+                }
+        }
+
+        /**
+         * Returns the reason why the last compilation after a change of the
+         * context or the model failed.
+         *
+         * @return The failure or <code>null</code> if the current policy
+         * reflects the last change.
+         */
+        public ParameterException getCompilationError() {
+                return compilationError;
+        }
+
+        /**
+         * Compiles a new policy from the current state of the context and the
+         * model and replaces the current policy with it.
+         *
+         * @throws ParameterException If the context is incompatible to its
+         * access control model.
+         */
+        public void refresh() throws ParameterException {
+                synchronized (compileLock) {
+                        policy.set(compile());
+                        compilationError = null;
+                }
+        }
+
+        /**
+         * Returns the policy entries are currently checked against.
+         *
+         * @return
+         */
+        public CompiledPolicy getPolicy() {
+                return policy.get();
+        }
+
+        /**
+         * Stops observing the context and the model. The monitor keeps
+         * checking entries against its last policy.
+         */
+        public void close() {
+                synchronized (compileLock) {
+                        if (closed) {
+                                return;
+                        }
+                        closed = true;
+                        if (context != null) {
+                                context.removeProcessContextListener(this);
+                        }
+                        if (acModel != null) {
+                                acModel.removeACModelListener(this);
+                        }
+                        if (acModelContext != null) {
+                                acModelContext.removeContextListener(this);
+                        }
+                }
+        }
+
+        public boolean addListener(ComplianceMonitorListener listener) {
+                Validate.notNull(listener);
+                return listeners.add(listener);
+        }
+
+        public boolean removeListener(ComplianceMonitorListener listener) {
+                return listeners.remove(listener);
+        }
+
+        public int getMaxOpenCases() {
+                return maxOpenCases;
+        }
+
+        /**
+         * Sets the maximum number of open cases. If the monitor holds more
+         * cases, the least recently active ones are evicted with the next
+         * entry.
+         *
+         * @param maxOpenCases
+         */
+        public void setMaxOpenCases(int maxOpenCases) {
+                Validate.positive(maxOpenCases);
+                this.maxOpenCases = maxOpenCases;
+        }
+
+        /**
+         * Returns the time after which a case without new entries is evicted.
+         *
+         * @param unit
+         * @return
+         */
+        public long getCaseTimeout(TimeUnit unit) {
+                Validate.notNull(unit);
+                return unit.convert(caseTimeout, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Sets the time after which a case without new entries is evicted.
+         *
+         * @param timeout
+         * @param unit
+         */
+        public void setCaseTimeout(long timeout, TimeUnit unit) {
+                Validate.positive(timeout);
+                Validate.notNull(unit);
+                caseTimeout = unit.toNanos(timeout);
+        }
+
+        /**
+         * Checks the given entry of the given case and notifies the listeners
+         * about its violations.
+         *
+         * @param caseNumber Case number of the trace of the entry.
+         * @param entry The entry.
+         * @return The number of violations of the entry.
+         * @throws ParameterException If the entry is <code>null</code>.
+         */
+        public int check(long caseNumber, LogEntry entry) throws ParameterException {
+                Validate.notNull(entry);
+                long now = System.nanoTime();
+                int stripeIndex = stripeIndex(caseNumber);
+                CaseStripe stripe = stripes[stripeIndex];
+                int position;
+                long[] evicted;
+                synchronized (stripe) {
+                        CaseState state = stripe.cases.get(caseNumber);
+                        if (state == null) {
+                                state = new CaseState();
+                                stripe.cases.put(caseNumber, state);
+                                numOpenCases.incrementAndGet();
+                        }
+                        state.lastEntry = now;
+                        position = state.numEntries++;
+                        // The case of the entry is the most recent one and is kept.
+                        evicted = evict(stripe, now, 1);
+                }
+                for (int i = 1; i < stripes.length && numOpenCases.get() > maxOpenCases; i++) {
+                        CaseStripe other = stripes[(stripeIndex + i) & (CASE_STRIPES - 1)];
+                        synchronized (other) {
+                                evicted = concat(evicted, evict(other, now, 0));
+                        }
+                }
+                if (evicted != null) {
+                        notifyEvicted(evicted);
+                }
+                int violations = policy.get().check(entry, caseNumber, position, dispatcher);
+                numEntries.increment();
+                if (violations > 0) {
+                        numViolations.add(violations);
+                }
+                return violations;
+        }
+
+        /**
+         * Discards the state of the given case, e.g. after its last entry.
+         *
+         * @param caseNumber
+         * @return <code>true</code> if the case was open.
+         */
+        public boolean closeCase(long caseNumber) {
+                CaseStripe stripe = stripes[stripeIndex(caseNumber)];
+                synchronized (stripe) {
+                        if (stripe.cases.remove(caseNumber) == null) {
+                                return false;
+                        }
+                }
+                numOpenCases.decrementAndGet();
+                return true;
+        }
+
+        /**
+         * Evicts all cases which have not received entries for the case
+         * timeout, e.g. in periods without entries.
+         *
+         * @return The number of evicted cases.
+         */
+        public int evictExpiredCases() {
+                long now = System.nanoTime();
+                long[] evicted = null;
+                for (CaseStripe stripe : stripes) {
+                        synchronized (stripe) {
+                                evicted = concat(evicted, evict(stripe, now, 0));
+                        }
+                }
+                if (evicted == null) {
+                        return 0;
+                }
+                notifyEvicted(evicted);
+                return evicted.length;
+        }
+
+        private static int stripeIndex(long caseNumber) {
+                return (Long.hashCode(caseNumber) * 0x9E3779B9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(CASE_STRIPES));
+        }
+
+        /**
+         * Evicts expired cases of the given stripe and, while the maximum
+         * number of open cases is exceeded, its least recently active cases.
+         * Both are at the head of the map of the stripe. Must be called while
+         * holding the lock of the stripe.
+         *
+         * @param keep Number of most recent cases of the stripe which are not
+         * evicted because of the maximum.
+         * @return The evicted case numbers or <code>null</code> if no case
+         * was evicted.
+         */
+        private long[] evict(CaseStripe stripe, long now, int keep) {
+                long[] evicted = null;
+                int count = 0;
+                Iterator<Map.Entry<Long, CaseState>> iterator = stripe.cases.entrySet().iterator();
+                while (iterator.hasNext()) {
+                        Map.Entry<Long, CaseState> eldest = iterator.next();
+                        boolean exceeded = stripe.cases.size() > keep && numOpenCases.get() > maxOpenCases;
+                        if (!exceeded && now - eldest.getValue().lastEntry < caseTimeout) {
+                                break;
+                        }
+                        if (evicted == null) {
+                                evicted = new long[4];
+                        } else if (count == evicted.length) {
+                                evicted = Arrays.copyOf(evicted, count * 2);
+                        }
+                        evicted[count++] = eldest.getKey();
+                        iterator.remove();
+                        numOpenCases.decrementAndGet();
+                }
+                return evicted == null ? null : Arrays.copyOf(evicted, count);
+        }
+
+        private static long[] concat(long[] first, long[] second) {
+                if (first == null) {
+                        return second;
+                }
+                if (second == null) {
+                        return first;
+                }
+                long[] result = Arrays.copyOf(first, first.length + second.length);
+                System.arraycopy(second, 0, result, first.length, second.length);
+                return result;
+        }
+
+        /**
+         * Returns the number of open cases.
+         *
+         * @return
+         */
+        public int getOpenCaseCount() {
+                return numOpenCases.get();
+        }
+
+        /**
+         * Returns the number of checked entries.
+         *
+         * @return
+         */
+        public long getEntryCount() {
+                return numEntries.sum();
+        }
+
+        /**
+         * Returns the number of all violations.
+         *
+         * @return
+         */
+        public long getViolationCount() {
+                return numViolations.sum();
+        }
+
+        /**
+         * Returns the number of evicted cases.
+         *
+         * @return
+         */
+        public long getEvictedCaseCount() {
+                return numEvictedCases.sum();
+        }
+
+        private void notifyViolation(ComplianceViolation violation) {
+                for (ComplianceMonitorListener listener : listeners) {
+                        listener.violationDetected(this, violation);
+                }
+        }
+
+        private void notifyEvicted(long[] caseNumbers) {
+                numEvictedCases.add(caseNumbers.length);
+                for (long caseNumber : caseNumbers) {
+                        for (ComplianceMonitorListener listener : listeners) {
+                                listener.caseEvicted(this, caseNumber);
+                        }
+                }
+        }
+
+        private static final class CaseState {
+
+                private int numEntries = 0;
+                private long lastEntry;
+        }
+
+        /**
+         * Open cases of one stripe in the order of their last entries, guarded
+         * by the lock of the stripe.
+         */
+        private static final class CaseStripe {
+
+                private final LinkedHashMap<Long, CaseState> cases = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        //------- ProcessContextListener ----------------------------------------------------------
+        @Override
+        public void acModelSet(AbstractACModel<?> acModel) {
+                synchronized (compileLock) {
+                        if (!closed) {
+                                observe(acModel);
+                        }
+                }
+                invalidate();
+        }
+
+        @Override
+        public void acModelRemoved() {
+                synchronized (compileLock) {
+                        if (!closed) {
+                                observe(null);
+                        }
+                }
+                invalidate();
+        }
+
+        @Override
+        public void validUsageModesChanged(Collection<DataUsage> usageModes) {
+                invalidate();
+        }
+
+        //------- SOABaseListener -----------------------------------------------------------------
+        @Override
+        public void nameChanged(String oldName, String newName) {
+        }
+
+        @Override
+        public void subjectAdded(String subject) {
+                invalidate();
+        }
+
+        @Override
+        public void subjectRemoved(String subject) {
+                invalidate();
+        }
+
+        @Override
+        public void objectAdded(String object) {
+                invalidate();
+        }
+
+        @Override
+        public void objectRemoved(String object) {
+                invalidate();
+        }
+
+        @Override
+        public void activityAdded(String activity) {
+                invalidate();
+        }
+
+        @Override
+        public void activityRemoved(String activity) {
+                invalidate();
+        }
+
+        @Override
+        public SOABaseChangeReply allowSubjectRemoval(String subject) {
+                return new SOABaseChangeReply(this, true, subject);
+        }
+
+        @Override
+        public SOABaseChangeReply allowObjectRemoval(String object) {
+                return new SOABaseChangeReply(this, true, object);
+        }
+
+        @Override
+        public SOABaseChangeReply allowActivityRemoval(String activity) {
+                return new SOABaseChangeReply(this, true, activity);
+        }
+
+        @Override
+        public String getListenerDescription() {
+                return "compliance monitor";
+        }
+
+        //------- ACModelListener -----------------------------------------------------------------
+        @Override
+        public void validUsageModesChanged(AbstractACModel<?> sender, Set<DataUsage> oldModes, Set<DataUsage> newModes) {
+                invalidate();
+        }
+
+        @Override
+        public void contextChanged(AbstractACModel<?> sender, SOABase context) {
+                synchronized (compileLock) {
+                        if (!closed && this.context == null) {
+                                observeContext(context);
+                        }
+                }
+                invalidate();
+        }
+
+        @Override
+        public void accessPermissionAdded(AbstractACModel<?> sender, String subject, String object, Collection<DataUsage> dataUsageModes) {
+                invalidate();
+        }
+
+        @Override
+        public void accessPermissionRemoved(AbstractACModel<?> sender, String subject, String object, Collection<DataUsage> dataUsageModes) {
+                invalidate();
+        }
+
+        @Override
+        public void executionPermissionAdded(AbstractACModel<?> sender, String subject, String transaction) {
+                invalidate();
+        }
+
+        @Override
+        public void executionPermissionRemoved(AbstractACModel<?> sender, String subject, String transaction) {
+                invalidate();
+        }
+}
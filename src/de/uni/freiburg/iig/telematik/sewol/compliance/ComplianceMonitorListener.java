@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.compliance;
+
+import de.invation.code.toval.validate.ParameterException;
+
+/**
+ * Listener for violations, evicted cases and failed policy compilations of a
+ * {@link ComplianceMonitor}. Notifications are delivered synchronously by the
+ * thread passing the entry to the monitor or compiling the policy, so
+ * listeners should hand over expensive work to other threads.
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public interface ComplianceMonitorListener {
+
+        /**
+         * Called for every violation of a checked entry.
+         *
+         * @param sender The monitor.
+         * @param violation The violation.
+         */
+        public void violationDetected(ComplianceMonitor sender, ComplianceViolation violation);
+
+        /**
+         * Called when the state of an open case has been discarded, either
+         * because the case timed out or because the maximum number of open
+         * cases was exceeded. Entries of the case passed afterwards are
+         * numbered from <code>0</code> again.
+         *
+         * @param sender The monitor.
+         * @param caseNumber The case number.
+         */
+        public void caseEvicted(ComplianceMonitor sender, long caseNumber);
+
+        /**
+         * Called when compiling a new policy after a change of the context or
+         * the model failed, e.g. because the context is changed step by step.
+         * Entries are checked against the previous policy until a later
+         * compilation succeeds. Delivered by the thread compiling the policy.
+         *
+         * @param sender The monitor.
+         * @param exception The reason of the failure.
+         * @see ComplianceMonitor#getCompilationError()
+         */
+        public void compilationFailed(ComplianceMonitor sender, ParameterException exception);
+}
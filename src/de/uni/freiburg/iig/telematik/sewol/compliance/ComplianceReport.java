@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.compliance;
+
+import de.invation.code.toval.types.DataUsage;
+import de.invation.code.toval.validate.Validate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * Result of a {@link ComplianceChecker}: the number of violations per
+ * violation type, per missing usage mode, per originator and per activity,
+ * the number of checked entries and traces and the violations themselves with
+ * their case numbers.
+ * </p>
+ * <p>
+ * Only the first violations up to the limit of the report are kept, the
+ * counts always include all violations. Reports of consecutive parts of a log
+ * are combined with {@link #merge(ComplianceReport)} in the order of the
+ * parts. Reports are not thread-safe.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class ComplianceReport {
+
+        private final int maxViolations;
+        private final List<ComplianceViolation> violations = new ArrayList<>();
+        private final Map<ComplianceViolationType, Long> counts = new EnumMap<>(ComplianceViolationType.class);
+        private final Map<DataUsage, Long> usageModeCounts = new EnumMap<>(DataUsage.class);
+        private final Map<String, Long> originatorCounts = new HashMap<>();
+        private final Map<String, Long> activityCounts = new HashMap<>();
+        private long numTraces = 0;
+        private long numEntries = 0;
+        private long numViolatingTraces = 0;
+
+        /**
+         * Creates an empty report.
+         *
+         * @param maxViolations Maximum number of violations kept.
+         */
+        public ComplianceReport(int maxViolations) {
+                Validate.notNegative(maxViolations);
+                this.maxViolations = maxViolations;
+        }
+
+        void addViolation(ComplianceViolation violation) {
+                if (violations.size() < maxViolations) {
+                        violations.add(violation);
+                }
+                counts.merge(violation.getType(), 1L, Long::sum);
+                for (DataUsage usageMode : violation.getMissingUsageModes()) {
+                        usageModeCounts.merge(usageMode, 1L, Long::sum);
+                }
+                originatorCounts.merge(violation.getOriginator(), 1L, Long::sum);
+                activityCounts.merge(violation.getActivity(), 1L, Long::sum);
+        }
+
+        void addTrace(int entries, boolean violating) {
+                numTraces++;
+                numEntries += entries;
+                if (violating) {
+                        numViolatingTraces++;
+                }
+        }
+
+        /**
+         * Adds the counts and violations of the given report to this report.
+         *
+         * @param other Report of the traces following the ones of this report.
+         * @return This report.
+         */
+        public ComplianceReport merge(ComplianceReport other) {
+                Validate.notNull(other);
+                for (ComplianceViolation violation : other.violations) {
+                        if (violations.size() >= maxViolations) {
+                                break;
+                        }
+                        violations.add(violation);
+                }
+                for (Map.Entry<ComplianceViolationType, Long> count : other.counts.entrySet()) {
+                        counts.merge(count.getKey(), count.getValue(), Long::sum);
+                }
+                for (Map.Entry<DataUsage, Long> count : other.usageModeCounts.entrySet()) {
+                        usageModeCounts.merge(count.getKey(), count.getValue(), Long::sum);
+                }
+                for (Map.Entry<String, Long> count : other.originatorCounts.entrySet()) {
+                        originatorCounts.merge(count.getKey(), count.getValue(), Long::sum);
+                }
+                for (Map.Entry<String, Long> count : other.activityCounts.entrySet()) {
+                        activityCounts.merge(count.getKey(), count.getValue(), Long::sum);
+                }
+                numTraces += other.numTraces;
+                numEntries += other.numEntries;
+                numViolatingTraces += other.numViolatingTraces;
+                return this;
+        }
+
+        /**
+         * Returns the kept violations in the order of the traces.
+         *
+         * @return
+         */
+        public List<ComplianceViolation> getViolations() {
+                return Collections.unmodifiableList(violations);
+        }
+
+        /**
+         * Returns the kept violations of the given type.
+         *
+         * @param type
+         * @return
+         */
+        public List<ComplianceViolation> getViolations(ComplianceViolationType type) {
+                List<ComplianceViolation> result = new ArrayList<>();
+                for (ComplianceViolation violation : violations) {
+                        if (violation.getType() == type) {
+                                result.add(violation);
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns the case numbers of the kept violations of the given type.
+         *
+         * @param type
+         * @return
+         */
+        public SortedSet<Long> getCases(ComplianceViolationType type) {
+                SortedSet<Long> result = new TreeSet<>();
+                for (ComplianceViolation violation : violations) {
+                        if (violation.getType() == type) {
+                                result.add(violation.getCaseNumber());
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns the number of all violations of the given type.
+         *
+         * @param type
+         * @return
+         */
+        public long getCount(ComplianceViolationType type) {
+                Long count = counts.get(type);
+                return count == null ? 0 : count;
+        }
+
+        /**
+         * Returns the number of all violations per type.
+         *
+         * @return
+         */
+        public Map<ComplianceViolationType, Long> getCounts() {
+                return Collections.unmodifiableMap(counts);
+        }
+
+        /**
+         * Returns the number of
+         * {@link ComplianceViolationType#MISSING_PERMISSION} violations per
+         * missing usage mode. A violation missing several usage modes is
+         * counted for each of them.
+         *
+         * @return
+         */
+        public Map<DataUsage, Long> getMissingPermissionCounts() {
+                return Collections.unmodifiableMap(usageModeCounts);
+        }
+
+        /**
+         * Returns the number of all violations per originator. Entries without
+         * originator are counted for the key <code>null</code>.
+         *
+         * @return
+         */
+        public Map<String, Long> getOriginatorCounts() {
+                return Collections.unmodifiableMap(originatorCounts);
+        }
+
+        /**
+         * Returns the number of all violations per activity.
+         *
+         * @return
+         */
+        public Map<String, Long> getActivityCounts() {
+                return Collections.unmodifiableMap(activityCounts);
+        }
+
+        public long getTraceCount() {
+                return numTraces;
+        }
+
+        public long getEntryCount() {
+                return numEntries;
+        }
+
+        /**
+         * Returns the number of traces with at least one violation.
+         *
+         * @return
+         */
+        public long getViolatingTraceCount() {
+                return numViolatingTraces;
+        }
+
+        /**
+         * Checks if violations were dropped because of the limit.
+         *
+         * @return
+         */
+        public boolean isTruncated() {
+                long total = 0;
+                for (long count : counts.values()) {
+                        total += count;
+                }
+                return total > violations.size();
+        }
+
+        @Override
+        public String toString() {
+                return "ComplianceReport{traces=" + numTraces + ", entries=" + numEntries + ", violatingTraces=" + numViolatingTraces + ", counts=" + counts + "}";
+        }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.compliance;
+
+import de.invation.code.toval.types.DataUsage;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Compliance violation of a single log entry.
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public final class ComplianceViolation {
+
+        private final ComplianceViolationType type;
+        private final long caseNumber;
+        private final int position;
+        private final String activity;
+        private final String originator;
+        private final String attribute;
+        private final Set<DataUsage> missingUsageModes;
+
+        ComplianceViolation(ComplianceViolationType type, long caseNumber, int position, String activity, String originator, String attribute, Set<DataUsage> missingUsageModes) {
+                this.type = type;
+                this.caseNumber = caseNumber;
+                this.position = position;
+                this.activity = activity;
+                this.originator = originator;
+                this.attribute = attribute;
+                this.missingUsageModes = Collections.unmodifiableSet(missingUsageModes);
+        }
+
+        public ComplianceViolationType getType() {
+                return type;
+        }
+
+        public long getCaseNumber() {
+                return caseNumber;
+        }
+
+        /**
+         * Returns the position of the violating entry within its trace.
+         *
+         * @return
+         */
+        public int getPosition() {
+                return position;
+        }
+
+        public String getActivity() {
+                return activity;
+        }
+
+        public String getOriginator() {
+                return originator;
+        }
+
+        /**
+         * Returns the name of the data attribute of a
+         * {@link ComplianceViolationType#MISSING_PERMISSION} violation.
+         *
+         * @return The attribute or <code>null</code> for other violations.
+         */
+        public String getAttribute() {
+                return attribute;
+        }
+
+        /**
+         * Returns the usage modes of the attribute the originator has no
+         * permission for.
+         *
+         * @return The usage modes, empty for violations other than
+         * {@link ComplianceViolationType#MISSING_PERMISSION}.
+         */
+        public Set<DataUsage> getMissingUsageModes() {
+                return missingUsageModes;
+        }
+
+        @Override
+        public int hashCode() {
+                return Objects.hash(type, caseNumber, position, activity, originator, attribute, missingUsageModes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+                if (this == obj) {
+                        return true;
+                }
+                if (obj == null || getClass() != obj.getClass()) {
+                        return false;
+                }
+                final ComplianceViolation other = (ComplianceViolation) obj;
+                return type == other.type && caseNumber == other.caseNumber && position == other.position
+                        && Objects.equals(activity, other.activity) && Objects.equals(originator, other.originator)
+                        && Objects.equals(attribute, other.attribute) && missingUsageModes.equals(other.missingUsageModes);
+        }
+
+        @Override
+        public String toString() {
+                return type + "{case=" + caseNumber + ", position=" + position + ", activity=" + activity + ", originator=" + originator
+                        + (attribute == null ? "" : ", attribute=" + attribute + ", missing=" + missingUsageModes) + "}";
+        }
+}
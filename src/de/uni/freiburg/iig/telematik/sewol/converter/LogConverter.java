@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.converter;
+
+import de.invation.code.toval.parser.ParserException;
+import de.invation.code.toval.validate.CompatibilityException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.format.AbstractLogFormat;
+import de.uni.freiburg.iig.telematik.sewol.format.LogFormatFactory;
+import de.uni.freiburg.iig.telematik.sewol.format.LogFormatType;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import de.uni.freiburg.iig.telematik.sewol.parser.LogParser;
+import de.uni.freiburg.iig.telematik.sewol.parser.LogParsingFormat;
+import de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream;
+import de.uni.freiburg.iig.telematik.sewol.parser.ParsingMode;
+import de.uni.freiburg.iig.telematik.sewol.writer.LogWriter;
+import de.uni.freiburg.iig.telematik.sewol.writer.PerspectiveException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Converts logs between the supported formats (XES, MXML, Plain and Petrify as
+ * input, XES, MXML and Plain as output) without keeping the whole log in
+ * memory. The traces are read with a {@link LogTraceStream} and written with a
+ * {@link LogWriter} one after another.
+ * </p>
+ * <p>
+ * In pipelined mode parsing, formatting and writing run in separate threads
+ * which are connected by bounded queues, so that the memory consumption is
+ * limited by the buffer size. With the parsing mode
+ * {@link ParsingMode#DISTINCT_ACTIVITY_SEQUENCES} only one trace per activity
+ * sequence is written.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class LogConverter {
+
+        /**
+         * Default number of traces which can be buffered between two stages.
+         */
+        public static final int DEFAULT_BUFFER_SIZE = 1000;
+
+        private static final Object END_OF_STREAM = new Object();
+
+        private ParsingMode parsingMode = ParsingMode.COMPLETE;
+        private boolean pipelined = true;
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+        public LogConverter() {
+        }
+
+        public LogConverter(ParsingMode parsingMode, boolean pipelined) {
+                setParsingMode(parsingMode);
+                setPipelined(pipelined);
+        }
+
+        public ParsingMode getParsingMode() {
+                return parsingMode;
+        }
+
+        public final void setParsingMode(ParsingMode parsingMode) {
+                Validate.notNull(parsingMode);
+                this.parsingMode = parsingMode;
+        }
+
+        public boolean isPipelined() {
+                return pipelined;
+        }
+
+        /**
+         * Sets if parsing, formatting and writing should run in separate
+         * threads.
+         *
+         * @param pipelined
+         */
+        public final void setPipelined(boolean pipelined) {
+                this.pipelined = pipelined;
+        }
+
+        public int getBufferSize() {
+                return bufferSize;
+        }
+
+        /**
+         * Sets the number of traces which can be buffered between two stages of
+         * the pipeline.
+         *
+         * @param bufferSize
+         */
+        public void setBufferSize(int bufferSize) {
+                Validate.positive(bufferSize);
+                this.bufferSize = bufferSize;
+        }
+
+        /**
+         * Converts the given log file into the given format. The input format
+         * is guessed by the file extension.
+         *
+         * @param inputFile Log file to convert.
+         * @param outputFormat Format of the output file.
+         * @param outputPath Path of the output file.
+         * @param outputFileName Name of the output file without extension.
+         * @return The number of written traces.
+         * @throws IOException If the input can't be read or the output can't
+         * be written.
+         * @throws ParserException If the input can't be parsed.
+         * @throws PerspectiveException If the output format does not support
+         * the trace perspective.
+         * @throws CompatibilityException If the output format does not support
+         * the charset of the writer.
+         */
+        public long convert(File inputFile, AbstractLogFormat outputFormat, String outputPath, String outputFileName) throws IOException, ParserException, PerspectiveException, CompatibilityException {
+                Validate.notNull(inputFile);
+                return convert(LogParser.stream(inputFile, parsingMode), outputFormat, outputPath, outputFileName);
+        }
+
+        /**
+         * Converts the given log file of the given input format into the given
+         * output format.
+         *
+         * @param inputFile Log file to convert.
+         * @param inputFormat Format of the log file.
+         * @param outputFormat Format of the output file.
+         * @param outputPath Path of the output file.
+         * @param outputFileName Name of the output file without extension.
+         * @return The number of written traces.
+         * @throws IOException If the input can't be read or the output can't
+         * be written.
+         * @throws ParserException If the input can't be parsed.
+         * @throws PerspectiveException If the output format does not support
+         * the trace perspective.
+         * @throws CompatibilityException If the output format does not support
+         * the charset of the writer.
+         */
+        public long convert(File inputFile, LogParsingFormat inputFormat, AbstractLogFormat outputFormat, String outputPath, String outputFileName) throws IOException, ParserException, PerspectiveException, CompatibilityException {
+                Validate.notNull(inputFile);
+                return convert(LogParser.stream(inputFile, inputFormat, parsingMode), outputFormat, outputPath, outputFileName);
+        }
+
+        private long convert(LogTraceStream stream, AbstractLogFormat outputFormat, String outputPath, String outputFileName) throws IOException, ParserException, PerspectiveException, CompatibilityException {
+                try (LogTraceStream traces = stream) {
+                        LogWriter writer = new LogWriter(outputFormat, outputPath, outputFileName);
+                        try {
+                                return convert(traces, writer);
+                        } finally {
+                                writer.closeFile();
+                        }
+                }
+        }
+
+        /**
+         * Writes all traces of the given iterator with the given writer. The
+         * writer is not closed afterwards.
+         *
+         * @param <E> Type of the log entries.
+         * @param traces Traces to write, e.g. a {@link LogTraceStream}.
+         * @param writer Writer for the traces.
+         * @return The number of written traces.
+         * @throws IOException If the traces can't be read or written.
+         * @throws ParserException If the traces can't be parsed.
+         * @throws PerspectiveException If the writer is not in trace
+         * perspective.
+         */
+        public <E extends LogEntry> long convert(Iterator<LogTrace<E>> traces, LogWriter writer) throws IOException, ParserException, PerspectiveException {
+                Validate.notNull(traces);
+                Validate.notNull(writer);
+                try {
+                        if (pipelined) {
+                                return convertPipelined(traces, writer);
+                        }
+                        long count = 0;
+                        while (traces.hasNext()) {
+                                writer.writeTrace(traces.next());
+                                count++;
+                        }
+                        return count;
+                } catch (RuntimeException e) {
+                        throw unwrap(e);
+                }
+        }
+
+        private <E extends LogEntry> long convertPipelined(final Iterator<LogTrace<E>> traces, LogWriter writer) throws IOException, ParserException, PerspectiveException {
+                final BlockingQueue<Object> parsedTraces = new ArrayBlockingQueue<>(bufferSize);
+                final BlockingQueue<Object> formattedTraces = new ArrayBlockingQueue<>(bufferSize);
+                final AtomicReference<Throwable> failure = new AtomicReference<>();
+                final AbstractLogFormat format = writer.getLogFormat();
+
+                Thread parserThread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                                try {
+                                        while (traces.hasNext()) {
+                                                parsedTraces.put(traces.next());
+                                        }
+                                        parsedTraces.put(END_OF_STREAM);
+                                } catch (InterruptedException e) {
+                                        // Conversion was aborted.
+                                } catch (Throwable t) {
+                                        fail(t, failure, parsedTraces);
+                                }
+                        }
+                }, "LogConverter-parser");
+                Thread formatterThread = new Thread(new Runnable() {
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public void run() {
+                                try {
+                                        Object next;
+                                        while ((next = parsedTraces.take()) != END_OF_STREAM) {
+                                                formattedTraces.put(format.getTraceAsString((LogTrace<E>) next));
+                                        }
+                                        formattedTraces.put(END_OF_STREAM);
+                                } catch (InterruptedException e) {
+                                        // Conversion was aborted.
+                                } catch (Throwable t) {
+                                        fail(t, failure, formattedTraces);
+                                }
+                        }
+                }, "LogConverter-formatter");
+                parserThread.setDaemon(true);
+                formatterThread.setDaemon(true);
+                parserThread.start();
+                formatterThread.start();
+
+                long count = 0;
+                try {
+                        Object next;
+                        while ((next = formattedTraces.take()) != END_OF_STREAM && failure.get() == null) {
+                                writer.writeFormattedTrace((String) next);
+                                count++;
+                        }
+                } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while converting log.");
+                } finally {
+                        // Stops the other stages in case writing failed.
+                        parserThread.interrupt();
+                        formatterThread.interrupt();
+                }
+                Throwable t = failure.get();
+                if (t != null) {
+                        if (t instanceof RuntimeException) {
+                                throw unwrap((RuntimeException) t);
+                        }
+                        if (t instanceof Error) {
+                                throw (Error) t;
+                        }
+                        throw new IOException(t);
+                }
+                return count;
+        }
+
+        /**
+         * Records the failure of a pipeline stage and passes the end of the
+         * stream to the next stage. Pending traces of the stage are discarded,
+         * so that the marker cannot block or be dropped if the queue is full.
+         * The failing stage is the only producer of the queue.
+         */
+        private static void fail(Throwable t, AtomicReference<Throwable> failure, BlockingQueue<Object> queue) {
+                failure.compareAndSet(null, t);
+                queue.clear();
+                try {
+                        queue.put(END_OF_STREAM);
+                } catch (InterruptedException e) {
+                        // Conversion was aborted.
+                }
+        }
+
+        /**
+         * Returns the {@link IOException} or {@link ParserException} wrapped by
+         * a trace stream, or the exception itself.
+         */
+        private static RuntimeException unwrap(RuntimeException e) throws IOException, ParserException {
+                if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof ParserException) {
+                        throw (ParserException) e.getCause();
+                }
+                return e;
+        }
+
+        private static void printUsage() {
+                System.out.println("Usage: LogConverter <input file> <output format> <output path> <output file name> [-distinct] [-sequential]");
+                System.out.println("  output format: PLAIN, MXML or XES");
+                System.out.println("  -distinct:     write only one trace per activity sequence");
+                System.out.println("  -sequential:   parse, format and write in one thread");
+        }
+
+        public static void main(String[] args) throws Exception {
+                if (args.length < 4) {
+                        printUsage();
+                        return;
+                }
+                LogFormatType formatType;
+                try {
+                        formatType = LogFormatType.valueOf(args[1].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                        printUsage();
+                        return;
+                }
+                LogConverter converter = new LogConverter();
+                for (int i = 4; i < args.length; i++) {
+                        switch (args[i]) {
+                                case "-distinct":
+                                        converter.setParsingMode(ParsingMode.DISTINCT_ACTIVITY_SEQUENCES);
+                                        break;
+                                case "-sequential":
+                                        converter.setPipelined(false);
+                                        break;
+                                default:
+                                        printUsage();
+                                        return;
+                        }
+                }
+                long start = System.currentTimeMillis();
+                long traces = converter.convert(new File(args[0]), LogFormatFactory.getFormat(formatType, args[3]), args[2], args[3]);
+                System.out.println("Converted " + traces + " traces in " + (System.currentTimeMillis() - start) + " ms.");
+        }
+}
@@ -144,7 +144,7 @@ public class MXMLLogFormat extends AbstractLogFormat {
 //			System.out.println(entry.getTimestamp());
 //			System.out.println(dateFormat.format(entry.getTimestamp()));
 //			System.out.println();
-                        formatArgs.add(dateFormat.format(entry.getTimestamp()));
+                        formatArgs.add(dateFormat.format(timestamp));
                 } else {
                         formatArgs.add("-");
                 }
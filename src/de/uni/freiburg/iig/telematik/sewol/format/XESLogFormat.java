@@ -171,7 +171,7 @@ public class XESLogFormat extends AbstractLogFormat {
                 // concept name
                 builder.append(String.format(ATTRIBUTE_STRING_FORMAT_C, INDENT3, XESExtensions.CONCEPT.prefix + ":name", entry.getActivity(), DEFAULT_LINE_SEPARATOR));
                 // time
-                builder.append(String.format(ATTRIBUTE_DATE_FORMAT_C, INDENT3, XESExtensions.TIME.prefix + ":timestamp", entry.getTimestamp() != null ? dateFormat.format(entry.getTimestamp()) : "-", DEFAULT_LINE_SEPARATOR));
+                builder.append(String.format(ATTRIBUTE_DATE_FORMAT_C, INDENT3, XESExtensions.TIME.prefix + ":timestamp", entry.hasTimestamp() ? dateFormat.format(entry.getTimestamp()) : "-", DEFAULT_LINE_SEPARATOR));
                 // data
                 if (entry instanceof DULogEntry) {
                         DULogEntry duEntry = (DULogEntry) entry;
@@ -220,9 +220,11 @@ public class XESLogFormat extends AbstractLogFormat {
                                 for (DataAttribute metaAttribute : metaAttributes) {
                                         // retrieve data type
                                         String metaAttributeFormat = ATTRIBUTE_STRING_FORMAT_C;
+                                        Object metaAttributeValue = metaAttribute.value;
                                         if (metaAttribute.value instanceof Date) {
                                                 metaAttributeFormat = ATTRIBUTE_DATE_FORMAT_C;
-                                        } else if (metaAttribute.value instanceof Integer) {
+                                                metaAttributeValue = dateFormat.format((Date) metaAttribute.value);
+                                        } else if (metaAttribute.value instanceof Integer || metaAttribute.value instanceof Long) {
                                                 metaAttributeFormat = ATTRIBUTE_INT_FORMAT_C;
                                         } else if (metaAttribute.value instanceof Float) {
                                                 metaAttributeFormat = ATTRIBUTE_FLOAT_FORMAT_C;
@@ -232,7 +234,7 @@ public class XESLogFormat extends AbstractLogFormat {
                                                 metaAttributeFormat = ATTRIBUTE_BOOLEAN_FORMAT_C;
                                         }
 
-                                        builder.append(String.format(metaAttributeFormat, INDENT3, metaAttribute.name, metaAttribute.value, DEFAULT_LINE_SEPARATOR));
+                                        builder.append(String.format(metaAttributeFormat, INDENT3, metaAttribute.name, metaAttributeValue, DEFAULT_LINE_SEPARATOR));
                                 }
                         }
                 }
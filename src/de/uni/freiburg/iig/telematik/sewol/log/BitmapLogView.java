@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.log.filter.AbstractLogFilter;
+import de.uni.freiburg.iig.telematik.sewol.log.filter.CompiledLogFilter;
+import de.uni.freiburg.iig.telematik.sewol.log.filter.FilterPlanner;
+import de.uni.freiburg.iig.telematik.sewol.util.CompressedBitmap;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * Read-only view on a subset of the traces of a parent {@link Log}. In
+ * contrast to {@link LogView}, the view does not hold its own list of traces
+ * but only a {@link CompressedBitmap} of the positions of its traces within
+ * the parent log. Many views over the same large log therefore need little
+ * memory.
+ * </p>
+ * <p>
+ * The summary, the variant index and the list of traces are computed on first
+ * use and cached. Views are created by filtering a log with
+ * {@link #filter(Log, Collection)}, and views of views by
+ * {@link #filter(Collection)}, {@link #and(BitmapLogView)},
+ * {@link #or(BitmapLogView)} and {@link #andNot(BitmapLogView)}, which combine
+ * the bitmaps. All views derived from a view refer to the same parent log.
+ * </p>
+ * <p>
+ * The membership of a view is fixed when it is created. If traces of the
+ * parent log are modified afterwards, the cached data has to be discarded
+ * with {@link #invalidate()}.
+ * </p>
+ *
+ * @param <E> LogEntry type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class BitmapLogView<E extends LogEntry> extends Log<E> {
+
+        private final Log<E> parent;
+        private final CompressedBitmap members;
+        private final FilterPlanner<E> planner;
+
+        private int[] ordinals = null;
+        private LogSummary<E> cachedSummary = null;
+        private VariantIndex cachedVariants = null;
+
+        /**
+         * Creates a view containing the traces of the parent log at the given
+         * positions. If the parent is a bitmap view itself, the view refers to
+         * its parent and the positions are relative to the given view.
+         *
+         * @param parent Parent log.
+         * @param members Positions of the traces within the parent log.
+         * @throws ParameterException If a parameter is <code>null</code> or a
+         * position exceeds the number of traces of the parent.
+         */
+        public BitmapLogView(Log<E> parent, CompressedBitmap members) throws ParameterException {
+                this(parent, members, new FilterPlanner<E>());
+        }
+
+        private BitmapLogView(Log<E> parent, CompressedBitmap members, FilterPlanner<E> planner) throws ParameterException {
+                Validate.notNull(parent);
+                Validate.notNull(members);
+                if (parent instanceof BitmapLogView) {
+                        BitmapLogView<E> parentView = (BitmapLogView<E>) parent;
+                        int[] parentOrdinals = parentView.getOrdinals();
+                        validateMembers(members, parentOrdinals.length);
+                        CompressedBitmap translated = new CompressedBitmap();
+                        members.forEach(ordinal -> translated.add(parentOrdinals[ordinal]));
+                        this.parent = parentView.parent;
+                        this.members = translated;
+                } else {
+                        validateMembers(members, parent.getTraces().size());
+                        this.parent = parent;
+                        this.members = members.clone();
+                }
+                this.planner = planner;
+        }
+
+        private static void validateMembers(CompressedBitmap members, int size) {
+                if (!members.andNot(CompressedBitmap.range(size)).isEmpty()) {
+                        throw new ParameterException(ParameterException.ErrorCode.RANGEVIOLATION, "The parent log contains only " + size + " traces.");
+                }
+        }
+
+        /**
+         * Creates a view on all traces of the given log accepted by all given
+         * filters. Filters are evaluated on the index of the log where
+         * possible.
+         *
+         * @param <E> LogEntry type
+         * @param log Parent log.
+         * @param filters Filters to apply.
+         * @return
+         * @throws ParameterException If a parameter is <code>null</code>.
+         * @see FilterPlanner#evaluate(Collection, List, LogIndex)
+         */
+        public static <E extends LogEntry> BitmapLogView<E> filter(Log<E> log, Collection<? extends AbstractLogFilter<E>> filters) throws ParameterException {
+                Validate.notNull(log);
+                FilterPlanner<E> planner = new FilterPlanner<>();
+                CompressedBitmap members = planner.evaluate(filters, log.getTraces(), log.getIndex());
+                return new BitmapLogView<>(log, members, planner);
+        }
+
+        /**
+         * Creates a view on all traces of this view accepted by all given
+         * filters.
+         *
+         * @param filters Filters to apply.
+         * @return
+         * @throws ParameterException If the collection is <code>null</code> or
+         * contains <code>null</code> elements.
+         */
+        public BitmapLogView<E> filter(Collection<? extends AbstractLogFilter<E>> filters) throws ParameterException {
+                Validate.noNullElements(filters);
+                CompressedBitmap candidates = members;
+                List<AbstractLogFilter<E>> remaining = new ArrayList<>();
+                for (AbstractLogFilter<E> filter : filters) {
+                        CompressedBitmap accepted = filter.supportsIndex() ? filter.getAcceptedTraces(parent.getIndex()) : null;
+                        if (accepted == null) {
+                                remaining.add(filter);
+                        } else {
+                                candidates = candidates.and(accepted);
+                        }
+                }
+                CompressedBitmap result = candidates;
+                if (!remaining.isEmpty()) {
+                        CompiledLogFilter<E> compiled = planner.compile(remaining);
+                        List<LogTrace<E>> parentTraces = parent.getTraces();
+                        CompressedBitmap accepted = new CompressedBitmap();
+                        candidates.forEach(ordinal -> {
+                                if (compiled.accept(parentTraces.get(ordinal))) {
+                                        accepted.add(ordinal);
+                                }
+                        });
+                        result = accepted;
+                }
+                return new BitmapLogView<>(parent, result, planner);
+        }
+
+        /**
+         * Returns a view on all traces contained in this and the given view.
+         *
+         * @param other View on the same parent log.
+         * @return
+         * @throws ParameterException If the views have different parents.
+         */
+        public BitmapLogView<E> and(BitmapLogView<E> other) throws ParameterException {
+                validateSameParent(other);
+                return new BitmapLogView<>(parent, members.and(other.members), planner);
+        }
+
+        /**
+         * Returns a view on all traces contained in this or the given view.
+         *
+         * @param other View on the same parent log.
+         * @return
+         * @throws ParameterException If the views have different parents.
+         */
+        public BitmapLogView<E> or(BitmapLogView<E> other) throws ParameterException {
+                validateSameParent(other);
+                return new BitmapLogView<>(parent, members.or(other.members), planner);
+        }
+
+        /**
+         * Returns a view on all traces contained in this but not in the given
+         * view.
+         *
+         * @param other View on the same parent log.
+         * @return
+         * @throws ParameterException If the views have different parents.
+         */
+        public BitmapLogView<E> andNot(BitmapLogView<E> other) throws ParameterException {
+                validateSameParent(other);
+                return new BitmapLogView<>(parent, members.andNot(other.members), planner);
+        }
+
+        private void validateSameParent(BitmapLogView<E> other) {
+                Validate.notNull(other);
+                if (other.parent != parent) {
+                        throw new ParameterException(ParameterException.ErrorCode.INCOMPATIBILITY, "Only views on the same log can be combined.");
+                }
+        }
+
+        /**
+         * Returns the parent log of the view.
+         *
+         * @return
+         */
+        public Log<E> getParent() {
+                return parent;
+        }
+
+        /**
+         * Returns a copy of the positions of the traces of the view within the
+         * parent log.
+         *
+         * @return
+         */
+        public CompressedBitmap getMembers() {
+                return members.clone();
+        }
+
+        /**
+         * Returns the number of traces of the view.
+         *
+         * @return
+         */
+        public int size() {
+                return getOrdinals().length;
+        }
+
+        /**
+         * Discards the cached list of traces, summary and variant index, e.g.
+         * after traces of the parent log have been modified.
+         */
+        public void invalidate() {
+                cachedSummary = null;
+                cachedVariants = null;
+                indexes.clear();
+        }
+
+        private int[] getOrdinals() {
+                if (ordinals == null) {
+                        ordinals = members.toArray();
+                }
+                return ordinals;
+        }
+
+        /**
+         * Returns an unmodifiable list of the traces of the view, backed by
+         * the parent log.
+         *
+         * @return
+         */
+        @Override
+        public List<LogTrace<E>> getTraces() {
+                return new MemberList();
+        }
+
+        /**
+         * Returns the summary of the traces of the view, which is computed on
+         * first use.
+         *
+         * @return
+         */
+        @Override
+        public LogSummary<E> getSummary() {
+                if (cachedSummary == null) {
+                        cachedSummary = LogSummary.build(getTraces()).freeze();
+                }
+                return cachedSummary;
+        }
+
+        /**
+         * Returns the variant index of the traces of the view, which is
+         * computed on first use.
+         *
+         * @return
+         */
+        @Override
+        public VariantIndex getVariantIndex() {
+                if (cachedVariants == null) {
+                        VariantIndex result = new VariantIndex();
+                        for (LogTrace<E> trace : getTraces()) {
+                                result.add(trace);
+                        }
+                        cachedVariants = result.freeze();
+                }
+                return cachedVariants;
+        }
+
+        @Override
+        void reinitialize() {
+                throw new UnsupportedOperationException("Bitmap views are read-only.");
+        }
+
+        @Override
+        public void addTrace(LogTrace<E> trace) throws ParameterException {
+                throw new UnsupportedOperationException("Bitmap views are read-only.");
+        }
+
+        @Override
+        public void addTraces(List<LogTrace<E>> traces) throws ParameterException {
+                throw new UnsupportedOperationException("Bitmap views are read-only.");
+        }
+
+        @Override
+        public void sortEntries(Comparator<? super E> comparator) {
+                throw new UnsupportedOperationException("Bitmap views are read-only.");
+        }
+
+        @Override
+        public String toString() {
+                return "BitmapLogView[" + size() + " of " + parent.getTraces().size() + " traces]";
+        }
+
+        private final class MemberList extends AbstractList<LogTrace<E>> implements RandomAccess {
+
+                private final List<LogTrace<E>> parentTraces = parent.getTraces();
+                private final int[] positions = getOrdinals();
+
+                @Override
+                public LogTrace<E> get(int index) {
+                        return parentTraces.get(positions[index]);
+                }
+
+                @Override
+                public int size() {
+                        return positions.length;
+                }
+        }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * Immutable list whose elements are stored in chunks of {@value #CHUNK_SIZE}
+ * elements. Modified versions of a list are derived with
+ * {@link #appendAll(Collection)}, {@link #replace(int, Object)} and
+ * {@link #without(int)} and share all unchanged chunks with the original list.
+ * </p>
+ * <p>
+ * Appending <code>m</code> elements to a list of <code>n</code> elements
+ * costs <code>O(n / CHUNK_SIZE + CHUNK_SIZE + m)</code>, replacing an element
+ * <code>O(n / CHUNK_SIZE + CHUNK_SIZE)</code>. Removing an element copies all
+ * chunks from the one containing the element to the end of the list.
+ * </p>
+ *
+ * @param <T> Element type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+final class ChunkedList<T> extends AbstractList<T> implements RandomAccess {
+
+        static final int CHUNK_SIZE = 1024;
+        private static final int CHUNK_BITS = 10;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+        private static final ChunkedList<Object> EMPTY = new ChunkedList<>(new Object[0][], 0);
+
+        /**
+         * All chunks but the last one contain exactly {@link #CHUNK_SIZE}
+         * elements. Chunks are never modified once the list is created.
+         */
+        private final Object[][] chunks;
+        private final int size;
+
+        private ChunkedList(Object[][] chunks, int size) {
+                this.chunks = chunks;
+                this.size = size;
+        }
+
+        /**
+         * Returns the empty list.
+         *
+         * @param <T> Element type
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        static <T> ChunkedList<T> empty() {
+                return (ChunkedList<T>) EMPTY;
+        }
+
+        /**
+         * Returns a list containing the given elements.
+         *
+         * @param <T> Element type
+         * @param elements
+         * @return
+         */
+        static <T> ChunkedList<T> of(Collection<? extends T> elements) {
+                return ChunkedList.<T>empty().appendAll(elements);
+        }
+
+        /**
+         * Returns a list consisting of all elements of this list followed by
+         * the given elements.
+         *
+         * @param elements Elements to append.
+         * @return
+         */
+        ChunkedList<T> appendAll(Collection<? extends T> elements) {
+                if (elements.isEmpty()) {
+                        return this;
+                }
+                int newSize = size + elements.size();
+                Object[][] newChunks = Arrays.copyOf(chunks, (newSize + CHUNK_MASK) >>> CHUNK_BITS);
+                if ((size & CHUNK_MASK) != 0) {
+                        int last = size >>> CHUNK_BITS;
+                        newChunks[last] = Arrays.copyOf(chunks[last], chunkLength(last, newSize));
+                }
+                int position = size;
+                for (T element : elements) {
+                        int chunk = position >>> CHUNK_BITS;
+                        if (newChunks[chunk] == null) {
+                                newChunks[chunk] = new Object[chunkLength(chunk, newSize)];
+                        }
+                        newChunks[chunk][position & CHUNK_MASK] = element;
+                        position++;
+                }
+                return new ChunkedList<>(newChunks, newSize);
+        }
+
+        /**
+         * Returns a list in which the element at the given position is
+         * replaced by the given element.
+         *
+         * @param index Position of the element to replace.
+         * @param element Replacing element.
+         * @return
+         */
+        ChunkedList<T> replace(int index, T element) {
+                checkIndex(index);
+                Object[][] newChunks = chunks.clone();
+                int chunk = index >>> CHUNK_BITS;
+                newChunks[chunk] = chunks[chunk].clone();
+                newChunks[chunk][index & CHUNK_MASK] = element;
+                return new ChunkedList<>(newChunks, size);
+        }
+
+        /**
+         * Returns a list consisting of all elements of this list except the
+         * element at the given position.
+         *
+         * @param index Position of the element to remove.
+         * @return
+         */
+        ChunkedList<T> without(int index) {
+                checkIndex(index);
+                int newSize = size - 1;
+                Object[][] newChunks = Arrays.copyOf(chunks, (newSize + CHUNK_MASK) >>> CHUNK_BITS);
+                int first = index >>> CHUNK_BITS;
+                for (int chunk = first; chunk < newChunks.length; chunk++) {
+                        newChunks[chunk] = new Object[chunkLength(chunk, newSize)];
+                }
+                for (int position = first << CHUNK_BITS; position < newSize; position++) {
+                        newChunks[position >>> CHUNK_BITS][position & CHUNK_MASK] = element(position < index ? position : position + 1);
+                }
+                return new ChunkedList<>(newChunks, newSize);
+        }
+
+        private static int chunkLength(int chunk, int size) {
+                return Math.min(CHUNK_SIZE, size - (chunk << CHUNK_BITS));
+        }
+
+        private void checkIndex(int index) {
+                if (index < 0 || index >= size) {
+                        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+        }
+
+        private Object element(int index) {
+                return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+                checkIndex(index);
+                return (T) element(index);
+        }
+
+        @Override
+        public int size() {
+                return size;
+        }
+}
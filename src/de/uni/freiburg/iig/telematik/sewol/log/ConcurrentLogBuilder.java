@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Builds a log from traces added concurrently by several producer threads.
+ * {@link Log} itself is not thread-safe; this class is.
+ * </p>
+ * <p>
+ * Case numbers are allocated atomically. Every producer thread appends to its
+ * own buffer, which also holds a partial {@link LogSummary} and
+ * {@link VariantIndex} of the buffered traces, so producers never contend
+ * with each other. Added traces are frozen, i.e. they must not be used for
+ * further modifications by the producer.
+ * </p>
+ * <p>
+ * Readers work on {@link FrozenLog} snapshots. {@link #publish()} drains all
+ * buffers, merges the partial statistics and appends the drained traces to the
+ * previous snapshot. The new snapshot shares all completely filled chunks of
+ * the trace list and the case number lists of all variants without new traces
+ * with the previous one. A publication still copies the chunk references, the
+ * last chunk of the trace list, the variant map and the summary counts, so its
+ * cost grows slowly with the size of the log and publications should not be
+ * issued per trace. Producers are only blocked for swapping their buffer.
+ * Buffers of terminated producer threads are dropped once they are
+ * drained. The latest snapshot is returned by
+ * {@link #getSnapshot()} without any locking, and snapshots can be published
+ * at fixed intervals with
+ * {@link #publishPeriodically(ScheduledExecutorService, long, TimeUnit)}.
+ * </p>
+ * <p>
+ * Within a snapshot, the traces of each publication are ordered by case
+ * number. A trace whose case number was allocated while a publication was in
+ * progress may appear in the next snapshot after traces with higher case
+ * numbers.
+ * </p>
+ * <p>
+ * Subscribers registered with {@link #addSubscriber(Consumer)} receive every
+ * frozen trace directly after it was added, in the thread of its producer and
+ * independent of publications.
+ * </p>
+ *
+ * @param <E> LogEntry type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class ConcurrentLogBuilder<E extends LogEntry> {
+
+        private static final Comparator<LogTrace<?>> BY_CASE_NUMBER = new Comparator<LogTrace<?>>() {
+                @Override
+                public int compare(LogTrace<?> o1, LogTrace<?> o2) {
+                        return Long.compare(o1.getCaseNumber(), o2.getCaseNumber());
+                }
+        };
+
+        private final AtomicLong caseNumbers = new AtomicLong();
+        private final List<Buffer<E>> buffers = new CopyOnWriteArrayList<>();
+        private final ThreadLocal<Buffer<E>> localBuffer = new ThreadLocal<Buffer<E>>() {
+                @Override
+                protected Buffer<E> initialValue() {
+                        Buffer<E> buffer = new Buffer<>(Thread.currentThread());
+                        buffers.add(buffer);
+                        return buffer;
+                }
+        };
+        private final List<Consumer<? super LogTrace<E>>> subscribers = new CopyOnWriteArrayList<>();
+        private final Object publishLock = new Object();
+        private volatile FrozenLog<E> snapshot = new FrozenLog<>(new Log<E>());
+
+        /**
+         * Adds a trace to the log. The trace is frozen with the next free case
+         * number and becomes visible with the next published snapshot.
+         *
+         * @param trace Trace to add.
+         * @return The case number of the trace.
+         * @throws ParameterException If the trace is <code>null</code>.
+         */
+        public long addTrace(LogTrace<E> trace) throws ParameterException {
+                Validate.notNull(trace);
+                LogTrace<E> frozenTrace = localBuffer.get().add(trace, caseNumbers);
+                notifySubscribers(frozenTrace);
+                return frozenTrace.getCaseNumber();
+        }
+
+        /**
+         * Adds the given traces to the log.
+         *
+         * @param traces Traces to add.
+         * @throws ParameterException If the list is <code>null</code> or
+         * contains <code>null</code> elements.
+         * @see #addTrace(LogTrace)
+         */
+        public void addTraces(List<LogTrace<E>> traces) throws ParameterException {
+                Validate.noNullElements(traces);
+                Buffer<E> buffer = localBuffer.get();
+                for (LogTrace<E> trace : traces) {
+                        notifySubscribers(buffer.add(trace, caseNumbers));
+                }
+        }
+
+        private void notifySubscribers(LogTrace<E> trace) {
+                for (Consumer<? super LogTrace<E>> subscriber : subscribers) {
+                        subscriber.accept(trace);
+                }
+        }
+
+        /**
+         * Registers a subscriber which receives all traces added from now on.
+         * Subscribers are called concurrently by all producer threads and have
+         * to be thread-safe.
+         *
+         * @param subscriber Subscriber to register.
+         * @throws ParameterException If the subscriber is <code>null</code>.
+         * @see LiveLogView
+         */
+        public void addSubscriber(Consumer<? super LogTrace<E>> subscriber) throws ParameterException {
+                Validate.notNull(subscriber);
+                subscribers.add(subscriber);
+        }
+
+        /**
+         * Removes a subscriber.
+         *
+         * @param subscriber Subscriber to remove.
+         */
+        public void removeSubscriber(Consumer<? super LogTrace<E>> subscriber) {
+                subscribers.remove(subscriber);
+        }
+
+        /**
+         * Returns the number of traces added so far, including the ones which
+         * are not yet published.
+         *
+         * @return
+         */
+        public long getTraceCount() {
+                return caseNumbers.get();
+        }
+
+        /**
+         * Returns the latest published snapshot.
+         *
+         * @return
+         */
+        public FrozenLog<E> getSnapshot() {
+                return snapshot;
+        }
+
+        /**
+         * Publishes all traces added so far in a new snapshot. Producers can
+         * continue adding traces while the snapshot is built.
+         *
+         * @return The new snapshot.
+         */
+        public FrozenLog<E> publish() {
+                synchronized (publishLock) {
+                        List<LogTrace<E>> drained = new ArrayList<>();
+                        LogSummary<E> summary = new LogSummary<>();
+                        VariantIndex variants = new VariantIndex();
+                        List<Buffer<E>> orphaned = new ArrayList<>();
+                        for (Buffer<E> buffer : buffers) {
+                                // A terminated owner can't add traces after
+                                // the buffer is drained.
+                                if (buffer.isOrphaned()) {
+                                        orphaned.add(buffer);
+                                }
+                                buffer.drainTo(drained, summary, variants);
+                        }
+                        buffers.removeAll(orphaned);
+                        if (!drained.isEmpty()) {
+                                Collections.sort(drained, BY_CASE_NUMBER);
+                                snapshot = snapshot.append(drained, summary, variants);
+                        }
+                        return snapshot;
+                }
+        }
+
+        /**
+         * Schedules {@link #publish()} at a fixed rate on the given executor.
+         * The publication is stopped by cancelling the returned future.
+         *
+         * @param executor Executor running the publications.
+         * @param period Period between two publications.
+         * @param unit Time unit of the period.
+         * @return
+         * @throws ParameterException If the executor or the unit is
+         * <code>null</code> or the period is not positive.
+         */
+        public ScheduledFuture<?> publishPeriodically(ScheduledExecutorService executor, long period, TimeUnit unit) throws ParameterException {
+                Validate.notNull(executor);
+                Validate.positive(period);
+                Validate.notNull(unit);
+                return executor.scheduleAtFixedRate(new Runnable() {
+                        @Override
+                        public void run() {
+                                publish();
+                        }
+                }, period, period, unit);
+        }
+
+        /**
+         * Append buffer of a single producer thread. Only the owning thread
+         * adds traces, so the lock is uncontended except while the buffer is
+         * drained.
+         */
+        private static final class Buffer<E extends LogEntry> {
+
+                private final WeakReference<Thread> owner;
+                private List<LogTrace<E>> traces = new ArrayList<>();
+                private LogSummary<E> summary = new LogSummary<>();
+                private VariantIndex variants = new VariantIndex();
+
+                Buffer(Thread owner) {
+                        this.owner = new WeakReference<>(owner);
+                }
+
+                /**
+                 * Checks if the owning thread has terminated.
+                 */
+                boolean isOrphaned() {
+                        Thread thread = owner.get();
+                        return thread == null || !thread.isAlive();
+                }
+
+                synchronized LogTrace<E> add(LogTrace<E> trace, AtomicLong caseNumbers) {
+                        long caseNumber = caseNumbers.incrementAndGet();
+                        LogTrace<E> frozenTrace = trace.freeze(caseNumber);
+                        traces.add(frozenTrace);
+                        summary.addTrace(frozenTrace);
+                        variants.add(frozenTrace);
+                        return frozenTrace;
+                }
+
+                synchronized void drainTo(List<LogTrace<E>> drainedTraces, LogSummary<E> drainedSummary, VariantIndex drainedVariants) {
+                        if (traces.isEmpty()) {
+                                return;
+                        }
+                        drainedTraces.addAll(traces);
+                        drainedSummary.merge(summary);
+                        drainedVariants.merge(variants);
+                        traces = new ArrayList<>();
+                        summary = new LogSummary<>();
+                        variants = new VariantIndex();
+                }
+        }
+}
@@ -1,8 +1,8 @@
 package de.uni.freiburg.iig.telematik.sewol.log;
 
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -13,14 +13,17 @@ import de.invation.code.toval.parser.ParserException;
 import de.invation.code.toval.types.DataUsage;
 import de.invation.code.toval.validate.ParameterException;
 import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.util.ArrayMap;
 
 public class DULogEntry extends LogEntry {
 
         /**
          * The list of attributes that are affected on executing the logged
-         * activity.
+         * activity.<br>
+         * Small maps are array based, larger ones hash based. Created on adding
+         * the first attribute, so it is <code>null</code> before.
          */
-        protected Map<DataAttribute, Set<DataUsage>> dataUsage = new HashMap<>();
+        protected Map<DataAttribute, Set<DataUsage>> dataUsage = null;
 
         private static final Pattern STRING_PATTERN = Pattern.compile("\\w+(\\((\\w+:[rwcd]{1,4})(,(\\w+:[rwcd]{1,4}))*\\))?");
 
@@ -35,7 +38,7 @@ public class DULogEntry extends LogEntry {
 
 	// ------- Data Usage ------------------------------------------------------------------------
         public boolean containsDataUsage() {
-                return !dataUsage.isEmpty();
+                return dataUsage != null && !dataUsage.isEmpty();
         }
 
         /**
@@ -45,6 +48,9 @@ public class DULogEntry extends LogEntry {
          * @return A list containing the attributes.
          */
         public Set<DataAttribute> getDataAttributes() {
+                if (dataUsage == null) {
+                        return Collections.emptySet();
+                }
                 return Collections.unmodifiableSet(dataUsage.keySet());
         }
 
@@ -55,6 +61,9 @@ public class DULogEntry extends LogEntry {
          * @return A map containing data usage information for each attribute.
          */
         public Map<DataAttribute, Set<DataUsage>> getDataUsage() {
+                if (dataUsage == null) {
+                        return Collections.emptyMap();
+                }
                 return Collections.unmodifiableMap(dataUsage);
         }
 
@@ -69,13 +78,14 @@ public class DULogEntry extends LogEntry {
          * managed attributes.
          */
         public boolean removeDataAttribute(DataAttribute attribute) throws LockingException {
+                validateNotFrozen();
                 if (isFieldLocked(EntryField.DATA)) {
-                        if (dataUsage.containsKey(attribute)) {
+                        if (dataUsage != null && dataUsage.containsKey(attribute)) {
                                 throw new LockingException(EntryField.DATA);
                         }
                         return false;
                 } else {
-                        return dataUsage.remove(attribute) != null;
+                        return dataUsage != null && dataUsage.remove(attribute) != null;
                 }
         }
 
@@ -95,9 +105,10 @@ public class DULogEntry extends LogEntry {
                 Validate.notEmpty(dataUsage.keySet());
                 Validate.noNullElements(dataUsage.keySet());
                 Validate.noNullElements(dataUsage.values());
+                validateNotFrozen();
 
                 if (isFieldLocked(EntryField.DATA)) {
-                        if (!this.dataUsage.equals(dataUsage)) {
+                        if (!getDataUsage().equals(dataUsage)) {
                                 throw new LockingException(EntryField.DATA);
                         }
                         return false;
@@ -127,13 +138,15 @@ public class DULogEntry extends LogEntry {
                 Validate.notNull(attribute);
                 Validate.notNull(dataUsage);
                 Validate.notEmpty(dataUsage);
+                validateNotFrozen();
 
                 if (isFieldLocked(EntryField.DATA)) {
-                        if (!(this.dataUsage.containsKey(attribute) && this.dataUsage.get(attribute).equals(dataUsage))) {
+                        if (!dataUsage.equals(getDataUsage().get(attribute))) {
                                 throw new LockingException(EntryField.DATA);
                         }
                         return false;
                 } else {
+                        ensureDataUsageCapacity();
                         this.dataUsage.put(attribute, dataUsage);
                         return true;
                 }
@@ -153,15 +166,17 @@ public class DULogEntry extends LogEntry {
          */
         public boolean addDataUsage(DataAttribute attribute, DataUsage usage) throws ParameterException, LockingException {
                 Validate.notNull(attribute);
+                validateNotFrozen();
 
                 if (isFieldLocked(EntryField.DATA)) {
-                        if (!dataUsage.containsKey(attribute)) {
+                        if (!getDataUsage().containsKey(attribute)) {
                                 throw new LockingException(EntryField.DATA);
                         }
                         return false;
                 } else {
-                        if (dataUsage.get(attribute) == null) {
-                                dataUsage.put(attribute, new HashSet<>());
+                        if (dataUsage == null || dataUsage.get(attribute) == null) {
+                                ensureDataUsageCapacity();
+                                dataUsage.put(attribute, EnumSet.noneOf(DataUsage.class));
                         }
                         if (usage != null) {
                                 dataUsage.get(attribute).add(usage);
@@ -170,6 +185,19 @@ public class DULogEntry extends LogEntry {
                 }
         }
 
+        /**
+         * Creates the data usage map before the first attribute is added and
+         * converts an array based map which reached its maximum size to a hash
+         * based map.
+         */
+        private void ensureDataUsageCapacity() {
+                if (dataUsage == null) {
+                        dataUsage = new ArrayMap<>();
+                } else if (dataUsage.size() >= MAX_ARRAY_CONTAINER_SIZE && dataUsage instanceof ArrayMap) {
+                        dataUsage = new HashMap<>(dataUsage);
+                }
+        }
+
 	//------- Overridden methods ---------------------------------------------------------------------
         @Override
         protected LogEntry newInstance() {
@@ -181,12 +209,41 @@ public class DULogEntry extends LogEntry {
                 return (DULogEntry) super.clone();
         }
 
+        @Override
+        public DULogEntry freeze() {
+                return (DULogEntry) super.freeze();
+        }
+
+        @Override
+        protected void freezeFields() {
+                if (dataUsage == null) {
+                        return;
+                }
+                for (Map.Entry<DataAttribute, Set<DataUsage>> usage : dataUsage.entrySet()) {
+                        usage.setValue(Collections.unmodifiableSet(usage.getValue()));
+                }
+        }
+
         @Override
         protected void copyFieldValues(LogEntry clone) throws LockingException, ParameterException {
                 super.copyFieldValues(clone);
-                for (DataAttribute att : dataUsage.keySet()) {
-                        ((DULogEntry) clone).setDataUsageFor(att, new HashSet<>(dataUsage.get(att)));
+                if (dataUsage == null) {
+                        return;
+                }
+                // The data usage is copied directly, since the DATA field of the clone may already be locked.
+                Map<DataAttribute, Set<DataUsage>> dataUsageCopy = dataUsage.size() > MAX_ARRAY_CONTAINER_SIZE ? new HashMap<>() : new ArrayMap<>();
+                for (Map.Entry<DataAttribute, Set<DataUsage>> usage : dataUsage.entrySet()) {
+                        DataAttribute attribute = usage.getKey();
+                        dataUsageCopy.put(new DataAttribute(attribute.name, attribute.value), copy(usage.getValue()));
+                }
+                ((DULogEntry) clone).dataUsage = dataUsageCopy;
+        }
+
+        private static Set<DataUsage> copy(Set<DataUsage> usages) {
+                if (usages.isEmpty()) {
+                        return EnumSet.noneOf(DataUsage.class);
                 }
+                return EnumSet.copyOf(usages);
         }
 
         @Override
@@ -196,9 +253,7 @@ public class DULogEntry extends LogEntry {
                         return superValue;
                 }
                 if (field == EntryField.DATA) {
-                        if (dataUsage != null) {
-                                return Collections.unmodifiableMap(dataUsage);
-                        }
+                        return getDataUsage();
                 }
                 return null;
         }
@@ -223,14 +278,7 @@ public class DULogEntry extends LogEntry {
                         return false;
                 }
                 DULogEntry other = (DULogEntry) obj;
-                if (dataUsage == null) {
-                        if (other.dataUsage != null) {
-                                return false;
-                        }
-                } else if (!dataUsage.equals(other.dataUsage)) {
-                        return false;
-                }
-                return true;
+                return getDataUsage().equals(other.getDataUsage());
         }
 
         public static DULogEntry parse(String entryString) throws ParserException {
@@ -254,7 +302,7 @@ public class DULogEntry extends LogEntry {
                                 String nextDataUsage = tokenizer.nextToken();
                                 String attributeName = nextDataUsage.substring(0, nextDataUsage.indexOf(':'));
                                 String dataUsageCodes = nextDataUsage.substring(nextDataUsage.indexOf(':') + 1);
-                                Set<DataUsage> dataUsageModes = new HashSet<>();
+                                Set<DataUsage> dataUsageModes = EnumSet.noneOf(DataUsage.class);
                                 for (int i = 0; i < dataUsageCodes.length(); i++) {
                                         dataUsageModes.add(DataUsage.fromAbbreviation(String.valueOf(dataUsageCodes.charAt(i)).toUpperCase()));
                                 }
@@ -1,5 +1,11 @@
 package de.uni.freiburg.iig.telematik.sewol.log;
 
+/**
+ * Name/value pair used for data and meta attributes of log entries.<br>
+ * Parsers obtain canonical names and values from a {@link DataAttributePool}.
+ * Attributes of frozen entries must not be modified, see
+ * {@link LogEntry#freeze()}.
+ */
 public class DataAttribute {
 	public String name;
 	public Object value = null;
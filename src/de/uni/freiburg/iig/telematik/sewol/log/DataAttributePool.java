@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.Validate;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Pool of canonical names and values of {@link DataAttribute}s. Attributes
+ * with equal name and value, e.g. <i>(department, "Sales")</i>, usually repeat
+ * across many entries of a log. Parsers create one pool per parsed log and
+ * obtain attributes from it, so that all attributes of the log share one
+ * instance per distinct name and value.
+ * </p>
+ * <p>
+ * Attributes themselves are mutable and are therefore never shared, every
+ * call of {@link #get(String, Object)} returns a new attribute. Only immutable
+ * values ({@link String}, {@link Long}, {@link Integer}, {@link Double},
+ * {@link Float} and {@link Boolean}) are pooled, all other values are used as
+ * they are.
+ * </p>
+ * <p>
+ * Once the pool reached its maximum size, new names and values are no longer
+ * pooled. The pool is thread-safe.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class DataAttributePool {
+
+        /**
+         * Default maximum number of pooled names and values.
+         */
+        public static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+        private final ConcurrentHashMap<Object, Object> values = new ConcurrentHashMap<>();
+        private final int maxSize;
+
+        /**
+         * Creates a new pool with the default maximum size.
+         */
+        public DataAttributePool() {
+                this(DEFAULT_MAX_SIZE);
+        }
+
+        /**
+         * Creates a new pool.
+         *
+         * @param maxSize Maximum number of pooled names and values.
+         */
+        public DataAttributePool(int maxSize) {
+                Validate.positive(maxSize);
+                this.maxSize = maxSize;
+        }
+
+        /**
+         * Returns a new attribute with the canonical instances of the given
+         * name and value.
+         *
+         * @param name Name of the attribute.
+         * @param value Value of the attribute, may be <code>null</code>.
+         * @return A new attribute instance.
+         */
+        public DataAttribute get(String name, Object value) {
+                return new DataAttribute(canonicalize(name), canonicalize(value));
+        }
+
+        /**
+         * Returns the canonical instance of the given name or value if it is
+         * immutable, otherwise the value itself.
+         *
+         * @param <T> Value type
+         * @param value
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T canonicalize(T value) {
+                if (!isImmutable(value) || values.size() >= maxSize) {
+                        return value;
+                }
+                Object pooled = values.putIfAbsent(value, value);
+                return pooled == null ? value : (T) pooled;
+        }
+
+        private static boolean isImmutable(Object value) {
+                return value instanceof String
+                        || value instanceof Long
+                        || value instanceof Integer
+                        || value instanceof Double
+                        || value instanceof Float
+                        || value instanceof Boolean;
+        }
+
+        /**
+         * Returns the number of pooled names and values.
+         *
+         * @return
+         */
+        public int size() {
+                return values.size();
+        }
+
+        /**
+         * Removes all names and values from the pool.
+         */
+        public void clear() {
+                values.clear();
+        }
+}
@@ -0,0 +1,493 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.types.DataUsage;
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.util.CompressedBitmap;
+import de.uni.freiburg.iig.telematik.sewol.util.StringDictionary;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * Index over the data usage of the {@link DULogEntry}s of a log. For every
+ * data attribute name, the index keeps postings of all entries using the
+ * attribute, i.e. the trace ordinal, the position of the entry within the
+ * trace and the usage modes as bitmask (see {@link #toMask(Collection)}). In
+ * addition, it counts the usages of every attribute by every activity per
+ * usage mode.
+ * </p>
+ * <p>
+ * Postings are ordered by trace and position, so ordered usages of an
+ * attribute within traces can be found by a single pass over its postings
+ * instead of a pass over all entries of the log. Entries of other types than
+ * {@link DULogEntry} are ignored.
+ * </p>
+ * <p>
+ * Indexes over at least {@link #PARALLEL_THRESHOLD} traces are built in
+ * parallel from partial indexes, which are merged in trace order. The index
+ * is not updated when traces are modified after they were added. Queries can
+ * run concurrently, but not concurrently to additions.
+ * </p>
+ *
+ * @param <E> LogEntry type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ * @see Log#getDataUsageIndex()
+ */
+public class DataUsageIndex<E extends LogEntry> {
+
+        /**
+         * Minimum number of traces for which the index is built in parallel.
+         */
+        public static final int PARALLEL_THRESHOLD = 10000;
+
+        private static final DataUsage[] USAGES = DataUsage.values();
+        private static final Postings EMPTY = new Postings();
+
+        private final StringDictionary activities;
+        private final StringDictionary attributes;
+        /**
+         * Postings per attribute id.
+         */
+        private final List<Postings> postings = new ArrayList<>();
+        /**
+         * Usage counts per activity id, attribute id and usage mode, or
+         * <code>null</code> for activities without data usage.
+         */
+        private int[][] counts = new int[0][];
+        private int numTraces = 0;
+
+        /**
+         * Creates an empty index.
+         */
+        public DataUsageIndex() {
+                this(new StringDictionary(), new StringDictionary());
+        }
+
+        private DataUsageIndex(StringDictionary activities, StringDictionary attributes) {
+                this.activities = activities;
+                this.attributes = attributes;
+        }
+
+        /**
+         * Creates an index over the given traces, in parallel if there are at
+         * least {@link #PARALLEL_THRESHOLD} of them.
+         *
+         * @param traces Traces to index.
+         * @throws ParameterException If the list is <code>null</code> or
+         * contains <code>null</code> elements.
+         */
+        public DataUsageIndex(List<LogTrace<E>> traces) throws ParameterException {
+                this();
+                Validate.noNullElements(traces);
+                if (traces.size() < PARALLEL_THRESHOLD) {
+                        for (LogTrace<E> trace : traces) {
+                                add(trace);
+                        }
+                        return;
+                }
+                DataUsageIndex<E> merged = IntStream.range(0, traces.size()).parallel().collect(() -> new DataUsageIndex<E>(activities, attributes), (partial, ordinal) -> partial.add(traces.get(ordinal), ordinal), DataUsageIndex<E>::merge);
+                postings.addAll(merged.postings);
+                counts = merged.counts;
+                numTraces = traces.size();
+        }
+
+        /**
+         * Adds the given trace with the next ordinal.
+         *
+         * @param trace Trace to add.
+         * @return The ordinal of the trace.
+         * @throws ParameterException If the trace is <code>null</code>.
+         */
+        public int add(LogTrace<E> trace) throws ParameterException {
+                Validate.notNull(trace);
+                int ordinal = numTraces++;
+                add(trace, ordinal);
+                return ordinal;
+        }
+
+        private void add(LogTrace<E> trace, int ordinal) {
+                int position = 0;
+                for (E entry : trace.getEntries()) {
+                        if (entry instanceof DULogEntry) {
+                                Map<DataAttribute, Set<DataUsage>> usage = ((DULogEntry) entry).getDataUsage();
+                                if (!usage.isEmpty()) {
+                                        int activity = entry.getActivity() == null ? -1 : activities.getId(entry.getActivity());
+                                        for (Map.Entry<DataAttribute, Set<DataUsage>> attributeUsage : usage.entrySet()) {
+                                                int attribute = attributes.getId(attributeUsage.getKey().name);
+                                                int mask = toMask(attributeUsage.getValue());
+                                                getPostings(attribute).add(ordinal, position, mask);
+                                                if (activity >= 0) {
+                                                        count(activity, attribute, mask);
+                                                }
+                                        }
+                                }
+                        }
+                        position++;
+                }
+        }
+
+        private Postings getPostings(int attribute) {
+                while (postings.size() <= attribute) {
+                        postings.add(null);
+                }
+                Postings attributePostings = postings.get(attribute);
+                if (attributePostings == null) {
+                        attributePostings = new Postings();
+                        postings.set(attribute, attributePostings);
+                }
+                return attributePostings;
+        }
+
+        private int[] getCounts(int activity, int minAttributes) {
+                if (activity >= counts.length) {
+                        counts = Arrays.copyOf(counts, Math.max(activity + 1, counts.length * 2));
+                }
+                int[] activityCounts = counts[activity];
+                if (activityCounts == null || activityCounts.length < minAttributes * USAGES.length) {
+                        int capacity = Math.max(minAttributes, activityCounts == null ? 4 : activityCounts.length / USAGES.length * 2);
+                        activityCounts = activityCounts == null ? new int[capacity * USAGES.length] : Arrays.copyOf(activityCounts, capacity * USAGES.length);
+                        counts[activity] = activityCounts;
+                }
+                return activityCounts;
+        }
+
+        private void count(int activity, int attribute, int mask) {
+                int[] activityCounts = getCounts(activity, attribute + 1);
+                for (DataUsage usage : USAGES) {
+                        if ((mask & (1 << usage.ordinal())) != 0) {
+                                activityCounts[attribute * USAGES.length + usage.ordinal()]++;
+                        }
+                }
+        }
+
+        /**
+         * Appends the postings and adds the counts of a partial index over
+         * subsequent traces.
+         */
+        private DataUsageIndex<E> merge(DataUsageIndex<E> other) {
+                for (int attribute = 0; attribute < other.postings.size(); attribute++) {
+                        if (other.postings.get(attribute) != null) {
+                                getPostings(attribute).addAll(other.postings.get(attribute));
+                        }
+                }
+                for (int activity = 0; activity < other.counts.length; activity++) {
+                        int[] otherCounts = other.counts[activity];
+                        if (otherCounts != null) {
+                                int[] activityCounts = getCounts(activity, otherCounts.length / USAGES.length);
+                                for (int i = 0; i < otherCounts.length; i++) {
+                                        activityCounts[i] += otherCounts[i];
+                                }
+                        }
+                }
+                numTraces += other.numTraces;
+                return this;
+        }
+
+        /**
+         * Returns the number of indexed traces.
+         *
+         * @return
+         */
+        public int getTraceCount() {
+                return numTraces;
+        }
+
+        /**
+         * Returns the names of all attributes used by at least one entry.
+         *
+         * @return
+         */
+        public Set<String> getAttributes() {
+                Set<String> result = new HashSet<>();
+                for (int attribute = 0; attribute < postings.size(); attribute++) {
+                        if (postings.get(attribute) != null) {
+                                result.add(attributes.getString(attribute));
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns the postings of all entries using the given attribute.
+         *
+         * @param attribute Name of the attribute.
+         * @return The postings, which are empty if the attribute is unknown.
+         */
+        public Postings getPostings(String attribute) {
+                int id = attributes.lookup(attribute);
+                if (id < 0 || id >= postings.size() || postings.get(id) == null) {
+                        return EMPTY;
+                }
+                return postings.get(id);
+        }
+
+        /**
+         * Returns the ordinals of the traces containing an entry which uses
+         * the given attribute in any of the given modes.
+         *
+         * @param attribute Name of the attribute.
+         * @param usages Usage modes, all modes if none are given.
+         * @return
+         */
+        public CompressedBitmap getTraces(String attribute, DataUsage... usages) {
+                int mask = usages.length == 0 ? -1 : toMask(Arrays.asList(usages));
+                Postings attributePostings = getPostings(attribute);
+                CompressedBitmap result = new CompressedBitmap();
+                for (int i = 0; i < attributePostings.size; i++) {
+                        if ((attributePostings.usages[i] & mask) != 0) {
+                                result.add(attributePostings.traces[i]);
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns the ordinals of the traces in which the given attribute is
+         * used in the mode <code>later</code> by an entry after an entry using
+         * it in the mode <code>earlier</code>, e.g. read after being deleted.
+         *
+         * @param attribute Name of the attribute.
+         * @param earlier Usage mode of the earlier entry.
+         * @param later Usage mode of the later entry.
+         * @return
+         */
+        public CompressedBitmap getTracesWithUsageAfter(String attribute, DataUsage earlier, DataUsage later) {
+                Validate.notNull(earlier);
+                Validate.notNull(later);
+                int earlierMask = 1 << earlier.ordinal();
+                int laterMask = 1 << later.ordinal();
+                Postings attributePostings = getPostings(attribute);
+                CompressedBitmap result = new CompressedBitmap();
+                int trace = -1;
+                boolean seen = false;
+                for (int i = 0; i < attributePostings.size; i++) {
+                        if (attributePostings.traces[i] != trace) {
+                                trace = attributePostings.traces[i];
+                                seen = false;
+                        }
+                        if (seen && (attributePostings.usages[i] & laterMask) != 0) {
+                                result.add(trace);
+                        }
+                        seen |= (attributePostings.usages[i] & earlierMask) != 0;
+                }
+                return result;
+        }
+
+        /**
+         * Returns the number of entries of the given activity which use the
+         * given attribute in the given mode.
+         *
+         * @param activity
+         * @param attribute
+         * @param usage
+         * @return
+         */
+        public int getUsageCount(String activity, String attribute, DataUsage usage) {
+                Validate.notNull(usage);
+                int activityId = activities.lookup(activity);
+                int attributeId = attributes.lookup(attribute);
+                if (activityId < 0 || attributeId < 0 || activityId >= counts.length || counts[activityId] == null) {
+                        return 0;
+                }
+                int index = attributeId * USAGES.length + usage.ordinal();
+                return index < counts[activityId].length ? counts[activityId][index] : 0;
+        }
+
+        /**
+         * Returns all activities using the given attribute in the given mode,
+         * e.g. all activities writing it.
+         *
+         * @param attribute
+         * @param usage
+         * @return
+         */
+        public Set<String> getActivities(String attribute, DataUsage usage) {
+                Validate.notNull(usage);
+                Set<String> result = new HashSet<>();
+                int attributeId = attributes.lookup(attribute);
+                if (attributeId < 0) {
+                        return result;
+                }
+                int index = attributeId * USAGES.length + usage.ordinal();
+                for (int activity = 0; activity < counts.length; activity++) {
+                        if (counts[activity] != null && index < counts[activity].length && counts[activity][index] > 0) {
+                                result.add(activities.getString(activity));
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns all attributes used by the given activity in the given mode.
+         *
+         * @param activity
+         * @param usage
+         * @return
+         */
+        public Set<String> getAttributes(String activity, DataUsage usage) {
+                Validate.notNull(usage);
+                Set<String> result = new HashSet<>();
+                int activityId = activities.lookup(activity);
+                if (activityId < 0 || activityId >= counts.length || counts[activityId] == null) {
+                        return result;
+                }
+                int[] activityCounts = counts[activityId];
+                for (int attribute = 0; attribute * USAGES.length < activityCounts.length; attribute++) {
+                        if (activityCounts[attribute * USAGES.length + usage.ordinal()] > 0) {
+                                result.add(attributes.getString(attribute));
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns the bitmask of the given usage modes, with bit
+         * <code>1 &lt;&lt; usage.ordinal()</code> set for every mode.
+         *
+         * @param usages
+         * @return
+         */
+        public static int toMask(Collection<DataUsage> usages) {
+                int mask = 0;
+                for (DataUsage usage : usages) {
+                        mask |= 1 << usage.ordinal();
+                }
+                return mask;
+        }
+
+        /**
+         * Returns the usage modes of the given bitmask.
+         *
+         * @param mask
+         * @return
+         * @see #toMask(Collection)
+         */
+        public static Set<DataUsage> toUsages(int mask) {
+                Set<DataUsage> result = EnumSet.noneOf(DataUsage.class);
+                for (DataUsage usage : USAGES) {
+                        if ((mask & (1 << usage.ordinal())) != 0) {
+                                result.add(usage);
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Entries using an attribute, ordered by trace and position.
+         */
+        public static final class Postings {
+
+                private int[] traces = new int[4];
+                private int[] positions = new int[4];
+                private byte[] usages = new byte[4];
+                private int size = 0;
+
+                private void add(int trace, int position, int mask) {
+                        ensureCapacity(size + 1);
+                        traces[size] = trace;
+                        positions[size] = position;
+                        usages[size] = (byte) mask;
+                        size++;
+                }
+
+                private void addAll(Postings other) {
+                        ensureCapacity(size + other.size);
+                        System.arraycopy(other.traces, 0, traces, size, other.size);
+                        System.arraycopy(other.positions, 0, positions, size, other.size);
+                        System.arraycopy(other.usages, 0, usages, size, other.size);
+                        size += other.size;
+                }
+
+                private void ensureCapacity(int capacity) {
+                        if (capacity > traces.length) {
+                                int length = Math.max(capacity, traces.length * 2);
+                                traces = Arrays.copyOf(traces, length);
+                                positions = Arrays.copyOf(positions, length);
+                                usages = Arrays.copyOf(usages, length);
+                        }
+                }
+
+                public int size() {
+                        return size;
+                }
+
+                /**
+                 * Returns the ordinal of the trace of the i-th entry.
+                 *
+                 * @param i
+                 * @return
+                 */
+                public int getTrace(int i) {
+                        checkIndex(i);
+                        return traces[i];
+                }
+
+                /**
+                 * Returns the position of the i-th entry within its trace.
+                 *
+                 * @param i
+                 * @return
+                 */
+                public int getPosition(int i) {
+                        checkIndex(i);
+                        return positions[i];
+                }
+
+                /**
+                 * Returns the usage modes of the i-th entry as bitmask.
+                 *
+                 * @param i
+                 * @return
+                 * @see DataUsageIndex#toUsages(int)
+                 */
+                public int getUsages(int i) {
+                        checkIndex(i);
+                        return usages[i];
+                }
+
+                private void checkIndex(int i) {
+                        if (i < 0 || i >= size) {
+                                throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+                        }
+                }
+        }
+}
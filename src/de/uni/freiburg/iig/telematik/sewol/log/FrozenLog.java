@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>
+ * Immutable snapshot of a {@link Log}. Traces, entries, the summary and the
+ * variant index of a frozen log cannot be modified, all modifying methods
+ * throw an {@link UnsupportedOperationException}. Once published, a frozen log
+ * can be read by any number of threads without locking or copying. Indexes
+ * such as {@link #getIndex()} are built on first use and published
+ * atomically, so concurrent readers always see completely built indexes.
+ * </p>
+ * <p>
+ * The only exception are the {@link DataAttribute}s of the entries, whose
+ * fields are public and can't be made immutable. They are copied when the
+ * entries are frozen, but are shared by all readers of the frozen log and
+ * must be treated as read-only.
+ * </p>
+ * <p>
+ * Modified versions of a frozen log are derived with
+ * {@link #withTrace(LogTrace)}, {@link #withTraces(List)},
+ * {@link #withoutTrace(int)} and {@link #withTraceReplaced(int, LogTrace)}.
+ * Derived logs share all unchanged traces with the original one. The list of
+ * traces is a {@link ChunkedList}, so a derived log shares all unchanged
+ * chunks of {@value ChunkedList#CHUNK_SIZE} traces and copies only the chunk
+ * references and the changed chunks. The case number lists of the variant
+ * index are shared as well, only the lists of affected variants are copied.
+ * The summary is copied, which costs one map entry per distinct activity,
+ * originator, role and trace length, and is updated by the added and removed
+ * traces. Removing or replacing a trace which starts at the minimum or ends
+ * at the maximum timestamp of the log requires rebuilding the summary from
+ * all traces. A mutable copy is created with {@link #toLog()}.
+ * </p>
+ *
+ * @param <E> LogEntry type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ * @see Log#freeze()
+ */
+public class FrozenLog<E extends LogEntry> extends Log<E> {
+
+        private final long maxCaseNumber;
+
+        /**
+         * Creates a frozen snapshot of the given log. Traces of the log are
+         * copied and frozen, traces which are already frozen are shared.
+         *
+         * @param log Log to freeze.
+         * @throws ParameterException If the given log is <code>null</code>.
+         */
+        public FrozenLog(Log<E> log) throws ParameterException {
+                Validate.notNull(log);
+                List<LogTrace<E>> logTraces = log.getTraces();
+                List<LogTrace<E>> frozenTraces = new ArrayList<>(logTraces.size());
+                VariantIndex frozenVariants = new VariantIndex();
+                long max = 0;
+                for (LogTrace<E> trace : logTraces) {
+                        LogTrace<E> frozenTrace = trace.freeze();
+                        frozenTraces.add(frozenTrace);
+                        frozenVariants.add(frozenTrace);
+                        max = Math.max(max, trace.getCaseNumber());
+                }
+                this.maxCaseNumber = max;
+                this.traces = ChunkedList.of(frozenTraces);
+                this.summary = LogSummary.build(frozenTraces).freeze();
+                this.variants = frozenVariants.freeze();
+        }
+
+        private FrozenLog(ChunkedList<LogTrace<E>> frozenTraces, LogSummary<E> summary, VariantIndex variants, long maxCaseNumber) {
+                this.maxCaseNumber = maxCaseNumber;
+                this.traces = frozenTraces;
+                this.summary = summary.freeze();
+                this.variants = variants.freeze();
+        }
+
+        private ChunkedList<LogTrace<E>> chunkedTraces() {
+                return (ChunkedList<LogTrace<E>>) traces;
+        }
+
+        private VariantIndex copyVariants() {
+                VariantIndex copy = new VariantIndex();
+                copy.merge(variants);
+                return copy;
+        }
+
+        /**
+         * Returns the log itself, since it is already frozen.
+         *
+         * @return
+         */
+        @Override
+        public FrozenLog<E> freeze() {
+                return this;
+        }
+
+        /**
+         * Returns a new frozen log consisting of all traces of this log and the
+         * given trace. The trace is frozen with the case number following the
+         * highest case number of this log.
+         *
+         * @param trace Trace to add.
+         * @return
+         * @throws ParameterException If the given trace is <code>null</code>.
+         */
+        public FrozenLog<E> withTrace(LogTrace<E> trace) throws ParameterException {
+                Validate.notNull(trace);
+                return withTraces(Collections.singletonList(trace));
+        }
+
+        /**
+         * Returns a new frozen log consisting of all traces of this log and the
+         * given traces. The traces are frozen with consecutive case numbers
+         * following the highest case number of this log.
+         *
+         * @param newTraces Traces to add.
+         * @return
+         * @throws ParameterException If the given list is <code>null</code>
+         * or contains <code>null</code> elements.
+         */
+        public FrozenLog<E> withTraces(List<LogTrace<E>> newTraces) throws ParameterException {
+                Validate.noNullElements(newTraces);
+                List<LogTrace<E>> frozenTraces = new ArrayList<>(newTraces.size());
+                LogSummary<E> partialSummary = new LogSummary<>();
+                VariantIndex partialVariants = new VariantIndex();
+                long caseNumber = maxCaseNumber;
+                for (LogTrace<E> trace : newTraces) {
+                        LogTrace<E> frozenTrace = trace.freeze(++caseNumber);
+                        frozenTraces.add(frozenTrace);
+                        partialSummary.addTrace(frozenTrace);
+                        partialVariants.add(frozenTrace);
+                }
+                return append(frozenTraces, partialSummary, partialVariants);
+        }
+
+        /**
+         * Returns a new frozen log consisting of all traces of this log except
+         * the trace at the given position. Case numbers are not changed.
+         *
+         * @param index Position of the trace to remove.
+         * @return
+         * @throws ParameterException If the index is out of range.
+         */
+        public FrozenLog<E> withoutTrace(int index) throws ParameterException {
+                validateIndex(index);
+                ChunkedList<LogTrace<E>> derivedTraces = chunkedTraces().without(index);
+                LogTrace<E> removed = traces.get(index);
+                VariantIndex derivedVariants = copyVariants();
+                derivedVariants.remove(removed);
+                LogSummary<E> derivedSummary = new LogSummary<E>().merge(summary);
+                if (!derivedSummary.removeTraceWithinBounds(removed)) {
+                        derivedSummary = LogSummary.build(derivedTraces);
+                }
+                return new FrozenLog<>(derivedTraces, derivedSummary, derivedVariants, maxCaseNumber);
+        }
+
+        /**
+         * Returns a new frozen log in which the trace at the given position is
+         * replaced by the given trace. The new trace is frozen with the case
+         * number of the replaced trace.
+         *
+         * @param index Position of the trace to replace.
+         * @param trace Replacing trace.
+         * @return
+         * @throws ParameterException If the index is out of range or the trace
+         * is <code>null</code>.
+         */
+        public FrozenLog<E> withTraceReplaced(int index, LogTrace<E> trace) throws ParameterException {
+                validateIndex(index);
+                Validate.notNull(trace);
+                LogTrace<E> replaced = traces.get(index);
+                LogTrace<E> frozenTrace = trace.freeze(replaced.getCaseNumber());
+                ChunkedList<LogTrace<E>> derivedTraces = chunkedTraces().replace(index, frozenTrace);
+                VariantIndex derivedVariants = copyVariants();
+                derivedVariants.remove(replaced);
+                derivedVariants.add(frozenTrace);
+                LogSummary<E> derivedSummary = new LogSummary<E>().merge(summary);
+                if (derivedSummary.removeTraceWithinBounds(replaced)) {
+                        derivedSummary.addTrace(frozenTrace);
+                } else {
+                        derivedSummary = LogSummary.build(derivedTraces);
+                }
+                return new FrozenLog<>(derivedTraces, derivedSummary, derivedVariants, maxCaseNumber);
+        }
+
+        /**
+         * Returns a new frozen log consisting of all traces of this log and the
+         * given frozen traces, whose statistics are already summarized in the
+         * given partial summary and variant index.
+         *
+         * @param frozenTraces Frozen traces to append.
+         * @param partialSummary Summary of the appended traces.
+         * @param partialVariants Variant index of the appended traces.
+         * @return
+         */
+        FrozenLog<E> append(List<LogTrace<E>> frozenTraces, LogSummary<E> partialSummary, VariantIndex partialVariants) {
+                ChunkedList<LogTrace<E>> derivedTraces = chunkedTraces().appendAll(frozenTraces);
+                VariantIndex derivedVariants = copyVariants();
+                derivedVariants.merge(partialVariants);
+                long max = maxCaseNumber;
+                for (LogTrace<E> trace : frozenTraces) {
+                        max = Math.max(max, trace.getCaseNumber());
+                }
+                return new FrozenLog<>(derivedTraces, new LogSummary<E>().merge(summary).merge(partialSummary), derivedVariants, max);
+        }
+
+        private void validateIndex(int index) {
+                if (index < 0 || index >= traces.size()) {
+                        throw new ParameterException(ParameterException.ErrorCode.RANGEVIOLATION, "Trace index out of range: " + index);
+                }
+        }
+
+        /**
+         * Returns a mutable copy of the log with copies of all traces and
+         * entries. Case numbers are kept.
+         *
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        public Log<E> toLog() {
+                Log<E> log = new Log<>();
+                for (LogTrace<E> trace : traces) {
+                        LogTrace<E> copy = trace.getCaseNumber() < 0 ? new LogTrace<E>() : new LogTrace<E>(trace.getCaseNumber());
+                        for (E entry : trace.getEntries()) {
+                                copy.addEntry((E) entry.clone());
+                        }
+                        copy.setSimilarInstances(trace.getSimilarInstances());
+                        log.registerTrace(copy);
+                }
+                return log;
+        }
+
+        @Override
+        void reinitialize() {
+                throw new UnsupportedOperationException("Log is frozen.");
+        }
+
+        @Override
+        public void addTrace(LogTrace<E> trace) throws ParameterException {
+                throw new UnsupportedOperationException("Log is frozen.");
+        }
+
+        @Override
+        public void addTraces(List<LogTrace<E>> traces) throws ParameterException {
+                throw new UnsupportedOperationException("Log is frozen.");
+        }
+
+        @Override
+        public void sortEntries(Comparator<? super E> comparator) {
+                throw new UnsupportedOperationException("Log is frozen.");
+        }
+
+        @Override
+        public List<LogTrace<E>> getTraces() {
+                return traces;
+        }
+}
@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.log.filter.AbstractLogFilter;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Filtered view over a stream of traces which notifies listeners about its
+ * changes. Traces are pushed into the view by any number of threads, either
+ * directly with {@link #addTrace(LogTrace)}, by subscribing the view to a
+ * {@link ConcurrentLogBuilder}, or by draining an iterator such as a
+ * {@link de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream} with
+ * {@link #subscribe(Iterator, ExecutorService)}.
+ * </p>
+ * <p>
+ * The view is backed by a {@link LogView}: an added trace is checked once by
+ * the compiled filter and, if accepted, added to the summary and variant index
+ * in time proportional to its length. Changed filters only evaluate the
+ * changed filter again.
+ * </p>
+ * <p>
+ * Listeners are notified on the executor of the view. Accepted traces are
+ * collected and delivered as one batch at the latest after the maximum delay
+ * or as soon as the maximum batch size is reached. Changes of filters replace
+ * all pending batches by a single {@link LiveLogViewListener#viewChanged}
+ * notification, and the view is brought up to date once per notification
+ * instead of once per change.
+ * </p>
+ *
+ * @param <E> LogEntry type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class LiveLogView<E extends LogEntry> implements Consumer<LogTrace<E>>, Observer {
+
+        /**
+         * Default maximum delay of notifications in milliseconds.
+         */
+        public static final long DEFAULT_MAX_DELAY = 10;
+        /**
+         * Default number of accepted traces after which listeners are notified
+         * without waiting for the maximum delay.
+         */
+        public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+        private final LogView<E> view;
+        private final ScheduledExecutorService executor;
+        private final long maxDelay;
+        private final int maxBatchSize;
+        private final List<LiveLogViewListener<E>> listeners = new CopyOnWriteArrayList<>();
+        /**
+         * Guards the view and the pending changes.
+         */
+        private final Object lock = new Object();
+        /**
+         * Serializes notifications.
+         */
+        private final Object dispatchLock = new Object();
+
+        private List<LogTrace<E>> pending = new ArrayList<>();
+        private boolean changed = false;
+        private boolean immediate = false;
+        private ScheduledFuture<?> scheduled = null;
+
+        /**
+         * Creates a live view with the default maximum delay and batch size.
+         *
+         * @param name Name of the view.
+         * @param executor Executor delivering the notifications.
+         * @throws ParameterException If the name is <code>null</code> or empty
+         * or the executor is <code>null</code>.
+         */
+        public LiveLogView(String name, ScheduledExecutorService executor) throws ParameterException {
+                this(name, executor, DEFAULT_MAX_DELAY, TimeUnit.MILLISECONDS, DEFAULT_MAX_BATCH_SIZE);
+        }
+
+        /**
+         * Creates a live view.
+         *
+         * @param name Name of the view.
+         * @param executor Executor delivering the notifications.
+         * @param maxDelay Maximum delay between a change and the notification
+         * of listeners.
+         * @param unit Time unit of the delay.
+         * @param maxBatchSize Number of accepted traces after which listeners
+         * are notified without waiting for the maximum delay.
+         * @throws ParameterException If the name is <code>null</code> or empty,
+         * the executor or unit is <code>null</code>, the delay is negative or
+         * the batch size is not positive.
+         */
+        public LiveLogView(String name, ScheduledExecutorService executor, long maxDelay, TimeUnit unit, int maxBatchSize) throws ParameterException {
+                Validate.notNull(executor);
+                Validate.notNegative(maxDelay);
+                Validate.notNull(unit);
+                Validate.positive(maxBatchSize);
+                this.view = new LogView<>(name);
+                this.executor = executor;
+                this.maxDelay = unit.toNanos(maxDelay);
+                this.maxBatchSize = maxBatchSize;
+        }
+
+        public String getName() {
+                return view.getName();
+        }
+
+        /**
+         * Adds a listener which is notified about changes of the view.
+         *
+         * @param listener
+         */
+        public void addListener(LiveLogViewListener<E> listener) {
+                Validate.notNull(listener);
+                listeners.add(listener);
+        }
+
+        public void removeListener(LiveLogViewListener<E> listener) {
+                listeners.remove(listener);
+        }
+
+        /**
+         * Adds a new filter to the view.
+         *
+         * @param filter
+         */
+        public void addFilter(AbstractLogFilter<E> filter) {
+                Validate.notNull(filter);
+                synchronized (lock) {
+                        view.addFilter(filter);
+                        // Changes of the filter have to reach the view under the lock.
+                        filter.deleteObserver(view);
+                        filter.addObserver(this);
+                        markChanged();
+                }
+        }
+
+        /**
+         * Removes a filter from the view.
+         *
+         * @param filter
+         */
+        public void removeFilter(AbstractLogFilter<E> filter) {
+                Validate.notNull(filter);
+                synchronized (lock) {
+                        view.removeFilter(filter);
+                        filter.deleteObserver(this);
+                        markChanged();
+                }
+        }
+
+        /**
+         * Returns a copy of the filters of the view.
+         *
+         * @return
+         */
+        public Set<AbstractLogFilter<E>> getFilters() {
+                synchronized (lock) {
+                        return new HashSet<>(view.getFilters());
+                }
+        }
+
+        /**
+         * Called by a filter of the view when it has been changed.
+         *
+         * @param observable The changed filter.
+         * @param object
+         */
+        @Override
+        public void update(Observable observable, Object object) {
+                synchronized (lock) {
+                        view.update(observable, object);
+                        markChanged();
+                }
+        }
+
+        /**
+         * Adds a trace to the view. This method can be called by any number of
+         * threads.
+         *
+         * @param trace Trace to add.
+         * @throws ParameterException If the trace is <code>null</code>.
+         */
+        public void addTrace(LogTrace<E> trace) throws ParameterException {
+                Validate.notNull(trace);
+                synchronized (lock) {
+                        if (view.offer(trace) && !changed) {
+                                pending.add(trace);
+                                schedule();
+                        }
+                }
+        }
+
+        /**
+         * Adds the given traces to the view.
+         *
+         * @param traces Traces to add.
+         * @throws ParameterException If the list is <code>null</code> or
+         * contains <code>null</code> elements.
+         */
+        public void addTraces(List<LogTrace<E>> traces) throws ParameterException {
+                Validate.noNullElements(traces);
+                synchronized (lock) {
+                        for (LogTrace<E> trace : traces) {
+                                addTrace(trace);
+                        }
+                }
+        }
+
+        /**
+         * Adds the given trace to the view.
+         *
+         * @param trace Trace to add.
+         * @see #addTrace(LogTrace)
+         */
+        @Override
+        public void accept(LogTrace<E> trace) {
+                addTrace(trace);
+        }
+
+        /**
+         * Subscribes the view to the given builder, so that every trace added
+         * to the builder is added to the view.
+         *
+         * @param builder
+         * @see #unsubscribe(ConcurrentLogBuilder)
+         */
+        public void subscribe(ConcurrentLogBuilder<E> builder) {
+                Validate.notNull(builder);
+                builder.addSubscriber(this);
+        }
+
+        public void unsubscribe(ConcurrentLogBuilder<E> builder) {
+                Validate.notNull(builder);
+                builder.removeSubscriber(this);
+        }
+
+        /**
+         * Drains the given source on the given executor and adds all its
+         * traces to the view. Draining stops at the end of the source or when
+         * the returned future is cancelled. Closeable sources are closed
+         * afterwards. Exceptions of the source are reported by the future.
+         *
+         * @param source Source of the traces, e.g. a log trace stream.
+         * @param executor Executor draining the source.
+         * @return Future of the draining task.
+         */
+        public Future<Void> subscribe(Iterator<? extends LogTrace<E>> source, ExecutorService executor) {
+                Validate.notNull(source);
+                Validate.notNull(executor);
+                return executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                                try {
+                                        while (!Thread.currentThread().isInterrupted() && source.hasNext()) {
+                                                addTrace(source.next());
+                                        }
+                                } finally {
+                                        if (source instanceof Closeable) {
+                                                ((Closeable) source).close();
+                                        }
+                                }
+                                return null;
+                        }
+                });
+        }
+
+        /**
+         * Records a change of the filters, which supersedes all pending
+         * batches.
+         */
+        private void markChanged() {
+                changed = true;
+                pending = new ArrayList<>();
+                schedule();
+        }
+
+        /**
+         * Schedules the next notification if there is none yet.
+         */
+        private void schedule() {
+                if (immediate) {
+                        return;
+                }
+                if (pending.size() >= maxBatchSize) {
+                        immediate = true;
+                        executor.execute(this::flush);
+                } else if (scheduled == null) {
+                        scheduled = executor.schedule(this::flush, maxDelay, TimeUnit.NANOSECONDS);
+                }
+        }
+
+        /**
+         * Notifies the listeners about all pending changes in the current
+         * thread.
+         */
+        public void flush() {
+                synchronized (dispatchLock) {
+                        List<LogTrace<E>> added;
+                        boolean reset;
+                        synchronized (lock) {
+                                if (scheduled != null) {
+                                        scheduled.cancel(false);
+                                        scheduled = null;
+                                }
+                                immediate = false;
+                                reset = changed;
+                                added = pending;
+                                changed = false;
+                                pending = new ArrayList<>();
+                                if (reset) {
+                                        view.getTraces();
+                                }
+                        }
+                        if (reset) {
+                                for (LiveLogViewListener<E> listener : listeners) {
+                                        listener.viewChanged(this);
+                                }
+                        } else if (!added.isEmpty()) {
+                                List<LogTrace<E>> batch = Collections.unmodifiableList(added);
+                                for (LiveLogViewListener<E> listener : listeners) {
+                                        listener.tracesAdded(this, batch);
+                                }
+                        }
+                }
+        }
+
+        /**
+         * Returns the number of traces added to the view, including the ones
+         * not accepted by the filters.
+         *
+         * @return
+         */
+        public int getReceivedTraceCount() {
+                synchronized (lock) {
+                        return view.getAllTraces().size();
+                }
+        }
+
+        /**
+         * Returns the number of traces accepted by the filters.
+         *
+         * @return
+         */
+        public int getTraceCount() {
+                synchronized (lock) {
+                        return view.getTraces().size();
+                }
+        }
+
+        /**
+         * Returns a copy of the traces accepted by the filters.
+         *
+         * @return
+         */
+        public List<LogTrace<E>> getTraces() {
+                synchronized (lock) {
+                        return new ArrayList<>(view.getTraces());
+                }
+        }
+
+        /**
+         * Returns a copy of the summary of the accepted traces. Copying takes
+         * time proportional to the number of distinct values, not to the
+         * number of traces.
+         *
+         * @return
+         */
+        public LogSummary<E> getSummary() {
+                synchronized (lock) {
+                        return new LogSummary<E>().merge(view.getSummary());
+                }
+        }
+
+        /**
+         * Returns a copy of the variant index of the accepted traces.
+         *
+         * @return
+         */
+        public VariantIndex getVariantIndex() {
+                synchronized (lock) {
+                        VariantIndex variants = new VariantIndex();
+                        variants.merge(view.getVariantIndex());
+                        return variants;
+                }
+        }
+
+        @Override
+        public String toString() {
+                return "LiveLogView{name=" + getName() + "}";
+        }
+}
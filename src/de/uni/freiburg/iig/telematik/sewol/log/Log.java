@@ -32,9 +32,8 @@ package de.uni.freiburg.iig.telematik.sewol.log;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
 
 import de.invation.code.toval.validate.ParameterException;
 import de.invation.code.toval.validate.Validate;
@@ -45,8 +44,9 @@ import de.invation.code.toval.validate.Validate;
 public class Log<E extends LogEntry> {
 
         LogSummary<E> summary = new LogSummary<>();
-        Set<LogTrace<E>> distinctTraces = new HashSet<>();
+        VariantIndex variants = new VariantIndex();
         List<LogTrace<E>> traces = new ArrayList<>();
+        LogIndexes<E> indexes = new LogIndexes<>();
 
         /**
          * Returns the {@link LogSummary}.
@@ -57,14 +57,91 @@ public class Log<E extends LogEntry> {
                 return summary;
         }
 
+        /**
+         * Returns the {@link VariantIndex} grouping the traces of the log by
+         * their activity sequence.
+         *
+         * @return
+         */
+        public VariantIndex getVariantIndex() {
+                return variants;
+        }
+
+        /**
+         * Returns the {@link TimeIndex} over the traces of the log. The index is
+         * built on first use and rebuilt after traces were added or sorted.
+         * Changes of timestamps of entries which are already contained in the
+         * log are not detected.
+         *
+         * @return
+         */
+        public TimeIndex<E> getTimeIndex() {
+                return index(LogIndexes.Type.TIME);
+        }
+
+        /**
+         * Returns the inverted {@link LogIndex} over the traces of the log. The
+         * index is built on first use and afterwards maintained when traces
+         * are added, positions in {@link #getTraces()} serve as ordinals.
+         *
+         * @return
+         */
+        public LogIndex<E> getIndex() {
+                return index(LogIndexes.Type.INVERTED);
+        }
+
+        /**
+         * Returns the {@link SimilarityIndex} for searching traces with similar
+         * activity sequences. The index is built on first use and afterwards
+         * maintained when traces are added.
+         *
+         * @return
+         */
+        public SimilarityIndex getSimilarityIndex() {
+                return index(LogIndexes.Type.SIMILARITY);
+        }
+
+        /**
+         * Returns the {@link DataUsageIndex} over the data usage of the
+         * entries of the log. The index is built on first use and afterwards
+         * maintained when traces are added.
+         *
+         * @return
+         */
+        public DataUsageIndex<E> getDataUsageIndex() {
+                return index(LogIndexes.Type.DATA_USAGE);
+        }
+
+        /**
+         * Returns the index of the given type over {@link #getTraces()},
+         * building it if necessary.
+         *
+         * @param <I> Index type
+         * @param type
+         * @return
+         */
+        <I> I index(LogIndexes.Type type) {
+                return indexes.get(type, getTraces());
+        }
+
+        /**
+         * Updates the indexes of the log after the given trace was appended.
+         *
+         * @param trace Appended trace.
+         */
+        void indexTrace(LogTrace<E> trace) {
+                indexes.add(trace);
+        }
+
         /**
          * Reinitializes the log by reseting the list of traces, the summary and
-         * the set of distinct traces.
+         * the variant index.
          */
         void reinitialize() {
                 summary = new LogSummary<>();
-                distinctTraces = new HashSet<>();
+                variants = new VariantIndex();
                 traces = new ArrayList<>();
+                indexes = new LogIndexes<>();
         }
 
         /**
@@ -81,7 +158,10 @@ public class Log<E extends LogEntry> {
         }
 
         /**
-         * Adds a trace to the log.
+         * Adds a trace to the log. The case number of the trace is set to its
+         * position within the log.<br>
+         * This method is not thread-safe; logs built by several threads should
+         * be built with a {@link ConcurrentLogBuilder}.
          *
          * @param trace Trace to add.
          * @throws ParameterException
@@ -89,18 +169,65 @@ public class Log<E extends LogEntry> {
         public void addTrace(LogTrace<E> trace) throws ParameterException {
                 Validate.notNull(trace);
                 trace.setCaseNumber(traces.size() + 1);
+                registerTrace(trace);
+        }
+
+        /**
+         * Adds the trace to the list of traces, the summary and the variant
+         * index.
+         *
+         * @param trace Trace to register.
+         */
+        void registerTrace(LogTrace<E> trace) {
                 traces.add(trace);
+                indexTrace(trace);
                 summary.addTrace(trace);
-                if (!distinctTraces.add(trace)) {
-                        for (LogTrace<E> storedTrace : traces) {
-                                if (storedTrace.equals(trace)) {
-                                        storedTrace.addSimilarInstance(trace.getCaseNumber());
-                                        trace.addSimilarInstance(storedTrace.getCaseNumber());
-                                }
-                        }
+                variants.add(trace);
+        }
+
+        /**
+         * Sorts the entries of all traces by timestamp and entries with equal
+         * timestamps by their lifecycle position.
+         *
+         * @see #sortEntries(Comparator)
+         */
+        public void sortEntries() {
+                sortEntries(LogEntryComparators.BY_TIMESTAMP_AND_LIFECYCLE);
+        }
+
+        /**
+         * Sorts the entries of all traces with the given comparator. Traces are
+         * sorted in parallel, the entries of each trace with a stable sort.
+         * Afterwards the summary and the variant index are rebuilt, since
+         * start and end activities and activity sequences may have changed.
+         *
+         * @param comparator Comparator for the entries.
+         * @see LogEntryComparators
+         */
+        public void sortEntries(Comparator<? super E> comparator) {
+                Validate.notNull(comparator);
+                traces.parallelStream().forEach(trace -> trace.sort(comparator));
+                indexes.entriesSorted();
+                summary = LogSummary.build(traces);
+                variants = new VariantIndex();
+                for (LogTrace<E> trace : traces) {
+                        variants.add(trace);
                 }
         }
 
+        /**
+         * Returns an immutable snapshot of the log. Traces and entries are
+         * copied and frozen, so later modifications of this log do not affect
+         * the snapshot. The snapshot can be shared between threads without
+         * synchronization.
+         *
+         * @return
+         * @see FrozenLog
+         */
+        public FrozenLog<E> freeze() {
+                return new FrozenLog<>(this);
+        }
+
         /**
          * Returns an unmodifiable list of traces.
          *
@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Compares and merges two versions of a log by case number, e.g. a
+ * re-exported log and its previous export. Cases are reported as added,
+ * removed, modified or unchanged.
+ * </p>
+ * <p>
+ * Traces of both versions with the same case number are compared by a 64 bit
+ * content hash over their entries. Traces with different hashes are modified.
+ * Only if the hashes are equal, the entries are compared with
+ * {@link LogEntry#equals(Object)} and by their roles, which are covered by the
+ * hash as well, to rule out collisions.
+ * </p>
+ * <p>
+ * Traces in memory are joined by a hash map over the case numbers of the old
+ * version. Trace iterators, e.g. log trace streams of files larger than the
+ * heap, are joined by merging sorted runs instead: both inputs are split into
+ * runs of a bounded number of traces, which are sorted by case number and
+ * written to temporary files with the {@link LogTraceCodec}. The runs of each
+ * input are merged on the fly and both sorted sequences are joined in a single
+ * pass, so only one trace per run is held in memory.
+ * </p>
+ * <p>
+ * Case numbers have to be unique within each version.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public final class LogDiff {
+
+        /**
+         * Default number of traces per sorted run.
+         */
+        public static final int DEFAULT_RUN_SIZE = 100000;
+
+        private static final Comparator<LogTrace<?>> BY_CASE_NUMBER = new Comparator<LogTrace<?>>() {
+                @Override
+                public int compare(LogTrace<?> o1, LogTrace<?> o2) {
+                        return Long.compare(o1.getCaseNumber(), o2.getCaseNumber());
+                }
+        };
+
+        private LogDiff() {
+        }
+
+        /**
+         * Compares the traces of two logs.
+         *
+         * @param <E> LogEntry type
+         * @param oldLog Old version.
+         * @param newLog New version.
+         * @return The case numbers of added, removed and modified cases.
+         * @throws ParameterException If a log is <code>null</code> or contains
+         * duplicate case numbers.
+         */
+        public static <E extends LogEntry> Result compare(Log<E> oldLog, Log<E> newLog) throws ParameterException {
+                Validate.notNull(oldLog);
+                Validate.notNull(newLog);
+                return compare(oldLog.getTraces(), newLog.getTraces(), null);
+        }
+
+        /**
+         * Compares two collections of traces by a hash join on their case
+         * numbers and reports every case to the given handler. Added cases are
+         * reported in the order of the new traces, removed cases afterwards in
+         * the order of the old traces.
+         *
+         * @param <E> LogEntry type
+         * @param oldTraces Traces of the old version.
+         * @param newTraces Traces of the new version.
+         * @param handler Handler to report the cases to or <code>null</code>.
+         * @return The case numbers of added, removed and modified cases.
+         * @throws ParameterException If a collection is <code>null</code> or
+         * contains duplicate case numbers.
+         */
+        public static <E extends LogEntry> Result compare(Collection<LogTrace<E>> oldTraces, Collection<LogTrace<E>> newTraces, Handler<E> handler) throws ParameterException {
+                Validate.noNullElements(oldTraces);
+                Validate.noNullElements(newTraces);
+                Map<Long, LogTrace<E>> oldCases = new HashMap<>(oldTraces.size() * 4 / 3 + 1);
+                for (LogTrace<E> trace : oldTraces) {
+                        if (oldCases.put(trace.getCaseNumber(), trace) != null) {
+                                throw duplicate(trace);
+                        }
+                }
+                Recorder<E> recorder = new Recorder<>(handler);
+                Map<Long, LogTrace<E>> newCases = new HashMap<>(newTraces.size() * 4 / 3 + 1);
+                for (LogTrace<E> trace : newTraces) {
+                        if (newCases.put(trace.getCaseNumber(), trace) != null) {
+                                throw duplicate(trace);
+                        }
+                        LogTrace<E> oldTrace = oldCases.get(trace.getCaseNumber());
+                        if (oldTrace == null) {
+                                recorder.added(trace);
+                        } else {
+                                recorder.compare(oldTrace, trace);
+                        }
+                }
+                for (LogTrace<E> trace : oldTraces) {
+                        if (!newCases.containsKey(trace.getCaseNumber())) {
+                                recorder.removed(trace);
+                        }
+                }
+                return recorder.result;
+        }
+
+        /**
+         * Compares two trace sources of arbitrary size by a merge join over
+         * sorted runs and reports every case to the given handler in the
+         * order of case numbers. Closeable sources are not closed.
+         *
+         * @param <E> LogEntry type
+         * @param oldTraces Traces of the old version.
+         * @param newTraces Traces of the new version.
+         * @param handler Handler to report the cases to or <code>null</code>.
+         * @param directory Directory for the runs or <code>null</code> for the
+         * default temporary directory.
+         * @param runSize Maximum number of traces per run.
+         * @return The case numbers of added, removed and modified cases.
+         * @throws IOException If the runs can't be written or read.
+         * @throws ParameterException If a source is <code>null</code>, the run
+         * size is not positive or a source contains duplicate case numbers.
+         */
+        public static <E extends LogEntry> Result compare(Iterator<LogTrace<E>> oldTraces, Iterator<LogTrace<E>> newTraces, Handler<E> handler, File directory, int runSize) throws IOException, ParameterException {
+                Validate.notNull(oldTraces);
+                Validate.notNull(newTraces);
+                Validate.positive(runSize);
+                Recorder<E> recorder = new Recorder<>(handler);
+                try (SortedRuns<E> oldRuns = new SortedRuns<>(oldTraces, directory, runSize);
+                        SortedRuns<E> newRuns = new SortedRuns<>(newTraces, directory, runSize)) {
+                        LogTrace<E> oldTrace = oldRuns.next();
+                        LogTrace<E> newTrace = newRuns.next();
+                        while (oldTrace != null || newTrace != null) {
+                                int order = oldTrace == null ? 1 : newTrace == null ? -1 : BY_CASE_NUMBER.compare(oldTrace, newTrace);
+                                if (order < 0) {
+                                        recorder.removed(oldTrace);
+                                        oldTrace = oldRuns.next();
+                                } else if (order > 0) {
+                                        recorder.added(newTrace);
+                                        newTrace = newRuns.next();
+                                } else {
+                                        recorder.compare(oldTrace, newTrace);
+                                        oldTrace = oldRuns.next();
+                                        newTrace = newRuns.next();
+                                }
+                        }
+                }
+                return recorder.result;
+        }
+
+        /**
+         * Merges two logs. The result contains every case of both logs ordered
+         * by case number, in the version of the new log if it contains the
+         * case.
+         *
+         * @param <E> LogEntry type
+         * @param oldLog Old version.
+         * @param newLog New version.
+         * @return The merged traces.
+         * @throws ParameterException If a log is <code>null</code> or contains
+         * duplicate case numbers.
+         */
+        public static <E extends LogEntry> List<LogTrace<E>> merge(Log<E> oldLog, Log<E> newLog) throws ParameterException {
+                Validate.notNull(oldLog);
+                Validate.notNull(newLog);
+                List<LogTrace<E>> merged = new ArrayList<>(newLog.getTraces().size());
+                compare(oldLog.getTraces(), newLog.getTraces(), new MergeHandler<>(merged::add));
+                Collections.sort(merged, BY_CASE_NUMBER);
+                return merged;
+        }
+
+        /**
+         * Merges two trace sources of arbitrary size by a merge join over
+         * sorted runs. Every case of both sources is passed to the given sink
+         * in the order of case numbers, in the version of the new source if it
+         * contains the case.
+         *
+         * @param <E> LogEntry type
+         * @param oldTraces Traces of the old version.
+         * @param newTraces Traces of the new version.
+         * @param sink Consumer of the merged traces, e.g. a log writer.
+         * @param directory Directory for the runs or <code>null</code> for the
+         * default temporary directory.
+         * @param runSize Maximum number of traces per run.
+         * @return The case numbers of added, removed and modified cases.
+         * @throws IOException If the runs can't be written or read.
+         * @see #compare(Iterator, Iterator, Handler, File, int)
+         */
+        public static <E extends LogEntry> Result merge(Iterator<LogTrace<E>> oldTraces, Iterator<LogTrace<E>> newTraces, Consumer<LogTrace<E>> sink, File directory, int runSize) throws IOException {
+                Validate.notNull(sink);
+                return compare(oldTraces, newTraces, new MergeHandler<>(sink), directory, runSize);
+        }
+
+        /**
+         * Computes a 64 bit hash over the entries of the given trace. Traces
+         * with equal entries with equal roles have equal hashes.
+         *
+         * @param trace
+         * @return
+         */
+        public static long contentHash(LogTrace<?> trace) {
+                long hash = mix(0xcbf29ce484222325L, trace.size());
+                for (LogEntry entry : trace.getEntries()) {
+                        hash = mix(hash, entry.hashCode());
+                        hash = mix(hash, entry.getTimestampMillis());
+                        hash = mix(hash, Objects.hashCode(entry.getOriginator()));
+                        hash = mix(hash, Objects.hashCode(entry.getRole()));
+                }
+                return hash;
+        }
+
+        /**
+         * Compares the entries of the given traces by the fields covered by
+         * {@link #contentHash(LogTrace)}.
+         */
+        private static boolean equalContent(LogTrace<?> oldTrace, LogTrace<?> newTrace) {
+                if (oldTrace.size() != newTrace.size()) {
+                        return false;
+                }
+                Iterator<? extends LogEntry> newEntries = newTrace.getEntries().iterator();
+                for (LogEntry oldEntry : oldTrace.getEntries()) {
+                        LogEntry newEntry = newEntries.next();
+                        if (!oldEntry.equals(newEntry) || !Objects.equals(oldEntry.getRole(), newEntry.getRole())) {
+                                return false;
+                        }
+                }
+                return true;
+        }
+
+        private static long mix(long hash, long value) {
+                hash = (hash ^ value) * 0x100000001b3L;
+                return hash ^ (hash >>> 29);
+        }
+
+        private static ParameterException duplicate(LogTrace<?> trace) {
+                return new ParameterException("Duplicate case number: " + trace.getCaseNumber());
+        }
+
+        /**
+         * Receives the cases found by a comparison.
+         *
+         * @param <E> LogEntry type
+         */
+        public interface Handler<E extends LogEntry> {
+
+                public void added(LogTrace<E> trace);
+
+                public void removed(LogTrace<E> trace);
+
+                public void modified(LogTrace<E> oldTrace, LogTrace<E> newTrace);
+
+                public void unchanged(LogTrace<E> oldTrace, LogTrace<E> newTrace);
+        }
+
+        /**
+         * Passes the surviving version of every case to a consumer.
+         */
+        private static final class MergeHandler<E extends LogEntry> implements Handler<E> {
+
+                private final Consumer<LogTrace<E>> sink;
+
+                private MergeHandler(Consumer<LogTrace<E>> sink) {
+                        this.sink = sink;
+                }
+
+                @Override
+                public void added(LogTrace<E> trace) {
+                        sink.accept(trace);
+                }
+
+                @Override
+                public void removed(LogTrace<E> trace) {
+                        sink.accept(trace);
+                }
+
+                @Override
+                public void modified(LogTrace<E> oldTrace, LogTrace<E> newTrace) {
+                        sink.accept(newTrace);
+                }
+
+                @Override
+                public void unchanged(LogTrace<E> oldTrace, LogTrace<E> newTrace) {
+                        sink.accept(newTrace);
+                }
+        }
+
+        /**
+         * Classifies cases, records them in the result and forwards them to
+         * the handler.
+         */
+        private static final class Recorder<E extends LogEntry> {
+
+                private final Handler<E> handler;
+                private final Result result = new Result();
+
+                private Recorder(Handler<E> handler) {
+                        this.handler = handler;
+                }
+
+                private void added(LogTrace<E> trace) {
+                        result.added.add(trace.getCaseNumber());
+                        if (handler != null) {
+                                handler.added(trace);
+                        }
+                }
+
+                private void removed(LogTrace<E> trace) {
+                        result.removed.add(trace.getCaseNumber());
+                        if (handler != null) {
+                                handler.removed(trace);
+                        }
+                }
+
+                private void compare(LogTrace<E> oldTrace, LogTrace<E> newTrace) {
+                        if (contentHash(oldTrace) == contentHash(newTrace) && equalContent(oldTrace, newTrace)) {
+                                result.unchanged++;
+                                if (handler != null) {
+                                        handler.unchanged(oldTrace, newTrace);
+                                }
+                        } else {
+                                result.modified.add(oldTrace.getCaseNumber());
+                                if (handler != null) {
+                                        handler.modified(oldTrace, newTrace);
+                                }
+                        }
+                }
+        }
+
+        /**
+         * Case numbers of the added, removed and modified cases of a
+         * comparison, in the order in which they were found.
+         */
+        public static final class Result {
+
+                private final List<Long> added = new ArrayList<>();
+                private final List<Long> removed = new ArrayList<>();
+                private final List<Long> modified = new ArrayList<>();
+                private long unchanged = 0;
+
+                private Result() {
+                }
+
+                public List<Long> getAddedCases() {
+                        return Collections.unmodifiableList(added);
+                }
+
+                public List<Long> getRemovedCases() {
+                        return Collections.unmodifiableList(removed);
+                }
+
+                public List<Long> getModifiedCases() {
+                        return Collections.unmodifiableList(modified);
+                }
+
+                public long getUnchangedCount() {
+                        return unchanged;
+                }
+
+                /**
+                 * Checks if both versions contain the same cases with equal
+                 * entries.
+                 *
+                 * @return
+                 */
+                public boolean isEmpty() {
+                        return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+                }
+
+                @Override
+                public String toString() {
+                        return "LogDiff{added=" + added.size() + ", removed=" + removed.size() + ", modified=" + modified.size() + ", unchanged=" + unchanged + "}";
+                }
+        }
+
+        /**
+         * Traces of a source sorted by case number. The source is split into
+         * sorted runs on temporary files, which are merged while reading.
+         */
+        private static final class SortedRuns<E extends LogEntry> implements Closeable {
+
+                private final List<File> files = new ArrayList<>();
+                private final List<DataInputStream> inputs = new ArrayList<>();
+                private final PriorityQueue<Run<E>> queue = new PriorityQueue<>();
+                private LogTrace<E> previous = null;
+
+                private SortedRuns(Iterator<LogTrace<E>> source, File directory, int runSize) throws IOException {
+                        try {
+                                List<LogTrace<E>> buffer = new ArrayList<>(Math.min(runSize, 1024));
+                                while (source.hasNext()) {
+                                        buffer.add(Objects.requireNonNull(source.next()));
+                                        if (buffer.size() == runSize || !source.hasNext()) {
+                                                writeRun(buffer, directory);
+                                                buffer.clear();
+                                        }
+                                }
+                                for (int i = 0; i < files.size(); i++) {
+                                        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(files.get(i))));
+                                        inputs.add(in);
+                                        Run<E> run = new Run<>(i, in);
+                                        if (run.advance()) {
+                                                queue.add(run);
+                                        }
+                                }
+                        } catch (IOException | RuntimeException e) {
+                                close();
+                                throw e;
+                        }
+                }
+
+                private void writeRun(List<LogTrace<E>> traces, File directory) throws IOException {
+                        Collections.sort(traces, BY_CASE_NUMBER);
+                        File file = File.createTempFile("sewol-diff", ".run", directory);
+                        files.add(file);
+                        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                                for (LogTrace<E> trace : traces) {
+                                        out.writeBoolean(true);
+                                        LogTraceCodec.write(trace, out);
+                                }
+                                out.writeBoolean(false);
+                        }
+                }
+
+                /**
+                 * Returns the trace with the next case number.
+                 *
+                 * @return The trace or <code>null</code> if all traces were
+                 * read.
+                 */
+                private LogTrace<E> next() throws IOException {
+                        Run<E> run = queue.poll();
+                        if (run == null) {
+                                return null;
+                        }
+                        LogTrace<E> trace = run.head;
+                        if (run.advance()) {
+                                queue.add(run);
+                        }
+                        if (previous != null && previous.getCaseNumber() == trace.getCaseNumber()) {
+                                throw duplicate(trace);
+                        }
+                        previous = trace;
+                        return trace;
+                }
+
+                @Override
+                public void close() throws IOException {
+                        for (DataInputStream in : inputs) {
+                                in.close();
+                        }
+                        for (File file : files) {
+                                file.delete();
+                        }
+                        inputs.clear();
+                        files.clear();
+                        queue.clear();
+                }
+        }
+
+        /**
+         * Reader of a single sorted run.
+         */
+        private static final class Run<E extends LogEntry> implements Comparable<Run<E>> {
+
+                private final int position;
+                private final DataInputStream in;
+                private LogTrace<E> head = null;
+
+                private Run(int position, DataInputStream in) {
+                        this.position = position;
+                        this.in = in;
+                }
+
+                private boolean advance() throws IOException {
+                        head = in.readBoolean() ? LogTraceCodec.<E>read(in) : null;
+                        return head != null;
+                }
+
+                @Override
+                public int compareTo(Run<E> other) {
+                        int result = BY_CASE_NUMBER.compare(head, other.head);
+                        return result != 0 ? result : Integer.compare(position, other.position);
+                }
+        }
+}
@@ -1,10 +1,9 @@
 package de.uni.freiburg.iig.telematik.sewol.log;
 
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
@@ -12,16 +11,27 @@ import java.util.Set;
 import de.invation.code.toval.time.TimeValue;
 import de.invation.code.toval.validate.ParameterException;
 import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.util.ArraySet;
 import java.util.Map;
 
 public class LogEntry implements Comparable<LogEntry>, Cloneable {
 
         private static final String toStringFormat = "[%s|%s|%s]";
+        /**
+         * Value returned by {@link #getTimestampMillis()} for entries without
+         * timestamp.
+         */
+        public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+        /**
+         * Maximum size of the array based containers for attributes, larger
+         * containers are converted to hash based ones.
+         */
+        static final int MAX_ARRAY_CONTAINER_SIZE = 8;
         /**
          * The timestamp of the log entry (the time the related activity was
-         * conducted).<br>
+         * conducted) in milliseconds since the epoch or {@link #NO_TIMESTAMP}.
          */
-        protected Date timestamp = null;
+        protected long timestamp = NO_TIMESTAMP;
         /**
          * The related activity that was conducted and triggered the log entry.
          */
@@ -42,15 +52,26 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
          */
         protected EventType eventType = null;
         /**
-         * A list of additional meta information for the log entry.
+         * A set of additional meta information for the log entry.<br>
+         * Created on adding the first attribute, since most entries have none,
+         * so it is <code>null</code> before.
+         */
+        protected Set<DataAttribute> metaData = null;
+        /**
+         * Bit of {@link #locking} marking frozen entries.
          */
-        protected final Set<DataAttribute> metaData = new HashSet<>();
+        private static final int FROZEN = 1 << 31;
         /**
-         * Stores the locked fields of the log entry together with the locking
-         * reason.<br>
+         * Bitmask of the locked fields of the log entry, indexed by the ordinal
+         * of the {@link EntryField}, and the {@link #FROZEN} bit.<br>
          * Locked fields cannot be altered any more.
          */
-        private final Map<EntryField, String> locking = new HashMap<>();
+        private int locking = 0;
+        /**
+         * Locking reasons of the locked fields. Created on locking the first
+         * field with a reason.
+         */
+        private Map<EntryField, String> lockingReasons = null;
         /**
          * Random generator.
          */
@@ -89,12 +110,13 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
         }
 
         public void clearFields() {
+                validateNotFrozen();
                 this.activity = null;
                 this.eventType = null;
                 this.group = null;
-                this.metaData.clear();
+                this.metaData = null;
                 this.originator = null;
-                this.timestamp = null;
+                this.timestamp = NO_TIMESTAMP;
         }
 
         //------- Timestamp -------------------------------------------------------------------------
@@ -104,35 +126,74 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
          * @return the timestamp of the log entry.
          */
         public Date getTimestamp() {
-                if (timestamp != null) {
-                        return (Date) timestamp.clone();
+                if (timestamp != NO_TIMESTAMP) {
+                        return new Date(timestamp);
                 }
                 return null;
         }
 
         /**
-         * Sets the timestamp of the log entry ({@link #timestamp}).
+         * Checks if the log entry has a timestamp.
          *
-         * @param date the time to set.
+         * @return <code>true</code> if the entry has a timestamp;<br>
+         * <code>false</code> otherwise.
+         */
+        public boolean hasTimestamp() {
+                return timestamp != NO_TIMESTAMP;
+        }
+
+        /**
+         * Returns the timestamp of the log entry in milliseconds since the
+         * epoch without creating a {@link Date} object.
+         *
+         * @return The timestamp or {@link #NO_TIMESTAMP} if the entry has no
+         * timestamp.
+         */
+        public long getTimestampMillis() {
+                return timestamp;
+        }
+
+        /**
+         * Sets the timestamp of the log entry in milliseconds since the epoch.
+         *
+         * @param millis the time to set.
          * @return <code>true</code> if {@link #timestamp} was modified;<br>
          * <code>false</code> otherwise.
+         * @throws ParameterException if the given value is
+         * {@link #NO_TIMESTAMP}.
          * @throws LockingException if the field TIME is locked and the given
          * timestamp differs from the current value of {@link #timestamp}.
          */
-        public boolean setTimestamp(Date date) throws LockingException {
-                Validate.notNull(date);
-
+        public boolean setTimestampMillis(long millis) throws LockingException {
+                if (millis == NO_TIMESTAMP) {
+                        throw new ParameterException("Invalid timestamp: " + millis);
+                }
+                validateNotFrozen();
                 if (isFieldLocked(EntryField.TIME)) {
-                        if (!this.timestamp.equals(date)) {
+                        if (this.timestamp != millis) {
                                 throw new LockingException(EntryField.TIME);
                         }
                         return false;
                 } else {
-                        this.timestamp = date;
+                        this.timestamp = millis;
                         return true;
                 }
         }
 
+        /**
+         * Sets the timestamp of the log entry ({@link #timestamp}).
+         *
+         * @param date the time to set.
+         * @return <code>true</code> if {@link #timestamp} was modified;<br>
+         * <code>false</code> otherwise.
+         * @throws LockingException if the field TIME is locked and the given
+         * timestamp differs from the current value of {@link #timestamp}.
+         */
+        public boolean setTimestamp(Date date) throws LockingException {
+                Validate.notNull(date);
+                return setTimestampMillis(date.getTime());
+        }
+
         public boolean addTime(long milliseconds) throws LockingException {
                 Validate.notNegative(milliseconds);
                 return modifyTime(milliseconds, TimeModification.ADD);
@@ -156,9 +217,10 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
                         diff = (long) Math.copySign(diff, -1);
                 }
 
-                Calendar cal = Calendar.getInstance();
-                cal.setTimeInMillis(timestamp.getTime() + diff);
-                return setTimestamp(cal.getTime());
+                if (timestamp == NO_TIMESTAMP) {
+                        throw new ParameterException("Log entry has no timestamp.");
+                }
+                return setTimestampMillis(timestamp + diff);
         }
 
         private enum TimeModification {
@@ -177,7 +239,8 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
         }
 
         public void removeTimestamp() {
-                this.timestamp = null;
+                validateNotFrozen();
+                this.timestamp = NO_TIMESTAMP;
         }
 
         //------- Activity --------------------------------------------------------------------------
@@ -208,6 +271,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
         public final boolean setActivity(String activity) throws LockingException {
                 Validate.notNull(activity);
                 Validate.notEmpty(activity);
+                validateNotFrozen();
                 if (isFieldLocked(EntryField.ACTIVITY)) {
                         if (!this.activity.equals(activity)) {
                                 throw new LockingException(EntryField.ACTIVITY);
@@ -220,6 +284,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
         }
 
         public void removeActivity() {
+                validateNotFrozen();
                 this.activity = null;
         }
 
@@ -246,6 +311,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
         public boolean setOriginator(String originator) throws LockingException {
                 Validate.notNull(originator);
                 Validate.notEmpty(originator);
+                validateNotFrozen();
 
                 if (isFieldLocked(EntryField.ORIGINATOR)) {
                         if (!this.originator.equals(originator)) {
@@ -259,6 +325,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
         }
 
         public void removeOriginator() {
+                validateNotFrozen();
                 this.originator = null;
         }
 
@@ -285,6 +352,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
         public boolean setRole(String role) throws LockingException {
                 Validate.notNull(role);
                 Validate.notEmpty(role);
+                validateNotFrozen();
 
                 if (isFieldLocked(EntryField.ROLE)) {
                         if (!this.role.equals(role)) {
@@ -298,6 +366,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
         }
 
         public void removeRole() {
+                validateNotFrozen();
                 this.role = null;
         }
 
@@ -322,6 +391,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
          */
         public boolean setEventType(EventType eventType) throws LockingException {
                 Validate.notNull(eventType);
+                validateNotFrozen();
 
                 if (isFieldLocked(EntryField.EVENTTYPE)) {
                         if (!this.eventType.equals(eventType)) {
@@ -336,13 +406,22 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
 
         //------- Meta Attribute --------------------------------------------------------------------
         public boolean addMetaAttribute(DataAttribute metaAttribute) {
+                validateNotFrozen();
                 if (metaAttribute != null) {
+                        if (metaData == null) {
+                                metaData = new ArraySet<>();
+                        } else if (metaData.size() == MAX_ARRAY_CONTAINER_SIZE && metaData instanceof ArraySet) {
+                                metaData = new HashSet<>(metaData);
+                        }
                         return this.metaData.add(metaAttribute);
                 }
                 return false;
         }
 
         public Set<DataAttribute> getMetaAttributes() {
+                if (metaData == null) {
+                        return Collections.emptySet();
+                }
                 return Collections.unmodifiableSet(metaData);
         }
 
@@ -358,7 +437,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
                         case EVENTTYPE:
                                 return eventType;
                         case META:
-                                return Collections.unmodifiableSet(metaData);
+                                return getMetaAttributes();
                         default:
                                 return null;
                 }
@@ -388,6 +467,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
          * @see LogTrace#getEntriesForGroup(String)
          */
         public void setGroup(String group) {
+                validateNotFrozen();
                 this.group = group;
         }
 
@@ -402,12 +482,40 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
          * @param reason
          */
         public void lockField(EntryField entryField, String reason) {
-                locking.put(entryField, reason);
+                Validate.notNull(entryField);
+                validateNotFrozen();
+                setLocked(entryField, reason);
                 if (entryField == EntryField.ORIGINATOR) {
-                        locking.put(EntryField.ORIGINATOR_CANDIDATES, reason);
+                        setLocked(EntryField.ORIGINATOR_CANDIDATES, reason);
+                }
+        }
+
+        private void setLocked(EntryField entryField, String reason) {
+                locking |= 1 << entryField.ordinal();
+                if (reason != null) {
+                        if (lockingReasons == null) {
+                                lockingReasons = new EnumMap<>(EntryField.class);
+                        }
+                        lockingReasons.put(entryField, reason);
+                } else if (lockingReasons != null) {
+                        lockingReasons.remove(entryField);
                 }
         }
 
+        /**
+         * Returns the reason given for locking the given entry field.
+         *
+         * @param entryField Locked field.
+         * @return The locking reason or <code>null</code> if the field is not
+         * locked or was locked without reason.
+         */
+        public String getLockingReason(EntryField entryField) {
+                if (lockingReasons == null) {
+                        return null;
+                }
+                return lockingReasons.get(entryField);
+        }
+
         /**
          * Checks if the given entry field is locked.
          *
@@ -416,12 +524,68 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
          * <code>false</code> otherwise.
          */
         public boolean isFieldLocked(EntryField entryField) {
-                return locking.containsKey(entryField);
+                return (locking & (1 << entryField.ordinal())) != 0;
+        }
+
+        //------- Freezing --------------------------------------------------------------------------
+        /**
+         * Returns a frozen copy of the log entry, or the entry itself if it is
+         * already frozen.<br>
+         * Frozen entries cannot be modified at all, all modifying methods throw
+         * an {@link UnsupportedOperationException}. They can therefore be
+         * shared between threads and snapshots without copying. Meta
+         * attributes and data usage attributes are copied, so the frozen entry
+         * doesn't share them with the original one. Since the fields of
+         * {@link DataAttribute} are public, attributes of frozen entries can't
+         * be protected against modification. They must be treated as
+         * read-only, since every reader of the entry sees changes to them.
+         *
+         * @return A frozen entry with the same field values.
+         * @see #clone()
+         */
+        public LogEntry freeze() {
+                if (isFrozen()) {
+                        return this;
+                }
+                LogEntry result = clone();
+                result.freezeFields();
+                result.locking |= FROZEN;
+                return result;
+        }
+
+        /**
+         * Checks if the entry is frozen.
+         *
+         * @return <code>true</code> if the entry cannot be modified;<br>
+         * <code>false</code> otherwise.
+         * @see #freeze()
+         */
+        public boolean isFrozen() {
+                return (locking & FROZEN) != 0;
+        }
+
+        /**
+         * Called on a fresh copy while freezing an entry, before it is marked
+         * as frozen. Subclasses can replace mutable containers by unmodifiable
+         * ones.
+         */
+        protected void freezeFields() {
+        }
+
+        /**
+         * Throws an {@link UnsupportedOperationException} if the entry is
+         * frozen.
+         */
+        protected final void validateNotFrozen() {
+                if (isFrozen()) {
+                        throw new UnsupportedOperationException("Log entry is frozen.");
+                }
         }
 
         //------- Helper methods ---------------------------------------------------------------------
         /**
-         * Returns a copy of the log entry.
+         * Returns a copy of the log entry. Copies of frozen entries are not
+         * frozen.
          * @return 
          */
         @Override
@@ -440,19 +604,33 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
         }
 
         protected void copyFieldValues(LogEntry clone) throws LockingException {
-                clone.setActivity(activity);
-                clone.setTimestamp((Date) this.timestamp.clone());
-                clone.setEventType(eventType);
-                clone.setOriginator(originator);
-                clone.setRole(role);
-                for (EntryField lockedField : locking.keySet()) {
-                        clone.lockField(lockedField, locking.get(lockedField));
+                clone.activity = activity;
+                clone.timestamp = timestamp;
+                clone.eventType = eventType;
+                clone.originator = originator;
+                clone.role = role;
+                clone.locking = locking & ~FROZEN;
+                if (lockingReasons != null) {
+                        clone.lockingReasons = new EnumMap<>(lockingReasons);
+                }
+                if (metaData != null) {
+                        for (DataAttribute attribute : metaData) {
+                                clone.addMetaAttribute(new DataAttribute(attribute.name, attribute.value));
+                        }
                 }
         }
 
+        /**
+         * Compares the entries by their timestamps. Entries without timestamp
+         * are ordered first.
+         *
+         * @param o
+         * @return
+         * @see LogEntryComparators
+         */
         @Override
         public int compareTo(LogEntry o) {
-                return getTimestamp().compareTo(o.getTimestamp());
+                return Long.compare(timestamp, o.timestamp);
         }
 
         @Override
@@ -463,7 +641,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
                 result = prime * result + ((eventType == null) ? 0 : eventType.hashCode());
                 result = prime * result + ((metaData == null) ? 0 : metaData.hashCode());
                 result = prime * result + ((originator == null) ? 0 : originator.hashCode());
-                result = prime * result + ((timestamp == null) ? 0 : timestamp.hashCode());
+                result = prime * result + ((timestamp == NO_TIMESTAMP) ? 0 : Long.hashCode(timestamp));
                 return result;
         }
 
@@ -489,11 +667,7 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
                 if (eventType != other.eventType) {
                         return false;
                 }
-                if (metaData == null) {
-                        if (other.metaData != null) {
-                                return false;
-                        }
-                } else if (!metaData.equals(other.metaData)) {
+                if (!getMetaAttributes().equals(other.getMetaAttributes())) {
                         return false;
                 }
                 if (originator == null) {
@@ -503,19 +677,12 @@ public class LogEntry implements Comparable<LogEntry>, Cloneable {
                 } else if (!originator.equals(other.originator)) {
                         return false;
                 }
-                if (timestamp == null) {
-                        if (other.timestamp != null) {
-                                return false;
-                        }
-                } else if (!timestamp.equals(other.timestamp)) {
-                        return false;
-                }
-                return true;
+                return timestamp == other.timestamp;
         }
 
         @Override
         public String toString() {
-                String ts = (this.timestamp == null) ? "-" : sdf.format(this.timestamp);
+                String ts = (this.timestamp == NO_TIMESTAMP) ? "-" : sdf.format(new Date(this.timestamp));
                 return String.format(toStringFormat, ts, getActivity(), getOriginator());
         }
 
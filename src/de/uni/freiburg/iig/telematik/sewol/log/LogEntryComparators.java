@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import java.util.Comparator;
+
+/**
+ * Comparators for {@link LogEntry}s working on primitive keys only, so that
+ * comparisons do not allocate objects.<br>
+ * Entries without timestamp are ordered before all entries with timestamp, and
+ * entries without event type before all entries with event type. Event types
+ * are ordered by their position in the lifecycle as given by the declaration
+ * order of {@link EventType}.
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public final class LogEntryComparators {
+
+        /**
+         * Orders entries by timestamp.
+         */
+        public static final Comparator<LogEntry> BY_TIMESTAMP = new Comparator<LogEntry>() {
+                @Override
+                public int compare(LogEntry e1, LogEntry e2) {
+                        return Long.compare(e1.getTimestampMillis(), e2.getTimestampMillis());
+                }
+        };
+
+        /**
+         * Orders entries by the lifecycle position of their event type.
+         */
+        public static final Comparator<LogEntry> BY_LIFECYCLE = new Comparator<LogEntry>() {
+                @Override
+                public int compare(LogEntry e1, LogEntry e2) {
+                        return Integer.compare(lifecycleKey(e1), lifecycleKey(e2));
+                }
+        };
+
+        /**
+         * Orders entries by timestamp and entries with equal timestamps by the
+         * lifecycle position of their event type.
+         */
+        public static final Comparator<LogEntry> BY_TIMESTAMP_AND_LIFECYCLE = new Comparator<LogEntry>() {
+                @Override
+                public int compare(LogEntry e1, LogEntry e2) {
+                        int result = Long.compare(e1.getTimestampMillis(), e2.getTimestampMillis());
+                        if (result != 0) {
+                                return result;
+                        }
+                        return Integer.compare(lifecycleKey(e1), lifecycleKey(e2));
+                }
+        };
+
+        private LogEntryComparators() {
+        }
+
+        private static int lifecycleKey(LogEntry entry) {
+                EventType eventType = entry.getEventType();
+                return eventType == null ? -1 : eventType.ordinal();
+        }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.util.CompressedBitmap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Inverted indexes from activities, originators, roles, event types and meta
+ * attributes to the traces containing at least one entry with the respective
+ * value.
+ * </p>
+ * <p>
+ * Traces are identified by their ordinal, i.e. their position within the
+ * indexed list of traces, and sets of traces are represented as
+ * {@link CompressedBitmap}s. Queries combining several criteria can therefore
+ * be answered by intersecting or uniting bitmaps instead of scanning the
+ * entries of all traces. Adding a trace costs one pass over its entries.
+ * </p>
+ * <p>
+ * Bitmaps returned by the index are owned by it and must not be modified.
+ * The index is not updated when traces are modified after they were added.
+ * </p>
+ *
+ * @param <E> LogEntry type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ * @see Log#getIndex()
+ */
+public class LogIndex<E extends LogEntry> {
+
+        private static final CompressedBitmap EMPTY = new CompressedBitmap();
+
+        private final Map<String, CompressedBitmap> activities = new HashMap<>();
+        private final Map<String, CompressedBitmap> originators = new HashMap<>();
+        private final Map<String, CompressedBitmap> roles = new HashMap<>();
+        private final Map<EventType, CompressedBitmap> eventTypes = new EnumMap<>(EventType.class);
+        private final CompressedBitmap noEventType = new CompressedBitmap();
+        private final Map<DataAttribute, CompressedBitmap> attributes = new HashMap<>();
+        private int numTraces = 0;
+
+        /**
+         * Creates an empty index.
+         */
+        public LogIndex() {
+        }
+
+        /**
+         * Creates an index over the given traces.
+         *
+         * @param traces Traces to index.
+         * @throws ParameterException If the list is <code>null</code> or
+         * contains <code>null</code> elements.
+         */
+        public LogIndex(List<LogTrace<E>> traces) throws ParameterException {
+                Validate.noNullElements(traces);
+                for (LogTrace<E> trace : traces) {
+                        add(trace);
+                }
+        }
+
+        /**
+         * Adds the given trace with the next ordinal.
+         *
+         * @param trace Trace to add.
+         * @return The ordinal of the trace.
+         * @throws ParameterException If the trace is <code>null</code>.
+         */
+        public int add(LogTrace<E> trace) throws ParameterException {
+                Validate.notNull(trace);
+                int ordinal = numTraces++;
+                for (E entry : trace.getEntries()) {
+                        add(activities, entry.getActivity(), ordinal);
+                        add(originators, entry.getOriginator(), ordinal);
+                        add(roles, entry.getRole(), ordinal);
+                        if (entry.getEventType() == null) {
+                                noEventType.add(ordinal);
+                        } else {
+                                add(eventTypes, entry.getEventType(), ordinal);
+                        }
+                        for (DataAttribute attribute : entry.getMetaAttributes()) {
+                                add(attributes, attribute, ordinal);
+                        }
+                }
+                return ordinal;
+        }
+
+        private static <K> void add(Map<K, CompressedBitmap> index, K key, int ordinal) {
+                CompressedBitmap bitmap = index.get(key);
+                if (bitmap == null) {
+                        bitmap = new CompressedBitmap();
+                        index.put(key, bitmap);
+                }
+                bitmap.add(ordinal);
+        }
+
+        private static <K> CompressedBitmap get(Map<K, CompressedBitmap> index, K key) {
+                CompressedBitmap bitmap = index.get(key);
+                return bitmap == null ? EMPTY : bitmap;
+        }
+
+        /**
+         * Returns the number of indexed traces.
+         *
+         * @return
+         */
+        public int getTraceCount() {
+                return numTraces;
+        }
+
+        /**
+         * Returns the ordinals of all indexed traces.
+         *
+         * @return
+         */
+        public CompressedBitmap getAllTraces() {
+                return CompressedBitmap.range(numTraces);
+        }
+
+        /**
+         * Returns the ordinals of all traces containing an entry with the
+         * given activity.
+         *
+         * @param activity Activity, may be <code>null</code>.
+         * @return
+         */
+        public CompressedBitmap getTracesWithActivity(String activity) {
+                return get(activities, activity);
+        }
+
+        /**
+         * Returns the ordinals of all traces containing an entry with the
+         * given originator.
+         *
+         * @param originator Originator, may be <code>null</code>.
+         * @return
+         */
+        public CompressedBitmap getTracesWithOriginator(String originator) {
+                return get(originators, originator);
+        }
+
+        /**
+         * Returns the ordinals of all traces containing an entry with the
+         * given role.
+         *
+         * @param role Role, may be <code>null</code>.
+         * @return
+         */
+        public CompressedBitmap getTracesWithRole(String role) {
+                return get(roles, role);
+        }
+
+        /**
+         * Returns the ordinals of all traces containing an entry with the
+         * given event type.
+         *
+         * @param eventType Event type, <code>null</code> for entries without
+         * event type.
+         * @return
+         */
+        public CompressedBitmap getTracesWithEventType(EventType eventType) {
+                return eventType == null ? noEventType : get(eventTypes, eventType);
+        }
+
+        /**
+         * Returns the ordinals of all traces containing an entry with a meta
+         * attribute with the given name and value.
+         *
+         * @param name Attribute name.
+         * @param value Attribute value.
+         * @return
+         * @throws ParameterException If the name is <code>null</code>.
+         */
+        public CompressedBitmap getTracesWithAttribute(String name, Object value) throws ParameterException {
+                Validate.notNull(name);
+                return get(attributes, new DataAttribute(name, value));
+        }
+
+        /**
+         * Returns all indexed activities.
+         *
+         * @return
+         */
+        public Set<String> getActivities() {
+                return Collections.unmodifiableSet(activities.keySet());
+        }
+
+        /**
+         * Returns all indexed originators.
+         *
+         * @return
+         */
+        public Set<String> getOriginators() {
+                return Collections.unmodifiableSet(originators.keySet());
+        }
+
+        /**
+         * Returns all indexed roles.
+         *
+         * @return
+         */
+        public Set<String> getRoles() {
+                return Collections.unmodifiableSet(roles.keySet());
+        }
+
+        /**
+         * Returns all indexed meta attributes.
+         *
+         * @return
+         */
+        public Set<DataAttribute> getAttributes() {
+                return Collections.unmodifiableSet(attributes.keySet());
+        }
+
+        /**
+         * Returns the traces with the given ordinals in ascending order.
+         *
+         * @param traces List of all indexed traces.
+         * @param ordinals Ordinals of the traces to return.
+         * @return
+         */
+        public List<LogTrace<E>> select(List<LogTrace<E>> traces, CompressedBitmap ordinals) {
+                Validate.notNull(traces);
+                Validate.notNull(ordinals);
+                List<LogTrace<E>> result = new ArrayList<>(ordinals.cardinality());
+                ordinals.forEach(ordinal -> result.add(traces.get(ordinal)));
+                return result;
+        }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Lazily built indexes of a {@link Log}.
+ * </p>
+ * <p>
+ * Every index is built from the traces of the log on first use. When traces
+ * are appended, indexes which support this are maintained and all others are
+ * discarded. Sorting the entries of the traces discards the indexes which
+ * depend on the order of entries, all other changes of the list of traces
+ * discard all indexes. Indexes are never serialized.
+ * </p>
+ * <p>
+ * Built indexes are published atomically, so that readers of a
+ * {@link FrozenLog} on different threads either build an index themselves or
+ * see a completely built one. Concurrent first uses may build an index more
+ * than once, only one of the results is kept.
+ * </p>
+ *
+ * @param <E> LogEntry type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+final class LogIndexes<E extends LogEntry> {
+
+        /**
+         * Kinds of indexes and how they are built and maintained.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        enum Type {
+
+                /**
+                 * {@link TimeIndex}, rebuilt after traces were appended.
+                 */
+                TIME(false) {
+                        @Override
+                        Object build(List traces) {
+                                return new TimeIndex<>(traces);
+                        }
+
+                        @Override
+                        boolean add(Object index, LogTrace trace) {
+                                return false;
+                        }
+                },
+                /**
+                 * Inverted {@link LogIndex}, which does not depend on the order
+                 * of entries.
+                 */
+                INVERTED(true) {
+                        @Override
+                        Object build(List traces) {
+                                return new LogIndex<>(traces);
+                        }
+
+                        @Override
+                        boolean add(Object index, LogTrace trace) {
+                                ((LogIndex) index).add(trace);
+                                return true;
+                        }
+                },
+                /**
+                 * {@link SimilarityIndex}.
+                 */
+                SIMILARITY(false) {
+                        @Override
+                        Object build(List traces) {
+                                return new SimilarityIndex(traces);
+                        }
+
+                        @Override
+                        boolean add(Object index, LogTrace trace) {
+                                ((SimilarityIndex) index).add(trace);
+                                return true;
+                        }
+                },
+                /**
+                 * {@link DataUsageIndex}.
+                 */
+                DATA_USAGE(false) {
+                        @Override
+                        Object build(List traces) {
+                                return new DataUsageIndex<>(traces);
+                        }
+
+                        @Override
+                        boolean add(Object index, LogTrace trace) {
+                                ((DataUsageIndex) index).add(trace);
+                                return true;
+                        }
+                };
+
+                private final boolean keptOnSort;
+
+                private Type(boolean keptOnSort) {
+                        this.keptOnSort = keptOnSort;
+                }
+
+                /**
+                 * Builds the index over the given traces.
+                 */
+                abstract Object build(List traces);
+
+                /**
+                 * Adds the given appended trace to the index.
+                 *
+                 * @return <code>false</code> if the index has to be rebuilt
+                 * instead.
+                 */
+                abstract boolean add(Object index, LogTrace trace);
+        }
+
+        private static final Type[] TYPES = Type.values();
+
+        private final AtomicReferenceArray<Object> indexes = new AtomicReferenceArray<>(TYPES.length);
+
+        /**
+         * Returns the index of the given type, building it from the given
+         * traces if necessary.
+         *
+         * @param <I> Index type
+         * @param type
+         * @param traces All traces of the log.
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        <I> I get(Type type, List<LogTrace<E>> traces) {
+                Object index = indexes.get(type.ordinal());
+                if (index == null) {
+                        indexes.compareAndSet(type.ordinal(), null, type.build(traces));
+                        index = indexes.get(type.ordinal());
+                }
+                return (I) index;
+        }
+
+        /**
+         * Maintains or discards the indexes after the given trace was
+         * appended to the log.
+         *
+         * @param trace
+         */
+        void add(LogTrace<E> trace) {
+                for (Type type : TYPES) {
+                        Object index = indexes.get(type.ordinal());
+                        if (index != null && !type.add(index, trace)) {
+                                indexes.set(type.ordinal(), null);
+                        }
+                }
+        }
+
+        /**
+         * Discards the indexes which depend on the order of the entries of the
+         * traces.
+         */
+        void entriesSorted() {
+                for (Type type : TYPES) {
+                        if (!type.keptOnSort) {
+                                indexes.set(type.ordinal(), null);
+                        }
+                }
+        }
+
+        /**
+         * Discards all indexes.
+         */
+        void clear() {
+                for (int i = 0; i < indexes.length(); i++) {
+                        indexes.set(i, null);
+                }
+        }
+}
@@ -1,28 +1,151 @@
 package de.uni.freiburg.iig.telematik.sewol.log;
 
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
-import de.invation.code.toval.statistic.Observation;
 import de.invation.code.toval.validate.ParameterException;
 import de.invation.code.toval.validate.Validate;
 
+/**
+ * <p>
+ * Statistics over a set of traces: frequencies of activities, originators and
+ * roles, start and end activities, the distribution of trace lengths, event
+ * type counts and the time bounds of all entries.
+ * </p>
+ * <p>
+ * Summaries are not thread-safe, but they can be computed independently for
+ * disjoint parts of a log (per thread, per file fragment or during streaming)
+ * and combined afterwards with {@link #merge(LogSummary)}, which is
+ * associative and commutative. {@link #build(Collection)} uses this to
+ * summarize large trace collections in parallel.
+ * </p>
+ * <p>
+ * Removable summaries additionally support {@link #removeTrace(LogTrace)}, so
+ * that a summary of a changing set of traces can be maintained by deltas.
+ * For this they keep the start and end times of all traces, which costs
+ * memory proportional to the number of traces.
+ * </p>
+ *
+ * @param <E> LogEntry type
+ */
 public class LogSummary<E extends LogEntry> {
 
-        private final Set<String> activities = new HashSet<>();
-        private final Set<String> originators = new HashSet<>();
-        private final Set<String> roles = new HashSet<>();
-        private final Observation traceLength = new Observation();
+        /**
+         * Minimum number of traces for which {@link #build(Collection)}
+         * summarizes in parallel.
+         */
+        public static final int PARALLEL_THRESHOLD = 10000;
+
+        private final Map<String, Long> activities = new HashMap<>();
+        private final Map<String, Long> originators = new HashMap<>();
+        private final Map<String, Long> roles = new HashMap<>();
+        private final Map<String, Long> startActivities = new HashMap<>();
+        private final Map<String, Long> endActivities = new HashMap<>();
+        private final Map<Integer, Long> traceLengths = new HashMap<>();
+        private final Map<EventType, Long> eventTypes = new EnumMap<>(EventType.class);
+        private long numTraces = 0;
+        private long numEntries = 0;
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+        /**
+         * Number of traces per start and end time, only kept by removable
+         * summaries.
+         */
+        private final NavigableMap<Long, Long> traceStarts;
+        private final NavigableMap<Long, Long> traceEnds;
+        private boolean frozen = false;
 
         public LogSummary() {
+                this(false);
+        }
+
+        /**
+         * Creates an empty summary.
+         *
+         * @param removable Specifies if traces can be removed from the summary.
+         * @see #removeTrace(LogTrace)
+         */
+        public LogSummary(boolean removable) {
+                traceStarts = removable ? new TreeMap<Long, Long>() : null;
+                traceEnds = removable ? new TreeMap<Long, Long>() : null;
         }
 
         public LogSummary(List<LogTrace<E>> traces) throws ParameterException {
+                this(false);
                 addTraces(traces);
         }
 
+        /**
+         * Summarizes the given traces, in parallel if there are at least
+         * {@link #PARALLEL_THRESHOLD} of them.
+         *
+         * @param <E> LogEntry type
+         * @param traces Traces to summarize.
+         * @return The summary of the traces.
+         * @throws ParameterException If the given collection is
+         * <code>null</code> or contains <code>null</code> elements.
+         */
+        public static <E extends LogEntry> LogSummary<E> build(Collection<LogTrace<E>> traces) throws ParameterException {
+                Validate.notNull(traces);
+                if (traces.size() < PARALLEL_THRESHOLD) {
+                        LogSummary<E> summary = new LogSummary<>();
+                        for (LogTrace<E> trace : traces) {
+                                summary.addTrace(trace);
+                        }
+                        return summary;
+                }
+                return traces.parallelStream().collect(LogSummary<E>::new, LogSummary<E>::addTrace, LogSummary<E>::merge);
+        }
+
+        /**
+         * Freezes the summary. Afterwards all modifying methods throw an
+         * {@link UnsupportedOperationException} and the summary can be read by
+         * any number of threads without synchronization, provided it is
+         * published safely.
+         *
+         * @return This summary.
+         */
+        public LogSummary<E> freeze() {
+                frozen = true;
+                return this;
+        }
+
+        /**
+         * Checks if the summary is frozen.
+         *
+         * @return
+         * @see #freeze()
+         */
+        public boolean isFrozen() {
+                return frozen;
+        }
+
+        /**
+         * Checks if traces can be removed from the summary.
+         *
+         * @return
+         * @see #removeTrace(LogTrace)
+         */
+        public boolean isRemovable() {
+                return traceStarts != null;
+        }
+
+        private void validateNotFrozen() {
+                if (frozen) {
+                        throw new UnsupportedOperationException("Log summary is frozen.");
+                }
+        }
+
         public final void addTraces(List<LogTrace<E>> traces) throws ParameterException {
                 Validate.notNull(traces);
                 for (LogTrace<E> trace : traces) {
@@ -30,34 +153,272 @@ public class LogSummary<E extends LogEntry> {
                 }
         }
 
+        /**
+         * Adds the given trace to the summary in a single pass over its
+         * entries.
+         *
+         * @param trace Trace to add.
+         * @throws ParameterException If the trace is <code>null</code>.
+         */
         public void addTrace(LogTrace<E> trace) throws ParameterException {
                 Validate.notNull(trace);
-                activities.addAll(trace.getDistinctActivities());
-                originators.addAll(trace.getDistinctOriginators());
-                roles.addAll(trace.getDistinctRoles());
-                traceLength.addValue(trace.size());
+                validateNotFrozen();
+                count(trace, 1);
+        }
+
+        /**
+         * Removes the given trace from the summary. The trace must have been
+         * added before and must not have been changed since.
+         *
+         * @param trace Trace to remove.
+         * @throws ParameterException If the trace is <code>null</code>.
+         * @throws UnsupportedOperationException If the summary is not
+         * removable or frozen.
+         * @see #isRemovable()
+         */
+        public void removeTrace(LogTrace<E> trace) throws ParameterException {
+                Validate.notNull(trace);
+                validateNotFrozen();
+                if (!isRemovable()) {
+                        throw new UnsupportedOperationException("Traces can only be removed from removable summaries.");
+                }
+                count(trace, -1);
+                minTime = traceStarts.isEmpty() ? Long.MAX_VALUE : traceStarts.firstKey();
+                maxTime = traceEnds.isEmpty() ? Long.MIN_VALUE : traceEnds.lastKey();
+        }
+
+        /**
+         * Removes the given trace from a summary which is not necessarily
+         * removable. This is only possible if the trace neither starts at the
+         * minimum nor ends at the maximum timestamp of the summary, since
+         * otherwise the new bounds are unknown.
+         *
+         * @param trace Trace to remove, which must have been added before.
+         * @return <code>false</code> if the summary has to be rebuilt instead,
+         * it is unchanged then.
+         */
+        boolean removeTraceWithinBounds(LogTrace<E> trace) {
+                validateNotFrozen();
+                for (E entry : trace.getEntries()) {
+                        if (entry.hasTimestamp() && (entry.getTimestampMillis() == minTime || entry.getTimestampMillis() == maxTime)) {
+                                return false;
+                        }
+                }
+                count(trace, -1);
+                return true;
+        }
+
+        /**
+         * Adds the statistics of the given trace with the given sign to the
+         * summary in a single pass over its entries.
+         */
+        private void count(LogTrace<E> trace, long sign) {
+                List<E> entries = trace.getEntries();
+                long traceStart = Long.MAX_VALUE;
+                long traceEnd = Long.MIN_VALUE;
+                for (E entry : entries) {
+                        increment(activities, entry.getActivity(), sign);
+                        increment(originators, entry.getOriginator(), sign);
+                        increment(roles, entry.getRole(), sign);
+                        if (entry.getEventType() != null) {
+                                increment(eventTypes, entry.getEventType(), sign);
+                        }
+                        if (entry.hasTimestamp()) {
+                                traceStart = Math.min(traceStart, entry.getTimestampMillis());
+                                traceEnd = Math.max(traceEnd, entry.getTimestampMillis());
+                        }
+                }
+                if (!entries.isEmpty()) {
+                        increment(startActivities, entries.get(0).getActivity(), sign);
+                        increment(endActivities, entries.get(entries.size() - 1).getActivity(), sign);
+                }
+                increment(traceLengths, entries.size(), sign);
+                numTraces += sign;
+                numEntries += sign * entries.size();
+                if (traceStart <= traceEnd) {
+                        if (sign > 0) {
+                                minTime = Math.min(minTime, traceStart);
+                                maxTime = Math.max(maxTime, traceEnd);
+                        }
+                        if (isRemovable()) {
+                                increment(traceStarts, traceStart, sign);
+                                increment(traceEnds, traceEnd, sign);
+                        }
+                }
+        }
+
+        /**
+         * Adds all statistics of the given summary to this summary.
+         *
+         * @param other Summary to merge into this one.
+         * @return This summary.
+         * @throws ParameterException If the given summary is <code>null</code>
+         * or not removable while this summary is removable.
+         */
+        public LogSummary<E> merge(LogSummary<E> other) throws ParameterException {
+                Validate.notNull(other);
+                validateNotFrozen();
+                if (isRemovable() && !other.isRemovable()) {
+                        throw new ParameterException(ParameterException.ErrorCode.INCOMPATIBILITY, "Removable summaries can only merge removable summaries.");
+                }
+                if (isRemovable()) {
+                        mergeCounts(traceStarts, other.traceStarts);
+                        mergeCounts(traceEnds, other.traceEnds);
+                }
+                mergeCounts(activities, other.activities);
+                mergeCounts(originators, other.originators);
+                mergeCounts(roles, other.roles);
+                mergeCounts(startActivities, other.startActivities);
+                mergeCounts(endActivities, other.endActivities);
+                mergeCounts(traceLengths, other.traceLengths);
+                mergeCounts(eventTypes, other.eventTypes);
+                numTraces += other.numTraces;
+                numEntries += other.numEntries;
+                minTime = Math.min(minTime, other.minTime);
+                maxTime = Math.max(maxTime, other.maxTime);
+                return this;
+        }
+
+        private static <K> void increment(Map<K, Long> counts, K key, long value) {
+                Long count = counts.get(key);
+                long updated = count == null ? value : count + value;
+                if (updated == 0) {
+                        counts.remove(key);
+                } else {
+                        counts.put(key, updated);
+                }
+        }
+
+        private static <K> void mergeCounts(Map<K, Long> counts, Map<K, Long> otherCounts) {
+                for (Entry<K, Long> entry : otherCounts.entrySet()) {
+                        increment(counts, entry.getKey(), entry.getValue());
+                }
         }
 
         public Set<String> getActivities() {
-                return Collections.unmodifiableSet(activities);
+                return Collections.unmodifiableSet(activities.keySet());
         }
 
         public Set<String> getOriginators() {
-                return Collections.unmodifiableSet(originators);
+                return Collections.unmodifiableSet(originators.keySet());
         }
 
         public Set<String> getRoles() {
-                return Collections.unmodifiableSet(roles);
+                return Collections.unmodifiableSet(roles.keySet());
+        }
+
+        /**
+         * Returns the number of entries per activity.
+         *
+         * @return
+         */
+        public Map<String, Long> getActivityFrequencies() {
+                return Collections.unmodifiableMap(activities);
+        }
+
+        /**
+         * Returns the number of entries per originator.
+         *
+         * @return
+         */
+        public Map<String, Long> getOriginatorFrequencies() {
+                return Collections.unmodifiableMap(originators);
+        }
+
+        /**
+         * Returns the number of entries per role.
+         *
+         * @return
+         */
+        public Map<String, Long> getRoleFrequencies() {
+                return Collections.unmodifiableMap(roles);
+        }
+
+        /**
+         * Returns the number of traces starting with each activity.
+         *
+         * @return
+         */
+        public Map<String, Long> getStartActivities() {
+                return Collections.unmodifiableMap(startActivities);
+        }
+
+        /**
+         * Returns the number of traces ending with each activity.
+         *
+         * @return
+         */
+        public Map<String, Long> getEndActivities() {
+                return Collections.unmodifiableMap(endActivities);
+        }
+
+        /**
+         * Returns the number of traces per trace length, sorted by length.
+         *
+         * @return
+         */
+        public SortedMap<Integer, Long> getTraceLengthDistribution() {
+                return Collections.unmodifiableSortedMap(new TreeMap<>(traceLengths));
+        }
+
+        /**
+         * Returns the number of entries per event type. Entries without event
+         * type are not counted.
+         *
+         * @return
+         */
+        public Map<EventType, Long> getEventTypeCounts() {
+                return Collections.unmodifiableMap(eventTypes);
+        }
+
+        public long getTraceCount() {
+                return numTraces;
+        }
+
+        public long getEntryCount() {
+                return numEntries;
         }
 
         public double getAverageTraceLength() {
-                return traceLength.getAverage();
+                return numTraces == 0 ? 0.0 : (double) numEntries / numTraces;
+        }
+
+        /**
+         * Returns the earliest timestamp of all entries.
+         *
+         * @return The timestamp or <code>null</code> if no entry has a
+         * timestamp.
+         */
+        public Date getMinimumTimestamp() {
+                return minTime > maxTime ? null : new Date(minTime);
+        }
+
+        /**
+         * Returns the latest timestamp of all entries.
+         *
+         * @return The timestamp or <code>null</code> if no entry has a
+         * timestamp.
+         */
+        public Date getMaximumTimestamp() {
+                return minTime > maxTime ? null : new Date(maxTime);
         }
 
         public void clear() {
+                validateNotFrozen();
                 activities.clear();
                 originators.clear();
                 roles.clear();
-                traceLength.reset();
+                startActivities.clear();
+                endActivities.clear();
+                traceLengths.clear();
+                eventTypes.clear();
+                if (isRemovable()) {
+                        traceStarts.clear();
+                        traceEnds.clear();
+                }
+                numTraces = 0;
+                numEntries = 0;
+                minTime = Long.MAX_VALUE;
+                maxTime = Long.MIN_VALUE;
         }
 }
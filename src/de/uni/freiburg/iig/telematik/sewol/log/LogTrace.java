@@ -3,10 +3,14 @@ package de.uni.freiburg.iig.telematik.sewol.log;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import de.invation.code.toval.validate.ParameterException;
@@ -14,20 +18,101 @@ import de.invation.code.toval.validate.Validate;
 
 public class LogTrace<E extends LogEntry> {
 
-    private final List<E> logEntries = new ArrayList<>();
+    private final List<E> logEntries;
     private long caseNumber = -1;
-    private final Set<Long> similarInstances = new HashSet<>();
+    private final Set<Long> similarInstances;
+    /**
+     * Maps entries (by identity) to their position within the trace.<br>
+     * Built on first use and maintained on appending entries; reset on all
+     * other structural modifications.
+     */
+    private volatile Map<E, Integer> positions = null;
+    /**
+     * Cached hash of the activity sequence, <code>0</code> if not computed.
+     */
+    private int activitySequenceHash = 0;
+    private final boolean frozen;
 
     public LogTrace() {
+        logEntries = new ArrayList<>();
+        similarInstances = new HashSet<>();
+        frozen = false;
     }
 
     public LogTrace(long caseNumber) {
+        this();
         Validate.notNegative(caseNumber);
         this.caseNumber = caseNumber;
     }
 
+    /**
+     * Creates a frozen copy of the given trace with frozen entries.
+     *
+     * @param trace Trace to copy.
+     * @param caseNumber Case number of the copy.
+     */
+    @SuppressWarnings("unchecked")
+    private LogTrace(LogTrace<E> trace, long caseNumber) {
+        logEntries = new ArrayList<>(trace.size());
+        for (E entry : trace.logEntries) {
+            logEntries.add((E) entry.freeze());
+        }
+        similarInstances = trace.similarInstances.isEmpty() ? Collections.<Long>emptySet() : new HashSet<>(trace.similarInstances);
+        this.caseNumber = caseNumber;
+        getActivitySequenceHash();
+        frozen = true;
+    }
+
+    /**
+     * Returns a frozen copy of the trace, or the trace itself if it is already
+     * frozen.<br>
+     * Frozen traces and their entries cannot be modified, all modifying
+     * methods throw an {@link UnsupportedOperationException}. Any number of
+     * threads can read them without synchronization.
+     *
+     * @return
+     * @see LogEntry#freeze()
+     */
+    public LogTrace<E> freeze() {
+        return frozen ? this : new LogTrace<>(this, caseNumber);
+    }
+
+    /**
+     * Returns a frozen copy of the trace with the given case number, or the
+     * trace itself if it is frozen and already has this case number.
+     *
+     * @param caseNumber
+     * @return
+     */
+    LogTrace<E> freeze(long caseNumber) {
+        return frozen && this.caseNumber == caseNumber ? this : new LogTrace<>(this, caseNumber);
+    }
+
+    /**
+     * Checks if the trace is frozen.
+     *
+     * @return
+     * @see #freeze()
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void validateNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Log trace is frozen.");
+        }
+    }
+
     public boolean addEntry(E entry) {
+        validateNotFrozen();
         if (entry != null) {
+            if (positions != null && !positions.containsKey(entry)) {
+                positions.put(entry, logEntries.size());
+            }
+            if (activitySequenceHash != 0) {
+                activitySequenceHash = nonZero(31 * activitySequenceHash + Objects.hashCode(entry.getActivity()));
+            }
             return logEntries.add(entry);
         }
         return false;
@@ -77,81 +162,117 @@ public class LogTrace<E extends LogEntry> {
         return result;
     }
 
+    /**
+     * Returns the position of the given entry within the trace.<br>
+     * Entries are compared by identity. If the same entry object is contained
+     * several times, the position of its first occurrence is returned.
+     *
+     * @param entry The entry to look for.
+     * @return The position of the entry or <code>-1</code> if the trace does
+     * not contain the entry.
+     */
+    public int indexOf(E entry) {
+        Validate.notNull(entry);
+        Map<E, Integer> positions = this.positions;
+        if (positions == null) {
+            // Published only when complete, so that concurrent readers of
+            // frozen traces never see a partially filled map.
+            positions = new IdentityHashMap<>(logEntries.size());
+            for (int i = logEntries.size() - 1; i >= 0; i--) {
+                positions.put(logEntries.get(i), i);
+            }
+            this.positions = positions;
+        }
+        Integer index = positions.get(entry);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns an unmodifiable view of the entries between <code>fromIndex</code>
+     * (inclusive) and <code>toIndex</code> (exclusive).<br>
+     * The view is backed by the trace and must not be used after the trace was
+     * structurally modified.
+     *
+     * @param fromIndex
+     * @param toIndex
+     * @return
+     */
+    public List<E> getEntries(int fromIndex, int toIndex) {
+        return Collections.unmodifiableList(logEntries.subList(fromIndex, toIndex));
+    }
+
+    /**
+     * Returns a list iterator over the entries of the trace which is
+     * positioned before the given entry, i.e. the first call of
+     * {@link ListIterator#next()} returns the entry itself.
+     *
+     * @param entry
+     * @return The iterator or <code>null</code> if the trace does not contain
+     * the entry.
+     */
+    public ListIterator<E> listIterator(E entry) {
+        int index = indexOf(entry);
+        if (index < 0) {
+            return null;
+        }
+        return getEntries().listIterator(index);
+    }
+
+    /**
+     * Returns an unmodifiable view of the first <code>k</code> entries.
+     *
+     * @param k
+     * @return
+     * @see #getEntries(int, int)
+     */
     public List<E> getFirstKEntries(int k) {
         Validate.notNegative(k);
         if (k > size()) {
             throw new ParameterException("Trace does only contain " + size() + " entries!");
         }
-        List<E> result = new ArrayList<>();
-        if (k == 0) {
-            return result;
-        }
-        for (int i = 0; i < k; i++) {
-            result.add(logEntries.get(i));
-        }
-        return result;
+        return getEntries(0, k);
     }
 
+    /**
+     * Returns an unmodifiable view of all entries following the given entry.
+     *
+     * @param entry
+     * @return
+     * @see #getEntries(int, int)
+     */
     public List<E> getSucceedingEntries(E entry) {
-        Validate.notNull(entry);
-        List<E> result = new ArrayList<>();
-        int index = -1;
-        for (E traceEntry : logEntries) {
-            if (traceEntry == entry) {
-                index = logEntries.indexOf(traceEntry);
-                break;
-            }
+        int index = indexOf(entry);
+        if (index < 0) {
+            return Collections.emptyList();
         }
-        if (index > -1 && index < logEntries.size() - 1) {
-            for (int i = index + 1; i < logEntries.size(); i++) {
-                result.add(logEntries.get(i));
-            }
-        }
-        return result;
+        return getEntries(index + 1, logEntries.size());
     }
 
     public E getDirectSuccessor(E entry) {
-        Validate.notNull(entry);
-        int index = -1;
-        for (E traceEntry : logEntries) {
-            if (traceEntry == entry) {
-                index = logEntries.indexOf(traceEntry);
-                break;
-            }
-        }
+        int index = indexOf(entry);
         if (index > -1 && index < logEntries.size() - 1) {
             return logEntries.get(index + 1);
         }
         return null;
     }
 
+    /**
+     * Returns an unmodifiable view of all entries preceding the given entry.
+     *
+     * @param entry
+     * @return
+     * @see #getEntries(int, int)
+     */
     public List<E> getPreceedingEntries(E entry) {
-        Validate.notNull(entry);
-        List<E> result = new ArrayList<>();
-        int index = -1;
-        for (E traceEntry : logEntries) {
-            if (traceEntry == entry) {
-                index = logEntries.indexOf(traceEntry);
-                break;
-            }
-        }
-        if (index > 0) {
-            for (int i = 0; i < index; i++) {
-                result.add(logEntries.get(i));
-            }
+        int index = indexOf(entry);
+        if (index < 0) {
+            return Collections.emptyList();
         }
-        return result;
+        return getEntries(0, index);
     }
 
     public E getDirectPredecessor(E entry) {
-        Validate.notNull(entry);
-        int index = -1;
-        for (E traceEntry : logEntries) {
-            if (traceEntry == entry) {
-                index = logEntries.indexOf(traceEntry);
-                break;
-            }
-        }
+        int index = indexOf(entry);
         if (index > 0) {
             return logEntries.get(index - 1);
         }
@@ -159,6 +280,9 @@ public class LogTrace<E extends LogEntry> {
     }
 
     public boolean removeEntry(E entry) {
+        validateNotFrozen();
+        positions = null;
+        activitySequenceHash = 0;
         return logEntries.remove(entry);
     }
 
@@ -175,6 +299,7 @@ public class LogTrace<E extends LogEntry> {
 
     public void setCaseNumber(int caseNumber) {
         Validate.notNull(caseNumber);
+        validateNotFrozen();
         this.caseNumber = caseNumber;
     }
 
@@ -196,11 +321,13 @@ public class LogTrace<E extends LogEntry> {
 
     public void addSimilarInstance(long similarInstance) {
         Validate.notNull(similarInstance);
+        validateNotFrozen();
         this.similarInstances.add(similarInstance);
     }
 
     public void setSimilarInstances(Collection<Long> similarInstances) {
         Validate.notNull(similarInstances);
+        validateNotFrozen();
         this.similarInstances.clear();
         this.similarInstances.addAll(similarInstances);
     }
@@ -249,7 +376,32 @@ public class LogTrace<E extends LogEntry> {
         return result;
     }
 
+    /**
+     * Returns a hash code of the activity sequence of the trace. Traces with
+     * equal activity sequences have the same hash code.<br>
+     * The hash is cached and maintained on structural modifications of the
+     * trace. Changing the activity of an entry which is already contained in
+     * the trace is not detected.
+     *
+     * @return
+     */
+    public int getActivitySequenceHash() {
+        if (activitySequenceHash == 0) {
+            int hash = 1;
+            for (E entry : logEntries) {
+                hash = nonZero(31 * hash + Objects.hashCode(entry.getActivity()));
+            }
+            activitySequenceHash = hash;
+        }
+        return activitySequenceHash;
+    }
+
+    private static int nonZero(int hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
     public void reduceToActivities() {
+        validateNotFrozen();
         for (E entry : logEntries) {
             entry.reduceToActivity();
         }
@@ -280,7 +432,23 @@ public class LogTrace<E extends LogEntry> {
     }
 
     public void sort() {
-        Collections.sort(logEntries);
+        sort(LogEntryComparators.BY_TIMESTAMP);
+    }
+
+    /**
+     * Sorts the entries of the trace with the given comparator. The sort is
+     * stable, i.e. entries which are equal according to the comparator keep
+     * their relative order.
+     *
+     * @param comparator
+     * @see LogEntryComparators
+     */
+    public void sort(Comparator<? super E> comparator) {
+        Validate.notNull(comparator);
+        validateNotFrozen();
+        positions = null;
+        activitySequenceHash = 0;
+        Collections.sort(logEntries, comparator);
     }
 
     @Override
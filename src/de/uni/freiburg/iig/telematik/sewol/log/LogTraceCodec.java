@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.types.DataUsage;
+import de.invation.code.toval.validate.ParameterException;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Compact binary encoding of {@link LogTrace}s, used to store traces outside
+ * the heap.
+ * </p>
+ * <p>
+ * Supported entry types are {@link LogEntry} and {@link DULogEntry}. All
+ * fields, locks, meta attributes and data usage are encoded. Attribute values
+ * of the types {@link String}, {@link Long}, {@link Integer}, {@link Double},
+ * {@link Float}, {@link Boolean} and {@link Date} are encoded directly, other
+ * {@link Serializable} values with Java serialization. Traces with other
+ * attribute values are rejected. Names and values of decoded attributes can be
+ * canonicalized with a {@link DataAttributePool}.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public final class LogTraceCodec {
+
+        private static final byte TYPE_LOG_ENTRY = 0;
+        private static final byte TYPE_DU_LOG_ENTRY = 1;
+
+        private static final byte VALUE_NULL = 0;
+        private static final byte VALUE_STRING = 1;
+        private static final byte VALUE_LONG = 2;
+        private static final byte VALUE_INTEGER = 3;
+        private static final byte VALUE_DOUBLE = 4;
+        private static final byte VALUE_FLOAT = 5;
+        private static final byte VALUE_BOOLEAN = 6;
+        private static final byte VALUE_DATE = 7;
+        private static final byte VALUE_SERIALIZED = 8;
+
+        private static final int FIELD_ACTIVITY = 1;
+        private static final int FIELD_ORIGINATOR = 1 << 1;
+        private static final int FIELD_ROLE = 1 << 2;
+        private static final int FIELD_GROUP = 1 << 3;
+        private static final int FIELD_EVENTTYPE = 1 << 4;
+        private static final int FIELD_TIMESTAMP = 1 << 5;
+
+        private static final EntryField[] ENTRY_FIELDS = EntryField.values();
+        private static final EventType[] EVENT_TYPES = EventType.values();
+        private static final DataUsage[] DATA_USAGES = DataUsage.values();
+
+        private LogTraceCodec() {
+        }
+
+        /**
+         * Writes the given trace to the given output.
+         *
+         * @param trace Trace to encode.
+         * @param out Output to write to.
+         * @throws IOException If the output can't be written.
+         * @throws ParameterException If the trace contains entries or attribute
+         * values of an unsupported type.
+         */
+        public static void write(LogTrace<? extends LogEntry> trace, DataOutput out) throws IOException {
+                out.writeLong(trace.getCaseNumber());
+                Set<Long> similarInstances = trace.getSimilarInstances();
+                out.writeInt(similarInstances.size());
+                for (Long similarInstance : similarInstances) {
+                        out.writeLong(similarInstance);
+                }
+                out.writeInt(trace.size());
+                for (LogEntry entry : trace.getEntries()) {
+                        writeEntry(entry, out);
+                }
+        }
+
+        /**
+         * Checks whether the given trace can be encoded, without encoding it.
+         * Serializable attribute values are assumed to serialize successfully.
+         *
+         * @param trace Trace to check.
+         * @throws ParameterException If the trace contains entries or attribute
+         * values of an unsupported type.
+         */
+        public static void validate(LogTrace<? extends LogEntry> trace) throws ParameterException {
+                for (LogEntry entry : trace.getEntries()) {
+                        validateEntryType(entry);
+                        for (DataAttribute attribute : entry.getMetaAttributes()) {
+                                validateValueType(attribute.value);
+                        }
+                        if (entry instanceof DULogEntry) {
+                                for (DataAttribute attribute : ((DULogEntry) entry).getDataUsage().keySet()) {
+                                        validateValueType(attribute.value);
+                                }
+                        }
+                }
+        }
+
+        private static void validateEntryType(LogEntry entry) throws ParameterException {
+                if (entry.getClass() != LogEntry.class && entry.getClass() != DULogEntry.class) {
+                        throw new ParameterException("Unsupported log entry type: " + entry.getClass().getName());
+                }
+        }
+
+        private static void validateValueType(Object value) throws ParameterException {
+                if (value != null && !(value instanceof Serializable)) {
+                        throw new ParameterException("Unsupported attribute value type: " + value.getClass().getName());
+                }
+        }
+
+        /**
+         * Reads a trace from the given input.
+         *
+         * @param <E> LogEntry type
+         * @param in Input to read from.
+         * @return The decoded trace.
+         * @throws IOException If the input can't be read or is corrupt.
+         */
+        public static <E extends LogEntry> LogTrace<E> read(DataInput in) throws IOException {
+                return read(in, null);
+        }
+
+        /**
+         * Reads a trace from the given input and obtains the names and values
+         * of its attributes from the given pool.
+         *
+         * @param <E> LogEntry type
+         * @param in Input to read from.
+         * @param pool Pool for attribute names and values, or
+         * <code>null</code> to use the decoded ones.
+         * @return The decoded trace.
+         * @throws IOException If the input can't be read or is corrupt.
+         */
+        @SuppressWarnings("unchecked")
+        public static <E extends LogEntry> LogTrace<E> read(DataInput in, DataAttributePool pool) throws IOException {
+                long caseNumber = in.readLong();
+                LogTrace<E> trace = caseNumber >= 0 ? new LogTrace<>(caseNumber) : new LogTrace<>();
+                int numSimilarInstances = in.readInt();
+                for (int i = 0; i < numSimilarInstances; i++) {
+                        trace.addSimilarInstance(in.readLong());
+                }
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                        trace.addEntry((E) readEntry(in, pool));
+                }
+                return trace;
+        }
+
+        private static void writeEntry(LogEntry entry, DataOutput out) throws IOException {
+                validateEntryType(entry);
+                out.writeByte(entry.getClass() == DULogEntry.class ? TYPE_DU_LOG_ENTRY : TYPE_LOG_ENTRY);
+                int fields = 0;
+                fields |= entry.getActivity() != null ? FIELD_ACTIVITY : 0;
+                fields |= entry.getOriginator() != null ? FIELD_ORIGINATOR : 0;
+                fields |= entry.getRole() != null ? FIELD_ROLE : 0;
+                fields |= entry.getGroup() != null ? FIELD_GROUP : 0;
+                fields |= entry.getEventType() != null ? FIELD_EVENTTYPE : 0;
+                fields |= entry.hasTimestamp() ? FIELD_TIMESTAMP : 0;
+                out.writeByte(fields);
+                if (entry.getActivity() != null) {
+                        writeString(entry.getActivity(), out);
+                }
+                if (entry.getOriginator() != null) {
+                        writeString(entry.getOriginator(), out);
+                }
+                if (entry.getRole() != null) {
+                        writeString(entry.getRole(), out);
+                }
+                if (entry.getGroup() != null) {
+                        writeString(entry.getGroup(), out);
+                }
+                if (entry.getEventType() != null) {
+                        out.writeByte(entry.getEventType().ordinal());
+                }
+                if (entry.hasTimestamp()) {
+                        out.writeLong(entry.getTimestampMillis());
+                }
+
+                Set<DataAttribute> metaAttributes = entry.getMetaAttributes();
+                out.writeInt(metaAttributes.size());
+                for (DataAttribute attribute : metaAttributes) {
+                        writeAttribute(attribute, out);
+                }
+
+                if (entry instanceof DULogEntry) {
+                        Map<DataAttribute, Set<DataUsage>> dataUsage = ((DULogEntry) entry).getDataUsage();
+                        out.writeInt(dataUsage.size());
+                        for (Map.Entry<DataAttribute, Set<DataUsage>> usage : dataUsage.entrySet()) {
+                                writeAttribute(usage.getKey(), out);
+                                int usages = 0;
+                                for (DataUsage dataUsageMode : usage.getValue()) {
+                                        usages |= 1 << dataUsageMode.ordinal();
+                                }
+                                out.writeByte(usages);
+                        }
+                }
+
+                // locks are written last, since locked fields can't be set anymore
+                int lockedFields = 0;
+                for (EntryField field : ENTRY_FIELDS) {
+                        if (entry.isFieldLocked(field)) {
+                                lockedFields |= 1 << field.ordinal();
+                        }
+                }
+                out.writeShort(lockedFields);
+                for (EntryField field : ENTRY_FIELDS) {
+                        if (entry.isFieldLocked(field)) {
+                                writeNullableString(entry.getLockingReason(field), out);
+                        }
+                }
+        }
+
+        private static LogEntry readEntry(DataInput in, DataAttributePool pool) throws IOException {
+                byte type = in.readByte();
+                LogEntry entry;
+                switch (type) {
+                        case TYPE_LOG_ENTRY:
+                                entry = new LogEntry();
+                                break;
+                        case TYPE_DU_LOG_ENTRY:
+                                entry = new DULogEntry();
+                                break;
+                        default:
+                                throw new IOException("Unknown log entry type: " + type);
+                }
+                try {
+                        int fields = in.readByte();
+                        if ((fields & FIELD_ACTIVITY) != 0) {
+                                entry.setActivity(readString(in));
+                        }
+                        if ((fields & FIELD_ORIGINATOR) != 0) {
+                                entry.setOriginator(readString(in));
+                        }
+                        if ((fields & FIELD_ROLE) != 0) {
+                                entry.setRole(readString(in));
+                        }
+                        if ((fields & FIELD_GROUP) != 0) {
+                                entry.setGroup(readString(in));
+                        }
+                        if ((fields & FIELD_EVENTTYPE) != 0) {
+                                entry.setEventType(EVENT_TYPES[in.readByte()]);
+                        }
+                        if ((fields & FIELD_TIMESTAMP) != 0) {
+                                entry.setTimestampMillis(in.readLong());
+                        }
+
+                        int numMetaAttributes = in.readInt();
+                        for (int i = 0; i < numMetaAttributes; i++) {
+                                entry.addMetaAttribute(readAttribute(in, pool));
+                        }
+
+                        if (entry instanceof DULogEntry) {
+                                int numDataAttributes = in.readInt();
+                                for (int i = 0; i < numDataAttributes; i++) {
+                                        DataAttribute attribute = readAttribute(in, pool);
+                                        int usages = in.readByte();
+                                        Set<DataUsage> dataUsage = EnumSet.noneOf(DataUsage.class);
+                                        for (DataUsage dataUsageMode : DATA_USAGES) {
+                                                if ((usages & (1 << dataUsageMode.ordinal())) != 0) {
+                                                        dataUsage.add(dataUsageMode);
+                                                }
+                                        }
+                                        if (dataUsage.isEmpty()) {
+                                                ((DULogEntry) entry).addDataUsage(attribute, null);
+                                        } else {
+                                                ((DULogEntry) entry).setDataUsageFor(attribute, dataUsage);
+                                        }
+                                }
+                        }
+
+                        int lockedFields = in.readShort();
+                        for (EntryField field : ENTRY_FIELDS) {
+                                if ((lockedFields & (1 << field.ordinal())) != 0) {
+                                        entry.lockField(field, readNullableString(in));
+                                }
+                        }
+                } catch (LockingException | ParameterException | ArrayIndexOutOfBoundsException e) {
+                        throw new IOException("Corrupt log entry: " + e.getMessage(), e);
+                }
+                return entry;
+        }
+
+        private static void writeAttribute(DataAttribute attribute, DataOutput out) throws IOException {
+                writeNullableString(attribute.name, out);
+                Object value = attribute.value;
+                if (value == null) {
+                        out.writeByte(VALUE_NULL);
+                } else if (value instanceof String) {
+                        out.writeByte(VALUE_STRING);
+                        writeString((String) value, out);
+                } else if (value instanceof Long) {
+                        out.writeByte(VALUE_LONG);
+                        out.writeLong((Long) value);
+                } else if (value instanceof Integer) {
+                        out.writeByte(VALUE_INTEGER);
+                        out.writeInt((Integer) value);
+                } else if (value instanceof Double) {
+                        out.writeByte(VALUE_DOUBLE);
+                        out.writeDouble((Double) value);
+                } else if (value instanceof Float) {
+                        out.writeByte(VALUE_FLOAT);
+                        out.writeFloat((Float) value);
+                } else if (value instanceof Boolean) {
+                        out.writeByte(VALUE_BOOLEAN);
+                        out.writeBoolean((Boolean) value);
+                } else if (value instanceof Date) {
+                        out.writeByte(VALUE_DATE);
+                        out.writeLong(((Date) value).getTime());
+                } else if (value instanceof Serializable) {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                                objectOut.writeObject(value);
+                        }
+                        out.writeByte(VALUE_SERIALIZED);
+                        out.writeInt(bytes.size());
+                        out.write(bytes.toByteArray());
+                } else {
+                        validateValueType(value);
+                }
+        }
+
+        private static DataAttribute readAttribute(DataInput in, DataAttributePool pool) throws IOException {
+                String name = readNullableString(in);
+                byte type = in.readByte();
+                Object value;
+                switch (type) {
+                        case VALUE_NULL:
+                                value = null;
+                                break;
+                        case VALUE_STRING:
+                                value = readString(in);
+                                break;
+                        case VALUE_LONG:
+                                value = in.readLong();
+                                break;
+                        case VALUE_INTEGER:
+                                value = in.readInt();
+                                break;
+                        case VALUE_DOUBLE:
+                                value = in.readDouble();
+                                break;
+                        case VALUE_FLOAT:
+                                value = in.readFloat();
+                                break;
+                        case VALUE_BOOLEAN:
+                                value = in.readBoolean();
+                                break;
+                        case VALUE_DATE:
+                                value = new Date(in.readLong());
+                                break;
+                        case VALUE_SERIALIZED:
+                                value = readSerialized(in);
+                                break;
+                        default:
+                                throw new IOException("Unknown attribute value type: " + type);
+                }
+                return pool == null ? new DataAttribute(name, value) : pool.get(name, value);
+        }
+
+        private static Object readSerialized(DataInput in) throws IOException {
+                int length = in.readInt();
+                if (length < 0) {
+                        throw new IOException("Invalid attribute value length: " + length);
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                        return objectIn.readObject();
+                } catch (ClassNotFoundException e) {
+                        throw new IOException("Unknown attribute value class: " + e.getMessage(), e);
+                }
+        }
+
+        private static void writeString(String string, DataOutput out) throws IOException {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+        }
+
+        private static String readString(DataInput in) throws IOException {
+                int length = in.readInt();
+                if (length < 0) {
+                        throw new IOException("Invalid string length: " + length);
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static void writeNullableString(String string, DataOutput out) throws IOException {
+                out.writeBoolean(string != null);
+                if (string != null) {
+                        writeString(string, out);
+                }
+        }
+
+        private static String readNullableString(DataInput in) throws IOException {
+                return in.readBoolean() ? readString(in) : null;
+        }
+}
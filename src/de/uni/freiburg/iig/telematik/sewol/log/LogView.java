@@ -35,30 +35,91 @@ import de.invation.code.toval.misc.NamedComponent;
 import de.invation.code.toval.validate.ParameterException;
 import de.invation.code.toval.validate.Validate;
 import de.uni.freiburg.iig.telematik.sewol.log.filter.AbstractLogFilter;
+import de.uni.freiburg.iig.telematik.sewol.log.filter.CompiledLogFilter;
+import de.uni.freiburg.iig.telematik.sewol.log.filter.FilterPlanner;
+import de.uni.freiburg.iig.telematik.sewol.util.CompressedBitmap;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
+ * <p>
  * Adapter class for {@link Log} with {@link Filterable} representing a filtered
  * log.
+ * </p>
+ * <p>
+ * The view keeps the result of every filter as bitmap over the positions of
+ * all added traces. When a filter changes, only this filter is evaluated
+ * again and the accepted traces are the intersection of all filter results.
+ * The summary and the variant index are updated by the traces which enter or
+ * leave the view instead of being rebuilt. Filters supporting a
+ * {@link LogIndex} are evaluated on an index over all traces of the view.
+ * </p>
+ * <p>
+ * Added traces are checked by a single {@link CompiledLogFilter}, which
+ * evaluates the filters ordered by cost and selectivity and stops at the
+ * first rejecting filter. The results of the remaining filters for rejected
+ * traces are determined on the next update.
+ * </p>
+ * <p>
+ * Views with at least {@link #PARALLEL_THRESHOLD} traces evaluate filters and
+ * summarize traces in parallel on a configurable {@link ForkJoinPool}.
+ * Filters therefore have to be safe for concurrent calls of
+ * {@link AbstractLogFilter#accept(Object)}. Partial summaries are merged in
+ * trace order, so the result equals the one of a sequential evaluation.
+ * </p>
  *
  * @author Adrian Lange <lange@iig.uni-freiburg.de>
  * @param <E> LogEntry type
  */
 public class LogView<E extends LogEntry> extends Log<E> implements Observer, NamedComponent, Comparator<LogView> {
 
+        /**
+         * Minimum number of traces for which filters are evaluated in
+         * parallel.
+         */
+        public static final int PARALLEL_THRESHOLD = 10000;
+
         private List<LogTrace<E>> allTraces = new ArrayList<>();
         final private Set<AbstractLogFilter<E>> filters = new HashSet<>();
 
         private boolean uptodate = true;
+        /**
+         * Results of the evaluated filters over <code>allTraces</code>. Filters
+         * without result have to be evaluated on the next update.
+         */
+        private Map<AbstractLogFilter<E>, CompressedBitmap> filterResults = new IdentityHashMap<>();
+        /**
+         * Positions of the traces in <code>allTraces</code> which are in
+         * <code>traces</code>, or <code>null</code> if the view has to be
+         * rebuilt completely.
+         */
+        private CompressedBitmap accepted = new CompressedBitmap();
+        private ForkJoinPool pool = null;
+        /**
+         * Positions of traces rejected by the compiled filter, for which the
+         * results of the single filters are not yet known.
+         */
+        private CompressedBitmap unresolved = new CompressedBitmap();
+        private FilterPlanner<E> planner = new FilterPlanner<>();
+        private CompiledLogFilter<E> compiledFilter = null;
+        /**
+         * Index over <code>allTraces</code>, built when a filter supporting
+         * it is evaluated.
+         */
+        private LogIndex<E> allIndex = null;
         private String name;
 
         private String parentLogName = null;
@@ -67,6 +128,7 @@ public class LogView<E extends LogEntry> extends Log<E> implements Observer, Nam
 
         public LogView(String name) {
                 setName(name);
+                summary = new LogSummary<>(true);
         }
 
         /**
@@ -77,6 +139,8 @@ public class LogView<E extends LogEntry> extends Log<E> implements Observer, Nam
         public void addFilter(AbstractLogFilter<E> filter) {
                 Validate.notNull(filter);
                 filters.add(filter);
+                getFilterResults().remove(filter);
+                compiledFilter = null;
                 uptodate = false;
                 filter.addObserver(this);
         }
@@ -89,6 +153,9 @@ public class LogView<E extends LogEntry> extends Log<E> implements Observer, Nam
         public void removeFilter(AbstractLogFilter<E> filter) {
                 Validate.notNull(filter);
                 filters.remove(filter);
+                getFilterResults().remove(filter);
+                getPlanner().invalidate(filter);
+                compiledFilter = null;
                 uptodate = false;
                 filter.deleteObserver(this);
         }
@@ -96,7 +163,106 @@ public class LogView<E extends LogEntry> extends Log<E> implements Observer, Nam
         @Override
         public void reinitialize() {
                 super.reinitialize();
+                summary = new LogSummary<>(true);
                 allTraces = new ArrayList<>();
+                filterResults = new IdentityHashMap<>();
+                accepted = null;
+                unresolved = new CompressedBitmap();
+                compiledFilter = null;
+                allIndex = null;
+                uptodate = false;
+        }
+
+        /**
+         * Returns all traces added to the view, including the ones not
+         * accepted by the filters.
+         *
+         * @return
+         */
+        List<LogTrace<E>> getAllTraces() {
+                return Collections.unmodifiableList(allTraces);
+        }
+
+        /**
+         * Returns the positions of the traces accepted by the filters within
+         * the list of all traces added to the view.
+         *
+         * @return
+         */
+        CompressedBitmap getMembership() {
+                update();
+                return accepted.clone();
+        }
+
+        /**
+         * Adds the given traces to the view without evaluating the filters,
+         * accepting the traces at the given positions. The results of the
+         * single filters are determined as soon as a filter is changed.
+         *
+         * @param traces Traces to add.
+         * @param membership Positions of the accepted traces.
+         * @throws ParameterException If the membership does not fit to the
+         * traces.
+         */
+        void restore(List<LogTrace<E>> traces, CompressedBitmap membership) throws ParameterException {
+                Validate.notNull(traces);
+                Validate.notNull(membership);
+                if (!membership.andNot(CompressedBitmap.range(traces.size())).isEmpty()) {
+                        throw new ParameterException(ParameterException.ErrorCode.RANGEVIOLATION, "Membership exceeds the number of traces.");
+                }
+                reinitialize();
+                allTraces.addAll(traces);
+                accepted = membership.clone();
+                summarize(accepted);
+                accepted.forEach(ordinal -> this.traces.add(allTraces.get(ordinal)));
+                uptodate = true;
+        }
+
+        private FilterPlanner<E> getPlanner() {
+                if (planner == null) {
+                        planner = new FilterPlanner<>();
+                }
+                return planner;
+        }
+
+        /**
+         * Returns the filters of the view compiled into a single filter.
+         *
+         * @return
+         * @see FilterPlanner
+         */
+        public CompiledLogFilter<E> getCompiledFilter() {
+                if (compiledFilter == null) {
+                        compiledFilter = getPlanner().compile(filters);
+                }
+                return compiledFilter;
+        }
+
+        /**
+         * Returns the pool used for parallel evaluation, by default the common
+         * pool.
+         *
+         * @return
+         */
+        public ForkJoinPool getPool() {
+                return pool == null ? ForkJoinPool.commonPool() : pool;
+        }
+
+        /**
+         * Sets the pool used for parallel evaluation. A pool with parallelism
+         * <code>1</code> results in a sequential evaluation.
+         *
+         * @param pool Pool to use or <code>null</code> for the common pool.
+         */
+        public void setPool(ForkJoinPool pool) {
+                this.pool = pool;
+        }
+
+        private Map<AbstractLogFilter<E>, CompressedBitmap> getFilterResults() {
+                if (filterResults == null) {
+                        filterResults = new IdentityHashMap<>();
+                }
+                return filterResults;
         }
 
         /**
@@ -114,74 +280,271 @@ public class LogView<E extends LogEntry> extends Log<E> implements Observer, Nam
                 return summary;
         }
 
+        @Override
+        public VariantIndex getVariantIndex() {
+                update();
+                return variants;
+        }
+
+        @Override
+        <I> I index(LogIndexes.Type type) {
+                update();
+                return super.index(type);
+        }
+
+        /**
+         * Adds a trace to the view. The trace is evaluated by the compiled
+         * filter of the view.
+         *
+         * @param trace Trace to add.
+         * @throws ParameterException If the trace is <code>null</code>.
+         */
         @Override
         public void addTrace(LogTrace<E> trace) throws ParameterException {
-                addTrace(trace, true);
+                offer(trace);
         }
 
-        private void addTrace(LogTrace<E> trace, boolean addToAllTraces) throws ParameterException {
+        /**
+         * Adds a trace to the view and reports if it is known to be accepted.
+         *
+         * @param trace Trace to add.
+         * @return <code>true</code> if the trace was accepted and the view is
+         * up to date, <code>false</code> if the trace was rejected or the view
+         * has to be updated because of changed filters.
+         * @throws ParameterException If the trace is <code>null</code>.
+         */
+        boolean offer(LogTrace<E> trace) throws ParameterException {
                 Validate.notNull(trace);
-                boolean accept = true;
-                for (AbstractLogFilter<E> filter : filters) {
-                        if (!filter.accept(trace)) {
-                                accept = false;
-                                break;
-                        }
+                int ordinal = allTraces.size();
+                allTraces.add(trace);
+                if (allIndex != null) {
+                        allIndex.add(trace);
                 }
+                boolean accept = getCompiledFilter().accept(trace);
                 if (accept) {
-                        traces.add(trace);
-                        summary.addTrace(trace);
-                        if (!distinctTraces.add(trace)) {
-                                for (LogTrace<E> storedTrace : traces) {
-                                        if (storedTrace.equals(trace)) {
-                                                storedTrace.addSimilarInstance(trace.getCaseNumber());
-                                                trace.addSimilarInstance(storedTrace.getCaseNumber());
-                                        }
-                                }
+                        for (CompressedBitmap result : getFilterResults().values()) {
+                                result.add(ordinal);
                         }
+                } else {
+                        unresolved.add(ordinal);
                 }
-                if (addToAllTraces) {
-                        allTraces.add(trace);
+                if (uptodate && accept) {
+                        accepted.add(ordinal);
+                        registerTrace(trace);
+                        return true;
                 }
+                return false;
         }
 
         @Override
         public void addTraces(List<LogTrace<E>> traces) throws ParameterException {
-                addTraces(traces, true);
-        }
-
-        private void addTraces(List<LogTrace<E>> traces, boolean addToAllTraces) throws ParameterException {
                 Validate.notNull(traces);
                 for (LogTrace<E> trace : traces) {
-                        addTrace(trace, addToAllTraces);
+                        addTrace(trace);
                 }
         }
 
+        /**
+         * Sorts the entries of all traces of the view, including the ones not
+         * accepted by the filters. Afterwards all filters are evaluated again.
+         *
+         * @param comparator Comparator for the entries.
+         */
+        @Override
+        public void sortEntries(Comparator<? super E> comparator) {
+                Validate.notNull(comparator);
+                allTraces.parallelStream().forEach(trace -> trace.sort(comparator));
+                getFilterResults().clear();
+                unresolved = new CompressedBitmap();
+                accepted = null;
+                uptodate = false;
+        }
+
         @Override
         public List<LogTrace<E>> getTraces() {
                 update();
                 return Collections.unmodifiableList(traces);
         }
 
+        /**
+         * Called by a filter of the view when it has been changed.
+         *
+         * @param observable The changed filter.
+         * @param object
+         */
         @Override
+        @SuppressWarnings("unchecked")
         public void update(Observable observable, Object object) {
+                getFilterResults().remove(observable);
+                getPlanner().invalidate((AbstractLogFilter<E>) observable);
+                compiledFilter = null;
                 uptodate = false;
         }
 
         /**
-         * Updates the summary, set of distinct traces and list of traces if the
-         * filter set has been changed.
+         * Updates the summary, variant index and list of traces if the
+         * filter set has been changed. Only filters without up-to-date result
+         * are evaluated.
          */
         private void update() {
-                if (!uptodate) {
+                if (uptodate) {
+                        return;
+                }
+                Map<AbstractLogFilter<E>, CompressedBitmap> results = getFilterResults();
+                List<AbstractLogFilter<E>> pending = new ArrayList<>();
+                for (AbstractLogFilter<E> filter : filters) {
+                        if (!results.containsKey(filter)) {
+                                pending.add(filter);
+                        }
+                }
+                resolve();
+                if (!pending.isEmpty()) {
+                        evaluate(pending);
+                }
+                CompressedBitmap updated = CompressedBitmap.range(allTraces.size());
+                for (AbstractLogFilter<E> filter : filters) {
+                        updated = updated.and(results.get(filter));
+                }
+                if (accepted == null) {
                         summary.clear();
-                        distinctTraces.clear();
-                        traces.clear();
-                        addTraces(allTraces, false);
-                        uptodate = true;
+                        variants.clear();
+                        summarize(updated);
+                } else {
+                        CompressedBitmap removed = accepted.andNot(updated);
+                        CompressedBitmap added = updated.andNot(accepted);
+                        if (removed.isEmpty() && added.isEmpty()) {
+                                accepted = updated;
+                                uptodate = true;
+                                return;
+                        }
+                        removed.forEach(ordinal -> {
+                                summary.removeTrace(allTraces.get(ordinal));
+                                variants.remove(allTraces.get(ordinal));
+                        });
+                        summarize(added);
+                }
+                traces.clear();
+                updated.forEach(ordinal -> traces.add(allTraces.get(ordinal)));
+                indexes.clear();
+                accepted = updated;
+                uptodate = true;
+        }
+
+        /**
+         * Evaluates the filters with known results for all unresolved traces.
+         */
+        private void resolve() {
+                if (unresolved == null || unresolved.isEmpty()) {
+                        unresolved = new CompressedBitmap();
+                        return;
+                }
+                List<AbstractLogFilter<E>> resolvable = new ArrayList<>(getFilterResults().keySet());
+                int[] ordinals = unresolved.toArray();
+                boolean[][] accepts = evaluate(resolvable, ordinals);
+                for (int i = 0; i < accepts.length; i++) {
+                        CompressedBitmap result = getFilterResults().get(resolvable.get(i));
+                        for (int j = 0; j < ordinals.length; j++) {
+                                if (accepts[i][j]) {
+                                        result.add(ordinals[j]);
+                                }
+                        }
+                }
+                unresolved = new CompressedBitmap();
+        }
+
+        /**
+         * Evaluates the given filters over all traces of the view and stores
+         * their results. Filters supporting the index are evaluated on the
+         * index over all traces, the others in a single pass over the traces.
+         *
+         * @param pending Filters to evaluate.
+         */
+        private void evaluate(List<AbstractLogFilter<E>> pending) {
+                List<AbstractLogFilter<E>> scanned = new ArrayList<>();
+                for (AbstractLogFilter<E> filter : pending) {
+                        if (filter.supportsIndex()) {
+                                if (allIndex == null) {
+                                        allIndex = new LogIndex<>(allTraces);
+                                }
+                                CompressedBitmap result = filter.getAcceptedTraces(allIndex);
+                                if (result != null) {
+                                        getFilterResults().put(filter, result.clone());
+                                        continue;
+                                }
+                        }
+                        scanned.add(filter);
+                }
+                if (scanned.isEmpty()) {
+                        return;
+                }
+                boolean[][] accepts = evaluate(scanned, null);
+                for (int i = 0; i < accepts.length; i++) {
+                        CompressedBitmap result = new CompressedBitmap();
+                        for (int ordinal = 0; ordinal < accepts[i].length; ordinal++) {
+                                if (accepts[i][ordinal]) {
+                                        result.add(ordinal);
+                                }
+                        }
+                        getFilterResults().put(scanned.get(i), result);
+                }
+        }
+
+        /**
+         * Evaluates the given filters for the traces with the given ordinals
+         * in a single pass.
+         *
+         * @param evaluated Filters to evaluate.
+         * @param ordinals Ordinals of the traces or <code>null</code> for all
+         * traces.
+         * @return The result of every filter for every trace.
+         */
+        private boolean[][] evaluate(List<AbstractLogFilter<E>> evaluated, int[] ordinals) {
+                int size = ordinals == null ? allTraces.size() : ordinals.length;
+                boolean[][] accepts = new boolean[evaluated.size()][size];
+                forEachTrace(size, position -> {
+                        LogTrace<E> trace = allTraces.get(ordinals == null ? position : ordinals[position]);
+                        for (int i = 0; i < accepts.length; i++) {
+                                accepts[i][position] = evaluated.get(i).accept(trace);
+                        }
+                });
+                return accepts;
+        }
+
+        /**
+         * Calls the consumer for all ordinals from <code>0</code> to
+         * <code>size</code>, in parallel if there are enough of them.
+         */
+        private void forEachTrace(int size, IntConsumer consumer) {
+                if (size < PARALLEL_THRESHOLD) {
+                        for (int ordinal = 0; ordinal < size; ordinal++) {
+                                consumer.accept(ordinal);
+                        }
+                } else {
+                        getPool().submit(() -> IntStream.range(0, size).parallel().forEach(consumer)).join();
                 }
         }
 
+        /**
+         * Adds the traces with the given ordinals to the summary and the
+         * variant index. Large sets of traces are summarized in parallel by
+         * partial summaries, which are merged in trace order.
+         *
+         * @param ordinals Ordinals of the traces to add.
+         */
+        private void summarize(CompressedBitmap ordinals) {
+                int[] values = ordinals.toArray();
+                if (values.length < PARALLEL_THRESHOLD) {
+                        for (int ordinal : values) {
+                                summary.addTrace(allTraces.get(ordinal));
+                                variants.add(allTraces.get(ordinal));
+                        }
+                        return;
+                }
+                PartialSummary<E> partial = getPool().submit(() -> IntStream.of(values).parallel().collect(PartialSummary<E>::new, (result, ordinal) -> result.add(allTraces.get(ordinal)), PartialSummary<E>::merge)).join();
+                summary.merge(partial.summary);
+                variants.merge(partial.variants);
+        }
+
         @Override
         public final String getName() {
                 return name;
@@ -260,4 +623,23 @@ public class LogView<E extends LogEntry> extends Log<E> implements Observer, Nam
                 sb.append("}");
                 return sb.toString();
         }
+
+        /**
+         * Summary and variant index of a part of the traces of the view.
+         */
+        private static final class PartialSummary<E extends LogEntry> {
+
+                private final LogSummary<E> summary = new LogSummary<>(true);
+                private final VariantIndex variants = new VariantIndex();
+
+                void add(LogTrace<E> trace) {
+                        summary.addTrace(trace);
+                        variants.add(trace);
+                }
+
+                void merge(PartialSummary<E> other) {
+                        summary.merge(other.summary);
+                        variants.merge(other.variants);
+                }
+        }
 }
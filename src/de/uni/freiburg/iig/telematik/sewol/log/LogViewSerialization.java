@@ -31,7 +31,10 @@
 package de.uni.freiburg.iig.telematik.sewol.log;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 import com.thoughtworks.xstream.io.xml.DomDriver;
+import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
+import com.thoughtworks.xstream.io.xml.StaxDriver;
 import de.invation.code.toval.parser.ParserException;
 import de.uni.freiburg.iig.telematik.sewol.log.filter.AbstractLogFilter;
 import de.uni.freiburg.iig.telematik.sewol.log.filter.ContainsFilter;
@@ -39,13 +42,29 @@ import de.uni.freiburg.iig.telematik.sewol.log.filter.MaxEventsFilter;
 import de.uni.freiburg.iig.telematik.sewol.log.filter.MinEventsFilter;
 import de.uni.freiburg.iig.telematik.sewol.log.filter.TimeFilter;
 import de.uni.freiburg.iig.telematik.sewol.parser.LogParser;
+import de.uni.freiburg.iig.telematik.sewol.util.CompressedBitmap;
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Utility class to serialize and parse {@link LogView}s.
@@ -54,6 +73,13 @@ import java.util.List;
  */
 public class LogViewSerialization {
 
+        /**
+         * Name of the root element of view files containing the membership of
+         * the view. Files only containing the view definition have the root
+         * element <code>view</code>.
+         */
+        private static final String ROOT_ELEMENT = "logview";
+
         private static final XStream xstream;
 
         static {
@@ -86,10 +112,18 @@ public class LogViewSerialization {
                 // omit fields
                 xstream.omitField(LogView.class, "allTraces");
                 xstream.omitField(LogView.class, "uptodate");
+                xstream.omitField(LogView.class, "filterResults");
+                xstream.omitField(LogView.class, "accepted");
+                xstream.omitField(LogView.class, "pool");
+                xstream.omitField(LogView.class, "unresolved");
+                xstream.omitField(LogView.class, "planner");
+                xstream.omitField(LogView.class, "compiledFilter");
+                xstream.omitField(LogView.class, "allIndex");
                 xstream.omitField(LogView.class, "fileReference");
                 xstream.omitField(Log.class, "summary");
                 xstream.omitField(Log.class, "traces");
-                xstream.omitField(Log.class, "distinctTraces");
+                xstream.omitField(Log.class, "variants");
+                xstream.omitField(Log.class, "indexes");
         }
 
         /**
@@ -128,13 +162,17 @@ public class LogViewSerialization {
          * path.
          */
         public static LogView parse(File file) throws IOException {
-                LogView view = (LogView) xstream.fromXML(file);
+                LogView view = read(file).view;
                 view.reinitialize();
                 return view;
         }
 
         /**
-         * Parses a {@link LogView} file and using the given {@link Log}.
+         * Parses a {@link LogView} file and using the given {@link Log}. If the
+         * file contains the membership of the view and the traces of the log
+         * have not changed since the view was written, the membership is
+         * restored without evaluating the filters. Otherwise the filters are
+         * applied to all traces of the log.
          *
          * @param file Log view file.
          * @param log Log for the view.
@@ -142,26 +180,129 @@ public class LogViewSerialization {
          * @throws IOException If the log view can't be read under the given
          * path.
          */
+        @SuppressWarnings("unchecked")
         public static LogView parse(File file, Log log) throws IOException {
-                LogView view = (LogView) xstream.fromXML(file);
+                StoredView stored = read(file);
+                LogView view = stored.view;
                 view.reinitialize();
-                view.addTraces(log.getTraces());
+                List<LogTrace> traces = log.getTraces();
+                if (stored.membership != null && stored.fingerprint == fingerprint(traces)) {
+                        view.restore(traces, stored.membership);
+                } else {
+                        view.addTraces(traces);
+                }
                 return view;
         }
 
+        private static StoredView read(File file) throws IOException {
+                try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                        HierarchicalStreamReader reader = new StaxDriver().createReader(in);
+                        StoredView stored = new StoredView();
+                        if (!ROOT_ELEMENT.equals(reader.getNodeName())) {
+                                stored.view = (LogView) xstream.unmarshal(reader);
+                                return stored;
+                        }
+                        try (ObjectInputStream objects = xstream.createObjectInputStream(reader)) {
+                                stored.view = (LogView) objects.readObject();
+                                try {
+                                        stored.fingerprint = objects.readLong();
+                                        byte[] bytes = Base64.getDecoder().decode((String) objects.readObject());
+                                        stored.membership = CompressedBitmap.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+                                } catch (EOFException e) {
+                                        stored.membership = null;
+                                }
+                        } catch (ClassNotFoundException | ClassCastException | IllegalArgumentException e) {
+                                throw new IOException("Invalid log view file: " + file, e);
+                        }
+                        return stored;
+                }
+        }
+
         /**
-         * Serializes the log view under the given path.
+         * Serializes the log view under the given path together with its
+         * membership.
          *
          * @param logView Log view to serialize.
          * @param path Target path of the serialized log view.
          * @throws IOException If the log view can't be written under the given
          * path.
+         * @see #write(LogView, String, boolean)
          */
         public static void write(LogView logView, String path) throws IOException {
-                String xml = xstream.toXML(logView);
-                try (BufferedWriter out = new BufferedWriter(new FileWriter(path))) {
-                        out.write(xml);
+                write(logView, path, true);
+        }
+
+        /**
+         * Serializes the log view under the given path. The file is written as
+         * a stream without building the whole document in memory.<br>
+         * Optionally, the positions of the traces accepted by the view and a
+         * fingerprint of all its traces are stored, so that the view can be
+         * restored without evaluating the filters.
+         *
+         * @param logView Log view to serialize.
+         * @param path Target path of the serialized log view.
+         * @param includeMembership Specifies if the membership of the view is
+         * stored.
+         * @throws IOException If the log view can't be written under the given
+         * path.
+         * @see #parse(File, Log)
+         */
+        @SuppressWarnings("unchecked")
+        public static void write(LogView logView, String path, boolean includeMembership) throws IOException {
+                Objects.requireNonNull(logView);
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8))) {
+                        if (!includeMembership) {
+                                xstream.marshal(logView, new PrettyPrintWriter(out));
+                                return;
+                        }
+                        CompressedBitmap membership = logView.getMembership();
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        membership.write(new DataOutputStream(bytes));
+                        try (ObjectOutputStream objects = xstream.createObjectOutputStream(new PrettyPrintWriter(out), ROOT_ELEMENT)) {
+                                objects.writeObject(logView);
+                                objects.writeLong(fingerprint(logView.getAllTraces()));
+                                objects.writeObject(Base64.getEncoder().encodeToString(bytes.toByteArray()));
+                        }
+                }
+        }
+
+        /**
+         * Computes a fingerprint of the given traces over all fields which are
+         * evaluated by log filters, i.e. the number and order of the traces
+         * and the activity, originator, role, event type and timestamp of all
+         * entries.
+         *
+         * @param traces
+         * @return
+         */
+        static long fingerprint(List<? extends LogTrace> traces) {
+                long hash = 0xcbf29ce484222325L ^ traces.size();
+                for (LogTrace<?> trace : traces) {
+                        hash = mix(hash, trace.size());
+                        for (LogEntry entry : trace.getEntries()) {
+                                hash = mix(hash, Objects.hashCode(entry.getActivity()));
+                                hash = mix(hash, Objects.hashCode(entry.getOriginator()));
+                                hash = mix(hash, Objects.hashCode(entry.getRole()));
+                                hash = mix(hash, entry.getEventType() == null ? -1 : entry.getEventType().ordinal());
+                                hash = mix(hash, entry.getTimestampMillis());
+                        }
                 }
+                return hash;
+        }
+
+        private static long mix(long hash, long value) {
+                hash = (hash ^ value) * 0x100000001b3L;
+                return hash ^ (hash >>> 29);
+        }
+
+        /**
+         * Contents of a view file.
+         */
+        private static final class StoredView {
+
+                private LogView view;
+                private long fingerprint;
+                private CompressedBitmap membership;
         }
 
         public static void main(String[] args) throws IOException, ParserException {
@@ -0,0 +1,522 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.ParameterException.ErrorCode;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.util.StringDictionary;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Index for searching traces with similar activity sequences, i.e. sequences
+ * within a maximum edit distance or above a minimum Jaccard similarity.
+ * </p>
+ * <p>
+ * Traces are grouped by their {@link TraceVariant}, so only distinct activity
+ * sequences are indexed. Activities are encoded by a {@link StringDictionary}
+ * and every sequence is split into overlapping q-grams of <code>q</code>
+ * consecutive activities, padded with <code>q - 1</code> boundary symbols on
+ * both sides. An inverted index maps every q-gram to the variants containing
+ * it together with the number of occurrences.
+ * </p>
+ * <p>
+ * A query counts the shared q-grams of all variants in a single pass over
+ * the postings of its own q-grams. Two sequences within edit distance
+ * <code>k</code> share at least <code>max(n, m) + q - 1 - k * q</code>
+ * q-grams, so only variants with a sufficient count and a length differing by
+ * at most <code>k</code> are verified by a banded edit distance computation,
+ * which stops as soon as the distance exceeds <code>k</code>. If the count
+ * bound is not positive, all variants of fitting length are verified. The
+ * Jaccard similarity of the q-gram multisets follows directly from the
+ * counts and needs no verification.
+ * </p>
+ * <p>
+ * The index is not thread-safe for modifications. Queries do not modify the
+ * index and can run concurrently.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class SimilarityIndex {
+
+        /**
+         * Default length of q-grams.
+         */
+        public static final int DEFAULT_Q = 2;
+        /**
+         * Maximum length of q-grams.
+         */
+        public static final int MAX_Q = 3;
+
+        private static final int BITS = 21;
+        /**
+         * Code of activities not contained in the dictionary within queries.
+         * Codes of indexed activities are smaller.
+         */
+        private static final int UNKNOWN = (1 << BITS) - 2;
+        /**
+         * Code of <code>null</code> activities.
+         */
+        private static final int NULL_ACTIVITY = UNKNOWN - 1;
+        private static final Comparator<Match> BY_SCORE = new Comparator<Match>() {
+                @Override
+                public int compare(Match o1, Match o2) {
+                        int result = Integer.compare(o1.distance, o2.distance);
+                        return result != 0 ? result : Double.compare(o2.similarity, o1.similarity);
+                }
+        };
+
+        private final int q;
+        private final StringDictionary dictionary = new StringDictionary();
+        private final Map<TraceVariant, Integer> variantIds = new HashMap<>();
+        private final List<TraceVariant> variants = new ArrayList<>();
+        private final List<int[]> sequences = new ArrayList<>();
+        private final List<List<Long>> caseNumbers = new ArrayList<>();
+        private final Map<Long, Posting> postings = new HashMap<>();
+        private long numTraces = 0;
+
+        /**
+         * Creates an empty index with q-grams of length {@link #DEFAULT_Q}.
+         */
+        public SimilarityIndex() {
+                this(DEFAULT_Q);
+        }
+
+        /**
+         * Creates an empty index.
+         *
+         * @param q Length of q-grams. Longer q-grams result in shorter postings
+         * but weaker bounds for edit distance queries.
+         * @throws ParameterException If q is not within <code>1</code> and
+         * {@link #MAX_Q}.
+         */
+        public SimilarityIndex(int q) throws ParameterException {
+                Validate.positive(q);
+                if (q > MAX_Q) {
+                        throw new ParameterException(ErrorCode.RANGEVIOLATION, "Q-grams must not be longer than " + MAX_Q);
+                }
+                this.q = q;
+        }
+
+        /**
+         * Creates an index with q-grams of length {@link #DEFAULT_Q} over the
+         * given traces.
+         *
+         * @param traces Traces to index.
+         */
+        public SimilarityIndex(Collection<? extends LogTrace<?>> traces) {
+                this(DEFAULT_Q);
+                Validate.notNull(traces);
+                for (LogTrace<?> trace : traces) {
+                        add(trace);
+                }
+        }
+
+        public int getQ() {
+                return q;
+        }
+
+        /**
+         * Adds the given trace to the index.
+         *
+         * @param trace Trace to add.
+         * @return The variant of the trace.
+         * @throws ParameterException If the trace is <code>null</code>.
+         */
+        public TraceVariant add(LogTrace<?> trace) throws ParameterException {
+                Validate.notNull(trace);
+                TraceVariant variant = new TraceVariant(trace);
+                Integer id = variantIds.get(variant);
+                if (id == null) {
+                        id = variants.size();
+                        int[] sequence = new int[trace.size()];
+                        int i = 0;
+                        for (LogEntry entry : trace.getEntries()) {
+                                sequence[i++] = encode(entry.getActivity());
+                        }
+                        variantIds.put(variant, id);
+                        variants.add(variant);
+                        sequences.add(sequence);
+                        caseNumbers.add(new ArrayList<Long>(1));
+                        long[] grams = getGrams(sequence);
+                        for (int start = 0; start < grams.length;) {
+                                int end = start + 1;
+                                while (end < grams.length && grams[end] == grams[start]) {
+                                        end++;
+                                }
+                                Posting posting = postings.get(grams[start]);
+                                if (posting == null) {
+                                        posting = new Posting();
+                                        postings.put(grams[start], posting);
+                                }
+                                posting.add(id, end - start);
+                                start = end;
+                        }
+                }
+                caseNumbers.get(id).add(trace.getCaseNumber());
+                numTraces++;
+                return variant;
+        }
+
+        private int encode(String activity) {
+                if (activity == null) {
+                        return NULL_ACTIVITY;
+                }
+                int code = dictionary.getId(activity);
+                if (code >= NULL_ACTIVITY) {
+                        throw new ParameterException(ErrorCode.RANGEVIOLATION, "Too many distinct activities.");
+                }
+                return code;
+        }
+
+        /**
+         * Encodes the given activity sequence for a query without extending
+         * the dictionary.
+         */
+        private int[] encodeQuery(List<String> activities) {
+                int[] sequence = new int[activities.size()];
+                int i = 0;
+                for (String activity : activities) {
+                        int code = activity == null ? NULL_ACTIVITY : dictionary.lookup(activity);
+                        sequence[i++] = code < 0 ? UNKNOWN : code;
+                }
+                return sequence;
+        }
+
+        /**
+         * Returns the sorted q-grams of the given sequence. Every q-gram is
+         * packed into a long of <code>q</code> codes, code <code>0</code>
+         * being the boundary symbol.
+         */
+        private long[] getGrams(int[] sequence) {
+                long[] grams = new long[sequence.length + q - 1];
+                for (int i = 0; i < grams.length; i++) {
+                        long gram = 0;
+                        for (int j = i - q + 1; j <= i; j++) {
+                                gram = (gram << BITS) | (j < 0 || j >= sequence.length ? 0 : sequence[j] + 1);
+                        }
+                        grams[i] = gram;
+                }
+                Arrays.sort(grams);
+                return grams;
+        }
+
+        /**
+         * Returns the number of distinct activity sequences in the index.
+         *
+         * @return
+         */
+        public int getVariantCount() {
+                return variants.size();
+        }
+
+        /**
+         * Returns the number of traces in the index.
+         *
+         * @return
+         */
+        public long getTraceCount() {
+                return numTraces;
+        }
+
+        /**
+         * Returns all indexed variants whose activity sequence is within the
+         * given edit distance of the activity sequence of the given trace.
+         *
+         * @param trace Trace to search similar traces for.
+         * @param maxDistance Maximum number of inserted, deleted or substituted
+         * activities.
+         * @return Matches sorted by distance.
+         * @see #findWithinDistance(List, int)
+         */
+        public List<Match> findWithinDistance(LogTrace<?> trace, int maxDistance) {
+                Validate.notNull(trace);
+                return findWithinDistance(trace.getActivities(), maxDistance);
+        }
+
+        /**
+         * Returns all indexed variants whose activity sequence is within the
+         * given edit distance of the given activity sequence.
+         *
+         * @param activities Activity sequence to search similar traces for.
+         * @param maxDistance Maximum number of inserted, deleted or substituted
+         * activities.
+         * @return Matches sorted by distance.
+         * @throws ParameterException If the activities are <code>null</code> or
+         * the distance is negative.
+         */
+        public List<Match> findWithinDistance(List<String> activities, int maxDistance) throws ParameterException {
+                Validate.notNull(activities);
+                Validate.notNegative(maxDistance);
+                int[] query = encodeQuery(activities);
+                int minLength = query.length - maxDistance;
+                int maxLength = query.length + maxDistance;
+                List<Match> result = new ArrayList<>();
+                int minOverlap = query.length + q - 1 - maxDistance * q;
+                if (minOverlap > 0) {
+                        int[] overlaps = countOverlaps(query);
+                        for (int id = 0; id < overlaps.length; id++) {
+                                int length = sequences.get(id).length;
+                                if (length >= minLength && length <= maxLength && overlaps[id] >= Math.max(length, query.length) + q - 1 - maxDistance * q) {
+                                        verify(query, id, maxDistance, overlaps[id], result);
+                                }
+                        }
+                } else {
+                        int[] overlaps = null;
+                        for (int id = 0; id < sequences.size(); id++) {
+                                int length = sequences.get(id).length;
+                                if (length >= minLength && length <= maxLength) {
+                                        if (overlaps == null) {
+                                                overlaps = countOverlaps(query);
+                                        }
+                                        verify(query, id, maxDistance, overlaps[id], result);
+                                }
+                        }
+                }
+                Collections.sort(result, BY_SCORE);
+                return result;
+        }
+
+        private void verify(int[] query, int id, int maxDistance, int overlap, List<Match> result) {
+                int distance = distance(query, sequences.get(id), maxDistance);
+                if (distance <= maxDistance) {
+                        result.add(new Match(id, distance, similarity(query.length, sequences.get(id).length, overlap)));
+                }
+        }
+
+        /**
+         * Returns all indexed variants whose q-gram multiset has at least the
+         * given Jaccard similarity to the one of the activity sequence of the
+         * given trace.
+         *
+         * @param trace Trace to search similar traces for.
+         * @param minSimilarity Minimum similarity within <code>0</code>
+         * (exclusive) and <code>1</code>.
+         * @return Matches sorted by descending similarity.
+         * @see #findSimilar(List, double)
+         */
+        public List<Match> findSimilar(LogTrace<?> trace, double minSimilarity) {
+                Validate.notNull(trace);
+                return findSimilar(trace.getActivities(), minSimilarity);
+        }
+
+        /**
+         * Returns all indexed variants whose q-gram multiset has at least the
+         * given Jaccard similarity to the one of the given activity sequence.
+         * For <code>q = 1</code> this is the Jaccard similarity of the
+         * activity multisets.
+         *
+         * @param activities Activity sequence to search similar traces for.
+         * @param minSimilarity Minimum similarity within <code>0</code>
+         * (exclusive) and <code>1</code>.
+         * @return Matches sorted by descending similarity. The distance of the
+         * matches is not computed.
+         * @throws ParameterException If the activities are <code>null</code> or
+         * the similarity is out of range.
+         */
+        public List<Match> findSimilar(List<String> activities, double minSimilarity) throws ParameterException {
+                Validate.notNull(activities);
+                if (!(minSimilarity > 0.0 && minSimilarity <= 1.0)) {
+                        throw new ParameterException(ErrorCode.RANGEVIOLATION, "Similarity must be within (0, 1].");
+                }
+                int[] query = encodeQuery(activities);
+                int[] overlaps = countOverlaps(query);
+                List<Match> result = new ArrayList<>();
+                for (int id = 0; id < overlaps.length; id++) {
+                        double similarity = similarity(query.length, sequences.get(id).length, overlaps[id]);
+                        if (similarity >= minSimilarity) {
+                                result.add(new Match(id, -1, similarity));
+                        }
+                }
+                Collections.sort(result, BY_SCORE);
+                return result;
+        }
+
+        /**
+         * Counts the shared q-grams of the given sequence and all variants.
+         */
+        private int[] countOverlaps(int[] query) {
+                int[] overlaps = new int[variants.size()];
+                long[] grams = getGrams(query);
+                for (int start = 0; start < grams.length;) {
+                        int end = start + 1;
+                        while (end < grams.length && grams[end] == grams[start]) {
+                                end++;
+                        }
+                        Posting posting = postings.get(grams[start]);
+                        if (posting != null) {
+                                int count = end - start;
+                                for (int i = 0; i < posting.size; i++) {
+                                        overlaps[posting.ids[i]] += Math.min(count, posting.counts[i]);
+                                }
+                        }
+                        start = end;
+                }
+                return overlaps;
+        }
+
+        private double similarity(int length1, int length2, int overlap) {
+                int union = length1 + length2 + 2 * (q - 1) - overlap;
+                return union == 0 ? 1.0 : (double) overlap / union;
+        }
+
+        /**
+         * Computes the edit distance of the given sequences within a band of
+         * width <code>2 * maxDistance + 1</code>.
+         *
+         * @return The distance or <code>maxDistance + 1</code> if it exceeds
+         * the maximum distance.
+         */
+        static int distance(int[] a, int[] b, int maxDistance) {
+                int n = a.length;
+                int m = b.length;
+                if (Math.abs(n - m) > maxDistance) {
+                        return maxDistance + 1;
+                }
+                int exceeded = maxDistance + 1;
+                int[] previous = new int[m + 1];
+                int[] current = new int[m + 1];
+                for (int j = 0; j <= m; j++) {
+                        previous[j] = j <= maxDistance ? j : exceeded;
+                }
+                for (int i = 1; i <= n; i++) {
+                        int from = Math.max(1, i - maxDistance);
+                        int to = Math.min(m, i + maxDistance);
+                        current[0] = i <= maxDistance ? i : exceeded;
+                        if (from > 1) {
+                                current[from - 1] = exceeded;
+                        }
+                        int rowMin = current[0];
+                        for (int j = from; j <= to; j++) {
+                                int value = previous[j - 1] + (a[i - 1] == b[j - 1] ? 0 : 1);
+                                value = Math.min(value, previous[j] + 1);
+                                value = Math.min(value, current[j - 1] + 1);
+                                current[j] = Math.min(value, exceeded);
+                                rowMin = Math.min(rowMin, current[j]);
+                        }
+                        if (to < m) {
+                                current[to + 1] = exceeded;
+                        }
+                        if (rowMin > maxDistance) {
+                                return exceeded;
+                        }
+                        int[] swap = previous;
+                        previous = current;
+                        current = swap;
+                }
+                return previous[m];
+        }
+
+        /**
+         * Variants containing a q-gram in ascending order with the number of
+         * occurrences.
+         */
+        private static final class Posting {
+
+                private int[] ids = new int[2];
+                private int[] counts = new int[2];
+                private int size = 0;
+
+                private void add(int id, int count) {
+                        if (size == ids.length) {
+                                ids = Arrays.copyOf(ids, size * 2);
+                                counts = Arrays.copyOf(counts, size * 2);
+                        }
+                        ids[size] = id;
+                        counts[size] = count;
+                        size++;
+                }
+        }
+
+        /**
+         * Indexed variant similar to a query.
+         */
+        public final class Match {
+
+                private final int id;
+                private final int distance;
+                private final double similarity;
+
+                private Match(int id, int distance, double similarity) {
+                        this.id = id;
+                        this.distance = distance;
+                        this.similarity = similarity;
+                }
+
+                public TraceVariant getVariant() {
+                        return variants.get(id);
+                }
+
+                /**
+                 * Returns the case numbers of the indexed traces with the
+                 * activity sequence of the match.
+                 *
+                 * @return
+                 */
+                public List<Long> getCaseNumbers() {
+                        return Collections.unmodifiableList(caseNumbers.get(id));
+                }
+
+                /**
+                 * Returns the edit distance to the query.
+                 *
+                 * @return The distance or <code>-1</code> if it was not
+                 * computed.
+                 */
+                public int getDistance() {
+                        return distance;
+                }
+
+                /**
+                 * Returns the Jaccard similarity of the q-gram multisets of the
+                 * match and the query.
+                 *
+                 * @return
+                 */
+                public double getSimilarity() {
+                        return similarity;
+                }
+
+                @Override
+                public String toString() {
+                        return "Match{variant=" + getVariant() + ", distance=" + distance + ", similarity=" + similarity + "}";
+                }
+        }
+}
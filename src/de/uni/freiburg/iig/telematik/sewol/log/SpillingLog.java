@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import org.deckfour.xes.nikefs2.NikeFS2RandomAccessStorage;
+import org.deckfour.xes.nikefs2.NikeFS2VirtualFileSystem;
+
+/**
+ * <p>
+ * {@link Log} for logs which don't fit into the heap. Only a bounded number of
+ * traces is kept in memory in a least-recently-used cache. Evicted traces are
+ * encoded with {@link LogTraceCodec} and spilled to an OpenXES NikeFS2 block
+ * storage, from where they are reloaded transparently when accessed again.
+ * </p>
+ * <p>
+ * The memory budget is given as maximum number of cached entries, since the
+ * size of a trace is dominated by its entries. {@link #withMemoryBudget(long)}
+ * derives it from a budget in bytes. Summary and variant index are kept in
+ * memory.
+ * </p>
+ * <p>
+ * {@link #getTraces()} returns a lazy list which loads traces on access.
+ * Traces are written to the storage only once, when they are evicted for the
+ * first time. Modifications of a trace after that are only kept if the trace
+ * is marked with {@link #setModified(int)} before it is evicted again. Like
+ * {@link Log}, this class is not thread-safe. The storage is released with
+ * {@link #close()}.
+ * </p>
+ * <p>
+ * Only traces which can be encoded with {@link LogTraceCodec} are accepted,
+ * which is checked before a trace is added. Entries and attributes added to
+ * a trace afterwards must be supported as well, otherwise spilling the trace
+ * fails.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ * @param <E> LogEntry type
+ */
+public class SpillingLog<E extends LogEntry> extends Log<E> implements Closeable {
+
+        /**
+         * Default maximum number of entries kept in memory.
+         */
+        public static final long DEFAULT_MAX_CACHED_ENTRIES = 1000000;
+        /**
+         * Estimated heap size of a log entry in bytes, used by
+         * {@link #withMemoryBudget(long)}.
+         */
+        public static final int ESTIMATED_BYTES_PER_ENTRY = 200;
+
+        private final long maxCachedEntries;
+        private final LinkedHashMap<Integer, LogTrace<E>> cache = new LinkedHashMap<>(16, 0.75f, true);
+        private final List<LogTrace<E>> traceList = new TraceList();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final DataAttributePool attributePool = new DataAttributePool();
+
+        private NikeFS2RandomAccessStorage storage = null;
+        private long storageSize = 0;
+        private long[] offsets = new long[16];
+        private int[] lengths = new int[16];
+        private int[] cachedSizes = new int[16];
+        private final BitSet modified = new BitSet();
+        private int numTraces = 0;
+        private long cachedEntries = 0;
+
+        private long hits = 0;
+        private long misses = 0;
+        private long spilledTraces = 0;
+        private long bytesSpilled = 0;
+
+        /**
+         * Creates a new log caching at most
+         * {@link #DEFAULT_MAX_CACHED_ENTRIES} entries.
+         */
+        public SpillingLog() {
+                this(DEFAULT_MAX_CACHED_ENTRIES);
+        }
+
+        /**
+         * Creates a new log.
+         *
+         * @param maxCachedEntries Maximum number of entries kept in memory. The
+         * most recently used trace is always kept, even if it is larger.
+         */
+        public SpillingLog(long maxCachedEntries) {
+                Validate.positive(maxCachedEntries);
+                this.maxCachedEntries = maxCachedEntries;
+        }
+
+        /**
+         * Creates a new log whose cached traces approximately use the given
+         * amount of heap.
+         *
+         * @param <E> LogEntry type
+         * @param bytes Memory budget in bytes.
+         * @return The new log.
+         */
+        public static <E extends LogEntry> SpillingLog<E> withMemoryBudget(long bytes) {
+                Validate.positive(bytes);
+                return new SpillingLog<>(Math.max(1, bytes / ESTIMATED_BYTES_PER_ENTRY));
+        }
+
+        @Override
+        void reinitialize() {
+                super.reinitialize();
+                try {
+                        close();
+                } catch (IOException e) {
+                        throw new RuntimeException(e);
+                }
+                storageSize = 0;
+                numTraces = 0;
+                modified.clear();
+                hits = 0;
+                misses = 0;
+                spilledTraces = 0;
+                bytesSpilled = 0;
+        }
+
+        /**
+         * Adds the given trace to the log.
+         *
+         * @param trace Trace to add.
+         * @throws ParameterException If the trace contains entries or
+         * attribute values which can't be encoded with {@link LogTraceCodec}.
+         */
+        @Override
+        public void addTrace(LogTrace<E> trace) throws ParameterException {
+                Validate.notNull(trace);
+                LogTraceCodec.validate(trace);
+                trace.setCaseNumber(numTraces + 1);
+                summary.addTrace(trace);
+                variants.add(trace);
+                if (numTraces == offsets.length) {
+                        int capacity = numTraces * 2;
+                        offsets = Arrays.copyOf(offsets, capacity);
+                        lengths = Arrays.copyOf(lengths, capacity);
+                        cachedSizes = Arrays.copyOf(cachedSizes, capacity);
+                }
+                offsets[numTraces] = -1;
+                cache(numTraces, trace);
+                numTraces++;
+                indexTrace(trace);
+        }
+
+        /**
+         * Returns the trace with the given index, loading it from the storage
+         * if it is not cached.
+         *
+         * @param index Index of the trace.
+         * @return The trace.
+         * @throws IndexOutOfBoundsException If there is no trace with the given
+         * index.
+         */
+        public LogTrace<E> getTrace(int index) {
+                if (index < 0 || index >= numTraces) {
+                        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numTraces);
+                }
+                LogTrace<E> trace = cache.get(index);
+                if (trace != null) {
+                        hits++;
+                        return trace;
+                }
+                misses++;
+                try {
+                        trace = load(index);
+                } catch (IOException e) {
+                        throw new RuntimeException(e);
+                }
+                cache(index, trace);
+                return trace;
+        }
+
+        /**
+         * Returns a lazy, unmodifiable list of all traces. Traces which are not
+         * cached are loaded when accessed.
+         *
+         * @return
+         */
+        @Override
+        public List<LogTrace<E>> getTraces() {
+                return traceList;
+        }
+
+        /**
+         * Marks the trace with the given index as modified, so that it is
+         * written to the storage again when it is evicted.
+         *
+         * @param index Index of the trace.
+         */
+        public void setModified(int index) {
+                if (index < 0 || index >= numTraces) {
+                        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numTraces);
+                }
+                modified.set(index);
+        }
+
+        /**
+         * Sorts the entries of all traces with the given comparator. Traces are
+         * loaded and sorted one after another and written back when they are
+         * evicted.
+         *
+         * @param comparator Comparator for the entries.
+         */
+        @Override
+        public void sortEntries(Comparator<? super E> comparator) {
+                Validate.notNull(comparator);
+                summary = new LogSummary<>();
+                variants = new VariantIndex();
+                for (int i = 0; i < numTraces; i++) {
+                        LogTrace<E> trace = getTrace(i);
+                        trace.sort(comparator);
+                        modified.set(i);
+                        summary.addTrace(trace);
+                        variants.add(trace);
+                }
+                indexes.entriesSorted();
+        }
+
+        private void cache(int index, LogTrace<E> trace) {
+                cache.put(index, trace);
+                cachedSizes[index] = trace.size();
+                cachedEntries += trace.size();
+                Iterator<Map.Entry<Integer, LogTrace<E>>> iterator = cache.entrySet().iterator();
+                while (cachedEntries > maxCachedEntries && cache.size() > 1) {
+                        Map.Entry<Integer, LogTrace<E>> eldest = iterator.next();
+                        int eldestIndex = eldest.getKey();
+                        if (offsets[eldestIndex] < 0 || modified.get(eldestIndex)) {
+                                try {
+                                        spill(eldestIndex, eldest.getValue());
+                                } catch (IOException e) {
+                                        throw new RuntimeException(e);
+                                }
+                        }
+                        cachedEntries -= cachedSizes[eldestIndex];
+                        iterator.remove();
+                }
+        }
+
+        private void spill(int index, LogTrace<E> trace) throws IOException {
+                if (storage == null) {
+                        storage = NikeFS2VirtualFileSystem.instance().createStorage();
+                }
+                buffer.reset();
+                LogTraceCodec.write(trace, new DataOutputStream(buffer));
+                storage.seek(storageSize);
+                storage.write(buffer.toByteArray());
+                offsets[index] = storageSize;
+                lengths[index] = buffer.size();
+                storageSize += buffer.size();
+                modified.clear(index);
+                spilledTraces++;
+                bytesSpilled += buffer.size();
+        }
+
+        private LogTrace<E> load(int index) throws IOException {
+                byte[] bytes = new byte[lengths[index]];
+                storage.seek(offsets[index]);
+                storage.readFully(bytes);
+                return LogTraceCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)), attributePool);
+        }
+
+        /**
+         * Returns the maximum number of entries kept in memory.
+         *
+         * @return
+         */
+        public long getMaxCachedEntries() {
+                return maxCachedEntries;
+        }
+
+        /**
+         * Returns the number of traces currently kept in memory.
+         *
+         * @return
+         */
+        public int getCachedTraceCount() {
+                return cache.size();
+        }
+
+        /**
+         * Returns the number of entries currently kept in memory.
+         *
+         * @return
+         */
+        public long getCachedEntryCount() {
+                return cachedEntries;
+        }
+
+        /**
+         * Returns the number of trace accesses served from the cache.
+         *
+         * @return
+         */
+        public long getCacheHits() {
+                return hits;
+        }
+
+        /**
+         * Returns the number of trace accesses which required loading the
+         * trace from the storage.
+         *
+         * @return
+         */
+        public long getCacheMisses() {
+                return misses;
+        }
+
+        /**
+         * Returns the ratio of trace accesses served from the cache.
+         *
+         * @return The hit rate or <code>1.0</code> if no trace was accessed.
+         */
+        public double getHitRate() {
+                long accesses = hits + misses;
+                return accesses == 0 ? 1.0 : (double) hits / accesses;
+        }
+
+        /**
+         * Returns how often traces were written to the storage.
+         *
+         * @return
+         */
+        public long getSpilledTraceCount() {
+                return spilledTraces;
+        }
+
+        /**
+         * Returns the number of bytes written to the storage, including
+         * rewrites of modified traces.
+         *
+         * @return
+         */
+        public long getBytesSpilled() {
+                return bytesSpilled;
+        }
+
+        /**
+         * Releases the storage and the cache. The log is empty afterwards.
+         *
+         * @throws IOException If the storage can't be closed.
+         */
+        @Override
+        public void close() throws IOException {
+                summary = new LogSummary<>();
+                variants = new VariantIndex();
+                indexes.clear();
+                cache.clear();
+                attributePool.clear();
+                cachedEntries = 0;
+                numTraces = 0;
+                if (storage != null) {
+                        NikeFS2RandomAccessStorage closedStorage = storage;
+                        storage = null;
+                        closedStorage.close();
+                }
+        }
+
+        private class TraceList extends AbstractList<LogTrace<E>> implements RandomAccess {
+
+                @Override
+                public LogTrace<E> get(int index) {
+                        return getTrace(index);
+                }
+
+                @Override
+                public int size() {
+                        return numTraces;
+                }
+        }
+}
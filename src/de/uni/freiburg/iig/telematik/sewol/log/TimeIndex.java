@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * Index over the timestamps of the traces of a log for time range queries
+ * without scanning all entries.
+ * </p>
+ * <p>
+ * The time span of each trace, i.e. the minimum and maximum timestamp of its
+ * entries, is kept in arrays sorted by start time, which are used as an
+ * implicit interval tree. Overlap queries take <i>O(log n + k)</i> for
+ * <i>k</i> results, containment queries <i>O(log n + m)</i> with <i>m</i>
+ * being the number of traces starting within the queried range. The global
+ * ordering of all entries by timestamp is built on the first event query and
+ * answers range queries in <i>O(log n + k)</i>.
+ * </p>
+ * <p>
+ * Entries without timestamp are not indexed, neither are traces without any
+ * timestamped entry. All time values are milliseconds as returned by
+ * {@link LogEntry#getTimestampMillis()}, ranges are inclusive. The index is
+ * not updated when the traces are modified after it was built.
+ * </p>
+ * <p>
+ * The index only keeps the positions of traces and entries and resolves them
+ * through the indexed list on demand, so indexing a {@link SpillingLog} does
+ * not keep its traces in memory. The list must not be changed structurally
+ * while the index is used, except by appending traces.
+ * </p>
+ *
+ * @param <E> LogEntry type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ * @see Log#getTimeIndex()
+ */
+public class TimeIndex<E extends LogEntry> {
+
+        private final List<LogTrace<E>> traces;
+        private final int[] traceOrder;
+        private final long[] starts;
+        private final long[] ends;
+        /**
+         * Maximum end time within the subtree of the implicit interval tree
+         * rooted at each position.
+         */
+        private final long[] maxEnds;
+
+        private volatile EventOrder eventOrder = null;
+
+        /**
+         * Creates a new time index over the given traces.
+         *
+         * @param traces Traces to index.
+         * @throws ParameterException If the list is <code>null</code> or
+         * contains <code>null</code> elements.
+         */
+        public TimeIndex(List<LogTrace<E>> traces) throws ParameterException {
+                Validate.noNullElements(traces);
+                this.traces = traces;
+                int size = traces.size();
+                long[] traceStarts = new long[size];
+                long[] traceEnds = new long[size];
+                int[] indexed = new int[size];
+                int count = 0;
+                for (int i = 0; i < size; i++) {
+                        long min = Long.MAX_VALUE;
+                        long max = Long.MIN_VALUE;
+                        for (E entry : traces.get(i).getEntries()) {
+                                if (entry.hasTimestamp()) {
+                                        min = Math.min(min, entry.getTimestampMillis());
+                                        max = Math.max(max, entry.getTimestampMillis());
+                                }
+                        }
+                        if (min <= max) {
+                                traceStarts[i] = min;
+                                traceEnds[i] = max;
+                                indexed[count++] = i;
+                        }
+                }
+                traceOrder = sort(indexed, count, traceStarts);
+                starts = new long[count];
+                ends = new long[count];
+                for (int i = 0; i < count; i++) {
+                        starts[i] = traceStarts[traceOrder[i]];
+                        ends[i] = traceEnds[traceOrder[i]];
+                }
+                maxEnds = new long[count];
+                buildMaxEnds(0, count - 1);
+        }
+
+        private long buildMaxEnds(int low, int high) {
+                if (low > high) {
+                        return Long.MIN_VALUE;
+                }
+                int mid = (low + high) >>> 1;
+                long max = Math.max(ends[mid], Math.max(buildMaxEnds(low, mid - 1), buildMaxEnds(mid + 1, high)));
+                maxEnds[mid] = max;
+                return max;
+        }
+
+        /**
+         * Returns the number of traces with at least one timestamped entry.
+         *
+         * @return
+         */
+        public int getIndexedTraceCount() {
+                return starts.length;
+        }
+
+        /**
+         * Returns all traces whose time span overlaps the given range, ordered
+         * by their start time.
+         *
+         * @param from Start of the range in milliseconds.
+         * @param to End of the range in milliseconds.
+         * @return
+         * @throws ParameterException If <code>to</code> is before
+         * <code>from</code>.
+         */
+        public List<LogTrace<E>> getOverlappingTraces(long from, long to) throws ParameterException {
+                validateRange(from, to);
+                List<LogTrace<E>> result = new ArrayList<>();
+                collectOverlapping(0, starts.length - 1, from, to, result);
+                return result;
+        }
+
+        private void collectOverlapping(int low, int high, long from, long to, List<LogTrace<E>> result) {
+                if (low > high) {
+                        return;
+                }
+                int mid = (low + high) >>> 1;
+                if (maxEnds[mid] < from) {
+                        return;
+                }
+                collectOverlapping(low, mid - 1, from, to, result);
+                if (starts[mid] > to) {
+                        return;
+                }
+                if (ends[mid] >= from) {
+                        result.add(traces.get(traceOrder[mid]));
+                }
+                collectOverlapping(mid + 1, high, from, to, result);
+        }
+
+        /**
+         * Returns all traces whose time span lies completely within the given
+         * range, ordered by their start time.
+         *
+         * @param from Start of the range in milliseconds.
+         * @param to End of the range in milliseconds.
+         * @return
+         * @throws ParameterException If <code>to</code> is before
+         * <code>from</code>.
+         */
+        public List<LogTrace<E>> getContainedTraces(long from, long to) throws ParameterException {
+                validateRange(from, to);
+                List<LogTrace<E>> result = new ArrayList<>();
+                for (int i = lowerBound(starts, starts.length, from); i < starts.length && starts[i] <= to; i++) {
+                        if (ends[i] <= to) {
+                                result.add(traces.get(traceOrder[i]));
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns all entries with a timestamp within the given range in
+         * chronological order. Entries with equal timestamps are ordered by
+         * trace and by their position within the trace.
+         *
+         * @param from Start of the range in milliseconds.
+         * @param to End of the range in milliseconds.
+         * @return An unmodifiable list view.
+         * @throws ParameterException If <code>to</code> is before
+         * <code>from</code>.
+         */
+        public List<E> getEntries(long from, long to) throws ParameterException {
+                validateRange(from, to);
+                EventOrder order = getEventOrder();
+                int low = lowerBound(order.times, order.times.length, from);
+                int high = to == Long.MAX_VALUE ? order.times.length : lowerBound(order.times, order.times.length, to + 1);
+                return order.subList(low, high);
+        }
+
+        /**
+         * Returns an iterator over all timestamped entries of all traces in
+         * chronological order.
+         *
+         * @return
+         * @see #getEntries(long, long)
+         */
+        public Iterator<E> chronologicalIterator() {
+                return getEventOrder().iterator();
+        }
+
+        private EventOrder getEventOrder() {
+                EventOrder order = eventOrder;
+                if (order == null) {
+                        synchronized (this) {
+                                order = eventOrder;
+                                if (order == null) {
+                                        order = buildEventOrder();
+                                        eventOrder = order;
+                                }
+                        }
+                }
+                return order;
+        }
+
+        /**
+         * Sorts all timestamped entries by their timestamps. Entries are
+         * referenced by the position of their trace in the upper and their
+         * position within the trace in the lower 32 bits.
+         */
+        private EventOrder buildEventOrder() {
+                long[] references = new long[16];
+                long[] times = new long[16];
+                int count = 0;
+                for (int i = 0; i < traces.size(); i++) {
+                        List<E> entries = traces.get(i).getEntries();
+                        for (int position = 0; position < entries.size(); position++) {
+                                E entry = entries.get(position);
+                                if (entry.hasTimestamp()) {
+                                        if (count == references.length) {
+                                                references = Arrays.copyOf(references, count * 2);
+                                                times = Arrays.copyOf(times, count * 2);
+                                        }
+                                        references[count] = ((long) i << 32) | position;
+                                        times[count++] = entry.getTimestampMillis();
+                                }
+                        }
+                }
+                int[] positions = new int[count];
+                for (int i = 0; i < count; i++) {
+                        positions[i] = i;
+                }
+                int[] order = sort(positions, count, times);
+                long[] sortedReferences = new long[count];
+                long[] sortedTimes = new long[count];
+                for (int i = 0; i < count; i++) {
+                        sortedReferences[i] = references[order[i]];
+                        sortedTimes[i] = times[order[i]];
+                }
+                return new EventOrder(sortedReferences, sortedTimes);
+        }
+
+        private static void validateRange(long from, long to) {
+                if (to < from) {
+                        throw new ParameterException(ParameterException.ErrorCode.RANGEVIOLATION, "The end of the range must not be before its start.");
+                }
+        }
+
+        /**
+         * Returns the first position in the sorted array whose value is not
+         * smaller than the given key.
+         */
+        private static int lowerBound(long[] values, int length, long key) {
+                int low = 0;
+                int high = length;
+                while (low < high) {
+                        int mid = (low + high) >>> 1;
+                        if (values[mid] < key) {
+                                low = mid + 1;
+                        } else {
+                                high = mid;
+                        }
+                }
+                return low;
+        }
+
+        /**
+         * Stable merge sort of the first <code>length</code> indexes by their
+         * keys.
+         *
+         * @return A new array with the sorted indexes.
+         */
+        private static int[] sort(int[] indexes, int length, long[] keys) {
+                int[] result = new int[length];
+                System.arraycopy(indexes, 0, result, 0, length);
+                int[] buffer = new int[length];
+                for (int width = 1; width < length; width <<= 1) {
+                        for (int low = 0; low < length - width; low += width << 1) {
+                                int mid = low + width;
+                                int high = Math.min(mid + width, length);
+                                if (keys[result[mid - 1]] <= keys[result[mid]]) {
+                                        continue;
+                                }
+                                System.arraycopy(result, low, buffer, low, high - low);
+                                int i = low;
+                                int j = mid;
+                                for (int k = low; k < high; k++) {
+                                        if (j >= high || (i < mid && keys[buffer[i]] <= keys[buffer[j]])) {
+                                                result[k] = buffer[i++];
+                                        } else {
+                                                result[k] = buffer[j++];
+                                        }
+                                }
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Chronologically ordered entries, resolved through the traces of the
+         * index on access.
+         */
+        private final class EventOrder extends AbstractList<E> implements RandomAccess {
+
+                private final long[] references;
+                private final long[] times;
+
+                EventOrder(long[] references, long[] times) {
+                        this.references = references;
+                        this.times = times;
+                }
+
+                @Override
+                public E get(int index) {
+                        long reference = references[index];
+                        return traces.get((int) (reference >>> 32)).getEntries().get((int) reference);
+                }
+
+                @Override
+                public int size() {
+                        return references.length;
+                }
+        }
+}
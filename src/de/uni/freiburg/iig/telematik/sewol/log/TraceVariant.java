@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.Validate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable activity sequence shared by a group of traces. Variants are used as
+ * keys of the {@link VariantIndex} and reuse the cached activity sequence hash
+ * of the trace they were created from.
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public final class TraceVariant {
+
+        private final String[] activities;
+        private final int hash;
+
+        /**
+         * Creates the variant of the given trace.
+         *
+         * @param trace Trace to take the activity sequence from.
+         */
+        public TraceVariant(LogTrace<?> trace) {
+                Validate.notNull(trace);
+                activities = new String[trace.size()];
+                int i = 0;
+                for (LogEntry entry : trace.getEntries()) {
+                        activities[i++] = entry.getActivity();
+                }
+                hash = trace.getActivitySequenceHash();
+        }
+
+        /**
+         * Checks if the given trace has the activity sequence of this variant,
+         * without copying the activity sequence of the trace.
+         *
+         * @param trace Trace to compare.
+         * @return <code>true</code> if the trace belongs to this variant;<br>
+         * <code>false</code> otherwise.
+         */
+        boolean matches(LogTrace<?> trace) {
+                if (hash != trace.getActivitySequenceHash() || activities.length != trace.size()) {
+                        return false;
+                }
+                List<? extends LogEntry> entries = trace.getEntries();
+                for (int i = 0; i < activities.length; i++) {
+                        if (!Objects.equals(activities[i], entries.get(i).getActivity())) {
+                                return false;
+                        }
+                }
+                return true;
+        }
+
+        /**
+         * Returns the activity sequence of the variant.
+         *
+         * @return An unmodifiable list of activities.
+         */
+        public List<String> getActivities() {
+                return Collections.unmodifiableList(Arrays.asList(activities));
+        }
+
+        /**
+         * Returns the number of activities of the variant.
+         *
+         * @return
+         */
+        public int length() {
+                return activities.length;
+        }
+
+        @Override
+        public int hashCode() {
+                return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+                if (this == obj) {
+                        return true;
+                }
+                if (obj == null || getClass() != obj.getClass()) {
+                        return false;
+                }
+                final TraceVariant other = (TraceVariant) obj;
+                return hash == other.hash && Arrays.equals(activities, other.activities);
+        }
+
+        @Override
+        public String toString() {
+                return Arrays.toString(activities);
+        }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log;
+
+import de.invation.code.toval.validate.Validate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * <p>
+ * Index grouping traces by their activity sequence ({@link TraceVariant}) and
+ * mapping each variant to the case numbers of its traces.
+ * </p>
+ * <p>
+ * The variant of a trace is looked up by the cached activity sequence hash of
+ * the trace in an open addressing table and compared with the entries of the
+ * trace, so adding, removing and looking up a trace of a known variant
+ * doesn't copy its activity sequence. Only traces of new variants create a
+ * {@link TraceVariant}. Indexes of different parts of a log can be merged
+ * with {@link #merge(VariantIndex)}.
+ * </p>
+ * <p>
+ * The case number lists of a frozen index are immutable and are shared
+ * instead of copied when the index is merged into another one, so copying a
+ * frozen index costs one map entry per variant. A shared list is replaced by a
+ * modified copy when traces of its variant are added or removed afterwards.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class VariantIndex {
+
+        private static final Comparator<Entry<TraceVariant, List<Long>>> BY_COUNT = new Comparator<Entry<TraceVariant, List<Long>>>() {
+                @Override
+                public int compare(Entry<TraceVariant, List<Long>> o1, Entry<TraceVariant, List<Long>> o2) {
+                        return Integer.compare(o1.getValue().size(), o2.getValue().size());
+                }
+        };
+
+        private final Map<TraceVariant, List<Long>> cases = new HashMap<>();
+        /**
+         * All variants of {@link #cases}, with linear probing by their hashes.
+         * The length is a power of two and at least twice the number of
+         * variants.
+         */
+        private TraceVariant[] table = new TraceVariant[16];
+        private long numTraces = 0;
+        private boolean frozen = false;
+
+        /**
+         * Freezes the index. Afterwards all modifying methods throw an
+         * {@link UnsupportedOperationException}.
+         *
+         * @return This index.
+         */
+        public VariantIndex freeze() {
+                if (!frozen) {
+                        for (Entry<TraceVariant, List<Long>> entry : cases.entrySet()) {
+                                if (!(entry.getValue() instanceof ChunkedList)) {
+                                        entry.setValue(ChunkedList.of(entry.getValue()));
+                                }
+                        }
+                }
+                frozen = true;
+                return this;
+        }
+
+        /**
+         * Checks if the index is frozen.
+         *
+         * @return
+         * @see #freeze()
+         */
+        public boolean isFrozen() {
+                return frozen;
+        }
+
+        private void validateNotFrozen() {
+                if (frozen) {
+                        throw new UnsupportedOperationException("Variant index is frozen.");
+                }
+        }
+
+        /**
+         * Adds the given trace to the index.
+         *
+         * @param trace Trace to add.
+         * @return The variant of the trace.
+         */
+        public TraceVariant add(LogTrace<?> trace) {
+                Validate.notNull(trace);
+                validateNotFrozen();
+                TraceVariant variant = find(trace);
+                List<Long> caseNumbers;
+                if (variant == null) {
+                        variant = new TraceVariant(trace);
+                        caseNumbers = new ArrayList<>(1);
+                        cases.put(variant, caseNumbers);
+                        insert(variant);
+                } else {
+                        caseNumbers = cases.get(variant);
+                }
+                if (caseNumbers instanceof ChunkedList) {
+                        cases.put(variant, ((ChunkedList<Long>) caseNumbers).appendAll(Collections.singletonList(trace.getCaseNumber())));
+                } else {
+                        caseNumbers.add(trace.getCaseNumber());
+                }
+                numTraces++;
+                return variant;
+        }
+
+        /**
+         * Removes the given trace from the index. The activity sequence of the
+         * trace must not have been changed since it was added.
+         *
+         * @param trace Trace to remove.
+         * @return <code>true</code> if the trace was contained in the index.
+         */
+        public boolean remove(LogTrace<?> trace) {
+                Validate.notNull(trace);
+                validateNotFrozen();
+                TraceVariant variant = find(trace);
+                if (variant == null) {
+                        return false;
+                }
+                List<Long> caseNumbers = cases.get(variant);
+                if (caseNumbers instanceof ChunkedList) {
+                        caseNumbers = new ArrayList<>(caseNumbers);
+                        cases.put(variant, caseNumbers);
+                }
+                if (!caseNumbers.remove(trace.getCaseNumber())) {
+                        return false;
+                }
+                if (caseNumbers.isEmpty()) {
+                        cases.remove(variant);
+                        delete(variant);
+                }
+                numTraces--;
+                return true;
+        }
+
+        /**
+         * Adds all variants and case numbers of the given index to this index.
+         * Case number lists of a frozen index are shared.
+         *
+         * @param other Index to merge into this one.
+         */
+        public void merge(VariantIndex other) {
+                Validate.notNull(other);
+                validateNotFrozen();
+                for (Entry<TraceVariant, List<Long>> entry : other.cases.entrySet()) {
+                        List<Long> caseNumbers = cases.get(entry.getKey());
+                        if (caseNumbers == null) {
+                                cases.put(entry.getKey(), entry.getValue() instanceof ChunkedList ? entry.getValue() : new ArrayList<>(entry.getValue()));
+                                insert(entry.getKey());
+                        } else if (caseNumbers instanceof ChunkedList) {
+                                cases.put(entry.getKey(), ((ChunkedList<Long>) caseNumbers).appendAll(entry.getValue()));
+                        } else {
+                                caseNumbers.addAll(entry.getValue());
+                        }
+                }
+                numTraces += other.numTraces;
+        }
+
+        /**
+         * Removes all variants from the index.
+         */
+        public void clear() {
+                validateNotFrozen();
+                cases.clear();
+                Arrays.fill(table, null);
+                numTraces = 0;
+        }
+
+        private static int slot(int hash, int mask) {
+                return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        /**
+         * Returns the variant of the given trace.
+         *
+         * @return The variant or <code>null</code> if no trace with the
+         * activity sequence of the given trace is indexed.
+         */
+        private TraceVariant find(LogTrace<?> trace) {
+                int mask = table.length - 1;
+                for (int i = slot(trace.getActivitySequenceHash(), mask); table[i] != null; i = (i + 1) & mask) {
+                        if (table[i].matches(trace)) {
+                                return table[i];
+                        }
+                }
+                return null;
+        }
+
+        /**
+         * Adds a variant which was just added to {@link #cases} to the table.
+         */
+        private void insert(TraceVariant variant) {
+                if (cases.size() * 2 > table.length) {
+                        table = new TraceVariant[table.length * 2];
+                        for (TraceVariant existing : cases.keySet()) {
+                                place(existing);
+                        }
+                } else {
+                        place(variant);
+                }
+        }
+
+        private void place(TraceVariant variant) {
+                int mask = table.length - 1;
+                int i = slot(variant.hashCode(), mask);
+                while (table[i] != null) {
+                        i = (i + 1) & mask;
+                }
+                table[i] = variant;
+        }
+
+        /**
+         * Removes a variant from the table and moves following variants of
+         * the same probe sequence into the gap.
+         */
+        private void delete(TraceVariant variant) {
+                int mask = table.length - 1;
+                int gap = slot(variant.hashCode(), mask);
+                while (table[gap] != variant) {
+                        gap = (gap + 1) & mask;
+                }
+                table[gap] = null;
+                for (int i = (gap + 1) & mask; table[i] != null; i = (i + 1) & mask) {
+                        int home = slot(table[i].hashCode(), mask);
+                        if (((i - home) & mask) >= ((i - gap) & mask)) {
+                                table[gap] = table[i];
+                                table[i] = null;
+                                gap = i;
+                        }
+                }
+        }
+
+        /**
+         * Returns the number of distinct variants.
+         *
+         * @return
+         */
+        public int getVariantCount() {
+                return cases.size();
+        }
+
+        /**
+         * Returns the number of indexed traces.
+         *
+         * @return
+         */
+        public long getTraceCount() {
+                return numTraces;
+        }
+
+        /**
+         * Returns an unmodifiable set of all variants.
+         *
+         * @return
+         */
+        public Set<TraceVariant> getVariants() {
+                return Collections.unmodifiableSet(cases.keySet());
+        }
+
+        /**
+         * Returns the number of traces of the given variant.
+         *
+         * @param variant
+         * @return
+         */
+        public int getCount(TraceVariant variant) {
+                Validate.notNull(variant);
+                List<Long> caseNumbers = cases.get(variant);
+                return caseNumbers == null ? 0 : caseNumbers.size();
+        }
+
+        /**
+         * Returns the case numbers of all traces of the given variant in the
+         * order they were added.
+         *
+         * @param variant
+         * @return An unmodifiable list of case numbers, empty if the variant is
+         * unknown.
+         */
+        public List<Long> getCaseNumbers(TraceVariant variant) {
+                Validate.notNull(variant);
+                List<Long> caseNumbers = cases.get(variant);
+                if (caseNumbers == null) {
+                        return Collections.emptyList();
+                }
+                return Collections.unmodifiableList(caseNumbers);
+        }
+
+        /**
+         * Returns the case numbers of all traces with the same activity
+         * sequence as the given trace, including the trace itself if it is
+         * indexed.
+         *
+         * @param trace
+         * @return
+         */
+        public List<Long> getCaseNumbers(LogTrace<?> trace) {
+                Validate.notNull(trace);
+                TraceVariant variant = find(trace);
+                if (variant == null) {
+                        return Collections.emptyList();
+                }
+                return Collections.unmodifiableList(cases.get(variant));
+        }
+
+        /**
+         * Returns the number of traces per variant.
+         *
+         * @return
+         */
+        public Map<TraceVariant, Integer> getVariantCounts() {
+                Map<TraceVariant, Integer> result = new HashMap<>(cases.size() * 4 / 3 + 1);
+                for (Entry<TraceVariant, List<Long>> entry : cases.entrySet()) {
+                        result.put(entry.getKey(), entry.getValue().size());
+                }
+                return result;
+        }
+
+        /**
+         * Returns the <code>k</code> most frequent variants in descending order
+         * of their number of traces.
+         *
+         * @param k Maximum number of variants to return.
+         * @return
+         */
+        public List<TraceVariant> getTopVariants(int k) {
+                Validate.notNegative(k);
+                if (k == 0) {
+                        return new ArrayList<>();
+                }
+                PriorityQueue<Entry<TraceVariant, List<Long>>> top = new PriorityQueue<>(Math.min(k, cases.size()) + 1, BY_COUNT);
+                for (Entry<TraceVariant, List<Long>> entry : cases.entrySet()) {
+                        if (top.size() < k) {
+                                top.add(entry);
+                        } else if (BY_COUNT.compare(entry, top.peek()) > 0) {
+                                top.poll();
+                                top.add(entry);
+                        }
+                }
+                List<TraceVariant> result = new ArrayList<>(top.size());
+                while (!top.isEmpty()) {
+                        result.add(top.poll().getKey());
+                }
+                Collections.reverse(result);
+                return result;
+        }
+}
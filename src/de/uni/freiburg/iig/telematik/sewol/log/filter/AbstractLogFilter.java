@@ -32,7 +32,9 @@ package de.uni.freiburg.iig.telematik.sewol.log.filter;
 
 import de.invation.code.toval.misc.Filterable;
 import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogIndex;
 import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import de.uni.freiburg.iig.telematik.sewol.util.CompressedBitmap;
 import java.util.Observable;
 
 /**
@@ -82,6 +84,29 @@ public abstract class AbstractLogFilter<E extends LogEntry> extends Observable i
                 }
         }
 
+        /**
+         * Returns the ordinals of all traces of the given index accepted by
+         * the filter, if the filter can be evaluated on the index alone.
+         * Filters which can't be evaluated this way return <code>null</code>
+         * and have to be applied with {@link #accept(Object)}.
+         *
+         * @param index Index over the traces to filter.
+         * @return The ordinals of the accepted traces or <code>null</code>.
+         */
+        public CompressedBitmap getAcceptedTraces(LogIndex<E> index) {
+                return null;
+        }
+
+        /**
+         * Checks if the filter can be evaluated on a {@link LogIndex} with
+         * {@link #getAcceptedTraces(LogIndex)}.
+         *
+         * @return
+         */
+        public boolean supportsIndex() {
+                return false;
+        }
+
         @Override
         public String toString() {
                 if (isInverted()) {
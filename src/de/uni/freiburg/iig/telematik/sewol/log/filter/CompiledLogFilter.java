@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log.filter;
+
+import de.invation.code.toval.misc.Filterable;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conjunction of log filters in the order determined by a
+ * {@link FilterPlanner}. Evaluation stops at the first rejecting step. For one
+ * out of {@link FilterPlanner#SAMPLE_INTERVAL} traces all steps are evaluated
+ * and timed to update the statistics of the planner, and the steps are
+ * reordered periodically according to the updated statistics. Compiled
+ * filters can be used by several threads concurrently.
+ *
+ * @param <E> LogEntry type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ * @see FilterPlanner#compile(java.util.Collection)
+ */
+public class CompiledLogFilter<E extends LogEntry> implements Filterable<LogTrace<E>> {
+
+        private volatile List<FilterPlanner.Step<E>> steps;
+        private final AtomicLong evaluations = new AtomicLong();
+
+        CompiledLogFilter(List<FilterPlanner.Step<E>> steps) {
+                this.steps = new ArrayList<>(steps);
+        }
+
+        @Override
+        public boolean accept(LogTrace<E> trace) {
+                long count = evaluations.incrementAndGet();
+                if (count % FilterPlanner.SAMPLE_INTERVAL == 0) {
+                        boolean result = sample(trace);
+                        if (count % (FilterPlanner.SAMPLE_INTERVAL * FilterPlanner.MIN_SAMPLES) == 0) {
+                                List<FilterPlanner.Step<E>> reordered = new ArrayList<>(steps);
+                                Collections.sort(reordered, FilterPlanner.BY_RANK);
+                                steps = reordered;
+                        }
+                        return result;
+                }
+                for (FilterPlanner.Step<E> step : steps) {
+                        if (!step.accept(trace)) {
+                                return false;
+                        }
+                }
+                return true;
+        }
+
+        private boolean sample(LogTrace<E> trace) {
+                boolean result = true;
+                for (FilterPlanner.Step<E> step : steps) {
+                        long start = System.nanoTime();
+                        boolean accept = step.accept(trace);
+                        step.statistics.record(accept, System.nanoTime() - start);
+                        result &= accept;
+                }
+                return result;
+        }
+
+        /**
+         * Returns the number of traces evaluated so far.
+         *
+         * @return
+         */
+        public long getEvaluationCount() {
+                return evaluations.get();
+        }
+
+        /**
+         * Returns a description of the steps of the filter in evaluation
+         * order.
+         *
+         * @return
+         */
+        public List<String> getPlan() {
+                List<String> plan = new ArrayList<>(steps.size());
+                for (FilterPlanner.Step<E> step : steps) {
+                        plan.add(step.toString());
+                }
+                return Collections.unmodifiableList(plan);
+        }
+
+        @Override
+        public String toString() {
+                return getPlan().toString();
+        }
+}
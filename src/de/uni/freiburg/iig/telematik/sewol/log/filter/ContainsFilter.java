@@ -32,7 +32,9 @@ package de.uni.freiburg.iig.telematik.sewol.log.filter;
 
 import de.uni.freiburg.iig.telematik.sewol.log.EventType;
 import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogIndex;
 import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import de.uni.freiburg.iig.telematik.sewol.util.CompressedBitmap;
 import java.util.Objects;
 
 /**
@@ -50,6 +52,10 @@ public class ContainsFilter<E extends LogEntry> extends AbstractLogFilter<E> {
 
         private ContainsFilterParameter parameter;
         private String value;
+        /**
+         * Event type parsed from the value whenever the value is set.
+         */
+        private transient EventType eventType;
 
         public ContainsFilter() {
                 this(DEFAULT_PARAMETER, DEFAULT_VALUE);
@@ -59,12 +65,14 @@ public class ContainsFilter<E extends LogEntry> extends AbstractLogFilter<E> {
                 super();
                 this.parameter = parameter;
                 this.value = value;
+                this.eventType = EventType.parse(value);
         }
 
         public ContainsFilter(ContainsFilterParameter parameter, String value, boolean invert) {
                 super(invert);
                 this.parameter = parameter;
                 this.value = value;
+                this.eventType = EventType.parse(value);
         }
 
         /**
@@ -95,46 +103,96 @@ public class ContainsFilter<E extends LogEntry> extends AbstractLogFilter<E> {
         public void setValue(String value) {
                 if (!value.equals(this.value)) {
                         this.value = value;
+                        this.eventType = EventType.parse(value);
                         setChanged();
                         notifyObservers();
                 }
         }
 
+        /**
+         * Accepts traces containing at least one entry whose field selected by
+         * the parameter equals the value.
+         *
+         * @param trace
+         * @return
+         */
         @Override
         public boolean accept(LogTrace<E> trace) {
                 for (E entry : trace.getEntries()) {
-                        switch (parameter) {
-                                case ACTIVITY:
-                                        if (entry.getActivity() == null) {
-                                                return isInverted() ^ (value == null);
-                                        } else if (entry.getActivity().equals(value)) {
-                                                return isInverted() ^ true;
-                                        }
-                                        break;
-                                case SUBJECT:
-                                        if (entry.getOriginator() == null) {
-                                                return isInverted() ^ (value == null);
-                                        } else if (entry.getOriginator().equals(value)) {
-                                                return isInverted() ^ true;
-                                        }
-                                        break;
-                                case ROLE:
-                                        if (entry.getRole() == null) {
-                                                return isInverted() ^ (value == null);
-                                        } else if (entry.getRole().equals(value)) {
-                                                return isInverted() ^ true;
-                                        }
-                                        break;
-                                case EVENTTYPE:
-                                        if (EventType.parse(value) == entry.getEventType()) {
-                                                return isInverted() ^ true;
-                                        }
+                        if (matches(entry)) {
+                                return isInverted() ^ true;
                         }
                 }
-
                 return isInverted() ^ false;
         }
 
+        /**
+         * Checks if the field of the given entry selected by the parameter
+         * equals the value, regardless of the inversion of the filter.
+         *
+         * @param entry
+         * @return
+         */
+        boolean matches(E entry) {
+                switch (parameter) {
+                        case ACTIVITY:
+                                return Objects.equals(entry.getActivity(), value);
+                        case SUBJECT:
+                                return Objects.equals(entry.getOriginator(), value);
+                        case ROLE:
+                                return Objects.equals(entry.getRole(), value);
+                        case EVENTTYPE:
+                                return eventType == entry.getEventType();
+                        default:
+                                return false;
+                }
+        }
+
+        @Override
+        public boolean supportsIndex() {
+                return true;
+        }
+
+        /**
+         * Returns the ordinals of the accepted traces by looking up the value
+         * in the given index.
+         *
+         * @param index
+         * @return
+         */
+        @Override
+        public CompressedBitmap getAcceptedTraces(LogIndex<E> index) {
+                CompressedBitmap containing;
+                switch (parameter) {
+                        case ACTIVITY:
+                                containing = index.getTracesWithActivity(value);
+                                break;
+                        case SUBJECT:
+                                containing = index.getTracesWithOriginator(value);
+                                break;
+                        case ROLE:
+                                containing = index.getTracesWithRole(value);
+                                break;
+                        case EVENTTYPE:
+                                containing = index.getTracesWithEventType(eventType);
+                                break;
+                        default:
+                                return null;
+                }
+                return isInverted() ? containing.complement(index.getTraceCount()) : containing;
+        }
+
+        /**
+         * Parses the event type of filters read by XStream, which bypasses
+         * the constructors.
+         *
+         * @return
+         */
+        private Object readResolve() {
+                eventType = EventType.parse(value);
+                return this;
+        }
+
         @Override
         public String toString() {
                 StringBuilder sb = new StringBuilder();
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.log.filter;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogIndex;
+import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import de.uni.freiburg.iig.telematik.sewol.util.CompressedBitmap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Compiles a set of log filters into a single {@link CompiledLogFilter} which
+ * accepts a trace if all filters accept it.
+ * </p>
+ * <p>
+ * The planner orders the filters by their rank, i.e. their average cost per
+ * trace divided by the fraction of traces they reject, so that cheap and
+ * selective filters are evaluated first. Cost and selectivity of every filter
+ * are learned from sampled evaluations of the compiled filters; filters
+ * without enough samples are estimated by their type. {@link ContainsFilter}s
+ * and {@link TimeFilter}s are fused into a single pass over the entries of a
+ * trace, which stops as soon as the result is known.
+ * </p>
+ * <p>
+ * With {@link #evaluate(Collection, List, LogIndex)}, filters supporting a
+ * {@link LogIndex} are evaluated on the index and only the remaining filters
+ * are applied to the candidate traces.
+ * </p>
+ *
+ * @param <E> LogEntry type
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class FilterPlanner<E extends LogEntry> {
+
+        /**
+         * Every compiled filter evaluates all its steps with time measurement
+         * for one out of this number of traces.
+         */
+        static final int SAMPLE_INTERVAL = 64;
+        /**
+         * Minimum number of samples before learned costs are used.
+         */
+        static final int MIN_SAMPLES = 16;
+        /**
+         * Estimated nanoseconds for filters only checking the trace length.
+         */
+        static final double LENGTH_COST = 20;
+        /**
+         * Estimated nanoseconds for filters scanning the entries of a trace.
+         */
+        static final double SCAN_COST = 1000;
+
+        private final Map<AbstractLogFilter<E>, Statistics> statistics = new IdentityHashMap<>();
+        private final Statistics fusedStatistics = new Statistics(SCAN_COST);
+
+        /**
+         * Compiles the given filters into a single filter.
+         *
+         * @param filters Filters to compile.
+         * @return
+         * @throws ParameterException If the collection is <code>null</code> or
+         * contains <code>null</code> elements.
+         */
+        public CompiledLogFilter<E> compile(Collection<? extends AbstractLogFilter<E>> filters) throws ParameterException {
+                Validate.noNullElements(filters);
+                List<Step<E>> steps = new ArrayList<>();
+                List<ContainsFilter<E>> containsFilters = new ArrayList<>();
+                List<TimeFilter<E>> timeFilters = new ArrayList<>();
+                for (AbstractLogFilter<E> filter : filters) {
+                        if (filter instanceof ContainsFilter) {
+                                containsFilters.add((ContainsFilter<E>) filter);
+                        } else if (filter instanceof TimeFilter) {
+                                timeFilters.add((TimeFilter<E>) filter);
+                        } else {
+                                steps.add(new FilterStep<>(filter, getStatistics(filter)));
+                        }
+                }
+                if (containsFilters.size() + timeFilters.size() > 1) {
+                        steps.add(new EntryPassStep<>(containsFilters, timeFilters, fusedStatistics));
+                } else {
+                        for (AbstractLogFilter<E> filter : containsFilters) {
+                                steps.add(new FilterStep<>(filter, getStatistics(filter)));
+                        }
+                        for (AbstractLogFilter<E> filter : timeFilters) {
+                                steps.add(new FilterStep<>(filter, getStatistics(filter)));
+                        }
+                }
+                Collections.sort(steps, BY_RANK);
+                return new CompiledLogFilter<>(steps);
+        }
+
+        /**
+         * Returns the ordinals of all traces accepted by the given filters.
+         * Filters supporting the index are evaluated on it, the remaining ones
+         * are compiled and applied to the traces accepted by the index.
+         *
+         * @param filters Filters to evaluate.
+         * @param traces Traces indexed by the index.
+         * @param index Index over the traces.
+         * @return
+         * @throws ParameterException If a parameter is <code>null</code> or
+         * the index does not match the number of traces.
+         */
+        public CompressedBitmap evaluate(Collection<? extends AbstractLogFilter<E>> filters, List<LogTrace<E>> traces, LogIndex<E> index) throws ParameterException {
+                Validate.noNullElements(filters);
+                Validate.notNull(traces);
+                Validate.notNull(index);
+                if (index.getTraceCount() != traces.size()) {
+                        throw new ParameterException(ParameterException.ErrorCode.INCOMPATIBILITY, "The index does not match the traces.");
+                }
+                CompressedBitmap candidates = CompressedBitmap.range(traces.size());
+                List<AbstractLogFilter<E>> remaining = new ArrayList<>();
+                for (AbstractLogFilter<E> filter : filters) {
+                        CompressedBitmap accepted = filter.supportsIndex() ? filter.getAcceptedTraces(index) : null;
+                        if (accepted == null) {
+                                remaining.add(filter);
+                        } else {
+                                candidates = candidates.and(accepted);
+                        }
+                }
+                if (remaining.isEmpty()) {
+                        return candidates;
+                }
+                CompiledLogFilter<E> compiled = compile(remaining);
+                CompressedBitmap result = new CompressedBitmap();
+                candidates.forEach(ordinal -> {
+                        if (compiled.accept(traces.get(ordinal))) {
+                                result.add(ordinal);
+                        }
+                });
+                return result;
+        }
+
+        /**
+         * Discards the learned statistics of the given filter, e.g. after its
+         * parameters have been changed.
+         *
+         * @param filter
+         */
+        public synchronized void invalidate(AbstractLogFilter<E> filter) {
+                statistics.remove(filter);
+                if (filter instanceof ContainsFilter || filter instanceof TimeFilter) {
+                        fusedStatistics.reset();
+                }
+        }
+
+        private synchronized Statistics getStatistics(AbstractLogFilter<E> filter) {
+                Statistics result = statistics.get(filter);
+                if (result == null) {
+                        result = new Statistics(filter instanceof MinEventsFilter || filter instanceof MaxEventsFilter ? LENGTH_COST : SCAN_COST);
+                        statistics.put(filter, result);
+                }
+                return result;
+        }
+
+        static final Comparator<Step<?>> BY_RANK = new Comparator<Step<?>>() {
+                @Override
+                public int compare(Step<?> o1, Step<?> o2) {
+                        return Double.compare(o1.statistics.getRank(), o2.statistics.getRank());
+                }
+        };
+
+        /**
+         * Sampled cost and selectivity of a step.
+         */
+        static final class Statistics {
+
+                private final double estimatedCost;
+                private final LongAdder samples = new LongAdder();
+                private final LongAdder accepted = new LongAdder();
+                private final LongAdder nanos = new LongAdder();
+
+                Statistics(double estimatedCost) {
+                        this.estimatedCost = estimatedCost;
+                }
+
+                void record(boolean accept, long time) {
+                        samples.increment();
+                        nanos.add(time);
+                        if (accept) {
+                                accepted.increment();
+                        }
+                }
+
+                void reset() {
+                        samples.reset();
+                        accepted.reset();
+                        nanos.reset();
+                }
+
+                /**
+                 * Returns the average cost in nanoseconds.
+                 */
+                double getCost() {
+                        long count = samples.sum();
+                        return count < MIN_SAMPLES ? estimatedCost : (double) nanos.sum() / count;
+                }
+
+                /**
+                 * Returns the estimated fraction of accepted traces.
+                 */
+                double getSelectivity() {
+                        return (accepted.sum() + 1.0) / (samples.sum() + 2.0);
+                }
+
+                double getRank() {
+                        return getCost() / (1 - getSelectivity());
+                }
+
+                @Override
+                public String toString() {
+                        return String.format("cost=%.0fns, selectivity=%.2f", getCost(), getSelectivity());
+                }
+        }
+
+        /**
+         * Part of a compiled filter.
+         */
+        abstract static class Step<E extends LogEntry> {
+
+                final Statistics statistics;
+
+                Step(Statistics statistics) {
+                        this.statistics = statistics;
+                }
+
+                abstract boolean accept(LogTrace<E> trace);
+        }
+
+        private static final class FilterStep<E extends LogEntry> extends Step<E> {
+
+                private final AbstractLogFilter<E> filter;
+
+                FilterStep(AbstractLogFilter<E> filter, Statistics statistics) {
+                        super(statistics);
+                        this.filter = filter;
+                }
+
+                @Override
+                boolean accept(LogTrace<E> trace) {
+                        return filter.accept(trace);
+                }
+
+                @Override
+                public String toString() {
+                        return filter + " [" + statistics + "]";
+                }
+        }
+
+        /**
+         * Evaluates several contains and time filters in a single pass over
+         * the entries of a trace.
+         */
+        private static final class EntryPassStep<E extends LogEntry> extends Step<E> {
+
+                private final List<ContainsFilter<E>> containsFilters;
+                private final List<TimeFilter<E>> timeFilters;
+
+                EntryPassStep(List<ContainsFilter<E>> containsFilters, List<TimeFilter<E>> timeFilters, Statistics statistics) {
+                        super(statistics);
+                        this.containsFilters = new ArrayList<>(containsFilters);
+                        this.timeFilters = new ArrayList<>(timeFilters);
+                }
+
+                @Override
+                boolean accept(LogTrace<E> trace) {
+                        int containsCount = containsFilters.size();
+                        int timeCount = timeFilters.size();
+                        boolean[] found = new boolean[containsCount];
+                        boolean[] violated = new boolean[timeCount];
+                        int open = containsCount + timeCount;
+                        for (E entry : trace.getEntries()) {
+                                for (int i = 0; i < containsCount; i++) {
+                                        if (!found[i] && containsFilters.get(i).matches(entry)) {
+                                                if (containsFilters.get(i).isInverted()) {
+                                                        return false;
+                                                }
+                                                found[i] = true;
+                                                open--;
+                                        }
+                                }
+                                for (int i = 0; i < timeCount; i++) {
+                                        if (!violated[i] && !timeFilters.get(i).contains(entry)) {
+                                                if (!timeFilters.get(i).isInverted()) {
+                                                        return false;
+                                                }
+                                                violated[i] = true;
+                                                open--;
+                                        }
+                                }
+                                if (open == 0) {
+                                        return true;
+                                }
+                        }
+                        for (int i = 0; i < containsCount; i++) {
+                                if (!found[i] && !containsFilters.get(i).isInverted()) {
+                                        return false;
+                                }
+                        }
+                        for (int i = 0; i < timeCount; i++) {
+                                if (!violated[i] && timeFilters.get(i).isInverted()) {
+                                        return false;
+                                }
+                        }
+                        return true;
+                }
+
+                @Override
+                public String toString() {
+                        List<AbstractLogFilter<E>> fused = new ArrayList<>(containsFilters);
+                        fused.addAll(timeFilters);
+                        return "fused" + fused + " [" + statistics + "]";
+                }
+        }
+}
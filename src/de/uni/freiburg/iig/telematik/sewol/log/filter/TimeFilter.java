@@ -134,19 +134,39 @@ public class TimeFilter<E extends LogEntry> extends AbstractLogFilter<E> {
                 }
         }
 
+        /**
+         * Accepts traces whose entries all lie within the time frame. Entries
+         * without timestamp are ignored.
+         *
+         * @param trace
+         * @return
+         */
         @Override
         public boolean accept(LogTrace<E> trace) {
                 for (E entry : trace.getEntries()) {
-                        if (startDate != null && entry.getTimestamp().before(startDate)) {
-                                return isInverted() ^ false;
-                        }
-                        if (endDate != null && entry.getTimestamp().after(endDate)) {
+                        if (!contains(entry)) {
                                 return isInverted() ^ false;
                         }
                 }
                 return isInverted() ^ true;
         }
 
+        /**
+         * Checks if the given entry lies within the time frame, regardless of
+         * the inversion of the filter. Entries without timestamp are always
+         * contained.
+         *
+         * @param entry
+         * @return
+         */
+        boolean contains(E entry) {
+                if (!entry.hasTimestamp()) {
+                        return true;
+                }
+                long time = entry.getTimestampMillis();
+                return (startDate == null || time >= startDate.getTime()) && (endDate == null || time <= endDate.getTime());
+        }
+
         /**
          * Returns the type of the time filter.
          *
@@ -53,7 +53,7 @@ public abstract class AbstractLogParser implements LogParserInterface {
                         throw new ParameterException(ErrorCode.RANGEVIOLATION, "No log for index " + index);
                 }
                 if (index >= summaries.size()) {
-                        summaries.add(new LogSummary<>(getParsedLog(index)));
+                        summaries.add(LogSummary.build(getParsedLog(index)));
                 }
                 return summaries.get(index);
         }
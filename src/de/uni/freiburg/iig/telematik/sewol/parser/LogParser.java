@@ -59,6 +59,40 @@ public class LogParser {
                 return parse(prepareFile(fileName), format);
         }
 
+        /**
+         * Returns a {@link LogTraceStream} over the traces of the given file.
+         * The format is guessed by the file extension.
+         *
+         * @param file File to read.
+         * @return The trace stream.
+         * @throws IOException If the file can't be read.
+         * @throws ParserException If the format of the file is unknown.
+         */
+        public static LogTraceStream stream(File file) throws IOException, ParserException {
+                return stream(file, ParsingMode.COMPLETE);
+        }
+
+        public static LogTraceStream stream(File file, ParsingMode parsingMode) throws IOException, ParserException {
+                validateFile(file);
+                LogParsingFormat format = guessFormat(file);
+                if (format == null) {
+                        throw new ParserException(ErrorCode.UNKNOWN_FILE_EXTENSION);
+                }
+                return stream(file, format, parsingMode);
+        }
+
+        public static LogTraceStream stream(File file, LogParsingFormat format, ParsingMode parsingMode) throws IOException, ParserException {
+                validateFile(file);
+                Validate.notNull(format);
+                Validate.notNull(parsingMode);
+                return getParser(file, format).stream(file, parsingMode);
+        }
+
+        public static LogTraceStream stream(String fileName, ParsingMode parsingMode) throws IOException, ParserException {
+                Validate.notNull(fileName);
+                return stream(prepareFile(fileName), parsingMode);
+        }
+
         public static synchronized LogParserInterface getParser(File file, LogParsingFormat format) throws ParserException {
                 switch (format) {
                         case XES:
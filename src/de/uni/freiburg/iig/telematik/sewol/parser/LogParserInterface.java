@@ -19,6 +19,8 @@ public interface LogParserInterface {
 
         public List<List<LogTrace<LogEntry>>> parse(InputStream inputStream, ParsingMode parsingMode) throws ParameterException, ParserException;
 
+        public LogTraceStream stream(File file, ParsingMode parsingMode) throws IOException, ParserException;
+
         public List<LogTrace<LogEntry>> getParsedLog(int index);
 
         public List<LogTrace<LogEntry>> getFirstParsedLog();
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.parser;
+
+import de.invation.code.toval.parser.ParserException;
+import de.invation.code.toval.validate.Validate;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogSummary;
+import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>
+ * Iterator over the traces of a log file which reads the file trace by trace
+ * instead of building the whole log in memory. Only a bounded number of traces
+ * is held at once, so that logs larger than the heap can be processed.
+ * </p>
+ * <p>
+ * Like {@link TraceWiseXesIterator}, exceptions occurring while reading are
+ * wrapped into {@link RuntimeException}s, since {@link Iterator} does not allow
+ * checked exceptions. The cause is the original {@link IOException} or
+ * {@link ParserException}.
+ * </p>
+ * <p>
+ * In the parsing mode {@link ParsingMode#DISTINCT_ACTIVITY_SEQUENCES} only the
+ * first trace of every activity sequence is returned and reduced to its
+ * activities. The set of seen sequences grows with the number of variants, not
+ * with the number of traces.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public abstract class LogTraceStream implements Iterator<LogTrace<LogEntry>>, Closeable {
+
+        private final ParsingMode parsingMode;
+        private final Set<List<String>> activitySequences = new HashSet<>();
+        private final LogSummary<LogEntry> summary = new LogSummary<>();
+
+        private LogTrace<LogEntry> nextTrace = null;
+        private boolean finished = false;
+        private long readTraces = 0;
+        private long returnedTraces = 0;
+
+        /**
+         * Creates a new trace stream.
+         *
+         * @param parsingMode Parsing mode of the stream.
+         */
+        protected LogTraceStream(ParsingMode parsingMode) {
+                Validate.notNull(parsingMode);
+                this.parsingMode = parsingMode;
+        }
+
+        /**
+         * Reads the next trace of the underlying source.
+         *
+         * @return The next trace or <code>null</code> if the end of the source
+         * is reached.
+         * @throws IOException If the source can't be read.
+         * @throws ParserException If the source can't be parsed.
+         */
+        protected abstract LogTrace<LogEntry> readTrace() throws IOException, ParserException;
+
+        /**
+         * Returns the parsing mode of the stream.
+         *
+         * @return
+         */
+        public ParsingMode getParsingMode() {
+                return parsingMode;
+        }
+
+        /**
+         * Returns the number of traces read from the source so far, including
+         * the ones dropped because of the parsing mode.
+         *
+         * @return
+         */
+        public long getReadTraces() {
+                return readTraces;
+        }
+
+        /**
+         * Returns the number of traces returned by {@link #next()} so far.
+         *
+         * @return
+         */
+        public long getReturnedTraces() {
+                return returnedTraces;
+        }
+
+        /**
+         * Returns the summary of all traces returned by {@link #next()} so
+         * far. Summaries of several streams can be combined with
+         * {@link LogSummary#merge(LogSummary)}.
+         *
+         * @return
+         */
+        public LogSummary<LogEntry> getSummary() {
+                return summary;
+        }
+
+        @Override
+        public boolean hasNext() {
+                if (nextTrace == null && !finished) {
+                        try {
+                                nextTrace = fetch();
+                        } catch (IOException | ParserException e) {
+                                throw new RuntimeException(e);
+                        }
+                        if (nextTrace == null) {
+                                finished = true;
+                        }
+                }
+                return nextTrace != null;
+        }
+
+        @Override
+        public LogTrace<LogEntry> next() {
+                if (!hasNext()) {
+                        throw new NoSuchElementException();
+                }
+                LogTrace<LogEntry> result = nextTrace;
+                nextTrace = null;
+                returnedTraces++;
+                summary.addTrace(result);
+                return result;
+        }
+
+        @Override
+        public void remove() {
+                throw new UnsupportedOperationException();
+        }
+
+        private LogTrace<LogEntry> fetch() throws IOException, ParserException {
+                LogTrace<LogEntry> trace;
+                while ((trace = readTrace()) != null) {
+                        readTraces++;
+                        switch (parsingMode) {
+                                case COMPLETE:
+                                        return trace;
+                                case DISTINCT_ACTIVITY_SEQUENCES:
+                                        if (activitySequences.add(trace.getActivities())) {
+                                                trace.reduceToActivities();
+                                                return trace;
+                                        }
+                                        break;
+                        }
+                }
+                return null;
+        }
+}
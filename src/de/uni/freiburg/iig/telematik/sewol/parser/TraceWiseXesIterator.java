@@ -1,5 +1,6 @@
 package de.uni.freiburg.iig.telematik.sewol.parser;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Iterator;
 
@@ -15,12 +16,15 @@ import de.invation.code.toval.validate.Validate;
  * The fragment size has a direct impact on the memory usage and the performance of the following parsing process. By choosing a large fragment size, the parser might need a lot of memory and might need to write out some shadow maps for swapping (see NikeFS of OpenXES). For a low fragment size one must keep in mind that the parser reloads the extensions regularly, what slows down the parsing process enormously and also fills up the shadow maps. For many
  * traces with few entries a fragment size of more than 10000 can be sufficient, where a fragment size of 1000 can bring a good performance with less very large traces. The default value of a fragment size of 5000 should bring a good tradeoff of memory usage and performance.
  * </p>
+ * <p>
+ * The source file is closed when the end of the log is reached or with {@link #close()}.
+ * </p>
  * 
  * @version 1.0
  * @author Thomas Stocker
  * @author Adrian Lange
  */
-public class TraceWiseXesIterator implements Iterator<LogFragment> {
+public class TraceWiseXesIterator implements Iterator<LogFragment>, Closeable {
 
 	/** Specifies the default number of traces for the iterator */
 	public static final int DEFAULT_FRAGMENT_SIZE = 5000;
@@ -57,7 +61,12 @@ public class TraceWiseXesIterator implements Iterator<LogFragment> {
 		Validate.exists(logFile);
 		Validate.positive(fragmentSize);
 		fileReader = new FileReader(logFile);
-		header = nextStringFragment();
+		try {
+			header = nextStringFragment();
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
 		this.fragmentSize = fragmentSize;
 	}
 
@@ -79,7 +88,7 @@ public class TraceWiseXesIterator implements Iterator<LogFragment> {
 			lastTraceStart = nextLine;
 			hasNextTrace = true;
 		} else {
-			hasNextTrace = false;
+			close();
 		}
 		return buffer.toString();
 	}
@@ -118,4 +127,19 @@ public class TraceWiseXesIterator implements Iterator<LogFragment> {
 	public void remove() {
 		throw new UnsupportedOperationException();
 	}
+
+	/**
+	 * Closes the source file. The iterator has no further fragments afterwards.
+	 * 
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		hasNextTrace = false;
+		if (fileReader != null) {
+			FileReader closedReader = fileReader;
+			fileReader = null;
+			closedReader.closeFile();
+		}
+	}
 }
@@ -10,19 +10,21 @@ import de.invation.code.toval.parser.ParserException;
 import de.invation.code.toval.validate.ParameterException;
 import de.invation.code.toval.validate.Validate;
 import de.uni.freiburg.iig.telematik.sewol.format.MXMLLogFormat;
-import de.uni.freiburg.iig.telematik.sewol.log.DataAttribute;
+import de.uni.freiburg.iig.telematik.sewol.log.DataAttributePool;
 import de.uni.freiburg.iig.telematik.sewol.log.EventType;
 import de.uni.freiburg.iig.telematik.sewol.log.LockingException;
 import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
 import de.uni.freiburg.iig.telematik.sewol.log.LogSummary;
 import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
 import de.uni.freiburg.iig.telematik.sewol.parser.AbstractLogParser;
+import de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream;
 import de.uni.freiburg.iig.telematik.sewol.parser.ParserDateFormat;
 import de.uni.freiburg.iig.telematik.sewol.parser.ParsingMode;
 import java.io.FileNotFoundException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.function.Consumer;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -129,16 +131,38 @@ public class MXMLLogParser extends AbstractLogParser {
                 }
         }
 
-        private static class MXMLSAXHandler extends DefaultHandler {
+        /**
+         * Returns a {@link LogTraceStream} for the given file. The SAX parser
+         * runs in a separate thread and hands over the traces through a bounded
+         * queue, so that only a limited number of parsed traces is kept in
+         * memory.
+         *
+         * @param file File to parse.
+         * @param parsingMode Parsing mode of the stream.
+         * @return The trace stream.
+         * @throws IOException If the file can't be opened.
+         */
+        @Override
+        public LogTraceStream stream(File file, ParsingMode parsingMode) throws IOException {
+                Validate.noDirectory(file);
+                if (!file.canRead()) {
+                        throw new ParameterException("Unable to read input file!");
+                }
+                return new MXMLTraceStream(new FileInputStream(file), parsingMode);
+        }
+
+        static class MXMLSAXHandler extends DefaultHandler {
 
                 private final List<List<LogTrace<LogEntry>>> logs = new ArrayList<>();
                 private final List<LogSummary<LogEntry>> summaries = new ArrayList<>();
+                private final Consumer<LogTrace<LogEntry>> traceConsumer;
 
                 private List<LogTrace<LogEntry>> currentLog = null;
                 private LogTrace<LogEntry> currentTrace = null;
                 private LogEntry currentEntry = null;
                 private LogSummary<LogEntry> currentSummary = null;
-                private DataAttribute currentAttribute = null;
+                private String currentAttributeName = null;
+                private final DataAttributePool attributePool = new DataAttributePool();
                 private final StringBuilder lastCharacters = new StringBuilder();
                 private boolean recordCharacters = false;
                 private Date date = null;
@@ -152,6 +176,18 @@ public class MXMLLogParser extends AbstractLogParser {
                 private static final String DOUBLE_PATTERN = "^((?:\\d+\\.\\d+)|(?:\\d+\\.)|(?:\\.\\d+))$";
                 private static final String NON_INT_PATTERN = "(\\D+)";
 
+                MXMLSAXHandler() {
+                        this(null);
+                }
+
+                /**
+                 * Creates a handler which passes every completed trace to the
+                 * given consumer instead of collecting it.
+                 */
+                MXMLSAXHandler(Consumer<LogTrace<LogEntry>> traceConsumer) {
+                        this.traceConsumer = traceConsumer;
+                }
+
                 @Override
                 public void startDocument() throws SAXException {
                 }
@@ -191,7 +227,7 @@ public class MXMLLogParser extends AbstractLogParser {
                                                 recordCharacters = true;
                                                 if (attributes.getIndex(MXMLLogFormat.ATTRIBUTE_NAME) >= 0) {
                                                         String nameString = attributes.getValue(attributes.getIndex(MXMLLogFormat.ATTRIBUTE_NAME)).intern();
-                                                        currentAttribute = new DataAttribute(nameString);
+                                                        currentAttributeName = nameString;
                                                 }
                                         }
                                         break;
@@ -203,12 +239,19 @@ public class MXMLLogParser extends AbstractLogParser {
                         try {
                                 switch (qName) {
                                         case MXMLLogFormat.ELEMENT_LOG:
-                                                summaries.add(currentSummary);
-                                                logs.add(currentLog);
+                                                if (traceConsumer == null) {
+                                                        summaries.add(currentSummary);
+                                                        logs.add(currentLog);
+                                                }
                                                 break;
                                         case MXMLLogFormat.ELEMENT_TRACE:
-                                                currentLog.add(currentTrace);
-                                                currentSummary.addTrace(currentTrace);
+                                                if (traceConsumer != null) {
+                                                        traceConsumer.accept(currentTrace);
+                                                } else {
+                                                        currentLog.add(currentTrace);
+                                                        currentSummary.addTrace(currentTrace);
+                                                }
+                                                currentTrace = null;
                                                 break;
                                         case MXMLLogFormat.ELEMENT_ENTRY:
                                                 currentTrace.addEntry(currentEntry);
@@ -238,18 +281,18 @@ public class MXMLLogParser extends AbstractLogParser {
                                                 recordCharacters = false;
                                                 break;
                                         case MXMLLogFormat.ELEMENT_ATTRIBUTE:
-                                                if (currentAttribute != null) {
-                                                        String value = lastCharacters.toString().intern();
-
+                                                if (currentAttributeName != null) {
+                                                        String value = lastCharacters.toString();
+                                                        Object typedValue;
                                                         if (value.matches(INT_PATTERN)) {
-                                                                currentAttribute.value = Long.valueOf(value);
+                                                                typedValue = Long.valueOf(value);
                                                         } else if (value.matches(DOUBLE_PATTERN)) {
-                                                                currentAttribute.value = Double.valueOf(value);
+                                                                typedValue = Double.valueOf(value);
                                                         } else {
-                                                                currentAttribute.value = value;
+                                                                typedValue = value;
                                                         }
-                                                        currentEntry.addMetaAttribute(currentAttribute);
-                                                        currentAttribute = null;
+                                                        currentEntry.addMetaAttribute(attributePool.get(currentAttributeName, typedValue));
+                                                        currentAttributeName = null;
                                                 }
                                                 recordCharacters = false;
                                                 break;
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.parser.mxml;
+
+import de.invation.code.toval.parser.ParserException;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream;
+import de.uni.freiburg.iig.telematik.sewol.parser.ParsingMode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * <p>
+ * {@link LogTraceStream} for MXML logs. The SAX parser runs in its own thread
+ * and puts completed traces into a bounded queue, from which they are taken by
+ * {@link #next()}. If the queue is full, the parser thread blocks until traces
+ * are consumed.
+ * </p>
+ * <p>
+ * The traces of all processes contained in the file are returned one after
+ * another.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class MXMLTraceStream extends LogTraceStream {
+
+        /**
+         * Default number of parsed traces which can be buffered.
+         */
+        public static final int DEFAULT_BUFFER_SIZE = 1000;
+
+        private static final LogTrace<LogEntry> END_OF_STREAM = new LogTrace<>();
+
+        private final InputStream inputStream;
+        private final BlockingQueue<LogTrace<LogEntry>> buffer;
+        private final Thread parserThread;
+        private volatile Exception parserException = null;
+        private volatile boolean closed = false;
+        private boolean endReached = false;
+
+        public MXMLTraceStream(InputStream inputStream, ParsingMode parsingMode) {
+                this(inputStream, parsingMode, DEFAULT_BUFFER_SIZE);
+        }
+
+        public MXMLTraceStream(InputStream inputStream, ParsingMode parsingMode, int bufferSize) {
+                super(parsingMode);
+                this.inputStream = inputStream;
+                this.buffer = new ArrayBlockingQueue<>(bufferSize);
+                this.parserThread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                                parse();
+                        }
+                }, "MXMLTraceStream");
+                parserThread.setDaemon(true);
+                parserThread.start();
+        }
+
+        private void parse() {
+                try {
+                        SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+                        parser.parse(inputStream, new MXMLLogParser.MXMLSAXHandler(trace -> {
+                                try {
+                                        buffer.put(trace);
+                                } catch (InterruptedException e) {
+                                        // Aborts the SAX parser, the stream was closed.
+                                        throw new RuntimeException(e);
+                                }
+                        }));
+                } catch (Exception e) {
+                        if (closed) {
+                                return;
+                        }
+                        parserException = e;
+                }
+                try {
+                        buffer.put(END_OF_STREAM);
+                } catch (InterruptedException e) {
+                        // Stream was closed, nobody is waiting for the end marker.
+                }
+        }
+
+        @Override
+        protected LogTrace<LogEntry> readTrace() throws IOException, ParserException {
+                if (endReached) {
+                        return null;
+                }
+                LogTrace<LogEntry> trace;
+                try {
+                        trace = buffer.take();
+                } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the MXML parser.");
+                }
+                if (trace == END_OF_STREAM) {
+                        endReached = true;
+                        if (parserException != null) {
+                                throw new ParserException(parserException);
+                        }
+                        return null;
+                }
+                return trace;
+        }
+
+        @Override
+        public void close() throws IOException {
+                closed = true;
+                parserThread.interrupt();
+                inputStream.close();
+        }
+}
@@ -19,6 +19,7 @@ import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
 import de.uni.freiburg.iig.telematik.sewol.log.LogSummary;
 import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
 import de.uni.freiburg.iig.telematik.sewol.parser.AbstractLogParser;
+import de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream;
 import de.uni.freiburg.iig.telematik.sewol.parser.ParsingMode;
 import java.io.FileNotFoundException;
 
@@ -67,14 +68,7 @@ public class PetrifyParser extends AbstractLogParser {
                 Set<List<String>> activitySequences = new HashSet<>();
                 try {
                         while ((nextLine = bufferedReader.readLine()) != null) {
-                                LogTrace<LogEntry> newTrace = new LogTrace<>(++traceCount);
-                                StringTokenizer tokenizer = new StringTokenizer(nextLine);
-                                while (tokenizer.hasMoreTokens()) {
-                                        String nextToken = tokenizer.nextToken();
-                                        if (nextToken != null && !nextToken.isEmpty()) {
-                                                newTrace.addEntry(new LogEntry(nextToken));
-                                        }
-                                }
+                                LogTrace<LogEntry> newTrace = parseTrace(nextLine, ++traceCount);
                                 switch (parsingMode) {
                                         case COMPLETE:
                                                 traceList.add(newTrace);
@@ -91,7 +85,39 @@ public class PetrifyParser extends AbstractLogParser {
                 } catch (IOException ex) {
                         throw new ParserException(ex);
                 }
-                summaries.add(new LogSummary<>(traceList));
+                summaries.add(LogSummary.build(traceList));
                 return parsedLogFiles;
         }
+
+        /**
+         * Returns a {@link LogTraceStream} reading the given file line by line.
+         *
+         * @param file File to read.
+         * @param parsingMode Parsing mode of the stream.
+         * @return The trace stream.
+         * @throws IOException If the file can't be opened.
+         */
+        @Override
+        public LogTraceStream stream(File file, ParsingMode parsingMode) throws IOException {
+                Validate.noDirectory(file);
+                if (!file.canRead()) {
+                        throw new ParameterException("Unable to read input file!");
+                }
+                return new PetrifyTraceStream(new FileInputStream(file), parsingMode);
+        }
+
+        /**
+         * Creates a trace out of a line of whitespace separated activities.
+         */
+        static LogTrace<LogEntry> parseTrace(String line, int caseNumber) {
+                LogTrace<LogEntry> trace = new LogTrace<>(caseNumber);
+                StringTokenizer tokenizer = new StringTokenizer(line);
+                while (tokenizer.hasMoreTokens()) {
+                        String nextToken = tokenizer.nextToken();
+                        if (nextToken != null && !nextToken.isEmpty()) {
+                                trace.addEntry(new LogEntry(nextToken));
+                        }
+                }
+                return trace;
+        }
 }
@@ -18,6 +18,7 @@ import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
 import de.uni.freiburg.iig.telematik.sewol.log.LogSummary;
 import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
 import de.uni.freiburg.iig.telematik.sewol.parser.AbstractLogParser;
+import de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream;
 import de.uni.freiburg.iig.telematik.sewol.parser.ParsingMode;
 import java.io.FileNotFoundException;
 
@@ -70,12 +71,7 @@ public class PlainParser extends AbstractLogParser {
                 Set<List<String>> activitySequences = new HashSet<>();
                 try {
                         while ((nextLine = bufferedReader.readLine()) != null) {
-                                LogTrace<LogEntry> newTrace = new LogTrace<>(++traceCount);
-                                for (String nextToken : nextLine.split(delimiter)) {
-                                        if (nextToken != null && !nextToken.isEmpty()) {
-                                                newTrace.addEntry(new LogEntry(nextToken));
-                                        }
-                                }
+                                LogTrace<LogEntry> newTrace = parseTrace(nextLine, delimiter, ++traceCount);
                                 switch (parsingMode) {
                                         case COMPLETE:
                                                 traceList.add(newTrace);
@@ -93,7 +89,38 @@ public class PlainParser extends AbstractLogParser {
                         throw new ParserException(ex);
                 }
 
-                summaries.add(new LogSummary<>(traceList));
+                summaries.add(LogSummary.build(traceList));
                 return parsedLogFiles;
         }
+
+        /**
+         * Returns a {@link LogTraceStream} reading the given file line by line.
+         *
+         * @param file File to read.
+         * @param parsingMode Parsing mode of the stream.
+         * @return The trace stream.
+         * @throws IOException If the file can't be opened.
+         */
+        @Override
+        public LogTraceStream stream(File file, ParsingMode parsingMode) throws IOException {
+                Validate.noDirectory(file);
+                if (!file.canRead()) {
+                        throw new ParameterException("Unable to read input file!");
+                }
+                return new PlainTraceStream(new FileInputStream(file), delimiter, parsingMode);
+        }
+
+        /**
+         * Creates a trace out of a line of activities separated by the given
+         * delimiter.
+         */
+        static LogTrace<LogEntry> parseTrace(String line, String delimiter, int caseNumber) {
+                LogTrace<LogEntry> trace = new LogTrace<>(caseNumber);
+                for (String nextToken : line.split(delimiter)) {
+                        if (nextToken != null && !nextToken.isEmpty()) {
+                                trace.addEntry(new LogEntry(nextToken));
+                        }
+                }
+                return trace;
+        }
 }
@@ -19,6 +19,11 @@ import org.deckfour.xes.extension.XExtension;
 import org.deckfour.xes.in.XParser;
 import org.deckfour.xes.in.XParserRegistry;
 import org.deckfour.xes.model.XAttribute;
+import org.deckfour.xes.model.XAttributeBoolean;
+import org.deckfour.xes.model.XAttributeContinuous;
+import org.deckfour.xes.model.XAttributeDiscrete;
+import org.deckfour.xes.model.XAttributeLiteral;
+import org.deckfour.xes.model.XAttributeTimestamp;
 import org.deckfour.xes.model.XEvent;
 import org.deckfour.xes.model.XLog;
 import org.deckfour.xes.model.XTrace;
@@ -29,15 +34,18 @@ import de.invation.code.toval.validate.ParameterException;
 import de.invation.code.toval.validate.Validate;
 import de.uni.freiburg.iig.telematik.sewol.log.DULogEntry;
 import de.uni.freiburg.iig.telematik.sewol.log.DataAttribute;
+import de.uni.freiburg.iig.telematik.sewol.log.DataAttributePool;
 import de.uni.freiburg.iig.telematik.sewol.log.EventType;
 import de.uni.freiburg.iig.telematik.sewol.log.LockingException;
 import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
 import de.uni.freiburg.iig.telematik.sewol.log.LogSummary;
 import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
 import de.uni.freiburg.iig.telematik.sewol.parser.AbstractLogParser;
+import de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream;
 import de.uni.freiburg.iig.telematik.sewol.parser.ParserDateFormat;
 import de.uni.freiburg.iig.telematik.sewol.parser.ParserFileFormat;
 import de.uni.freiburg.iig.telematik.sewol.parser.ParsingMode;
+import de.uni.freiburg.iig.telematik.sewol.parser.TraceWiseXesIterator;
 import java.io.FileNotFoundException;
 
 /**
@@ -52,6 +60,11 @@ import java.io.FileNotFoundException;
  */
 public class XESLogParser extends AbstractLogParser {
 
+	/**
+	 * Pool for the attribute names and values of the log which is currently parsed.
+	 */
+	private DataAttributePool attributePool = null;
+
 	/**
 	 * Checks whether the given file can be parsed by the file extension.
          * @param file
@@ -115,6 +128,7 @@ public class XESLogParser extends AbstractLogParser {
 			throw new ParserException("No suitable parser could have been found!");
 
 		parsedLogFiles = new ArrayList<>(logs.size());
+		attributePool = new DataAttributePool();
 		Set<List<String>> activitySequencesSet = new HashSet<>();
 		Set<LogTrace<LogEntry>> traceSet = new HashSet<>();
 		for (XLog log : logs) {
@@ -177,8 +191,9 @@ public class XESLogParser extends AbstractLogParser {
 				
 			}
 			parsedLogFiles.add(logTraces);
-			summaries.add(new LogSummary<>(logTraces));
+			summaries.add(LogSummary.build(logTraces));
 		}
+		attributePool = null;
 
 		return parsedLogFiles;
 	}
@@ -213,6 +228,25 @@ public class XESLogParser extends AbstractLogParser {
 		}
 	}
 
+	/**
+	 * Returns a {@link LogTraceStream} for the given file. The file is parsed in fragments of {@link TraceWiseXesIterator#DEFAULT_FRAGMENT_SIZE} traces.
+	 * 
+	 * @param file
+	 *            File to parse
+	 * @param parsingMode
+	 *            Parsing mode of the stream
+	 * @return The trace stream.
+	 * @throws IOException
+	 *             Gets thrown if the file can't be opened.
+	 */
+	@Override
+	public LogTraceStream stream(File file, ParsingMode parsingMode) throws IOException {
+		Validate.noDirectory(file);
+		if (!file.canRead())
+			throw new ParameterException("Unable to read input file!");
+		return new XESTraceStream(file.getAbsolutePath(), parsingMode);
+	}
+
 	/**
 	 * Checks if the extension list contains the {@link XExtension} with the name <i>AttributeDataUsage</i>.
 	 */
@@ -341,7 +375,7 @@ public class XESLogParser extends AbstractLogParser {
 		
 		String dataAttributeKey = attribute.getKey();
 		Object dataAttributeValue = parseAttributeValue(attribute.getValue());
-		DataAttribute dataAttribute = new DataAttribute(dataAttributeKey, dataAttributeValue);
+		DataAttribute dataAttribute = attributePool.get(dataAttributeKey, dataAttributeValue);
 
 		// Get sub-attributes
 		for (Map.Entry<String, XAttribute> subattribute : attribute.getValue().getAttributes().entrySet()) {
@@ -361,7 +395,25 @@ public class XESLogParser extends AbstractLogParser {
 	}
 
 	private void addMetaInformation(LogEntry entry, Map.Entry<String, XAttribute> attribute) throws ParserException {
-		entry.addMetaAttribute(new DataAttribute(attribute.getKey(), attribute.getValue()));
+		entry.addMetaAttribute(attributePool.get(attribute.getKey(), getTypedValue(attribute.getValue())));
+	}
+
+	/**
+	 * Returns the value of the given attribute as immutable typed value
+	 * instead of the attribute object itself.
+	 */
+	private static Object getTypedValue(XAttribute attribute) {
+		if (attribute instanceof XAttributeLiteral)
+			return ((XAttributeLiteral) attribute).getValue();
+		if (attribute instanceof XAttributeDiscrete)
+			return ((XAttributeDiscrete) attribute).getValue();
+		if (attribute instanceof XAttributeContinuous)
+			return ((XAttributeContinuous) attribute).getValue();
+		if (attribute instanceof XAttributeBoolean)
+			return ((XAttributeBoolean) attribute).getValue();
+		if (attribute instanceof XAttributeTimestamp)
+			return ((XAttributeTimestamp) attribute).getValue();
+		return attribute.toString();
 	}
 
 	private Collection<Long> getSimilarInstances(XTrace trace) throws ParserException {
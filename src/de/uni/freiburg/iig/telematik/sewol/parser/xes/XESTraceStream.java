@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.parser.xes;
+
+import de.invation.code.toval.parser.ParserException;
+import de.uni.freiburg.iig.telematik.sewol.log.LogEntry;
+import de.uni.freiburg.iig.telematik.sewol.log.LogTrace;
+import de.uni.freiburg.iig.telematik.sewol.parser.LogFragment;
+import de.uni.freiburg.iig.telematik.sewol.parser.LogTraceStream;
+import de.uni.freiburg.iig.telematik.sewol.parser.ParsingMode;
+import de.uni.freiburg.iig.telematik.sewol.parser.TraceWiseXesIterator;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link LogTraceStream} for XES logs. The file is split into fragments of a
+ * fixed number of traces with the help of a {@link TraceWiseXesIterator} and
+ * each fragment is parsed separately, so that at most one fragment is kept in
+ * memory.
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class XESTraceStream extends LogTraceStream {
+
+        private final TraceWiseXesIterator fragments;
+        private Iterator<List<LogTrace<LogEntry>>> fragmentLogs = Collections.emptyIterator();
+        private Iterator<LogTrace<LogEntry>> fragmentTraces = Collections.emptyIterator();
+
+        public XESTraceStream(String logFile, ParsingMode parsingMode) throws IOException {
+                this(logFile, parsingMode, TraceWiseXesIterator.DEFAULT_FRAGMENT_SIZE);
+        }
+
+        public XESTraceStream(String logFile, ParsingMode parsingMode, int fragmentSize) throws IOException {
+                super(parsingMode);
+                fragments = new TraceWiseXesIterator(logFile, fragmentSize);
+        }
+
+        @Override
+        protected LogTrace<LogEntry> readTrace() throws IOException, ParserException {
+                while (!fragmentTraces.hasNext()) {
+                        if (fragmentLogs.hasNext()) {
+                                fragmentTraces = fragmentLogs.next().iterator();
+                        } else if (fragments.hasNext()) {
+                                LogFragment fragment = fragments.next();
+                                // A new parser per fragment, since parsers keep the summaries of all parsed logs.
+                                fragmentLogs = new XESLogParser().parse(fragment, ParsingMode.COMPLETE).iterator();
+                        } else {
+                                return null;
+                        }
+                }
+                return fragmentTraces.next();
+        }
+
+        @Override
+        public void close() throws IOException {
+                fragmentLogs = Collections.emptyIterator();
+                fragmentTraces = Collections.emptyIterator();
+                fragments.close();
+        }
+}
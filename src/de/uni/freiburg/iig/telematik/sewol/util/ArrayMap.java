@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>
+ * Map storing its keys and values in two arrays and looking up keys by linear
+ * search. For a handful of mappings this needs considerably less memory than a
+ * {@link java.util.HashMap} and is not slower. For larger maps, use a hash
+ * based map instead.
+ * </p>
+ * <p>
+ * Supports <code>null</code> keys and values. Equality and hash code follow
+ * the contract of {@link Map}, so array maps and hash maps with the same
+ * mappings are equal.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class ArrayMap<K, V> extends AbstractMap<K, V> {
+
+        private static final Object[] EMPTY = new Object[0];
+
+        private Object[] keys = EMPTY;
+        private Object[] values = EMPTY;
+        private int size = 0;
+        private int modCount = 0;
+
+        public ArrayMap() {
+        }
+
+        public ArrayMap(Map<? extends K, ? extends V> map) {
+                keys = new Object[map.size()];
+                values = new Object[map.size()];
+                putAll(map);
+        }
+
+        private int indexOf(Object key) {
+                for (int i = 0; i < size; i++) {
+                        if (Objects.equals(keys[i], key)) {
+                                return i;
+                        }
+                }
+                return -1;
+        }
+
+        @Override
+        public int size() {
+                return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+                return indexOf(key) >= 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+                int index = indexOf(key);
+                return index < 0 ? null : (V) values[index];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V put(K key, V value) {
+                int index = indexOf(key);
+                if (index >= 0) {
+                        V old = (V) values[index];
+                        values[index] = value;
+                        return old;
+                }
+                if (size == keys.length) {
+                        int capacity = Math.max(2, size + (size >> 1) + 1);
+                        keys = Arrays.copyOf(keys, capacity);
+                        values = Arrays.copyOf(values, capacity);
+                }
+                keys[size] = key;
+                values[size] = value;
+                size++;
+                modCount++;
+                return null;
+        }
+
+        @Override
+        public V remove(Object key) {
+                int index = indexOf(key);
+                if (index < 0) {
+                        return null;
+                }
+                return removeAt(index);
+        }
+
+        @SuppressWarnings("unchecked")
+        private V removeAt(int index) {
+                V old = (V) values[index];
+                int moved = size - index - 1;
+                System.arraycopy(keys, index + 1, keys, index, moved);
+                System.arraycopy(values, index + 1, values, index, moved);
+                size--;
+                keys[size] = null;
+                values[size] = null;
+                modCount++;
+                return old;
+        }
+
+        @Override
+        public void clear() {
+                Arrays.fill(keys, 0, size, null);
+                Arrays.fill(values, 0, size, null);
+                size = 0;
+                modCount++;
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+                return new AbstractSet<Map.Entry<K, V>>() {
+                        @Override
+                        public Iterator<Map.Entry<K, V>> iterator() {
+                                return new EntryIterator();
+                        }
+
+                        @Override
+                        public int size() {
+                                return size;
+                        }
+                };
+        }
+
+        private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+                private int next = 0;
+                private int last = -1;
+                private int expectedModCount = modCount;
+
+                @Override
+                public boolean hasNext() {
+                        return next < size;
+                }
+
+                @Override
+                public Map.Entry<K, V> next() {
+                        if (expectedModCount != modCount) {
+                                throw new ConcurrentModificationException();
+                        }
+                        if (next >= size) {
+                                throw new NoSuchElementException();
+                        }
+                        last = next++;
+                        return new ArrayEntry(last);
+                }
+
+                @Override
+                public void remove() {
+                        if (last < 0) {
+                                throw new IllegalStateException();
+                        }
+                        if (expectedModCount != modCount) {
+                                throw new ConcurrentModificationException();
+                        }
+                        removeAt(last);
+                        next = last;
+                        last = -1;
+                        expectedModCount = modCount;
+                }
+        }
+
+        private class ArrayEntry implements Map.Entry<K, V> {
+
+                private final int index;
+
+                ArrayEntry(int index) {
+                        this.index = index;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public K getKey() {
+                        return (K) keys[index];
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public V getValue() {
+                        return (V) values[index];
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public V setValue(V value) {
+                        V old = (V) values[index];
+                        values[index] = value;
+                        return old;
+                }
+
+                @Override
+                public boolean equals(Object obj) {
+                        if (!(obj instanceof Map.Entry)) {
+                                return false;
+                        }
+                        Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+                        return Objects.equals(getKey(), other.getKey()) && Objects.equals(getValue(), other.getValue());
+                }
+
+                @Override
+                public int hashCode() {
+                        return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+                }
+
+                @Override
+                public String toString() {
+                        return getKey() + "=" + getValue();
+                }
+        }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Set storing its elements in an array and looking them up by linear search.
+ * Intended for sets of a few elements, for which it needs considerably less
+ * memory than a {@link java.util.HashSet}. Equality and hash code follow the
+ * contract of {@link java.util.Set}.
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ * @param <E> Element type
+ */
+public class ArraySet<E> extends AbstractSet<E> {
+
+        private static final Object[] EMPTY = new Object[0];
+
+        private Object[] elements = EMPTY;
+        private int size = 0;
+        private int modCount = 0;
+
+        public ArraySet() {
+        }
+
+        public ArraySet(Collection<? extends E> elements) {
+                this.elements = new Object[elements.size()];
+                addAll(elements);
+        }
+
+        private int indexOf(Object element) {
+                for (int i = 0; i < size; i++) {
+                        if (Objects.equals(elements[i], element)) {
+                                return i;
+                        }
+                }
+                return -1;
+        }
+
+        @Override
+        public int size() {
+                return size;
+        }
+
+        @Override
+        public boolean contains(Object element) {
+                return indexOf(element) >= 0;
+        }
+
+        @Override
+        public boolean add(E element) {
+                if (indexOf(element) >= 0) {
+                        return false;
+                }
+                if (size == elements.length) {
+                        elements = Arrays.copyOf(elements, Math.max(2, size + (size >> 1) + 1));
+                }
+                elements[size++] = element;
+                modCount++;
+                return true;
+        }
+
+        @Override
+        public boolean remove(Object element) {
+                int index = indexOf(element);
+                if (index < 0) {
+                        return false;
+                }
+                removeAt(index);
+                return true;
+        }
+
+        private void removeAt(int index) {
+                System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+                elements[--size] = null;
+                modCount++;
+        }
+
+        @Override
+        public void clear() {
+                Arrays.fill(elements, 0, size, null);
+                size = 0;
+                modCount++;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+                return new Iterator<E>() {
+                        private int next = 0;
+                        private int last = -1;
+                        private int expectedModCount = modCount;
+
+                        @Override
+                        public boolean hasNext() {
+                                return next < size;
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public E next() {
+                                if (expectedModCount != modCount) {
+                                        throw new ConcurrentModificationException();
+                                }
+                                if (next >= size) {
+                                        throw new NoSuchElementException();
+                                }
+                                last = next++;
+                                return (E) elements[last];
+                        }
+
+                        @Override
+                        public void remove() {
+                                if (last < 0) {
+                                        throw new IllegalStateException();
+                                }
+                                if (expectedModCount != modCount) {
+                                        throw new ConcurrentModificationException();
+                                }
+                                removeAt(last);
+                                next = last;
+                                last = -1;
+                                expectedModCount = modCount;
+                        }
+                };
+        }
+}
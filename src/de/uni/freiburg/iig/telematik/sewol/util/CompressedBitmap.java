@@ -0,0 +1,852 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.util;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.Validate;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * Compressed set of non-negative integers, e.g. ordinals of traces within a
+ * log.
+ * </p>
+ * <p>
+ * The integers are partitioned into chunks of 2<sup>16</sup> values by their
+ * upper 16 bits. Each chunk is stored either as a sorted array of its lower 16
+ * bits, as long as it contains at most {@value #ARRAY_MAX_SIZE} values, or as
+ * a bitmap of 2<sup>16</sup> bits otherwise. Sparse sets therefore need two
+ * bytes per value, dense sets one bit per possible value. Intersections,
+ * unions and differences are computed chunk by chunk without decompressing.
+ * </p>
+ * <p>
+ * Bitmaps are not thread-safe. Operations returning a bitmap create a new
+ * one and leave their operands unchanged.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class CompressedBitmap implements Cloneable {
+
+        /**
+         * Maximum number of values of a chunk stored as array.
+         */
+        public static final int ARRAY_MAX_SIZE = 4096;
+
+        private static final int WORDS = 1024;
+
+        private int[] keys = new int[0];
+        private Container[] containers = new Container[0];
+        private int size = 0;
+
+        /**
+         * Creates an empty bitmap.
+         */
+        public CompressedBitmap() {
+        }
+
+        /**
+         * Creates a bitmap containing all integers from <code>0</code>
+         * (inclusive) to <code>end</code> (exclusive).
+         *
+         * @param end
+         * @return
+         * @throws ParameterException If <code>end</code> is negative.
+         */
+        public static CompressedBitmap range(int end) throws ParameterException {
+                Validate.notNegative(end);
+                CompressedBitmap result = new CompressedBitmap();
+                for (int key = 0; key <= (end - 1) >>> 16 && end > 0; key++) {
+                        int count = Math.min(end - (key << 16), 1 << 16);
+                        BitmapContainer container = new BitmapContainer();
+                        for (int i = 0; i < count >>> 6; i++) {
+                                container.words[i] = -1L;
+                        }
+                        if ((count & 63) != 0) {
+                                container.words[count >>> 6] = (1L << count) - 1;
+                        }
+                        container.cardinality = count;
+                        result.append(key, container.shrink());
+                }
+                return result;
+        }
+
+        /**
+         * Creates a bitmap containing the given values.
+         *
+         * @param values
+         * @return
+         */
+        public static CompressedBitmap of(int... values) {
+                CompressedBitmap result = new CompressedBitmap();
+                for (int value : values) {
+                        result.add(value);
+                }
+                return result;
+        }
+
+        /**
+         * Adds the given value to the bitmap. Adding values in ascending order
+         * is fastest.
+         *
+         * @param value Value to add.
+         * @return <code>true</code> if the value was not contained before.
+         * @throws ParameterException If the value is negative.
+         */
+        public boolean add(int value) throws ParameterException {
+                Validate.notNegative(value);
+                int key = value >>> 16;
+                int index = indexOf(key);
+                if (index < 0) {
+                        index = -index - 1;
+                        insert(index, key, new ArrayContainer());
+                }
+                Container container = containers[index];
+                int cardinality = container.cardinality();
+                containers[index] = container.add((char) value);
+                return containers[index].cardinality() > cardinality;
+        }
+
+        /**
+         * Removes the given value from the bitmap.
+         *
+         * @param value Value to remove.
+         * @return <code>true</code> if the value was contained before.
+         */
+        public boolean remove(int value) {
+                if (value < 0) {
+                        return false;
+                }
+                int index = indexOf(value >>> 16);
+                if (index < 0) {
+                        return false;
+                }
+                Container container = containers[index];
+                int cardinality = container.cardinality();
+                container = container.remove((char) value);
+                if (container.cardinality() == 0) {
+                        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+                        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+                        containers[--size] = null;
+                } else {
+                        containers[index] = container;
+                }
+                return container.cardinality() < cardinality;
+        }
+
+        /**
+         * Checks if the bitmap contains the given value.
+         *
+         * @param value
+         * @return
+         */
+        public boolean contains(int value) {
+                if (value < 0) {
+                        return false;
+                }
+                int index = indexOf(value >>> 16);
+                return index >= 0 && containers[index].contains((char) value);
+        }
+
+        /**
+         * Returns the number of values in the bitmap.
+         *
+         * @return
+         */
+        public int cardinality() {
+                int cardinality = 0;
+                for (int i = 0; i < size; i++) {
+                        cardinality += containers[i].cardinality();
+                }
+                return cardinality;
+        }
+
+        public boolean isEmpty() {
+                return size == 0;
+        }
+
+        /**
+         * Returns the intersection of this and the given bitmap.
+         *
+         * @param other
+         * @return
+         */
+        public CompressedBitmap and(CompressedBitmap other) {
+                Validate.notNull(other);
+                CompressedBitmap result = new CompressedBitmap();
+                int i = 0;
+                int j = 0;
+                while (i < size && j < other.size) {
+                        if (keys[i] < other.keys[j]) {
+                                i++;
+                        } else if (keys[i] > other.keys[j]) {
+                                j++;
+                        } else {
+                                Container container = containers[i].and(other.containers[j]);
+                                if (container.cardinality() > 0) {
+                                        result.append(keys[i], container);
+                                }
+                                i++;
+                                j++;
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns the union of this and the given bitmap.
+         *
+         * @param other
+         * @return
+         */
+        public CompressedBitmap or(CompressedBitmap other) {
+                Validate.notNull(other);
+                CompressedBitmap result = new CompressedBitmap();
+                int i = 0;
+                int j = 0;
+                while (i < size || j < other.size) {
+                        if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+                                result.append(keys[i], containers[i].copy());
+                                i++;
+                        } else if (i >= size || keys[i] > other.keys[j]) {
+                                result.append(other.keys[j], other.containers[j].copy());
+                                j++;
+                        } else {
+                                result.append(keys[i], containers[i].or(other.containers[j]));
+                                i++;
+                                j++;
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns all values of this bitmap which are not contained in the
+         * given bitmap.
+         *
+         * @param other
+         * @return
+         */
+        public CompressedBitmap andNot(CompressedBitmap other) {
+                Validate.notNull(other);
+                CompressedBitmap result = new CompressedBitmap();
+                int j = 0;
+                for (int i = 0; i < size; i++) {
+                        while (j < other.size && other.keys[j] < keys[i]) {
+                                j++;
+                        }
+                        Container container;
+                        if (j < other.size && other.keys[j] == keys[i]) {
+                                container = containers[i].andNot(other.containers[j]);
+                        } else {
+                                container = containers[i].copy();
+                        }
+                        if (container.cardinality() > 0) {
+                                result.append(keys[i], container);
+                        }
+                }
+                return result;
+        }
+
+        /**
+         * Returns all values from <code>0</code> (inclusive) to
+         * <code>end</code> (exclusive) which are not contained in this bitmap.
+         *
+         * @param end
+         * @return
+         */
+        public CompressedBitmap complement(int end) {
+                return range(end).andNot(this);
+        }
+
+        /**
+         * Passes all values to the given consumer in ascending order.
+         *
+         * @param consumer
+         */
+        public void forEach(IntConsumer consumer) {
+                Validate.notNull(consumer);
+                for (int i = 0; i < size; i++) {
+                        containers[i].forEach(keys[i] << 16, consumer);
+                }
+        }
+
+        /**
+         * Returns an iterator over all values in ascending order.
+         *
+         * @return
+         */
+        public PrimitiveIterator.OfInt iterator() {
+                return new PrimitiveIterator.OfInt() {
+                        private int index = 0;
+                        private int[] values = new int[0];
+                        private int position = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                                while (position >= values.length && index < size) {
+                                        values = containers[index].toArray(keys[index] << 16);
+                                        position = 0;
+                                        index++;
+                                }
+                                return position < values.length;
+                        }
+
+                        @Override
+                        public int nextInt() {
+                                if (!hasNext()) {
+                                        throw new NoSuchElementException();
+                                }
+                                return values[position++];
+                        }
+                };
+        }
+
+        /**
+         * Returns all values in ascending order.
+         *
+         * @return
+         */
+        public int[] toArray() {
+                int[] result = new int[cardinality()];
+                int offset = 0;
+                for (int i = 0; i < size; i++) {
+                        int[] values = containers[i].toArray(keys[i] << 16);
+                        System.arraycopy(values, 0, result, offset, values.length);
+                        offset += values.length;
+                }
+                return result;
+        }
+
+        /**
+         * Returns the number of bytes used for storing the values, without
+         * object overhead.
+         *
+         * @return
+         */
+        public long getSizeInBytes() {
+                long bytes = 4L * keys.length;
+                for (int i = 0; i < size; i++) {
+                        bytes += containers[i].getSizeInBytes();
+                }
+                return bytes;
+        }
+
+        /**
+         * Writes the bitmap in its compressed form to the given output.
+         *
+         * @param out
+         * @throws IOException
+         * @see #read(DataInput)
+         */
+        public void write(DataOutput out) throws IOException {
+                Validate.notNull(out);
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                        out.writeInt(keys[i]);
+                        containers[i].write(out);
+                }
+        }
+
+        /**
+         * Reads a bitmap written by {@link #write(DataOutput)}.
+         *
+         * @param in
+         * @return
+         * @throws IOException If the input can't be read or does not contain a
+         * valid bitmap.
+         */
+        public static CompressedBitmap read(DataInput in) throws IOException {
+                Validate.notNull(in);
+                CompressedBitmap result = new CompressedBitmap();
+                int count = in.readInt();
+                if (count < 0) {
+                        throw new IOException("Invalid number of chunks: " + count);
+                }
+                int previousKey = -1;
+                for (int i = 0; i < count; i++) {
+                        int key = in.readInt();
+                        if (key <= previousKey || key > 0x7FFF) {
+                                throw new IOException("Invalid chunk key: " + key);
+                        }
+                        previousKey = key;
+                        result.append(key, readContainer(in));
+                }
+                return result;
+        }
+
+        private static Container readContainer(DataInput in) throws IOException {
+                int cardinality = in.readInt();
+                if (cardinality <= 0 || cardinality > 1 << 16) {
+                        throw new IOException("Invalid chunk cardinality: " + cardinality);
+                }
+                if (cardinality <= ARRAY_MAX_SIZE) {
+                        char[] values = new char[cardinality];
+                        for (int i = 0; i < cardinality; i++) {
+                                values[i] = in.readChar();
+                                if (i > 0 && values[i] <= values[i - 1]) {
+                                        throw new IOException("Chunk values are not sorted.");
+                                }
+                        }
+                        return new ArrayContainer(values, cardinality);
+                }
+                BitmapContainer bitmap = new BitmapContainer();
+                for (int i = 0; i < WORDS; i++) {
+                        bitmap.words[i] = in.readLong();
+                        bitmap.cardinality += Long.bitCount(bitmap.words[i]);
+                }
+                if (bitmap.cardinality != cardinality) {
+                        throw new IOException("Chunk cardinality does not match its values.");
+                }
+                return bitmap;
+        }
+
+        @Override
+        public CompressedBitmap clone() {
+                CompressedBitmap result = new CompressedBitmap();
+                result.keys = Arrays.copyOf(keys, size);
+                result.containers = new Container[size];
+                for (int i = 0; i < size; i++) {
+                        result.containers[i] = containers[i].copy();
+                }
+                result.size = size;
+                return result;
+        }
+
+        @Override
+        public int hashCode() {
+                return Arrays.hashCode(toArray());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+                if (this == obj) {
+                        return true;
+                }
+                if (!(obj instanceof CompressedBitmap)) {
+                        return false;
+                }
+                return Arrays.equals(toArray(), ((CompressedBitmap) obj).toArray());
+        }
+
+        @Override
+        public String toString() {
+                return Arrays.toString(toArray());
+        }
+
+        private int indexOf(int key) {
+                if (size > 0 && keys[size - 1] == key) {
+                        return size - 1;
+                }
+                return Arrays.binarySearch(keys, 0, size, key);
+        }
+
+        private void insert(int index, int key, Container container) {
+                if (size == keys.length) {
+                        int capacity = Math.max(4, size * 2);
+                        keys = Arrays.copyOf(keys, capacity);
+                        containers = Arrays.copyOf(containers, capacity);
+                }
+                System.arraycopy(keys, index, keys, index + 1, size - index);
+                System.arraycopy(containers, index, containers, index + 1, size - index);
+                keys[index] = key;
+                containers[index] = container;
+                size++;
+        }
+
+        private void append(int key, Container container) {
+                insert(size, key, container);
+        }
+
+        /**
+         * Values of a chunk, represented by their lower 16 bits.
+         */
+        private abstract static class Container {
+
+                abstract int cardinality();
+
+                abstract boolean contains(char value);
+
+                abstract Container add(char value);
+
+                abstract Container remove(char value);
+
+                abstract Container and(Container other);
+
+                abstract Container or(Container other);
+
+                abstract Container andNot(Container other);
+
+                abstract Container copy();
+
+                abstract void forEach(int base, IntConsumer consumer);
+
+                abstract int[] toArray(int base);
+
+                abstract long getSizeInBytes();
+
+                /**
+                 * Writes the cardinality followed by the values, as sorted
+                 * array or as bitmap depending on the cardinality.
+                 */
+                abstract void write(DataOutput out) throws IOException;
+        }
+
+        private static final class ArrayContainer extends Container {
+
+                private char[] values;
+                private int cardinality;
+
+                ArrayContainer() {
+                        this(new char[4], 0);
+                }
+
+                ArrayContainer(char[] values, int cardinality) {
+                        this.values = values;
+                        this.cardinality = cardinality;
+                }
+
+                @Override
+                int cardinality() {
+                        return cardinality;
+                }
+
+                @Override
+                boolean contains(char value) {
+                        return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+                }
+
+                @Override
+                Container add(char value) {
+                        int index = cardinality > 0 && values[cardinality - 1] < value ? -cardinality - 1 : Arrays.binarySearch(values, 0, cardinality, value);
+                        if (index >= 0) {
+                                return this;
+                        }
+                        if (cardinality == ARRAY_MAX_SIZE) {
+                                return toBitmap().add(value);
+                        }
+                        index = -index - 1;
+                        if (cardinality == values.length) {
+                                values = Arrays.copyOf(values, Math.max(4, Math.min(ARRAY_MAX_SIZE, cardinality * 2)));
+                        }
+                        System.arraycopy(values, index, values, index + 1, cardinality - index);
+                        values[index] = value;
+                        cardinality++;
+                        return this;
+                }
+
+                @Override
+                Container remove(char value) {
+                        int index = Arrays.binarySearch(values, 0, cardinality, value);
+                        if (index >= 0) {
+                                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                                cardinality--;
+                        }
+                        return this;
+                }
+
+                @Override
+                Container and(Container other) {
+                        char[] result = new char[cardinality];
+                        int count = 0;
+                        if (other instanceof ArrayContainer) {
+                                ArrayContainer array = (ArrayContainer) other;
+                                int i = 0;
+                                int j = 0;
+                                while (i < cardinality && j < array.cardinality) {
+                                        if (values[i] < array.values[j]) {
+                                                i++;
+                                        } else if (values[i] > array.values[j]) {
+                                                j++;
+                                        } else {
+                                                result[count++] = values[i];
+                                                i++;
+                                                j++;
+                                        }
+                                }
+                        } else {
+                                for (int i = 0; i < cardinality; i++) {
+                                        if (other.contains(values[i])) {
+                                                result[count++] = values[i];
+                                        }
+                                }
+                        }
+                        return new ArrayContainer(result, count);
+                }
+
+                @Override
+                Container or(Container other) {
+                        if (other instanceof BitmapContainer) {
+                                return other.or(this);
+                        }
+                        ArrayContainer array = (ArrayContainer) other;
+                        char[] result = new char[cardinality + array.cardinality];
+                        int count = 0;
+                        int i = 0;
+                        int j = 0;
+                        while (i < cardinality || j < array.cardinality) {
+                                if (j >= array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                                        result[count++] = values[i++];
+                                } else if (i >= cardinality || values[i] > array.values[j]) {
+                                        result[count++] = array.values[j++];
+                                } else {
+                                        result[count++] = values[i];
+                                        i++;
+                                        j++;
+                                }
+                        }
+                        ArrayContainer union = new ArrayContainer(result, count);
+                        return count > ARRAY_MAX_SIZE ? union.toBitmap() : union;
+                }
+
+                @Override
+                Container andNot(Container other) {
+                        char[] result = new char[cardinality];
+                        int count = 0;
+                        for (int i = 0; i < cardinality; i++) {
+                                if (!other.contains(values[i])) {
+                                        result[count++] = values[i];
+                                }
+                        }
+                        return new ArrayContainer(result, count);
+                }
+
+                @Override
+                Container copy() {
+                        return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+                }
+
+                @Override
+                void forEach(int base, IntConsumer consumer) {
+                        for (int i = 0; i < cardinality; i++) {
+                                consumer.accept(base | values[i]);
+                        }
+                }
+
+                @Override
+                int[] toArray(int base) {
+                        int[] result = new int[cardinality];
+                        for (int i = 0; i < cardinality; i++) {
+                                result[i] = base | values[i];
+                        }
+                        return result;
+                }
+
+                @Override
+                long getSizeInBytes() {
+                        return 2L * values.length;
+                }
+
+                @Override
+                void write(DataOutput out) throws IOException {
+                        out.writeInt(cardinality);
+                        for (int i = 0; i < cardinality; i++) {
+                                out.writeChar(values[i]);
+                        }
+                }
+
+                private BitmapContainer toBitmap() {
+                        BitmapContainer bitmap = new BitmapContainer();
+                        for (int i = 0; i < cardinality; i++) {
+                                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+                        }
+                        bitmap.cardinality = cardinality;
+                        return bitmap;
+                }
+        }
+
+        private static final class BitmapContainer extends Container {
+
+                private final long[] words = new long[WORDS];
+                private int cardinality = 0;
+
+                @Override
+                int cardinality() {
+                        return cardinality;
+                }
+
+                @Override
+                boolean contains(char value) {
+                        return (words[value >>> 6] & (1L << value)) != 0;
+                }
+
+                @Override
+                Container add(char value) {
+                        long word = words[value >>> 6];
+                        long updated = word | (1L << value);
+                        if (word != updated) {
+                                words[value >>> 6] = updated;
+                                cardinality++;
+                        }
+                        return this;
+                }
+
+                @Override
+                Container remove(char value) {
+                        long word = words[value >>> 6];
+                        long updated = word & ~(1L << value);
+                        if (word != updated) {
+                                words[value >>> 6] = updated;
+                                cardinality--;
+                        }
+                        return cardinality <= ARRAY_MAX_SIZE ? shrink() : this;
+                }
+
+                @Override
+                Container and(Container other) {
+                        if (other instanceof ArrayContainer) {
+                                return other.and(this);
+                        }
+                        BitmapContainer bitmap = (BitmapContainer) other;
+                        BitmapContainer result = new BitmapContainer();
+                        for (int i = 0; i < WORDS; i++) {
+                                result.words[i] = words[i] & bitmap.words[i];
+                                result.cardinality += Long.bitCount(result.words[i]);
+                        }
+                        return result.shrink();
+                }
+
+                @Override
+                Container or(Container other) {
+                        BitmapContainer result = (BitmapContainer) copy();
+                        if (other instanceof ArrayContainer) {
+                                ArrayContainer array = (ArrayContainer) other;
+                                for (int i = 0; i < array.cardinality; i++) {
+                                        result.add(array.values[i]);
+                                }
+                                return result;
+                        }
+                        BitmapContainer bitmap = (BitmapContainer) other;
+                        result.cardinality = 0;
+                        for (int i = 0; i < WORDS; i++) {
+                                result.words[i] |= bitmap.words[i];
+                                result.cardinality += Long.bitCount(result.words[i]);
+                        }
+                        return result;
+                }
+
+                @Override
+                Container andNot(Container other) {
+                        BitmapContainer result = (BitmapContainer) copy();
+                        if (other instanceof ArrayContainer) {
+                                ArrayContainer array = (ArrayContainer) other;
+                                for (int i = 0; i < array.cardinality; i++) {
+                                        char value = array.values[i];
+                                        long word = result.words[value >>> 6];
+                                        if ((word & (1L << value)) != 0) {
+                                                result.words[value >>> 6] = word & ~(1L << value);
+                                                result.cardinality--;
+                                        }
+                                }
+                                return result.shrink();
+                        }
+                        BitmapContainer bitmap = (BitmapContainer) other;
+                        result.cardinality = 0;
+                        for (int i = 0; i < WORDS; i++) {
+                                result.words[i] &= ~bitmap.words[i];
+                                result.cardinality += Long.bitCount(result.words[i]);
+                        }
+                        return result.shrink();
+                }
+
+                @Override
+                Container copy() {
+                        BitmapContainer result = new BitmapContainer();
+                        System.arraycopy(words, 0, result.words, 0, WORDS);
+                        result.cardinality = cardinality;
+                        return result;
+                }
+
+                @Override
+                void forEach(int base, IntConsumer consumer) {
+                        for (int i = 0; i < WORDS; i++) {
+                                long word = words[i];
+                                while (word != 0) {
+                                        consumer.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                                        word &= word - 1;
+                                }
+                        }
+                }
+
+                @Override
+                int[] toArray(int base) {
+                        int[] result = new int[cardinality];
+                        int count = 0;
+                        for (int i = 0; i < WORDS; i++) {
+                                long word = words[i];
+                                while (word != 0) {
+                                        result[count++] = base | (i << 6) | Long.numberOfTrailingZeros(word);
+                                        word &= word - 1;
+                                }
+                        }
+                        return result;
+                }
+
+                @Override
+                long getSizeInBytes() {
+                        return 8L * WORDS;
+                }
+
+                @Override
+                void write(DataOutput out) throws IOException {
+                        out.writeInt(cardinality);
+                        for (int i = 0; i < WORDS; i++) {
+                                out.writeLong(words[i]);
+                        }
+                }
+
+                /**
+                 * Returns an array container with the same values if the
+                 * cardinality is small enough, otherwise this container.
+                 */
+                private Container shrink() {
+                        if (cardinality > ARRAY_MAX_SIZE) {
+                                return this;
+                        }
+                        char[] values = new char[Math.max(cardinality, 1)];
+                        int count = 0;
+                        for (int i = 0; i < WORDS; i++) {
+                                long word = words[i];
+                                while (word != 0) {
+                                        values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                                        word &= word - 1;
+                                }
+                        }
+                        return new ArrayContainer(values, count);
+                }
+        }
+}
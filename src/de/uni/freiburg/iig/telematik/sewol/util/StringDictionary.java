@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016, IIG Telematics, Uni Freiburg
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted (subject to the limitations in the disclaimer
+ * below) provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of IIG Telematics, Uni Freiburg nor the names of its
+ *   contributors may be used to endorse or promote products derived from this
+ *   software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY
+ * THIS LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BELIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uni.freiburg.iig.telematik.sewol.util;
+
+import de.invation.code.toval.validate.ParameterException;
+import de.invation.code.toval.validate.ParameterException.ErrorCode;
+import de.invation.code.toval.validate.Validate;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Thread-safe dictionary assigning consecutive integer ids to strings, e.g. to
+ * encode activity names so that relations between them can be stored in
+ * primitive arrays.
+ * </p>
+ * <p>
+ * Lookups of known strings are lock-free. Only the assignment of new ids is
+ * synchronized. Ids are never reused or removed.
+ * </p>
+ *
+ * @author Adrian Lange <lange@iig.uni-freiburg.de>
+ */
+public class StringDictionary {
+
+        private static final int DEFAULT_CAPACITY = 16;
+
+        private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+        private volatile String[] strings = new String[DEFAULT_CAPACITY];
+        private volatile int size = 0;
+
+        /**
+         * Returns the id of the given string and assigns a new one if the
+         * string is not contained yet.
+         *
+         * @param string String to encode.
+         * @return The id of the string.
+         * @throws ParameterException If the string is <code>null</code>.
+         */
+        public int getId(String string) throws ParameterException {
+                Validate.notNull(string);
+                Integer id = ids.get(string);
+                if (id != null) {
+                        return id;
+                }
+                synchronized (this) {
+                        id = ids.get(string);
+                        if (id == null) {
+                                id = size;
+                                if (id == strings.length) {
+                                        strings = Arrays.copyOf(strings, strings.length * 2);
+                                }
+                                strings[id] = string;
+                                size = id + 1;
+                                ids.put(string, id);
+                        }
+                        return id;
+                }
+        }
+
+        /**
+         * Returns the id of the given string without assigning a new one.
+         *
+         * @param string String to look up.
+         * @return The id of the string or <code>-1</code> if it is unknown.
+         */
+        public int lookup(String string) {
+                if (string == null) {
+                        return -1;
+                }
+                Integer id = ids.get(string);
+                return id == null ? -1 : id;
+        }
+
+        /**
+         * Returns the string with the given id.
+         *
+         * @param id Id of the string.
+         * @return The string.
+         * @throws ParameterException If the id is unknown.
+         */
+        public String getString(int id) throws ParameterException {
+                if (id < 0 || id >= size) {
+                        throw new ParameterException(ErrorCode.RANGEVIOLATION, "Unknown id: " + id);
+                }
+                return strings[id];
+        }
+
+        /**
+         * Returns the number of strings in the dictionary. Ids range from
+         * <code>0</code> to <code>size() - 1</code>.
+         *
+         * @return
+         */
+        public int size() {
+                return size;
+        }
+}
@@ -244,12 +244,28 @@ public class LogWriter extends FileWriter{
 		if(logPerspective == LogPerspective.ACTIVITY_PERSPECTIVE)
 			throw new PerspectiveException(PerspectiveError.WRITE_TRACE_IN_ACTIVITY_PERSPECTIVE);
 		
+		writeFormattedTrace(logFormat.getTraceAsString(logTrace));
+	}
+	
+	/**
+	 * Writes a trace which was already formatted with the log format of this writer
+	 * (see {@link AbstractLogFormat#getTraceAsString(LogTrace)}).<br>
+	 * This allows to format traces in a different thread than the one writing them.<br>
+	 * This method is only allowed in the trace perspective.
+	 * @param traceString The formatted log trace to write.
+	 * @throws PerspectiveException
+	 * @throws IOException 
+	 */
+	public void writeFormattedTrace(String traceString) throws PerspectiveException, IOException{
+		if(logPerspective == LogPerspective.ACTIVITY_PERSPECTIVE)
+			throw new PerspectiveException(PerspectiveError.WRITE_TRACE_IN_ACTIVITY_PERSPECTIVE);
+		
 		prepare();
 		if(!headerWritten){
 			write(logFormat.getFileHeader());
 			headerWritten = true;
 		}
-		output.write(logFormat.getTraceAsString(logTrace));
+		output.write(traceString);
 	}
 	
 	/**